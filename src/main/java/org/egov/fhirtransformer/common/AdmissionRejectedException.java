@@ -0,0 +1,19 @@
+package org.egov.fhirtransformer.common;
+
+/**
+ * Thrown when an ingestion request does not fit the in-flight entry or memory budget within the
+ * admission queue timeout; mapped to 429 with Retry-After.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
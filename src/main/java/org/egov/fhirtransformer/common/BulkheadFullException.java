@@ -0,0 +1,12 @@
+package org.egov.fhirtransformer.common;
+
+/**
+ * Thrown when a request's bulkhead has no free thread and its queue is full; mapped to 503 with
+ * Retry-After.
+ */
+public class BulkheadFullException extends RuntimeException {
+
+    public BulkheadFullException(String message) {
+        super(message);
+    }
+}
@@ -50,6 +50,25 @@ public class Constants {
     public static final String PRODUCT_VARIANT_API_PATH= "/fetchAllProductVariants";
 
 
+    // FHIR Search Parameters
+    public static final String SP_ID = "_id";
+    public static final String SP_IDENTIFIER = "identifier";
+    public static final String SP_LAST_UPDATED = "_lastUpdated";
+    public static final String SP_COUNT = "_count";
+    public static final String SP_DESTINATION = "destination";
+    public static final String SP_ITEM = "item";
+    public static final String SP_LOCATION = "location";
+    public static final String SP_ELEMENTS = "_elements";
+    public static final String SP_SUMMARY = "_summary";
+    public static final String SUMMARY_COUNT = "count";
+    public static final String SP_INCLUDE = "_include";
+    public static final String INCLUDE_SD_ITEM = "SupplyDelivery:item";
+    public static final String INCLUDE_SD_DESTINATION = "SupplyDelivery:destination";
+    public static final String INCLUDE_SD_SENDER = "SupplyDelivery:sender";
+    public static final String INCLUDE_IR_ITEM = "InventoryReport:item";
+    public static final String INCLUDE_IR_LOCATION = "InventoryReport:location";
+    public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
     // Pagination / Query Constants
     public static final String SELF = "SELF";
     public static final String FIRST = "FIRST";
@@ -62,11 +81,15 @@ public class Constants {
     // Misc / Processing Constants
     public static final String LOCATION = "Location";
     public static final String INVENTORY_ITEM = "InventoryItem";
+    public static final String SUPPLY_DELIVERY = "SupplyDelivery";
+    public static final String INVENTORY_REPORT = "InventoryReport";
     public static final String LOCATION_PREFIX = "Location/";
     public static final String HIERARCHY_TYPE = "ADMIN";
     public static final boolean INCLUDE_CHILDREN = false;
     public static final String NEW_IDS = "newIDs";
     public static final String EXISTING_IDS = "existingIDs";
+    public static final String UNCHANGED_IDS = "unchangedIDs";
     public static final String TOTAL_PROCESSED = "totalProcessed";
+    public static final String QUEUED = "queued";
     public static final Integer ROW_VERSION = 1;
 }
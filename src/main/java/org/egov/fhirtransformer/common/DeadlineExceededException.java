@@ -0,0 +1,12 @@
+package org.egov.fhirtransformer.common;
+
+/**
+ * Thrown instead of starting or waiting for work once the request's deadline has passed or the
+ * client has gone away; mapped to 504.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
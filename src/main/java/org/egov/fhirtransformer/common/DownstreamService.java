@@ -0,0 +1,26 @@
+package org.egov.fhirtransformer.common;
+
+/**
+ * DIGIT services the transformer calls. Each service gets its own HTTP connection pool so that
+ * a slow service cannot take connections away from the others.
+ */
+public enum DownstreamService {
+
+    FACILITY("facility"),
+    PRODUCT("product"),
+    STOCK("stock"),
+    BOUNDARY("boundary");
+
+    private final String key;
+
+    DownstreamService(String key) {
+        this.key = key;
+    }
+
+    /**
+     * @return lower case name used in property keys and metric tags
+     */
+    public String key() {
+        return key;
+    }
+}
@@ -0,0 +1,19 @@
+package org.egov.fhirtransformer.common;
+
+/**
+ * Thrown without calling DIGIT when a downstream service's circuit breaker is open or its
+ * concurrency limit and queue are exhausted.
+ */
+public class DownstreamUnavailableException extends RuntimeException {
+
+    private final DownstreamService service;
+
+    public DownstreamUnavailableException(DownstreamService service, String message) {
+        super(message);
+        this.service = service;
+    }
+
+    public DownstreamService getService() {
+        return service;
+    }
+}
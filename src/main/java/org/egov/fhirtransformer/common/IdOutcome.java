@@ -0,0 +1,29 @@
+package org.egov.fhirtransformer.common;
+
+/**
+ * Outcome of writing one ingested record to DIGIT.
+ * status values: CREATED, UPDATED, UNCHANGED, FAILED; reason is set only for FAILED.
+ */
+public class IdOutcome {
+
+    public static final String CREATED = "CREATED";
+    public static final String UPDATED = "UPDATED";
+    public static final String UNCHANGED = "UNCHANGED";
+    public static final String FAILED = "FAILED";
+
+    private final String status;
+    private final String reason;
+
+    public IdOutcome(String status, String reason) {
+        this.status = status;
+        this.reason = reason;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+}
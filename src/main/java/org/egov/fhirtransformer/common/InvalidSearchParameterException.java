@@ -0,0 +1,15 @@
+package org.egov.fhirtransformer.common;
+
+/**
+ * Thrown when a FHIR search parameter is malformed or cannot be translated to a DIGIT search.
+ */
+public class InvalidSearchParameterException extends RuntimeException {
+
+    public InvalidSearchParameterException(String message) {
+        super(message);
+    }
+
+    public InvalidSearchParameterException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
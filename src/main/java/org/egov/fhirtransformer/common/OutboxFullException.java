@@ -0,0 +1,12 @@
+package org.egov.fhirtransformer.common;
+
+/**
+ * Thrown before anything is queued when the write outbox holds more pending batches than
+ * {@code outbox.max-pending-entries} or more bytes than {@code outbox.max-pending-bytes}.
+ */
+public class OutboxFullException extends RuntimeException {
+
+    public OutboxFullException(String message) {
+        super(message);
+    }
+}
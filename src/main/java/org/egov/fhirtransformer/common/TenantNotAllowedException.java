@@ -0,0 +1,12 @@
+package org.egov.fhirtransformer.common;
+
+/**
+ * Thrown when a bundle names a tenant the caller may not load into: neither the tenant of its
+ * user nor one of {@code tenant.allowed-ids}. Mapped to 403.
+ */
+public class TenantNotAllowedException extends RuntimeException {
+
+    public TenantNotAllowedException(String message) {
+        super(message);
+    }
+}
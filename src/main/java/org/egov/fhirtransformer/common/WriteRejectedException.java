@@ -0,0 +1,12 @@
+package org.egov.fhirtransformer.common;
+
+/**
+ * Thrown when DIGIT refused every failed write of a batch as invalid (a 4xx other than 408 or
+ * 429), so sending the same batch again cannot succeed.
+ */
+public class WriteRejectedException extends RuntimeException {
+
+    public WriteRejectedException(String message) {
+        super(message);
+    }
+}
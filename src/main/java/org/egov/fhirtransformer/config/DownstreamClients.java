@@ -0,0 +1,185 @@
+package org.egov.fhirtransformer.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.egov.fhirtransformer.common.DownstreamService;
+import org.egov.fhirtransformer.service.DownstreamGuard;
+import org.egov.fhirtransformer.utils.RequestDeadline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One pooled {@link RestTemplate} per {@link DownstreamService}.
+ *
+ * <p>By default each service uses an Apache HttpClient 5 pool with keep-alive connections, so
+ * repeated calls to the same DIGIT host reuse TCP/TLS sessions. Pool sizes are configured per
+ * service with {@code downstream.http.pool.<service>.max-connections}. When
+ * {@code downstream.http.http2.enabled} is set, the JDK HTTP client is used instead: requests are
+ * multiplexed over HTTP/2 and the per-service limit caps the number of in-flight requests.
+ *
+ * <p>Every call first passes the service's {@link DownstreamGuard} (circuit breaker and
+ * adaptive concurrency limit). A call made for a request whose {@link RequestDeadline} has passed
+ * is not sent; otherwise the pool wait and response timeouts of the HTTP/1.1 clients are reduced
+ * to the remaining budget.
+ *
+ * <p>Pool utilization is published as {@code httpcomponents.httpclient.pool.*} gauges (HTTP/1.1)
+ * or {@code downstream.http.inflight} (HTTP/2), tagged with the service name.
+ */
+@Component
+public class DownstreamClients {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownstreamClients.class);
+
+    private final Map<DownstreamService, RestTemplate> restTemplates = new EnumMap<>(DownstreamService.class);
+    private final List<CloseableHttpClient> pooledClients = new ArrayList<>();
+
+    public DownstreamClients(Environment env, MeterRegistry meterRegistry, DownstreamGuard downstreamGuard,
+                             @Value("${downstream.http.connect-timeout-ms:5000}") long connectTimeoutMs,
+                             @Value("${downstream.http.read-timeout-ms:30000}") long readTimeoutMs,
+                             @Value("${downstream.http.connection-request-timeout-ms:5000}") long connectionRequestTimeoutMs,
+                             @Value("${downstream.http.idle-evict-ms:30000}") long idleEvictMs,
+                             @Value("${downstream.http.max-connections:50}") int defaultMaxConnections,
+                             @Value("${downstream.http.http2.enabled:false}") boolean http2Enabled) {
+
+        for (DownstreamService service : DownstreamService.values()) {
+            int maxConnections = env.getProperty("downstream.http.pool." + service.key() + ".max-connections",
+                    Integer.class, defaultMaxConnections);
+            RestTemplate restTemplate = http2Enabled
+                    ? http2RestTemplate(service, maxConnections, connectTimeoutMs, readTimeoutMs,
+                            connectionRequestTimeoutMs, meterRegistry)
+                    : pooledRestTemplate(service, maxConnections, connectTimeoutMs, readTimeoutMs,
+                            connectionRequestTimeoutMs, idleEvictMs, meterRegistry);
+            // the guard sits in front of the pool so rejected calls never touch it, and the deadline
+            // check in front of the guard so expired requests take no permit
+            restTemplate.getInterceptors().add(0, (request, body, execution) ->
+                    downstreamGuard.execute(service, () -> execution.execute(request, body)));
+            restTemplate.getInterceptors().add(0, (request, body, execution) -> {
+                RequestDeadline.check(service.key() + " call");
+                return execution.execute(request, body);
+            });
+            restTemplates.put(service, restTemplate);
+            logger.info("Downstream client for {}: {} connections, {}", service.key(), maxConnections,
+                    http2Enabled ? "HTTP/2" : "HTTP/1.1 keep-alive pool");
+        }
+    }
+
+    /**
+     * @param service DIGIT service to call
+     * @return pooled client for the service
+     */
+    public RestTemplate get(DownstreamService service) {
+        return restTemplates.get(service);
+    }
+
+    private RestTemplate pooledRestTemplate(DownstreamService service, int maxConnections, long connectTimeoutMs,
+                                            long readTimeoutMs, long connectionRequestTimeoutMs, long idleEvictMs,
+                                            MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .build();
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionRequestTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleEvictMs))
+                .build();
+        pooledClients.add(httpClient);
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, service.key(),
+                Tags.of("service", service.key())).bindTo(meterRegistry);
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        requestFactory.setHttpContextFactory((method, uri) -> {
+            if (RequestDeadline.current() == null) return null;
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.custom()
+                    .setConnectionRequestTimeout(Timeout.ofMilliseconds(RequestDeadline.cap(connectionRequestTimeoutMs)))
+                    .setResponseTimeout(Timeout.ofMilliseconds(RequestDeadline.cap(readTimeoutMs)))
+                    .build());
+            return context;
+        });
+        return new RestTemplate(requestFactory);
+    }
+
+    private RestTemplate http2RestTemplate(DownstreamService service, int maxInFlight, long connectTimeoutMs,
+                                           long readTimeoutMs, long connectionRequestTimeoutMs,
+                                           MeterRegistry meterRegistry) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+
+        // HTTP/2 multiplexes over one connection, so the pool limit becomes a cap on in-flight requests
+        Semaphore permits = new Semaphore(maxInFlight);
+        Gauge.builder("downstream.http.inflight", permits, p -> maxInFlight - p.availablePermits())
+                .tag("service", service.key())
+                .register(meterRegistry);
+        ClientHttpRequestInterceptor limiter = (request, body, execution) -> {
+            try {
+                if (!permits.tryAcquire(connectionRequestTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    throw new IOException("Timed out waiting for a " + service.key() + " request slot");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for a " + service.key() + " request slot");
+            }
+            try {
+                return execution.execute(request, body);
+            } finally {
+                permits.release();
+            }
+        };
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(limiter);
+        return restTemplate;
+    }
+
+    @PreDestroy
+    public void close() {
+        for (CloseableHttpClient httpClient : pooledClients) {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close downstream HTTP client: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.egov.fhirtransformer.config;
+
+import org.egov.fhirtransformer.service.DownstreamGuard;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+import java.util.Map;
+
+/**
+ * Actuator endpoint ({@code /actuator/downstream}) showing, per DIGIT service, the circuit
+ * breaker state and the current adaptive concurrency limit, in-flight, queued and rejected calls.
+ */
+@Component
+@Endpoint(id = "downstream")
+public class DownstreamGuardEndpoint {
+
+    private final DownstreamGuard downstreamGuard;
+
+    public DownstreamGuardEndpoint(DownstreamGuard downstreamGuard) {
+        this.downstreamGuard = downstreamGuard;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> downstream() {
+        return downstreamGuard.snapshot();
+    }
+}
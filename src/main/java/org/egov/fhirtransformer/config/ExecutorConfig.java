@@ -0,0 +1,178 @@
+package org.egov.fhirtransformer.config;
+
+import org.egov.fhirtransformer.utils.RequestDeadline;
+import org.egov.fhirtransformer.utils.TenantContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executors used to run downstream work off the request thread.
+ *
+ * <p>Executors that run work of a single request carry its {@link RequestDeadline} and
+ * {@link TenantContext} to their threads. The batch executor does not: a merged batch serves
+ * several requests and must not be cut short by the first of them to expire; it binds the tenant
+ * of its group itself.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Executor for the concurrent downstream searches and mapping of the aggregated fetch.
+     * Each aggregated request submits one task per entity type. With
+     * {@code spring.threads.virtual.enabled} each task gets a virtual thread and pool size plus
+     * queue capacity becomes a concurrency limit. A full executor rejects the task, which fails
+     * only its entity type.
+     */
+    @Bean(name = "fetchExecutor")
+    public AsyncTaskExecutor fetchExecutor(@Value("${fetch.executor.pool-size:20}") int poolSize,
+                                           @Value("${fetch.executor.queue-capacity:200}") int queueCapacity,
+                                           @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("fetch-");
+            executor.setVirtualThreads(true);
+            executor.setTaskDecorator(ExecutorConfig::requestScoped);
+            executor.setConcurrencyLimit(poolSize + queueCapacity);
+            executor.setRejectTasksWhenLimitReached(true);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("fetch-");
+        executor.setTaskDecorator(ExecutorConfig::requestScoped);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Executor that runs the combined DIGIT calls of cross-request batches. Callers wait on the
+     * batch result, so the pool only needs to cover the batches in flight.
+     */
+    @Bean(name = "batchExecutor")
+    public AsyncTaskExecutor batchExecutor(@Value("${batch.executor.pool-size:16}") int poolSize,
+                                           @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("batch-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("batch-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Executor that sends the chunks of a bulk create/update concurrently. Kept apart from the
+     * batch executor because merged batches wait on their chunks.
+     */
+    @Bean(name = "writeExecutor")
+    public AsyncTaskExecutor writeExecutor(@Value("${write.executor.pool-size:32}") int poolSize,
+                                           @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("write-");
+            executor.setVirtualThreads(true);
+            executor.setTaskDecorator(ExecutorConfig::requestScoped);
+            executor.setConcurrencyLimit(poolSize);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("write-");
+        executor.setTaskDecorator(ExecutorConfig::requestScoped);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Executor that runs both attempts of hedged searches, so the caller can take whichever
+     * answers first. The queue is bounded: a full pool runs a search on the calling thread without
+     * a hedge, or skips a hedge already due. Only used when {@code downstream.hedge.enabled} is set.
+     */
+    @Bean(name = "hedgeExecutor")
+    public AsyncTaskExecutor hedgeExecutor(@Value("${downstream.hedge.pool-size:32}") int poolSize,
+                                           @Value("${downstream.hedge.queue-capacity:0}") int queueCapacity,
+                                           @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("hedge-");
+            executor.setVirtualThreads(true);
+            executor.setTaskDecorator(ExecutorConfig::requestScoped);
+            executor.setConcurrencyLimit(poolSize + queueCapacity);
+            executor.setRejectTasksWhenLimitReached(true);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("hedge-");
+        executor.setTaskDecorator(ExecutorConfig::requestScoped);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Bulkhead for the {@code /fetchAll*} and {@code /fetchAggregated} reads, so dashboards keep
+     * their latency during bulk loads.
+     */
+    @Bean(name = "readExecutor")
+    public AsyncTaskExecutor readExecutor(@Value("${bulkhead.read.pool-size:32}") int poolSize,
+                                          @Value("${bulkhead.read.queue-capacity:200}") int queueCapacity,
+                                          @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        return bulkhead("read-", poolSize, queueCapacity, virtualThreads);
+    }
+
+    /**
+     * Bulkhead for {@code /validate}. Validation is CPU bound, so the pool stays small.
+     */
+    @Bean(name = "validationExecutor")
+    public AsyncTaskExecutor validationExecutor(@Value("${bulkhead.validation.pool-size:8}") int poolSize,
+                                                @Value("${bulkhead.validation.queue-capacity:100}") int queueCapacity,
+                                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        return bulkhead("validation-", poolSize, queueCapacity, virtualThreads);
+    }
+
+    /**
+     * Bulkhead for {@code /consumeFHIR} and {@code /retryFailedFHIR}. Admission control bounds the
+     * entries in flight; this bounds the threads bulk loads can hold.
+     */
+    @Bean(name = "ingestExecutor")
+    public AsyncTaskExecutor ingestExecutor(@Value("${bulkhead.ingest.pool-size:16}") int poolSize,
+                                            @Value("${bulkhead.ingest.queue-capacity:64}") int queueCapacity,
+                                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        return bulkhead("ingest-", poolSize, queueCapacity, virtualThreads);
+    }
+
+    // A full queue rejects the request instead of blocking; with virtual threads each request gets
+    // its own thread and pool size plus queue capacity caps how many run at once
+    private AsyncTaskExecutor bulkhead(String prefix, int poolSize, int queueCapacity, boolean virtualThreads) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(prefix);
+            executor.setVirtualThreads(true);
+            executor.setTaskDecorator(ExecutorConfig::requestScoped);
+            executor.setConcurrencyLimit(poolSize + queueCapacity);
+            executor.setRejectTasksWhenLimitReached(true);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(prefix);
+        executor.setTaskDecorator(ExecutorConfig::requestScoped);
+        executor.initialize();
+        return executor;
+    }
+
+    private static Runnable requestScoped(Runnable task) {
+        return RequestDeadline.propagate(TenantContext.propagate(task));
+    }
+}
@@ -2,6 +2,7 @@ package org.egov.fhirtransformer.mapping.fhirBuilder;
 
 import org.egov.common.models.facility.Facility;
 import org.egov.fhirtransformer.common.Constants;
+import org.egov.fhirtransformer.utils.ElementProjection;
 import org.hl7.fhir.r5.model.*;
 import java.util.List;
 import java.util.Date;
@@ -19,40 +20,59 @@ public class DIGITHCMFacilityMapper {
      * @return populated {@link Location} resource representing the facility
      */
     public static Location buildLocationFromFacility(Facility facility) {
+        return buildLocationFromFacility(facility, ElementProjection.ALL);
+    }
+
+    /**
+     * Creates a FHIR {@link Location} resource from a DIGIT {@code Facility},
+     * building only the elements included in the projection.
+     * @param facility facility master data
+     * @param projection elements to build
+     * @return populated {@link Location} resource representing the facility
+     */
+    public static Location buildLocationFromFacility(Facility facility, ElementProjection projection) {
 
         Location location = new Location();
         Long lastModifiedMillis = facility.getAuditDetails().getLastModifiedTime();
         Date lastModified = (lastModifiedMillis != null) ? new Date(lastModifiedMillis) : null;
 
         location.setId(facility.getId());
-        location.setName(facility.getName());
-        location.setStatus(Location.LocationStatus.ACTIVE);
+        if (projection.includes("name")) {
+            location.setName(facility.getName());
+        }
+        if (projection.includes("status")) {
+            location.setStatus(Location.LocationStatus.ACTIVE);
+        }
 
         // Setting meta information for the Location resource DIGIT HCM Facility profile
-        location.setMeta(new Meta()
+        location.setMeta(projection.tag(new Meta()
                 .setLastUpdated(lastModified)
-                .addProfile(Constants.PROFILE_DIGIT_HCM_FACILITY));
+                .addProfile(Constants.PROFILE_DIGIT_HCM_FACILITY)));
 
         // Adding identifier for facility ID
-        Identifier identifier = new Identifier()
-                .setSystem(Constants.IDENTIFIER_SYSTEM_FACILITY)
-                .setValue(facility.getId());
-        location.addIdentifier(identifier);
+        if (projection.includes("identifier")) {
+            Identifier identifier = new Identifier()
+                    .setSystem(Constants.IDENTIFIER_SYSTEM_FACILITY)
+                    .setValue(facility.getId());
+            location.addIdentifier(identifier);
+        }
 
         // Adding facility type and usage
-        location.addType(new CodeableConcept().addCoding(
-                new Coding()
-                        .setSystem(Constants.LOCATION_TYPE_SYSTEM)
-                        .setCode(Constants.FACILITY_LOCATION_TYPE)));
-        location.addType(new CodeableConcept().addCoding(
-                new Coding()
-                        .setSystem(Constants.FACILITY_USAGE_SYSTEM)
-                        .setCode(facility.getUsage())));
+        if (projection.includes("type")) {
+            location.addType(new CodeableConcept().addCoding(
+                    new Coding()
+                            .setSystem(Constants.LOCATION_TYPE_SYSTEM)
+                            .setCode(Constants.FACILITY_LOCATION_TYPE)));
+            location.addType(new CodeableConcept().addCoding(
+                    new Coding()
+                            .setSystem(Constants.FACILITY_USAGE_SYSTEM)
+                            .setCode(facility.getUsage())));
+        }
 
         // Setting address details
-        Address address = new Address();
         org.egov.common.models.facility.Address addr = facility.getAddress();
-        if (addr != null) {
+        if (addr != null && projection.includes("address")) {
+            Address address = new Address();
             if (addr.getBuildingName() != null) {
                 address.addLine(addr.getBuildingName());
             }
@@ -66,7 +86,8 @@ public class DIGITHCMFacilityMapper {
             address.setPostalCode(addr.getPincode());
 
             location.setAddress(address);
-
+        }
+        if (addr != null && projection.includes("position")) {
             // Setting position details (latitude and longitude)
             Location.LocationPositionComponent position = new Location.LocationPositionComponent()
                     .setLatitude(addr.getLatitude())
@@ -2,6 +2,7 @@ package org.egov.fhirtransformer.mapping.fhirBuilder;
 
 import org.egov.common.models.product.ProductVariant;
 import org.egov.fhirtransformer.common.Constants;
+import org.egov.fhirtransformer.utils.ElementProjection;
 import org.hl7.fhir.r5.model.*;
 import java.util.Date;
 
@@ -18,46 +19,58 @@ public class DIGITHCMProductVariantMapper {
      * @return a populated {@link InventoryItem} FHIR resource
      */
     public static InventoryItem buildInventoryFromProductVariant(ProductVariant productVariant) {
+        return buildInventoryFromProductVariant(productVariant, ElementProjection.ALL);
+    }
+
+    /**
+     * Builds a FHIR {@link InventoryItem} resource from the given {@link ProductVariant},
+     * building only the elements included in the projection.
+     * @param productVariant the source product variant containing inventory details
+     * @param projection elements to build
+     * @return a populated {@link InventoryItem} FHIR resource
+     */
+    public static InventoryItem buildInventoryFromProductVariant(ProductVariant productVariant, ElementProjection projection) {
 
         InventoryItem inventoryItem = new InventoryItem();
         Long lastModifiedMillis = productVariant.getAuditDetails().getLastModifiedTime();
         Date lastModified = (lastModifiedMillis != null) ? new Date(lastModifiedMillis) : null;
 
-        Long expiryDateMillis = productVariant.getExpiryDate();
-        Date expiryDate = (expiryDateMillis != null) ? new Date(expiryDateMillis) : null;
-
         inventoryItem.setId(productVariant.getId());
         inventoryItem.setStatus(InventoryItem.InventoryItemStatusCodes.ACTIVE);
 
         // Setting meta information for the Location resource DIGIT HCM Facility profile
-        inventoryItem.setMeta(new Meta()
+        inventoryItem.setMeta(projection.tag(new Meta()
                 .setLastUpdated(lastModified)
-                .addProfile(Constants.PROFILE_DIGIT_HCM_PV));
+                .addProfile(Constants.PROFILE_DIGIT_HCM_PV)));
 
         // Adding identifier for facility ID
-        Identifier identifier = new Identifier()
-                .setSystem(Constants.IDENTIFIER_SYSTEM_PV)
-                .setValue(productVariant.getId());
-        Identifier SKUidentifier = new Identifier()
-                .setSystem(Constants.IDENTIFIER_SYSTEM_SKUPV)
-                .setValue(productVariant.getSku());
-        Identifier productidentifier = new Identifier()
-                .setSystem(Constants.IDENTIFIER_SYSTEM_PRDCT)
-                .setValue(productVariant.getProductId());
-
-        inventoryItem.addIdentifier(identifier);
-        inventoryItem.addIdentifier(SKUidentifier);
-        inventoryItem.addIdentifier(productidentifier);
+        if (projection.includes("identifier")) {
+            Identifier identifier = new Identifier()
+                    .setSystem(Constants.IDENTIFIER_SYSTEM_PV)
+                    .setValue(productVariant.getId());
+            Identifier SKUidentifier = new Identifier()
+                    .setSystem(Constants.IDENTIFIER_SYSTEM_SKUPV)
+                    .setValue(productVariant.getSku());
+            Identifier productidentifier = new Identifier()
+                    .setSystem(Constants.IDENTIFIER_SYSTEM_PRDCT)
+                    .setValue(productVariant.getProductId());
+
+            inventoryItem.addIdentifier(identifier);
+            inventoryItem.addIdentifier(SKUidentifier);
+            inventoryItem.addIdentifier(productidentifier);
+        }
 
         // Adding Category
-        inventoryItem.addCategory(new CodeableConcept().addCoding(
-                new Coding()
-                        .setSystem(Constants.CATEGORY_SYSTEM_PV)
-                        .setCode(productVariant.getProduct().getType())
-                        .setDisplay(productVariant.getProduct().getType())));
+        if (projection.includes("category")) {
+            inventoryItem.addCategory(new CodeableConcept().addCoding(
+                    new Coding()
+                            .setSystem(Constants.CATEGORY_SYSTEM_PV)
+                            .setCode(productVariant.getProduct().getType())
+                            .setDisplay(productVariant.getProduct().getType())));
+        }
 
         // Adding baseUnit
-        if (productVariant.getBaseUnit() != null) {
+        if (productVariant.getBaseUnit() != null && projection.includes("baseUnit")) {
             inventoryItem.setBaseUnit(new CodeableConcept().addCoding(
                     new Coding()
                             .setSystem(Constants.UOM_SYSTEM)
@@ -67,47 +80,56 @@ public class DIGITHCMProductVariantMapper {
         }
 
         // Adding NetContent
-        if (productVariant.getNetContent() != null) {
+        if (productVariant.getNetContent() != null && projection.includes("netContent")) {
             inventoryItem.setNetContent(new Quantity(productVariant.getNetContent().longValue()));
         }
 
         // Adding Name Type
-        InventoryItem.InventoryItemNameComponent nameComponent = new InventoryItem.InventoryItemNameComponent()
-                .setName(productVariant.getVariation())
-                .setLanguage(Enumerations.CommonLanguages.ENUS)
-                .setNameType(new Coding()
-                                .setSystem(Constants.NAMETYPE_SYSTEM_PV)
-                                .setCode(Constants.TRADENAME_PV));
-        inventoryItem.addName(nameComponent);
-
-        InventoryItem.InventoryItemNameComponent productnameComponent = new InventoryItem.InventoryItemNameComponent()
-                .setName(productVariant.getProduct().getName())
-                .setLanguage(Enumerations.CommonLanguages.ENUS)
-                .setNameType(new Coding()
-                        .setSystem(Constants.NAMETYPE_SYSTEM_PV)
-                        .setCode(Constants.COMMONNAME_PV));
-        inventoryItem.addName(productnameComponent);
+        if (projection.includes("name")) {
+            InventoryItem.InventoryItemNameComponent nameComponent = new InventoryItem.InventoryItemNameComponent()
+                    .setName(productVariant.getVariation())
+                    .setLanguage(Enumerations.CommonLanguages.ENUS)
+                    .setNameType(new Coding()
+                                    .setSystem(Constants.NAMETYPE_SYSTEM_PV)
+                                    .setCode(Constants.TRADENAME_PV));
+            inventoryItem.addName(nameComponent);
+
+            InventoryItem.InventoryItemNameComponent productnameComponent = new InventoryItem.InventoryItemNameComponent()
+                    .setName(productVariant.getProduct().getName())
+                    .setLanguage(Enumerations.CommonLanguages.ENUS)
+                    .setNameType(new Coding()
+                            .setSystem(Constants.NAMETYPE_SYSTEM_PV)
+                            .setCode(Constants.COMMONNAME_PV));
+            inventoryItem.addName(productnameComponent);
+        }
 
         // Adding Manufacturer as Responsible Organization
-        InventoryItem.InventoryItemResponsibleOrganizationComponent responsibleOrgComponent = new InventoryItem.InventoryItemResponsibleOrganizationComponent()
-                .setOrganization(new Reference().setDisplay(productVariant.getProductId()))
-                .setRole(new CodeableConcept().addCoding(
-                        new Coding()
-                        .setSystem(Constants.RESPORG_SYSTEM_PV)
-                        .setCode(Constants.MANUFACTURER_PV)
-                        .setDisplay(Constants.MANUFACTURER_PV)));
-
-        inventoryItem.addResponsibleOrganization(responsibleOrgComponent);
+        if (projection.includes("responsibleOrganization")) {
+            InventoryItem.InventoryItemResponsibleOrganizationComponent responsibleOrgComponent = new InventoryItem.InventoryItemResponsibleOrganizationComponent()
+                    .setOrganization(new Reference().setDisplay(productVariant.getProductId()))
+                    .setRole(new CodeableConcept().addCoding(
+                            new Coding()
+                            .setSystem(Constants.RESPORG_SYSTEM_PV)
+                            .setCode(Constants.MANUFACTURER_PV)
+                            .setDisplay(Constants.MANUFACTURER_PV)));
+
+            inventoryItem.addResponsibleOrganization(responsibleOrgComponent);
+        }
 
         //Adding Instance Information
-        InventoryItem.InventoryItemInstanceComponent instanceComponent = new InventoryItem.InventoryItemInstanceComponent()
-                .addIdentifier(new Identifier()
-                .setSystem(Constants.GTIN_PV)
-                .setValue(productVariant.getGtin()))
-                .setLotNumber(productVariant.getBatchNumber())
-                .setExpiry(expiryDate);
-
-        inventoryItem.setInstance(instanceComponent);
+        if (projection.includes("instance")) {
+            Long expiryDateMillis = productVariant.getExpiryDate();
+            Date expiryDate = (expiryDateMillis != null) ? new Date(expiryDateMillis) : null;
+
+            InventoryItem.InventoryItemInstanceComponent instanceComponent = new InventoryItem.InventoryItemInstanceComponent()
+                    .addIdentifier(new Identifier()
+                    .setSystem(Constants.GTIN_PV)
+                    .setValue(productVariant.getGtin()))
+                    .setLotNumber(productVariant.getBatchNumber())
+                    .setExpiry(expiryDate);
+
+            inventoryItem.setInstance(instanceComponent);
+        }
         return inventoryItem;
     }
 
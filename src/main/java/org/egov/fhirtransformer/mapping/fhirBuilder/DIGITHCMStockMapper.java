@@ -2,6 +2,7 @@ package org.egov.fhirtransformer.mapping.fhirBuilder;
 
 import org.egov.common.models.stock.*;
 import org.egov.fhirtransformer.common.Constants;
+import org.egov.fhirtransformer.utils.ElementProjection;
 import org.hl7.fhir.r5.model.*;
 import java.time.OffsetDateTime;
 import java.util.UUID;
@@ -19,74 +20,98 @@ public class DIGITHCMStockMapper {
      * @return populated {@link SupplyDelivery} resource
      */
     public static SupplyDelivery buildSupplyDeliveryFromStock(Stock stock) {
+        return buildSupplyDeliveryFromStock(stock, ElementProjection.ALL);
+    }
+
+    /**
+     * Creates a FHIR {@link SupplyDelivery} resource from a DIGIT {@link Stock},
+     * building only the elements included in the projection.
+     * @param stock stock transaction data; must not be {@code null}
+     * @param projection elements to build
+     * @return populated {@link SupplyDelivery} resource
+     */
+    public static SupplyDelivery buildSupplyDeliveryFromStock(Stock stock, ElementProjection projection) {
 
         String facilityId = null;
         SupplyDelivery supplyDelivery = new SupplyDelivery();
         supplyDelivery.setId(stock.getId());
-        Identifier identifier = new Identifier()
-                .setSystem(Constants.IDENTIFIER_SYSTEM_WAYBILL)
-                .setValue(stock.getWayBillNumber());
-        supplyDelivery.addIdentifier(identifier);
-        Long dateOfEntry = stock.getDateOfEntry();
-        DateTimeType dateOfEntryDt = (dateOfEntry != null) ? new DateTimeType(new Date(dateOfEntry)) : null;
-        supplyDelivery.setOccurrence(dateOfEntryDt);
-
-        SupplyDelivery.SupplyDeliverySuppliedItemComponent suppliedItemComponent =
-                new SupplyDelivery.SupplyDeliverySuppliedItemComponent();
-
-        Quantity stockquantity = new Quantity()
-                .setValue(stock.getQuantity());
-        suppliedItemComponent.setQuantity(stockquantity);
-        suppliedItemComponent.setItem(
-                new Reference()
-                        .setIdentifier(new Identifier()
-                                .setSystem(Constants.PRODUCT_VARIANT_IDENTIFIER_SYSTEM)
-                                .setValue(stock.getProductVariantId()))
-        );
-
-        //Set extension for Supply Delivery Condition
-        suppliedItemComponent.addExtension(new Extension().setUrl(Constants.SD_CONDITION_URL)
-                .setValue(new CodeableConcept().addCoding(
-                        new Coding()
-                                .setSystem(Constants.TRANSACTION_REASON_SYSTEM)
-                                .setCode(String.valueOf(stock.getTransactionReason())))));
-        supplyDelivery.addSuppliedItem(suppliedItemComponent);
-
-        // Set extension for Supply Delivery Stage
-        Extension stageExt = new Extension().setUrl(Constants.SD_STAGE_URL)
-                .setValue(new CodeableConcept().addCoding(
-                        new Coding()
-                        .setSystem(Constants.TRANSACTION_TYPE_SYSTEM)
-                        .setCode(String.valueOf(stock.getTransactionType()))));
-        supplyDelivery.addExtension(stageExt);
-
-        // Set extension for Event Location
-        if (stock.getTransactionType().equals(TransactionType.RECEIVED)) {
-            facilityId = stock.getReceiverId(); //change it to facilityID once added
-        } else if (stock.getTransactionType().equals(TransactionType.DISPATCHED)) {
-            facilityId = stock.getSenderId();
+        supplyDelivery.setMeta(projection.tag(new Meta().setLastUpdated(lastModified(stock.getAuditDetails() != null
+                ? stock.getAuditDetails().getLastModifiedTime() : null))));
+
+        if (projection.includes("identifier")) {
+            Identifier identifier = new Identifier()
+                    .setSystem(Constants.IDENTIFIER_SYSTEM_WAYBILL)
+                    .setValue(stock.getWayBillNumber());
+            supplyDelivery.addIdentifier(identifier);
+        }
+        if (projection.includes("occurrence")) {
+            Long dateOfEntry = stock.getDateOfEntry();
+            DateTimeType dateOfEntryDt = (dateOfEntry != null) ? new DateTimeType(new Date(dateOfEntry)) : null;
+            supplyDelivery.setOccurrence(dateOfEntryDt);
+        }
+
+        if (projection.includes("suppliedItem")) {
+            SupplyDelivery.SupplyDeliverySuppliedItemComponent suppliedItemComponent =
+                    new SupplyDelivery.SupplyDeliverySuppliedItemComponent();
+
+            Quantity stockquantity = new Quantity()
+                    .setValue(stock.getQuantity());
+            suppliedItemComponent.setQuantity(stockquantity);
+            suppliedItemComponent.setItem(
+                    new Reference()
+                            .setIdentifier(new Identifier()
+                                    .setSystem(Constants.PRODUCT_VARIANT_IDENTIFIER_SYSTEM)
+                                    .setValue(stock.getProductVariantId()))
+            );
+
+            //Set extension for Supply Delivery Condition
+            suppliedItemComponent.addExtension(new Extension().setUrl(Constants.SD_CONDITION_URL)
+                    .setValue(new CodeableConcept().addCoding(
+                            new Coding()
+                                    .setSystem(Constants.TRANSACTION_REASON_SYSTEM)
+                                    .setCode(String.valueOf(stock.getTransactionReason())))));
+            supplyDelivery.addSuppliedItem(suppliedItemComponent);
+        }
+
+        if (projection.includes("extension")) {
+            // Set extension for Supply Delivery Stage
+            Extension stageExt = new Extension().setUrl(Constants.SD_STAGE_URL)
+                    .setValue(new CodeableConcept().addCoding(
+                            new Coding()
+                            .setSystem(Constants.TRANSACTION_TYPE_SYSTEM)
+                            .setCode(String.valueOf(stock.getTransactionType()))));
+            supplyDelivery.addExtension(stageExt);
+
+            // Set extension for Event Location
+            if (stock.getTransactionType().equals(TransactionType.RECEIVED)) {
+                facilityId = stock.getReceiverId(); //change it to facilityID once added
+            } else if (stock.getTransactionType().equals(TransactionType.DISPATCHED)) {
+                facilityId = stock.getSenderId();
+            }
+            Extension eventLocationExt = new Extension().setUrl(Constants.EVENT_LOCATION_URL)
+                    .setValue(new Reference()
+                            .setIdentifier( new Identifier()
+                                    .setSystem(Constants.FACILITY_ID_SYSTEM)
+                                    .setValue(facilityId)));
+            supplyDelivery.addExtension(eventLocationExt);
+
+            // Set extension for Supply Delivery Sender Location
+            Extension senderLocationExt = new Extension()
+                    .setUrl(Constants.SD_SENDER_LOCATION_URL)
+                    .setValue(new Reference().setIdentifier(
+                            new Identifier()
+                                    .setSystem(Constants.FACILITY_ID_SYSTEM)
+                                    .setValue(stock.getSenderId())));
+
+            supplyDelivery.addExtension(senderLocationExt);
+        }
+
+        if (projection.includes("destination")) {
+            supplyDelivery.setDestination(new Reference()
+                            .setIdentifier( new Identifier()
+                                    .setSystem(Constants.FACILITY_ID_SYSTEM)
+                                    .setValue(stock.getReceiverId())));
         }
-        Extension eventLocationExt = new Extension().setUrl(Constants.EVENT_LOCATION_URL)
-                .setValue(new Reference()
-                        .setIdentifier( new Identifier()
-                                .setSystem(Constants.FACILITY_ID_SYSTEM)
-                                .setValue(facilityId)));
-        supplyDelivery.addExtension(eventLocationExt);
-
-        // Set extension for Supply Delivery Sender Location
-        Extension senderLocationExt = new Extension()
-                .setUrl(Constants.SD_SENDER_LOCATION_URL)
-                .setValue(new Reference().setIdentifier(
-                        new Identifier()
-                                .setSystem(Constants.FACILITY_ID_SYSTEM)
-                                .setValue(stock.getSenderId())));
-
-        supplyDelivery.addExtension(senderLocationExt);
-
-        supplyDelivery.setDestination(new Reference()
-                        .setIdentifier( new Identifier()
-                                .setSystem(Constants.FACILITY_ID_SYSTEM)
-                                .setValue(stock.getReceiverId())));
 
         return supplyDelivery;
     }
@@ -97,10 +122,24 @@ public class DIGITHCMStockMapper {
      * @return populated {@link InventoryReport} resource
      */
     public static InventoryReport buildInventoryReportFromStockReconciliation(StockReconciliation stockReconciliation) {
+        return buildInventoryReportFromStockReconciliation(stockReconciliation, ElementProjection.ALL);
+    }
+
+    /**
+     * Creates a FHIR {@link InventoryReport} resource from a {@link StockReconciliation},
+     * building only the elements included in the projection.
+     * @param stockReconciliation stock reconciliation data; must not be {@code null}
+     * @param projection elements to build
+     * @return populated {@link InventoryReport} resource
+     */
+    public static InventoryReport buildInventoryReportFromStockReconciliation(StockReconciliation stockReconciliation,
+                                                                              ElementProjection projection) {
 
         InventoryReport inventoryReport = new InventoryReport();
 
         inventoryReport.setId(stockReconciliation.getId());
+        inventoryReport.setMeta(projection.tag(new Meta().setLastUpdated(lastModified(stockReconciliation.getAuditDetails() != null
+                ? stockReconciliation.getAuditDetails().getLastModifiedTime() : null))));
         inventoryReport.setStatus(InventoryReport.InventoryReportStatus.ACTIVE);
         inventoryReport.setCountType(InventoryReport.InventoryCountType.SNAPSHOT);
 
@@ -108,6 +147,10 @@ public class DIGITHCMStockMapper {
         Date reportedDate = new Date(reportedDateEpoch);
         inventoryReport.setReportedDateTimeElement(new DateTimeType(reportedDate));
 
+        if (!projection.includes("inventoryListing")) {
+            return inventoryReport;
+        }
+
         InventoryReport.InventoryReportInventoryListingComponent listing = new InventoryReport.InventoryReportInventoryListingComponent();
         listing.setCountingDateTime(reportedDate);
 
@@ -137,6 +180,10 @@ public class DIGITHCMStockMapper {
         return inventoryReport;
     }
 
+    private static Date lastModified(Long lastModifiedMillis) {
+        return (lastModifiedMillis != null) ? new Date(lastModifiedMillis) : null;
+    }
+
     /**
      * Converts a FHIR {@link SupplyDelivery} resource into a DIGIT {@link Stock}.
      *
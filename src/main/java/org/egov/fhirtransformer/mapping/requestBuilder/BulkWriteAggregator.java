@@ -0,0 +1,198 @@
+package org.egov.fhirtransformer.mapping.requestBuilder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.egov.common.contract.request.RequestInfo;
+import org.egov.fhirtransformer.common.DeadlineExceededException;
+import org.egov.fhirtransformer.mapping.requestBuilder.ChunkedBulkWriter.Failure;
+import org.egov.fhirtransformer.mapping.requestBuilder.GenericCreateOrUpdateService.OrderedBulkWrite;
+import org.egov.fhirtransformer.mapping.requestBuilder.GenericCreateOrUpdateService.ThrowingBiConsumer;
+import org.egov.fhirtransformer.service.TenantRouter;
+import org.egov.fhirtransformer.utils.HashUtils;
+import org.egov.fhirtransformer.utils.MicroBatcher;
+import org.egov.fhirtransformer.utils.RequestDeadline;
+import org.egov.fhirtransformer.utils.TenantContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Merges the bulk create/update lists of concurrent ingestions into shared bulk calls.
+ *
+ * <p>Writes to the same URL (one entity type and operation) with the same credentials and tenant arriving
+ * within {@code write.batch.window-ms}, or until {@code write.batch.max-records} are pending, are
+ * sent as one bulk request. If DIGIT rejects the merged call as invalid (a 4xx other than 408 or
+ * 429), each ingestion's part is resent on its own, charged to the URL's retry budget, so that one
+ * bad record only fails the ingestion it came from. Parts that may have been written (5xx,
+ * timeouts) are not resent. Each caller receives the outcome of its own ids. The merged list is
+ * sent through {@link ChunkedBulkWriter}. An ingestion waits for
+ * the merged call no longer than its {@link RequestDeadline}, and its part is left out of a call
+ * that starts after that deadline.
+ */
+@Service
+public class BulkWriteAggregator {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkWriteAggregator.class);
+
+    private record Pending(Object owner, String id, Object entity, RequestDeadline deadline) {
+    }
+
+    private record Write(ThrowingBiConsumer<List<Object>, String> writeFn, String url, String tenantId) {
+    }
+
+    private record Group(String url, String credentials, String tenantId) {
+    }
+
+    private final Map<String, MicroBatcher<Group, Write, Pending, Map<String, Failure>>> batchers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("write-batch-"));
+    private final Counter submissions;
+    private final Counter bulkCalls;
+    private final Executor batchExecutor;
+    private final ChunkedBulkWriter chunkedBulkWriter;
+    private final TenantRouter tenantRouter;
+    private final boolean enabled;
+    private final long windowMs;
+    private final int maxRecords;
+
+    public BulkWriteAggregator(MeterRegistry meterRegistry,
+                               ChunkedBulkWriter chunkedBulkWriter,
+                               TenantRouter tenantRouter,
+                               @Qualifier("batchExecutor") Executor batchExecutor,
+                               @Value("${write.batch.enabled:true}") boolean enabled,
+                               @Value("${write.batch.window-ms:10}") long windowMs,
+                               @Value("${write.batch.max-records:500}") int maxRecords) {
+        this.batchExecutor = batchExecutor;
+        this.chunkedBulkWriter = chunkedBulkWriter;
+        this.tenantRouter = tenantRouter;
+        this.enabled = enabled;
+        this.windowMs = windowMs;
+        this.maxRecords = maxRecords;
+        this.submissions = Counter.builder("write.batch.submissions")
+                .description("Create/update lists submitted by ingestions").register(meterRegistry);
+        this.bulkCalls = Counter.builder("write.batch.calls")
+                .description("Bulk create/update calls sent to DIGIT").register(meterRegistry);
+    }
+
+    /**
+     * Writes the entities, possibly in one bulk call together with other ingestions.
+     * @param url DIGIT bulk create or update URL
+     * @param requestInfo request metadata of the caller
+     * @param entities entities to write, keyed by id
+     * @param writeFn sends one bulk request for a list of entities to a URL
+     * @return failure per id that could not be written; empty if all succeeded
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Map<String, Failure> write(String url, RequestInfo requestInfo, Map<String, T> entities,
+                                         ThrowingBiConsumer<List<T>, String> writeFn) {
+        submissions.increment();
+        ThrowingBiConsumer<List<Object>, String> untypedFn = writeFn instanceof OrderedBulkWrite
+                ? (OrderedBulkWrite<Object>) (list, target) -> writeFn.accept((List<T>) list, target)
+                : (list, target) -> writeFn.accept((List<T>) list, target);
+        if (!enabled) {
+            Map<String, Failure> failures = new HashMap<>();
+            List<Pending> pending = new ArrayList<>();
+            entities.forEach((id, entity) -> pending.add(new Pending(this, id, entity, null)));
+            send(new Write(untypedFn, url, null), pending).forEach((p, failure) -> failures.put(p.id(), failure));
+            return failures;
+        }
+
+        Object owner = new Object();
+        String tenantId = tenantRouter.current();
+        RequestDeadline deadline = RequestDeadline.current();
+        List<Pending> pending = new ArrayList<>();
+        entities.forEach((id, entity) -> pending.add(new Pending(owner, id, entity, deadline)));
+        String authToken = requestInfo != null && requestInfo.getAuthToken() != null ? requestInfo.getAuthToken() : "";
+        Map<String, Failure> batchFailures;
+        try {
+            batchFailures = RequestDeadline.await(batchers.computeIfAbsent(url, u -> newBatcher())
+                    .submit(new Group(url, HashUtils.sha256Hex(authToken), tenantId), new Write(untypedFn, url, tenantId), pending),
+                    "Bulk write");
+        } catch (CompletionException | DeadlineExceededException e) {
+            // after a deadline the merged call may still write these ids; a retry is matched by the existence check
+            String reason = e instanceof CompletionException && e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            Map<String, Failure> failures = new HashMap<>();
+            entities.keySet().forEach(id -> failures.put(id, new Failure(reason, false, 0)));
+            return failures;
+        }
+        Map<String, Failure> failures = new HashMap<>();
+        for (String id : entities.keySet()) {
+            Failure failure = batchFailures.get(id);
+            if (failure != null) failures.put(id, failure);
+        }
+        return failures;
+    }
+
+    private MicroBatcher<Group, Write, Pending, Map<String, Failure>> newBatcher() {
+        return new MicroBatcher<>(windowMs, maxRecords, timer, batchExecutor, (write, items) -> {
+            try (RequestDeadline.Scope ignored = TenantContext.bind(write.tenantId())) {
+                return sendBatch(write, items);
+            }
+        });
+    }
+
+    private Map<String, Failure> sendBatch(Write write, List<Pending> items) {
+        Map<String, Failure> failures = new HashMap<>();
+        // drop the parts of ingestions whose deadline passed while they waited for the batch
+        List<Pending> live = new ArrayList<>();
+        for (Pending p : items) {
+            if (p.deadline() != null && p.deadline().isExpired()) {
+                failures.put(p.id(), new Failure("Write cancelled: " + p.deadline().reason(), true, 0));
+            } else {
+                live.add(p);
+            }
+        }
+        Map<Pending, Failure> failed = live.isEmpty() ? Map.of() : send(write, live);
+        // isolate the failure: resend each ingestion's part that DIGIT refused as invalid on its own
+        Map<Object, List<Pending>> byOwner = new LinkedHashMap<>();
+        failed.forEach((p, failure) -> {
+            if (failure.rejected()) {
+                byOwner.computeIfAbsent(p.owner(), o -> new ArrayList<>()).add(p);
+            } else {
+                failures.put(p.id(), failure);
+            }
+        });
+        if (byOwner.size() <= 1) {
+            byOwner.values().forEach(part -> part.forEach(p -> failures.put(p.id(), failed.get(p))));
+            return failures;
+        }
+        logger.warn("Merged bulk write to {} was refused, resending {} parts separately", write.url(), byOwner.size());
+        for (List<Pending> part : byOwner.values()) {
+            if (chunkedBulkWriter.tryResend(write.url())) {
+                send(write, part).forEach((p, failure) -> failures.put(p.id(), failure));
+            } else {
+                part.forEach(p -> failures.put(p.id(), failed.get(p)));
+            }
+        }
+        return failures;
+    }
+
+    private Map<Pending, Failure> send(Write write, List<Pending> items) {
+        bulkCalls.increment();
+        List<Object> entities = new ArrayList<>(items.size());
+        items.forEach(p -> entities.add(p.entity()));
+        Map<Pending, Failure> failed = new LinkedHashMap<>();
+        chunkedBulkWriter.write(write.url(), entities, write.writeFn())
+                .forEach((index, failure) -> failed.put(items.get(index), failure));
+        return failed;
+    }
+
+    @PreDestroy
+    public void close() {
+        timer.shutdown();
+    }
+}
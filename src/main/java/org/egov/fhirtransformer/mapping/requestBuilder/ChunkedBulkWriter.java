@@ -0,0 +1,280 @@
+package org.egov.fhirtransformer.mapping.requestBuilder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.egov.fhirtransformer.common.DeadlineExceededException;
+import org.egov.fhirtransformer.common.DownstreamUnavailableException;
+import org.egov.fhirtransformer.mapping.requestBuilder.GenericCreateOrUpdateService.ThrowingBiConsumer;
+import org.egov.fhirtransformer.utils.AdaptiveChunkSizer;
+import org.egov.fhirtransformer.utils.RequestDeadline;
+import org.egov.fhirtransformer.utils.RetryBudget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpConnectTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sends a bulk create/update list as several concurrent requests of an adaptive size.
+ *
+ * <p>The chunk size is tracked per URL by an {@link AdaptiveChunkSizer}: it grows while DIGIT
+ * answers within {@code write.chunk.target-latency-ms} and shrinks on slow answers, 413, 5xx,
+ * 429 and timeouts.
+ *
+ * <p>A chunk is only resent when the failure proves it was not written: a 413 or 429, a record
+ * too large for the producer, or a connection that was never made. It is then split again at the
+ * reduced size, up to {@code write.chunk.max-retries} times. A 5xx or a timeout may come after
+ * DIGIT processed the chunk, so it only shrinks later chunks and the chunk is reported as failed.
+ * Every resend, including the ones {@link BulkWriteAggregator} makes, spends a token of a
+ * {@link RetryBudget} per URL ({@code write.chunk.budget-ratio}, {@code write.chunk.budget-max-tokens}).
+ * Chunks that have not started when the request's {@link RequestDeadline} passes are cancelled
+ * and reported as failed.
+ */
+@Service
+public class ChunkedBulkWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedBulkWriter.class);
+
+    /**
+     * Failure of an item.
+     * @param reason message of the error
+     * @param notWritten {@code true} if DIGIT refused or never received the item, so sending it
+     *                   again cannot write it twice
+     * @param status HTTP status DIGIT answered with, or 0 if there was no answer
+     */
+    public record Failure(String reason, boolean notWritten, int status) {
+
+        /**
+         * @return {@code true} if DIGIT found the request invalid, so sending it again cannot succeed
+         */
+        public boolean rejected() {
+            return status >= 400 && status < 500 && status != 408 && status != 429;
+        }
+    }
+
+    private record Chunk(int from, int to) {
+        int size() {
+            return to - from;
+        }
+    }
+
+    private final Map<String, AdaptiveChunkSizer> sizers = new ConcurrentHashMap<>();
+    private final Map<String, RetryBudget> budgets = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final Executor writeExecutor;
+    private final Counter chunks;
+    private final Counter retries;
+    private final Counter cancelled;
+    private final Counter budgetExhausted;
+    private final boolean enabled;
+    private final int initialSize;
+    private final int minSize;
+    private final int maxSize;
+    private final long targetLatencyMs;
+    private final int maxRetries;
+    private final double budgetRatio;
+    private final int budgetMaxTokens;
+
+    public ChunkedBulkWriter(MeterRegistry meterRegistry,
+                             @Qualifier("writeExecutor") Executor writeExecutor,
+                             @Value("${write.chunk.enabled:true}") boolean enabled,
+                             @Value("${write.chunk.initial-size:200}") int initialSize,
+                             @Value("${write.chunk.min-size:10}") int minSize,
+                             @Value("${write.chunk.max-size:1000}") int maxSize,
+                             @Value("${write.chunk.target-latency-ms:2000}") long targetLatencyMs,
+                             @Value("${write.chunk.max-retries:2}") int maxRetries,
+                             @Value("${write.chunk.budget-ratio:0.1}") double budgetRatio,
+                             @Value("${write.chunk.budget-max-tokens:20}") int budgetMaxTokens) {
+        this.meterRegistry = meterRegistry;
+        this.writeExecutor = writeExecutor;
+        this.enabled = enabled;
+        this.initialSize = initialSize;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetLatencyMs = targetLatencyMs;
+        this.maxRetries = maxRetries;
+        this.budgetRatio = budgetRatio;
+        this.budgetMaxTokens = budgetMaxTokens;
+        this.chunks = Counter.builder("write.chunk.requests")
+                .description("Chunked bulk create/update requests sent to DIGIT").register(meterRegistry);
+        this.retries = Counter.builder("write.chunk.retries")
+                .description("Chunks resent after a 413, 429 or refused connection").register(meterRegistry);
+        this.cancelled = Counter.builder("write.chunk.cancelled")
+                .description("Chunks not sent because their request's deadline had passed").register(meterRegistry);
+        this.budgetExhausted = Counter.builder("write.chunk.budget.exhausted")
+                .description("Resends not made because the URL's retry budget was spent").register(meterRegistry);
+    }
+
+    /**
+     * Writes the items in chunks and waits for all of them.
+     * @param url DIGIT bulk create or update URL
+     * @param items entities to write
+     * @param writeFn sends one bulk request for a list of entities to a URL
+     * @return failure per index into {@code items}; empty if every chunk was accepted
+     */
+    public <T> Map<Integer, Failure> write(String url, List<T> items, ThrowingBiConsumer<List<T>, String> writeFn) {
+        Map<Integer, Failure> failures = new HashMap<>();
+        if (items.isEmpty()) return failures;
+        RetryBudget budget = budget(url);
+        if (!enabled || writeFn instanceof GenericCreateOrUpdateService.OrderedBulkWrite) {
+            budget.deposit();
+            try {
+                writeFn.accept(items, url);
+            } catch (Exception e) {
+                Failure failure = failure(e);
+                for (int i = 0; i < items.size(); i++) failures.put(i, failure);
+            }
+            return failures;
+        }
+
+        AdaptiveChunkSizer sizer = sizers.computeIfAbsent(url, this::newSizer);
+        List<Chunk> pending = split(new Chunk(0, items.size()), sizer.current());
+        pending.forEach(chunk -> budget.deposit());
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            Map<Chunk, Exception> failed = sendAll(url, items, pending, writeFn, sizer);
+            List<Chunk> retry = new ArrayList<>();
+            for (Map.Entry<Chunk, Exception> entry : failed.entrySet()) {
+                Chunk chunk = entry.getKey();
+                Exception error = entry.getValue();
+                // a chunk DIGIT may have written is never resent; the ingestion's retry is matched by the existence check
+                if (attempt < maxRetries && isOverload(error) && notWritten(error) && tryResend(url)) {
+                    retry.addAll(split(chunk, sizer.current()));
+                } else {
+                    Failure failure = failure(error);
+                    for (int i = chunk.from(); i < chunk.to(); i++) failures.put(i, failure);
+                }
+            }
+            if (!retry.isEmpty()) {
+                retries.increment(retry.size());
+                logger.warn("Resending {} chunks to {} at chunk size {}", retry.size(), url, sizer.current());
+            }
+            pending = retry;
+        }
+        return failures;
+    }
+
+    /**
+     * Spends a token of the URL's retry budget for a resend.
+     * @return {@code false} if the budget is spent and the resend must not be made
+     */
+    public boolean tryResend(String url) {
+        if (budget(url).tryWithdraw()) return true;
+        budgetExhausted.increment();
+        return false;
+    }
+
+    private RetryBudget budget(String url) {
+        return budgets.computeIfAbsent(url, u -> new RetryBudget(budgetRatio, budgetMaxTokens));
+    }
+
+    // Sends the chunks concurrently and returns the ones that failed
+    private <T> Map<Chunk, Exception> sendAll(String url, List<T> items, List<Chunk> pending,
+                                               ThrowingBiConsumer<List<T>, String> writeFn, AdaptiveChunkSizer sizer) {
+        Map<Chunk, Exception> failed = new ConcurrentHashMap<>();
+        if (pending.size() == 1) {
+            send(url, items, pending.get(0), writeFn, sizer, failed);
+            return failed;
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Chunk chunk : pending) {
+            futures.add(CompletableFuture.runAsync(() -> send(url, items, chunk, writeFn, sizer, failed), writeExecutor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        return failed;
+    }
+
+    private <T> void send(String url, List<T> items, Chunk chunk, ThrowingBiConsumer<List<T>, String> writeFn,
+                          AdaptiveChunkSizer sizer, Map<Chunk, Exception> failed) {
+        RequestDeadline deadline = RequestDeadline.current();
+        if (expired(deadline)) {
+            // still queued when the request expired: not sent, and not retried
+            cancelled.increment();
+            failed.put(chunk, new DeadlineExceededException("Chunk cancelled: " + deadline.reason()));
+            return;
+        }
+        chunks.increment();
+        long start = System.nanoTime();
+        try {
+            writeFn.accept(new ArrayList<>(items.subList(chunk.from(), chunk.to())), url);
+            sizer.onSuccess(System.nanoTime() - start);
+        } catch (Exception e) {
+            // a timeout cut short by the deadline says nothing about DIGIT's load
+            if (isOverload(e) && !expired(deadline)) sizer.onOverload();
+            failed.put(chunk, e);
+        }
+    }
+
+    private static boolean expired(RequestDeadline deadline) {
+        return deadline != null && deadline.isExpired();
+    }
+
+    private static List<Chunk> split(Chunk chunk, int size) {
+        List<Chunk> parts = new ArrayList<>();
+        for (int from = chunk.from(); from < chunk.to(); from += size) {
+            parts.add(new Chunk(from, Math.min(chunk.to(), from + size)));
+        }
+        return parts;
+    }
+
+    // 413, 5xx, 429, I/O and Kafka timeouts and oversized records mean DIGIT wants smaller requests; other errors do not
+    private static boolean isOverload(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RestClientResponseException responseException) {
+                int status = responseException.getStatusCode().value();
+                return status == 413 || status == 429 || status >= 500;
+            }
+            if (cause instanceof DownstreamUnavailableException) return false;
+            if (cause instanceof ResourceAccessException) return true;
+            // direct persister writes: record too large for the producer, or no ack in time
+            if (cause instanceof RecordTooLargeException || cause instanceof org.apache.kafka.common.errors.TimeoutException
+                    || cause instanceof TimeoutException) return true;
+        }
+        return false;
+    }
+
+    private static Failure failure(Throwable error) {
+        int status = 0;
+        for (Throwable cause = error; cause != null && status == 0; cause = cause.getCause()) {
+            if (cause instanceof RestClientResponseException responseException) {
+                status = responseException.getStatusCode().value();
+            }
+        }
+        return new Failure(error.getMessage(), notWritten(error), status);
+    }
+
+    // DIGIT answered 4xx, the producer refused the record, or the connection was never made
+    private static boolean notWritten(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RestClientResponseException responseException) {
+                return responseException.getStatusCode().is4xxClientError();
+            }
+            if (cause instanceof DownstreamUnavailableException || cause instanceof RecordTooLargeException || cause instanceof ConnectException
+                    || cause instanceof HttpConnectTimeoutException) return true;
+        }
+        return false;
+    }
+
+    private AdaptiveChunkSizer newSizer(String url) {
+        AdaptiveChunkSizer sizer = new AdaptiveChunkSizer(initialSize, minSize, maxSize, targetLatencyMs);
+        Gauge.builder("write.chunk.size", sizer, AdaptiveChunkSizer::current)
+                .description("Current records per bulk request")
+                .tag("path", URI.create(url).getPath())
+                .register(meterRegistry);
+        return sizer;
+    }
+}
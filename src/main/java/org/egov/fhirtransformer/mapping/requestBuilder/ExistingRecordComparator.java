@@ -0,0 +1,91 @@
+package org.egov.fhirtransformer.mapping.requestBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.egov.common.models.facility.Facility;
+import org.egov.common.models.product.ProductVariant;
+import org.egov.common.models.stock.Stock;
+import org.egov.common.models.stock.StockReconciliation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides whether an update would change a record, by comparing the mapped entity with the record
+ * DIGIT returned in the existence search. Each entity type lists the fields its FHIR mapper owns,
+ * and every one of them is compared, nulls included: a value the client removed from the resource
+ * is mapped to null and counts as a change, so DIGIT is updated to drop it. Fields DIGIT maintains
+ * itself (audit details, row version, error flags) are not listed. Because the comparison is
+ * against what DIGIT holds, a record changed by someone else, by another instance or lost by the
+ * persister is always updated. A record without a search result, or of a type without a field
+ * list (boundaries), is always updated.
+ */
+@Service
+public class ExistingRecordComparator {
+
+    // Fields set by the DIGITHCM*Mapper of each type, as JSON paths; keep in step with the mappers
+    private static final Map<Class<?>, List<String>> MAPPED_FIELDS = Map.of(
+            Stock.class, List.of("tenantId", "id", "senderType", "receiverType", "referenceIdType",
+                    "wayBillNumber", "dateOfEntry", "productVariantId", "quantity", "transactionReason",
+                    "transactionType", "receiverId", "referenceId", "senderId"),
+            Facility.class, List.of("tenantId", "id", "name", "usage", "address.buildingName",
+                    "address.addressLine1", "address.addressLine2", "address.city", "address.pincode",
+                    "address.latitude", "address.longitude"),
+            ProductVariant.class, List.of("tenantId", "id", "productId", "sku", "variation"),
+            // referenceId is generated on every mapping and is not content
+            StockReconciliation.class, List.of("tenantId", "referenceIdType", "dateOfReconciliation",
+                    "facilityId", "productVariantId", "calculatedCount", "physicalCount"));
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+
+    public ExistingRecordComparator(ObjectMapper objectMapper,
+                                    @Value("${write.skip-unchanged.enabled:true}") boolean enabled) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param entity entity about to be written
+     * @param existing record DIGIT returned for the same id; may be {@code null}
+     * @return {@code true} if DIGIT already holds the mapped value of every field the mapper owns
+     */
+    public boolean isUnchanged(Object entity, Object existing) {
+        if (!enabled || entity == null || existing == null) return false;
+        List<String> fields = MAPPED_FIELDS.get(entity.getClass());
+        if (fields == null) return false;
+        try {
+            JsonNode mapped = objectMapper.valueToTree(entity);
+            JsonNode held = objectMapper.valueToTree(existing);
+            for (String field : fields) {
+                if (!sameValue(at(held, field), at(mapped, field))) return false;
+            }
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static JsonNode at(JsonNode node, String path) {
+        for (String name : path.split("\\.")) {
+            node = node.path(name);
+        }
+        return node;
+    }
+
+    // missing, null and empty text all mean "no value"; numbers compare by value, not by type
+    private static boolean sameValue(JsonNode existing, JsonNode mapped) {
+        boolean existingEmpty = isEmpty(existing);
+        boolean mappedEmpty = isEmpty(mapped);
+        if (existingEmpty || mappedEmpty) return existingEmpty == mappedEmpty;
+        if (mapped.isNumber() && existing.isNumber()) {
+            return mapped.decimalValue().compareTo(existing.decimalValue()) == 0;
+        }
+        return mapped.equals(existing);
+    }
+
+    private static boolean isEmpty(JsonNode node) {
+        return node.isMissingNode() || node.isNull() || (node.isTextual() && node.asText().isEmpty());
+    }
+}
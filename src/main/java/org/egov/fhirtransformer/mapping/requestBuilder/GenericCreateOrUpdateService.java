@@ -2,16 +2,32 @@ package org.egov.fhirtransformer.mapping.requestBuilder;
 
 import org.egov.common.contract.request.RequestInfo;
 import org.egov.fhirtransformer.common.Constants;
+import org.egov.fhirtransformer.common.IdOutcome;
+import org.egov.fhirtransformer.common.WriteRejectedException;
+import org.egov.fhirtransformer.service.TenantRouter;
 import org.egov.fhirtransformer.utils.BundleBuilder;
 import org.egov.fhirtransformer.utils.MapUtils;
+import org.egov.fhirtransformer.utils.RequestDeadline;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class GenericCreateOrUpdateService {
 
+    @Autowired
+    private BulkWriteAggregator bulkWriteAggregator;
+
+    @Autowired
+    private ExistingRecordComparator existingRecordComparator;
+
+    @Autowired
+    private TenantRouter tenantRouter;
+
     @FunctionalInterface
     public interface ThrowingFunction<T, R> {
         R apply(T t) throws Exception;
@@ -22,6 +38,14 @@ public class GenericCreateOrUpdateService {
         void accept(T t, U u) throws Exception;
     }
 
+    /**
+     * A bulk write that must receive the whole list in one call, e.g. because it orders the
+     * records itself; it is never split into chunks.
+     */
+    @FunctionalInterface
+    public interface OrderedBulkWrite<T> extends ThrowingBiConsumer<List<T>, String> {
+    }
+
     /**
      * Generic orchestration for processing entity maps: checks existing IDs and delegates create/update.
      * @param entityMap map of id -> entity
@@ -56,61 +80,110 @@ public class GenericCreateOrUpdateService {
     }
 
     /**
-     * Overloaded generic orchestration that accepts a function to fetch existing IDs (returns List<String>)
+     * Overloaded generic orchestration that accepts a function to fetch existing records (id to DIGIT record)
      * and separate create/update functions that act on lists of entities and target URLs.
      * This centralizes the common check-and-split logic so callers only supply entity-specific fetchers and creators.
+     * Creates and updates go through {@link BulkWriteAggregator}, so they may share a bulk call with other ingestions.
+     * Existing records that DIGIT already holds with the mapped content are not updated, see {@link ExistingRecordComparator}.
+     * Once the request's {@link RequestDeadline} has passed, nothing more is sent and the remaining ids are reported as failed.
+     * Writes go to the DIGIT deployment of the current tenant, see {@link TenantRouter}.
+     * @param outcomes receives the outcome per id; may be {@code null}
+     * @throws WriteRejectedException if DIGIT refused every failed write as invalid
+     * @throws Exception if the existence check fails or any id could not be written
      */
     public <T> HashMap<String, Integer> process(HashMap<String, T> entityMap,
-                                                ThrowingFunction<List<String>, List<String>> fetchExistingIdsFn,
+                                                ThrowingFunction<List<String>, Map<String, Object>> fetchExistingFn,
                                                 ThrowingBiConsumer<List<T>, String> createFn,
                                                 ThrowingBiConsumer<List<T>, String> updateFn,
                                                 String createUrl,
                                                 String updateUrl,
                                                 RequestInfo requestInfo,
+                                                Map<String, IdOutcome> outcomes,
                                                 String errorMessage) throws Exception {
         HashMap<String, Integer> results = new HashMap<>();
         if (entityMap == null || entityMap.isEmpty()) {
             return results;
         }
 
+        createUrl = tenantRouter.route(createUrl);
+        updateUrl = tenantRouter.route(updateUrl);
+        Map<String, ChunkedBulkWriter.Failure> failures = new LinkedHashMap<>();
+        List<String> idList = new ArrayList<>(entityMap.keySet());
+        Map<String, Object> existing;
         try {
-            List<String> idList = new ArrayList<>(entityMap.keySet());
-            if (!idList.isEmpty()) {
-                // fetch existing ids using caller-provided function
-                List<String> existingIds = fetchExistingIdsFn.apply(idList);
-
-                // compute new & existing ids map using shared util
-                List<String> newIdsMutable = new ArrayList<>(idList);
-                HashMap<String, List<String>> newAndExistingIdsMap = MapUtils.splitNewAndExistingIDS(newIdsMutable, existingIds);
-
-                // prepare and call create
-                if (newAndExistingIdsMap.containsKey(Constants.NEW_IDS)) {
-                    List<T> toCreate = new ArrayList<>();
-                    for (String id : newAndExistingIdsMap.get(Constants.NEW_IDS)) {
-                        toCreate.add(entityMap.get(id));
-                    }
-                    if (!toCreate.isEmpty() && createFn != null) {
-                        createFn.accept(toCreate, createUrl);
-                    }
-                }
+            RequestDeadline.check("Existence check");
+            // fetch existing records using caller-provided function
+            existing = fetchExistingFn.apply(idList);
+        } catch (Exception e) {
+            // nothing was written; every id fails with the search error
+            if (outcomes != null) {
+                idList.forEach(id -> outcomes.put(id, new IdOutcome(IdOutcome.FAILED, e.getMessage())));
+            }
+            throw new Exception(errorMessage + ": " + e.getMessage(), e);
+        }
+
+        // compute new & existing ids map using shared util
+        List<String> newIdsMutable = new ArrayList<>(idList);
+        HashMap<String, List<String>> newAndExistingIdsMap = MapUtils.splitNewAndExistingIDS(newIdsMutable, new ArrayList<>(existing.keySet()));
 
-                // prepare and call update
-                if (newAndExistingIdsMap.containsKey(Constants.EXISTING_IDS)) {
-                    List<T> toUpdate = new ArrayList<>();
-                    for (String id : newAndExistingIdsMap.get(Constants.EXISTING_IDS)) {
-                        toUpdate.add(entityMap.get(id));
-                    }
-                    if (!toUpdate.isEmpty() && updateFn != null) {
-                        updateFn.accept(toUpdate, updateUrl);
-                    }
+        // prepare and call create
+        if (newAndExistingIdsMap.containsKey(Constants.NEW_IDS) && createFn != null) {
+            write(newAndExistingIdsMap.get(Constants.NEW_IDS), entityMap, createUrl, requestInfo, createFn,
+                    IdOutcome.CREATED, outcomes, failures);
+        }
+
+        // skip existing records DIGIT already holds with the same content, then call update
+        List<String> unchangedIds = new ArrayList<>();
+        if (newAndExistingIdsMap.containsKey(Constants.EXISTING_IDS) && updateFn != null) {
+            List<String> changedIds = new ArrayList<>();
+            for (String id : newAndExistingIdsMap.get(Constants.EXISTING_IDS)) {
+                if (existingRecordComparator.isUnchanged(entityMap.get(id), existing.get(id))) {
+                    unchangedIds.add(id);
+                    if (outcomes != null) outcomes.put(id, new IdOutcome(IdOutcome.UNCHANGED, null));
+                } else {
+                    changedIds.add(id);
                 }
+            }
+            write(changedIds, entityMap, updateUrl, requestInfo, updateFn,
+                    IdOutcome.UPDATED, outcomes, failures);
+        }
 
-                results.put(Constants.TOTAL_PROCESSED, entityMap.size());
-                return BundleBuilder.fetchMetrics(results, newAndExistingIdsMap);
+        if (!failures.isEmpty()) {
+            String message = errorMessage + ": " + failures.size() + " of " + entityMap.size()
+                    + " writes failed: " + failures.values().iterator().next().reason();
+            if (failures.values().stream().allMatch(ChunkedBulkWriter.Failure::rejected)) {
+                throw new WriteRejectedException(message);
+            }
+            throw new Exception(message);
+        }
+        results.put(Constants.TOTAL_PROCESSED, entityMap.size());
+        results.put(Constants.UNCHANGED_IDS, unchangedIds.size());
+        return BundleBuilder.fetchMetrics(results, newAndExistingIdsMap);
+    }
+
+    private <T> void write(List<String> ids, HashMap<String, T> entityMap, String url,
+                           RequestInfo requestInfo, ThrowingBiConsumer<List<T>, String> writeFn, String status,
+                           Map<String, IdOutcome> outcomes, Map<String, ChunkedBulkWriter.Failure> failures) {
+        if (ids.isEmpty()) return;
+        Map<String, T> entities = new LinkedHashMap<>();
+        for (String id : ids) {
+            entities.put(id, entityMap.get(id));
+        }
+        Map<String, ChunkedBulkWriter.Failure> writeFailures;
+        RequestDeadline deadline = RequestDeadline.current();
+        if (deadline != null && deadline.isExpired()) {
+            // not sent: report the ids as failed so the caller can retry them
+            writeFailures = new HashMap<>();
+            for (String id : ids) writeFailures.put(id, new ChunkedBulkWriter.Failure("Write cancelled: " + deadline.reason(), true, 0));
+        } else {
+            writeFailures = bulkWriteAggregator.write(url, requestInfo, entities, writeFn);
+        }
+        failures.putAll(writeFailures);
+        for (String id : ids) {
+            ChunkedBulkWriter.Failure failure = writeFailures.get(id);
+            if (outcomes != null) {
+                outcomes.put(id, failure == null ? new IdOutcome(status, null) : new IdOutcome(IdOutcome.FAILED, failure.reason()));
             }
-        } catch (Exception e) {
-            throw new Exception(errorMessage + ": " + e.getMessage());
         }
-        return results;
     }
 }
@@ -3,13 +3,17 @@ package org.egov.fhirtransformer.mapping.requestBuilder;
 import org.egov.common.contract.request.RequestInfo;
 import org.egov.common.models.core.URLParams;
 import org.egov.common.models.product.*;
+import org.egov.fhirtransformer.common.DownstreamService;
+import org.egov.fhirtransformer.common.IdOutcome;
 import org.egov.fhirtransformer.service.ApiIntegrationService;
+import org.egov.fhirtransformer.service.DigitWriteService;
+import org.egov.fhirtransformer.service.ExistenceBatchLoader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service responsible for transforming FHIR InventoryItem–derived
@@ -25,6 +29,12 @@ public class InventoryItemToProductVariant {
     @Autowired
     private GenericCreateOrUpdateService genericCreateOrUpdateService;
 
+    @Autowired
+    private DigitWriteService digitWriteService;
+
+    @Autowired
+    private ExistenceBatchLoader existenceBatchLoader;
+
     @Value("${product.variant.create.url}")
     private String productVariantCreateUrl;
 
@@ -35,23 +45,26 @@ public class InventoryItemToProductVariant {
      * Transforms and persists ProductVariants derived from InventoryItems.
      * @param productVariantMap map of ProductVariant ID to ProductVariant data;
      *                          may be empty but not {@code null}
+     * @param outcomes receives the write outcome per id; may be {@code null}
      * @return map containing processing metrics
      * @throws Exception if transformation or API invocation fails
      */
-    public HashMap<String, Integer> transformInventoryItemToProductVariant(HashMap<String, ProductVariant> productVariantMap, RequestInfo requestInfo) throws Exception {
-        // Use the generic overloaded process: provide fetchExistingIds, create and update adapters
+    public HashMap<String, Integer> transformInventoryItemToProductVariant(HashMap<String, ProductVariant> productVariantMap, RequestInfo requestInfo, Map<String, IdOutcome> outcomes) throws Exception {
+        // Use the generic overloaded process: provide fetchExisting, create and update adapters
         return genericCreateOrUpdateService.process(productVariantMap,
-                (productVariantIds) -> fetchExistingProductVariantIds(productVariantIds, requestInfo),
+                (productVariantIds) -> existenceBatchLoader.fetchExisting("ProductVariant", productVariantIds, requestInfo,
+                        ids -> fetchExistingProductVariants(ids, requestInfo)),
                 (toCreate, createUrl) -> createProductVariants(toCreate, createUrl, requestInfo),
                 (toUpdate, updateUrl) -> updateProductVariants(toUpdate, updateUrl, requestInfo),
                 productVariantCreateUrl,
                 productVariantUpdateUrl,
                 requestInfo,
+                outcomes,
                 "Error in Transforming InventoryItem To ProductVariant");
     }
 
-    // Adapter: fetch existing IDs as flat list
-    private List<String> fetchExistingProductVariantIds(List<String> productVariantIds, RequestInfo requestInfo) throws Exception {
+    // Adapter: fetch existing product variants by id
+    private Map<String, Object> fetchExistingProductVariants(List<String> productVariantIds, RequestInfo requestInfo) throws Exception {
         try{
             URLParams urlParams = apiIntegrationService.formURLParams(productVariantIds);
             ProductVariantSearch productVariantSearch = new ProductVariantSearch();
@@ -64,15 +77,15 @@ public class InventoryItemToProductVariant {
             ProductVariantResponse productVariantResponse = apiIntegrationService.fetchAllProductVariants(urlParams, productVariantSearchRequest);
 
             if (productVariantResponse.getProductVariant() == null){
-                return new ArrayList<>();
+                return new HashMap<>();
             }
-            List<String> existingIds = new ArrayList<>();
+            Map<String, Object> existing = new HashMap<>();
             for (ProductVariant productVariant : productVariantResponse.getProductVariant()) {
-                existingIds.add(productVariant.getId());
+                existing.put(productVariant.getId(), productVariant);
             }
-            return existingIds;
+            return existing;
         } catch (Exception e){
-            throw new Exception("Error in fetchExisting productVariant: " + e.getMessage());
+            throw new Exception("Error in fetchExisting productVariant: " + e.getMessage(), e);
         }
     }
 
@@ -84,9 +97,9 @@ public class InventoryItemToProductVariant {
             productVariantRequest.setRequestInfo(requestInfo);
             productVariantRequest.setProductVariant(toCreate);
             productVariantRequest.setApiOperation(ApiOperation.CREATE);
-            apiIntegrationService.sendRequestToAPI(productVariantRequest, createUrl);
+            digitWriteService.write("product-variant", DigitWriteService.CREATE, DownstreamService.PRODUCT, productVariantRequest, createUrl, toCreate.get(0).getTenantId());
         } catch (Exception e) {
-            throw new Exception("Error in createProductVariants: " + e.getMessage());
+            throw new Exception("Error in createProductVariants: " + e.getMessage(), e);
         }
     }
 
@@ -98,9 +111,9 @@ public class InventoryItemToProductVariant {
             productVariantRequest.setRequestInfo(requestInfo);
             productVariantRequest.setProductVariant(toUpdate);
             productVariantRequest.setApiOperation(ApiOperation.UPDATE);
-            apiIntegrationService.sendRequestToAPI(productVariantRequest, updateUrl);
+            digitWriteService.write("product-variant", DigitWriteService.UPDATE, DownstreamService.PRODUCT, productVariantRequest, updateUrl, toUpdate.get(0).getTenantId());
         } catch (Exception e) {
-            throw new Exception("Error in updateProductVariants: " + e.getMessage());
+            throw new Exception("Error in updateProductVariants: " + e.getMessage(), e);
         }
     }
 
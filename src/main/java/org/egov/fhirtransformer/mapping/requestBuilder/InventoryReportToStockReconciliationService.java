@@ -3,13 +3,17 @@ package org.egov.fhirtransformer.mapping.requestBuilder;
 import org.egov.common.contract.request.RequestInfo;
 import org.egov.common.models.core.URLParams;
 import org.egov.common.models.stock.*;
+import org.egov.fhirtransformer.common.DownstreamService;
+import org.egov.fhirtransformer.common.IdOutcome;
 import org.egov.fhirtransformer.service.ApiIntegrationService;
+import org.egov.fhirtransformer.service.DigitWriteService;
+import org.egov.fhirtransformer.service.ExistenceBatchLoader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service responsible for transforming FHIR InventoryReport–derived
@@ -24,6 +28,12 @@ public class InventoryReportToStockReconciliationService {
     @Autowired
     private GenericCreateOrUpdateService genericCreateOrUpdateService;
 
+    @Autowired
+    private DigitWriteService digitWriteService;
+
+    @Autowired
+    private ExistenceBatchLoader existenceBatchLoader;
+
     @Value("${stock.recon.create.url}")
     private String stockReconCreateUrl;
 
@@ -34,22 +44,25 @@ public class InventoryReportToStockReconciliationService {
      * Transforms and persists StockReconciliation records derived from InventoryReports.
      * @param stockReconciliationMap map of StockReconciliation ID to data;
      *                               may be empty but not {@code null}
+     * @param outcomes receives the write outcome per id; may be {@code null}
      * @return map containing processing metrics
      * @throws Exception if transformation or API invocation fails
      */
-    public HashMap<String, Integer> transformInventoryReportToStockReconciliation(HashMap<String, StockReconciliation> stockReconciliationMap, RequestInfo requestInfo) throws Exception {
+    public HashMap<String, Integer> transformInventoryReportToStockReconciliation(HashMap<String, StockReconciliation> stockReconciliationMap, RequestInfo requestInfo, Map<String, IdOutcome> outcomes) throws Exception {
         return genericCreateOrUpdateService.process(stockReconciliationMap,
-                (stockReconIds) -> fetchExistingStockReconIds(stockReconIds, requestInfo),
+                (stockReconIds) -> existenceBatchLoader.fetchExisting("StockReconciliation", stockReconIds, requestInfo,
+                        ids -> fetchExistingStockRecons(ids, requestInfo)),
                 (toCreate, createUrl) -> createStockRecon(toCreate, createUrl, requestInfo),
                 (toUpdate, updateUrl) -> updateStockRecon(toUpdate, updateUrl, requestInfo),
                 stockReconCreateUrl,
                 stockReconUpdateUrl,
                 requestInfo,
+                outcomes,
                 "Error in transformInventoryReportToStockReconciliation");
     }
 
-    // Adapter: fetch existing stock reconciliation ids
-    private List<String> fetchExistingStockReconIds(List<String> stockReconIds, RequestInfo requestInfo) throws Exception {
+    // Adapter: fetch existing stock reconciliations
+    private Map<String, Object> fetchExistingStockRecons(List<String> stockReconIds, RequestInfo requestInfo) throws Exception {
         HashMap<String,List<String>> newandexistingids = new HashMap<>();
         try{
             URLParams urlParams = apiIntegrationService.formURLParams(stockReconIds);
@@ -62,15 +75,15 @@ public class InventoryReportToStockReconciliationService {
 
             StockReconciliationBulkResponse stockBulkReconResponse = apiIntegrationService.fetchAllStockReconciliation(urlParams, stockReconciliationSearchRequest);
             if (stockBulkReconResponse.getStockReconciliation() == null || stockBulkReconResponse.getStockReconciliation().isEmpty()){
-                return new ArrayList<>();
+                return new HashMap<>();
             }
-            List<String> existingIds = new ArrayList<>();
+            Map<String, Object> existing = new HashMap<>();
             for (StockReconciliation stockRecon : stockBulkReconResponse.getStockReconciliation()) {
-                existingIds.add(stockRecon.getId());
+                existing.put(stockRecon.getId(), stockRecon);
             }
-            return existingIds;
+            return existing;
         } catch (Exception e){
-            throw new Exception("Error in fetchExisting StockRecon: " + e.getMessage());
+            throw new Exception("Error in fetchExisting StockRecon: " + e.getMessage(), e);
         }
     }
 
@@ -81,9 +94,9 @@ public class InventoryReportToStockReconciliationService {
             StockReconciliationBulkRequest stockReconciliationBulkRequest = new StockReconciliationBulkRequest();
             stockReconciliationBulkRequest.setRequestInfo(requestInfo);
             stockReconciliationBulkRequest.setStockReconciliation(toCreate);
-            apiIntegrationService.sendRequestToAPI(stockReconciliationBulkRequest, createUrl);
+            digitWriteService.write("stock-reconciliation", DigitWriteService.CREATE, DownstreamService.STOCK, stockReconciliationBulkRequest, createUrl, toCreate.get(0).getTenantId());
         } catch (Exception e) {
-            throw new Exception("Error in createStockRecon: " + e.getMessage());
+            throw new Exception("Error in createStockRecon: " + e.getMessage(), e);
         }
     }
 
@@ -94,9 +107,9 @@ public class InventoryReportToStockReconciliationService {
             StockReconciliationBulkRequest stockReconciliationBulkRequest = new StockReconciliationBulkRequest();
             stockReconciliationBulkRequest.setRequestInfo(requestInfo);
             stockReconciliationBulkRequest.setStockReconciliation(toUpdate);
-            apiIntegrationService.sendRequestToAPI(stockReconciliationBulkRequest, updateUrl);
+            digitWriteService.write("stock-reconciliation", DigitWriteService.UPDATE, DownstreamService.STOCK, stockReconciliationBulkRequest, updateUrl, toUpdate.get(0).getTenantId());
         } catch (Exception e) {
-            throw new Exception("Error in updateStockRecon: " + e.getMessage());
+            throw new Exception("Error in updateStockRecon: " + e.getMessage(), e);
         }
     }
 }
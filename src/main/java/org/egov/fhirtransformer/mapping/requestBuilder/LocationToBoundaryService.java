@@ -2,14 +2,25 @@ package org.egov.fhirtransformer.mapping.requestBuilder;
 
 import digit.web.models.*;
 import org.egov.common.contract.request.RequestInfo;
+import org.egov.common.contract.response.ResponseInfo;
+import org.egov.fhirtransformer.common.DownstreamService;
+import org.egov.fhirtransformer.common.IdOutcome;
 import org.egov.fhirtransformer.common.Constants;
 import org.egov.fhirtransformer.service.ApiIntegrationService;
+import org.egov.fhirtransformer.service.ExistenceBatchLoader;
+import org.egov.fhirtransformer.service.AsyncApiIntegrationService;
+import org.egov.fhirtransformer.service.TenantRouter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,11 +34,17 @@ public class LocationToBoundaryService {
     @Autowired
     private ApiIntegrationService apiIntegrationService;
 
+    @Autowired
+    private AsyncApiIntegrationService asyncApiIntegrationService;
+
     @Autowired
     private GenericCreateOrUpdateService genericCreateOrUpdateService;
 
-    @Value("${app.tenant-id}")
-    private String tenantId;
+    @Autowired
+    private ExistenceBatchLoader existenceBatchLoader;
+
+    @Autowired
+    private TenantRouter tenantRouter;
 
     @Value("${boundary.create.url}")
     private String boundaryCreateUrl;
@@ -42,17 +59,21 @@ public class LocationToBoundaryService {
      * Transforms and persists BoundaryRelation records derived from Locations.
      * @param boundaryRelationMap map of boundary ID to BoundaryRelation data;
      *                            may be empty but not {@code null}
+     * @param outcomes receives the write outcome per id; may be {@code null}
      * @return map containing processing metrics
      * @throws Exception if transformation or API invocation fails
      */
-    public HashMap<String, Integer> transformLocationToBoundary(HashMap<String, BoundaryRelation> boundaryRelationMap, RequestInfo requestInfo) throws Exception {
+    public HashMap<String, Integer> transformLocationToBoundary(HashMap<String, BoundaryRelation> boundaryRelationMap, RequestInfo requestInfo, Map<String, IdOutcome> outcomes) throws Exception {
         return genericCreateOrUpdateService.process(boundaryRelationMap,
-                (idList) -> fetchExistingBoundaryIds(idList, requestInfo),
-                (toCreate, createUrl) -> createBoundaries(toCreate, createUrl, requestInfo),
+                (idList) -> existenceBatchLoader.fetchExisting("Boundary", idList, requestInfo,
+                        ids -> fetchExistingBoundaries(ids, requestInfo)),
+                // parent-first waves need every new boundary of the batch in one call
+                (GenericCreateOrUpdateService.OrderedBulkWrite<BoundaryRelation>) (toCreate, createUrl) -> createBoundaries(toCreate, createUrl, requestInfo),
                 (toUpdate, updateUrl) -> updateBoundaries(toUpdate, updateUrl, requestInfo),
                 boundaryCreateUrl,
                 boundaryUpdateUrl,
                 requestInfo,
+                outcomes,
                 "Error in transformLocationToBoundary");
     }
 
@@ -82,13 +103,13 @@ public class LocationToBoundaryService {
     }
 
     /**
-     * Adapter: fetch existing boundary codes (flat list) by calling the boundary search API and extracting codes recursively.
+     * Adapter: fetch existing boundary codes by calling the boundary search API and extracting codes recursively.
      */
-    private List<String> fetchExistingBoundaryIds(List<String> idList, RequestInfo requestInfo) throws Exception {
+    private Map<String, Object> fetchExistingBoundaries(List<String> idList, RequestInfo requestInfo) throws Exception {
         try{
             BoundaryRelationshipSearchCriteria criteria = new BoundaryRelationshipSearchCriteria();
             criteria.setCodes(idList);
-            criteria.setTenantId(tenantId);
+            criteria.setTenantId(tenantRouter.current());
             criteria.setHierarchyType(Constants.HIERARCHY_TYPE);
             criteria.setIncludeChildren(Constants.INCLUDE_CHILDREN);
             BoundarySearchResponse boundarySearchResponse = apiIntegrationService.fetchAllBoundaries(criteria, requestInfo);
@@ -98,46 +119,87 @@ public class LocationToBoundaryService {
                     extractBoundaryCodes(boundary, existingIds);
                 }
             }
-            return existingIds;
+            // the hierarchy tree does not carry the fields of an update, so existing boundaries are always updated
+            Map<String, Object> existing = new HashMap<>();
+            for (String code : existingIds) {
+                existing.put(code, null);
+            }
+            return existing;
         } catch (Exception e){
-            throw new Exception("Error in fetchExistingBoundaries: " + e.getMessage());
+            throw new Exception("Error in fetchExistingBoundaries: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Adapter: create boundaries by iterating and sending single BoundaryRelationshipRequest per item (keeps previous behavior).
+     * Adapter: create boundaries with one BoundaryRelationshipRequest per item. Requests are sent
+     * concurrently in waves by depth, so a parent created in the same batch exists before its children.
      */
     private void createBoundaries(List<BoundaryRelation> toCreate, String createUrl, RequestInfo requestInfo) throws Exception {
         try{
             if (toCreate == null || toCreate.isEmpty()) return;
-            for (BoundaryRelation br : toCreate) {
-                BoundaryRelationshipRequest boundaryRelationshipRequest = new BoundaryRelationshipRequest();
-                boundaryRelationshipRequest.setRequestInfo(requestInfo);
-                boundaryRelationshipRequest.setBoundaryRelationship(br);
-                apiIntegrationService.sendRequestToAPI(boundaryRelationshipRequest, createUrl);
+            for (List<BoundaryRelation> wave : parentFirstWaves(toCreate)) {
+                sendConcurrently(wave, createUrl, requestInfo);
             }
         } catch (Exception e) {
-            throw new Exception("Error in createBoundaries: " + e.getMessage());
+            throw new Exception("Error in createBoundaries: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Adapter: update boundaries by iterating and sending single BoundaryRelationshipRequest per item.
+     * Adapter: update boundaries with one BoundaryRelationshipRequest per item, sent concurrently.
      */
     private void updateBoundaries(List<BoundaryRelation> toUpdate, String updateUrl, RequestInfo requestInfo) throws Exception {
         try{
             if (toUpdate == null || toUpdate.isEmpty()) return;
-            for (BoundaryRelation br : toUpdate) {
-                BoundaryRelationshipRequest boundaryRelationshipRequest = new BoundaryRelationshipRequest();
-                boundaryRelationshipRequest.setRequestInfo(requestInfo);
-                boundaryRelationshipRequest.setBoundaryRelationship(br);
-                apiIntegrationService.sendRequestToAPI(boundaryRelationshipRequest, updateUrl);
-            }
+            sendConcurrently(toUpdate, updateUrl, requestInfo);
         } catch (Exception e) {
-            throw new Exception("Error in updateBoundaries: " + e.getMessage());
+            throw new Exception("Error in updateBoundaries: " + e.getMessage(), e);
         }
     }
 
+    // Waits for every request of the batch, then reports the first failure
+    private void sendConcurrently(List<BoundaryRelation> boundaryRelations, String url, RequestInfo requestInfo) throws Exception {
+        List<CompletableFuture<ResponseInfo>> futures = new ArrayList<>();
+        for (BoundaryRelation br : boundaryRelations) {
+            BoundaryRelationshipRequest boundaryRelationshipRequest = new BoundaryRelationshipRequest();
+            boundaryRelationshipRequest.setRequestInfo(requestInfo);
+            boundaryRelationshipRequest.setBoundaryRelationship(br);
+            futures.add(asyncApiIntegrationService.sendRequestToAPIAsync(DownstreamService.BOUNDARY, boundaryRelationshipRequest, url));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new Exception(cause.getMessage(), cause);
+        }
+    }
+
+    // Depth 0 holds boundaries whose parent is not part of this batch; each next wave holds their children
+    private List<List<BoundaryRelation>> parentFirstWaves(List<BoundaryRelation> boundaryRelations) {
+        Map<String, BoundaryRelation> byCode = new HashMap<>();
+        for (BoundaryRelation br : boundaryRelations) {
+            byCode.put(br.getCode(), br);
+        }
+        Map<String, Integer> depths = new HashMap<>();
+        List<List<BoundaryRelation>> waves = new ArrayList<>();
+        for (BoundaryRelation br : boundaryRelations) {
+            int depth = depth(br, byCode, depths, new HashSet<>());
+            while (waves.size() <= depth) waves.add(new ArrayList<>());
+            waves.get(depth).add(br);
+        }
+        return waves;
+    }
+
+    private int depth(BoundaryRelation br, Map<String, BoundaryRelation> byCode, Map<String, Integer> depths, Set<String> visiting) {
+        Integer known = depths.get(br.getCode());
+        if (known != null) return known;
+        BoundaryRelation parent = br.getParent() != null ? byCode.get(br.getParent()) : null;
+        // a cycle cannot be ordered; treat the boundary as a root and let DIGIT reject it
+        int depth = parent == null || !visiting.add(br.getCode()) ? 0 : depth(parent, byCode, depths, visiting) + 1;
+        depths.put(br.getCode(), depth);
+        return depth;
+    }
+
     private void extractBoundaryCodes(EnrichedBoundary boundary, List<String> codes) {
         codes.add(boundary.getCode());
         if (boundary.getChildren() != null && !boundary.getChildren().isEmpty()) {
@@ -3,13 +3,17 @@ package org.egov.fhirtransformer.mapping.requestBuilder;
 import org.egov.common.contract.request.RequestInfo;
 import org.egov.common.models.core.URLParams;
 import org.egov.common.models.facility.*;
+import org.egov.fhirtransformer.common.DownstreamService;
+import org.egov.fhirtransformer.common.IdOutcome;
 import org.egov.fhirtransformer.service.ApiIntegrationService;
+import org.egov.fhirtransformer.service.DigitWriteService;
+import org.egov.fhirtransformer.service.ExistenceBatchLoader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service responsible for transforming FHIR Location–derived
@@ -24,6 +28,12 @@ public class LocationToFacilityService {
     @Autowired
     private GenericCreateOrUpdateService genericCreateOrUpdateService;
 
+    @Autowired
+    private DigitWriteService digitWriteService;
+
+    @Autowired
+    private ExistenceBatchLoader existenceBatchLoader;
+
     @Value("${facility.create.url}")
     private String facilityCreateUrl;
 
@@ -34,22 +44,25 @@ public class LocationToFacilityService {
      * Transforms and persists Facility records derived from Locations.
      * @param facilityMap map of Facility ID to Facility data;
      *                    may be empty but not {@code null}
+     * @param outcomes receives the write outcome per id; may be {@code null}
      * @return map containing processing metrics
      * @throws Exception if transformation or API invocation fails
      */
-    public HashMap<String, Integer> transformLocationToFacility(HashMap<String, Facility> facilityMap, RequestInfo requestInfo) throws Exception {
+    public HashMap<String, Integer> transformLocationToFacility(HashMap<String, Facility> facilityMap, RequestInfo requestInfo, Map<String, IdOutcome> outcomes) throws Exception {
         return genericCreateOrUpdateService.process(facilityMap,
-                (idList) -> fetchExistingFacilityIds(idList, requestInfo),
+                (idList) -> existenceBatchLoader.fetchExisting("Facility", idList, requestInfo,
+                        ids -> fetchExistingFacilities(ids, requestInfo)),
                 (toCreate, createUrl) -> createFacilities(toCreate, createUrl, requestInfo),
                 (toUpdate, updateUrl) -> updateFacilities(toUpdate, updateUrl, requestInfo),
                 facilityCreateUrl,
                 facilityUpdateUrl,
                 requestInfo,
+                outcomes,
                 "Error in transformLocationToFacility");
     }
 
-    // Adapter: fetch existing facility ids
-    private List<String> fetchExistingFacilityIds(List<String> idList, RequestInfo requestInfo) throws Exception {
+    // Adapter: fetch existing facilities
+    private Map<String, Object> fetchExistingFacilities(List<String> idList, RequestInfo requestInfo) throws Exception {
         try{
             URLParams urlParams = apiIntegrationService.formURLParams(idList);
 
@@ -63,15 +76,15 @@ public class LocationToFacilityService {
             FacilityBulkResponse facilityBulkResponse = apiIntegrationService.fetchAllFacilities(urlParams, facilitySearchRequest);
 
             if (facilityBulkResponse.getFacilities() == null){
-                return new ArrayList<>();
+                return new HashMap<>();
             }
-            List<String> existingIds = new ArrayList<>();
+            Map<String, Object> existing = new HashMap<>();
             for (Facility facility : facilityBulkResponse.getFacilities()) {
-                existingIds.add(facility.getId());
+                existing.put(facility.getId(), facility);
             }
-            return existingIds;
+            return existing;
         } catch (Exception e){
-            throw new Exception("Error in fetchExistingFacilities: " + e.getMessage());
+            throw new Exception("Error in fetchExistingFacilities: " + e.getMessage(), e);
         }
     }
 
@@ -82,9 +95,9 @@ public class LocationToFacilityService {
             FacilityBulkRequest facilityBulkRequest = new FacilityBulkRequest();
             facilityBulkRequest.setRequestInfo(requestInfo);
             facilityBulkRequest.setFacilities(toCreate);
-            apiIntegrationService.sendRequestToAPI(facilityBulkRequest, createUrl);
+            digitWriteService.write("facility", DigitWriteService.CREATE, DownstreamService.FACILITY, facilityBulkRequest, createUrl, toCreate.get(0).getTenantId());
         } catch (Exception e) {
-            throw new Exception("Error in createFacilities: " + e.getMessage());
+            throw new Exception("Error in createFacilities: " + e.getMessage(), e);
         }
     }
 
@@ -95,9 +108,9 @@ public class LocationToFacilityService {
             FacilityBulkRequest facilityBulkRequest = new FacilityBulkRequest();
             facilityBulkRequest.setRequestInfo(requestInfo);
             facilityBulkRequest.setFacilities(toUpdate);
-            apiIntegrationService.sendRequestToAPI(facilityBulkRequest, updateUrl);
+            digitWriteService.write("facility", DigitWriteService.UPDATE, DownstreamService.FACILITY, facilityBulkRequest, updateUrl, toUpdate.get(0).getTenantId());
         } catch (Exception e) {
-            throw new Exception("Error in updateFacilities: " + e.getMessage());
+            throw new Exception("Error in updateFacilities: " + e.getMessage(), e);
         }
     }
 }
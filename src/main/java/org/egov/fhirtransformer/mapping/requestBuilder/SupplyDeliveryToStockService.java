@@ -3,13 +3,17 @@ package org.egov.fhirtransformer.mapping.requestBuilder;
 import org.egov.common.contract.request.RequestInfo;
 import org.egov.common.models.core.URLParams;
 import org.egov.common.models.stock.*;
+import org.egov.fhirtransformer.common.DownstreamService;
+import org.egov.fhirtransformer.common.IdOutcome;
 import org.egov.fhirtransformer.service.ApiIntegrationService;
+import org.egov.fhirtransformer.service.DigitWriteService;
+import org.egov.fhirtransformer.service.ExistenceBatchLoader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service responsible for transforming FHIR SupplyDelivery–derived
@@ -24,6 +28,12 @@ public class SupplyDeliveryToStockService {
     @Autowired
     private GenericCreateOrUpdateService genericCreateOrUpdateService;
 
+    @Autowired
+    private DigitWriteService digitWriteService;
+
+    @Autowired
+    private ExistenceBatchLoader existenceBatchLoader;
+
     @Value("${stock.create.url}")
     private String stockCreateUrl;
 
@@ -34,22 +44,25 @@ public class SupplyDeliveryToStockService {
      * Transforms and persists Stock records derived from SupplyDelivery resources.
      * @param supplyDeliveryMap map of Stock ID to Stock data;
      *                          may be empty but not {@code null}
+     * @param outcomes receives the write outcome per id; may be {@code null}
      * @return map containing processing metrics
      * @throws Exception if transformation or API invocation fails
      */
-    public HashMap<String, Integer> transformSupplyDeliveryToStock(HashMap<String, Stock> supplyDeliveryMap, RequestInfo requestInfo) throws Exception {
+    public HashMap<String, Integer> transformSupplyDeliveryToStock(HashMap<String, Stock> supplyDeliveryMap, RequestInfo requestInfo, Map<String, IdOutcome> outcomes) throws Exception {
         return genericCreateOrUpdateService.process(supplyDeliveryMap,
-                (stockIds) -> fetchExistingStockIds(stockIds, requestInfo),
+                (stockIds) -> existenceBatchLoader.fetchExisting("Stock", stockIds, requestInfo,
+                        ids -> fetchExistingStocks(ids, requestInfo)),
                 (toCreate, createUrl) -> createStocks(toCreate, createUrl, requestInfo),
                 (toUpdate, updateUrl) -> updateStocks(toUpdate, updateUrl, requestInfo),
                 stockCreateUrl,
                 stockUpdateUrl,
                 requestInfo,
+                outcomes,
                 "Error in transformSupplyDeliveryToStock");
     }
 
-    // Adapter: fetch existing stock ids
-    private List<String> fetchExistingStockIds(List<String> stockIds, RequestInfo requestInfo) throws Exception {
+    // Adapter: fetch existing stocks
+    private Map<String, Object> fetchExistingStocks(List<String> stockIds, RequestInfo requestInfo) throws Exception {
         try{
             URLParams urlParams = apiIntegrationService.formURLParams(stockIds);
 
@@ -63,15 +76,15 @@ public class SupplyDeliveryToStockService {
             StockBulkResponse stockBulkResponse = apiIntegrationService.fetchAllStocks(urlParams, stockSearchRequest);
 
             if (stockBulkResponse.getStock() == null){
-                return new ArrayList<>();
+                return new HashMap<>();
             }
-            List<String> existingIds = new ArrayList<>();
+            Map<String, Object> existing = new HashMap<>();
             for (Stock stock : stockBulkResponse.getStock()) {
-                existingIds.add(stock.getId());
+                existing.put(stock.getId(), stock);
             }
-            return existingIds;
+            return existing;
         } catch (Exception e){
-            throw new Exception("Error in fetchExistingStocks: " + e.getMessage());
+            throw new Exception("Error in fetchExistingStocks: " + e.getMessage(), e);
         }
     }
 
@@ -82,9 +95,9 @@ public class SupplyDeliveryToStockService {
             StockBulkRequest stockBulkRequest = new StockBulkRequest();
             stockBulkRequest.setRequestInfo(requestInfo);
             stockBulkRequest.setStock(toCreate);
-            apiIntegrationService.sendRequestToAPI(stockBulkRequest, createUrl);
+            digitWriteService.write("stock", DigitWriteService.CREATE, DownstreamService.STOCK, stockBulkRequest, createUrl, toCreate.get(0).getTenantId());
         } catch (Exception e) {
-            throw new Exception("Error in createStocks: " + e.getMessage());
+            throw new Exception("Error in createStocks: " + e.getMessage(), e);
         }
     }
 
@@ -95,9 +108,9 @@ public class SupplyDeliveryToStockService {
             StockBulkRequest stockBulkRequest = new StockBulkRequest();
             stockBulkRequest.setRequestInfo(requestInfo);
             stockBulkRequest.setStock(toUpdate);
-            apiIntegrationService.sendRequestToAPI(stockBulkRequest, updateUrl);
+            digitWriteService.write("stock", DigitWriteService.UPDATE, DownstreamService.STOCK, stockBulkRequest, updateUrl, toUpdate.get(0).getTenantId());
         } catch (Exception e) {
-            throw new Exception("Error in updateStocks: " + e.getMessage());
+            throw new Exception("Error in updateStocks: " + e.getMessage(), e);
         }
     }
 }
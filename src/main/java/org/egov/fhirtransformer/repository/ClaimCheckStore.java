@@ -0,0 +1,102 @@
+package org.egov.fhirtransformer.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.egov.fhirtransformer.utils.HashUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Claim-check for large DLQ payloads.
+ *
+ * <p>A payload whose JSON exceeds {@code kafka.dlq.claim-check.threshold-bytes} is gzip compressed
+ * and written to the {@link PayloadStore} under the SHA-256 of its JSON, so identical payloads are
+ * stored once. The Kafka record then carries only a reference:
+ * {@code {"store": ..., "key": <sha256>, "size": <bytes>, "encoding": "gzip"}}.
+ */
+@Service
+public class ClaimCheckStore {
+
+    private final PayloadStore payloadStore;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int thresholdBytes;
+    private final Counter stored;
+    private final Counter deduplicated;
+
+    public ClaimCheckStore(PayloadStore payloadStore, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                           @Value("${kafka.dlq.claim-check.enabled:true}") boolean enabled,
+                           @Value("${kafka.dlq.claim-check.threshold-bytes:262144}") int thresholdBytes) {
+        this.payloadStore = payloadStore;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.thresholdBytes = thresholdBytes;
+        this.stored = Counter.builder("kafka.claim-check.stored")
+                .description("Payloads written to the claim-check store").register(meterRegistry);
+        this.deduplicated = Counter.builder("kafka.claim-check.deduplicated")
+                .description("Payloads already present in the claim-check store").register(meterRegistry);
+    }
+
+    /**
+     * @param payload JSON payload
+     * @return a reference to the stored payload, or {@code null} if the payload is small enough
+     *         to be sent inline
+     * @throws IOException if the payload cannot be stored
+     */
+    public ObjectNode checkIn(JsonNode payload) throws IOException {
+        if (!enabled || payload == null) return null;
+        byte[] json = objectMapper.writeValueAsBytes(payload);
+        if (json.length <= thresholdBytes) return null;
+
+        String key = HashUtils.sha256Hex(json);
+        if (payloadStore.putIfAbsent(key, gzip(json))) {
+            stored.increment();
+        } else {
+            deduplicated.increment();
+        }
+        ObjectNode reference = objectMapper.createObjectNode();
+        reference.put("store", payloadStore.type());
+        reference.put("key", key);
+        reference.put("size", json.length);
+        reference.put("encoding", "gzip");
+        return reference;
+    }
+
+    /**
+     * @param reference reference written by {@link #checkIn(JsonNode)}
+     * @return the payload, or {@code null} if it is no longer in the store
+     * @throws IOException if the store cannot be read or the payload is corrupt
+     */
+    public JsonNode checkOut(JsonNode reference) throws IOException {
+        String key = reference.path("key").asText();
+        byte[] compressed = payloadStore.get(key);
+        if (compressed == null) return null;
+        byte[] json = gunzip(compressed);
+        if (!key.equals(HashUtils.sha256Hex(json))) {
+            throw new IOException("Claim-check payload " + key + " does not match its hash");
+        }
+        return objectMapper.readTree(json);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return gzip.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.egov.fhirtransformer.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Keeps claim-check payloads as files {@code <dir>/<first two hash chars>/<hash>.json.gz}.
+ * Files are written to a temporary name and moved into place, so readers never see partial files.
+ *
+ * <p>{@code kafka.dlq.claim-check.dir} has no default: it must name a persistent directory that
+ * outlives the container, or DLQ records would reference payloads lost on restart. Files not
+ * written or referenced again within {@code kafka.dlq.claim-check.retention-hours} are deleted
+ * every {@code kafka.dlq.claim-check.cleanup-interval-minutes}, like the TTL of the Redis store.
+ */
+@Component
+@ConditionalOnProperty(name = "kafka.dlq.claim-check.store", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemPayloadStore implements PayloadStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileSystemPayloadStore.class);
+
+    private final Path root;
+    private final boolean enabled;
+    private final Duration retention;
+    private final long cleanupIntervalMinutes;
+    private ScheduledExecutorService cleaner;
+
+    public FileSystemPayloadStore(@Value("${kafka.dlq.claim-check.dir:}") String dir,
+                                  @Value("${kafka.dlq.claim-check.enabled:true}") boolean enabled,
+                                  @Value("${kafka.dlq.claim-check.retention-hours:168}") long retentionHours,
+                                  @Value("${kafka.dlq.claim-check.cleanup-interval-minutes:60}") long cleanupIntervalMinutes) {
+        if (enabled && dir.isBlank()) {
+            throw new IllegalStateException("kafka.dlq.claim-check.dir must name a persistent directory "
+                    + "when the filesystem claim-check store is used");
+        }
+        this.root = Paths.get(dir);
+        this.enabled = enabled;
+        this.retention = Duration.ofHours(retentionHours);
+        this.cleanupIntervalMinutes = cleanupIntervalMinutes;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        cleaner = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("claim-check-cleaner-"));
+        cleaner.scheduleWithFixedDelay(this::deleteExpired, cleanupIntervalMinutes, cleanupIntervalMinutes,
+                TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (cleaner != null) cleaner.shutdownNow();
+    }
+
+    @Override
+    public String type() {
+        return "filesystem";
+    }
+
+    @Override
+    public boolean putIfAbsent(String key, byte[] compressed) throws IOException {
+        Path target = path(key);
+        try {
+            // identical payload seen again: keep it as long as the newest reference
+            Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            return false;
+        } catch (NoSuchFileException e) {
+            // not stored yet, or just deleted by the cleaner
+        }
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), key, ".tmp");
+        try {
+            Files.write(temp, compressed);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public byte[] get(String key) throws IOException {
+        Path target = path(key);
+        return Files.exists(target) ? Files.readAllBytes(target) : null;
+    }
+
+    /**
+     * Deletes payloads and leftover temporary files older than the retention.
+     * @return number of files deleted
+     */
+    int deleteExpired() {
+        if (!Files.isDirectory(root)) return 0;
+        FileTime cutoff = FileTime.from(Instant.now().minus(retention));
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            List<Path> expired = files.filter(Files::isRegularFile).filter(file -> isOlder(file, cutoff)).toList();
+            for (Path file : expired) {
+                if (Files.deleteIfExists(file)) deleted++;
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Claim-check cleanup of {} failed: {}", root, e.getMessage());
+        }
+        if (deleted > 0) logger.info("Claim-check cleanup deleted {} expired payloads from {}", deleted, root);
+        return deleted;
+    }
+
+    private static boolean isOlder(Path file, FileTime cutoff) {
+        try {
+            return Files.getLastModifiedTime(file).compareTo(cutoff) < 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Path path(String key) {
+        if (!key.matches("[0-9a-f]{64}")) {
+            throw new IllegalArgumentException("Invalid claim-check key: " + key);
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key + ".json.gz");
+    }
+}
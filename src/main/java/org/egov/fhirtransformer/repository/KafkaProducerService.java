@@ -1,32 +1,66 @@
 package org.egov.fhirtransformer.repository;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.validation.ResultSeverityEnum;
 import ca.uhn.fhir.validation.SingleValidationMessage;
 import ca.uhn.fhir.validation.ValidationResult;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.egov.fhirtransformer.utils.RequestDeadline;
 import org.hl7.fhir.r5.model.Bundle;
+import org.hl7.fhir.r5.model.Resource;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.stream.Collectors;
 
 /**
  * Kafka producer service for publishing FHIR processing failures.
+ *
+ * <p>Records are serialized on the calling thread, with large DLQ payloads moved to the
+ * claim-check store, so only the finished JSON is queued and no bundle or resource graph is kept
+ * alive. The queue is bounded by the estimated size of the queued JSON
+ * ({@code kafka.publish.max-queued-bytes}); a single publisher thread sends from it. When the
+ * queue is full a call waits up to {@code kafka.publish.offer-timeout-ms} in total, never past its
+ * request deadline; once that wait runs out, the rest of its records are dropped without waiting
+ * and the caller is told how many were lost. Delivery is reported
+ * through producer callbacks as the counters {@code kafka.publish.sent},
+ * {@code kafka.publish.failed} and {@code kafka.publish.dropped} (tag topic) and the gauges
+ * {@code kafka.publish.queue.depth} and {@code kafka.publish.queue.bytes}.
  */
 @Service
 public class KafkaProducerService {
 
+    // rough per-record overhead of the queue entry and its strings
+    private static final int RECORD_OVERHEAD_BYTES = 64;
+
     private final KafkaTemplate<String, String> kafkaTemplate;
 
-    private final FhirContext ctx;
+    private final ObjectMapper objectMapper;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ClaimCheckStore claimCheckStore;
+
+    // HAPI parsers are not thread safe but are costly to create; each thread keeps one
+    private final ThreadLocal<IParser> jsonParser;
 
     private static final Logger logger = LoggerFactory.getLogger(KafkaProducerService.class);
 
@@ -36,9 +70,57 @@ public class KafkaProducerService {
     @Value("${kafka.failed.topic}")
     private String failedTopic;
 
-    public KafkaProducerService(KafkaTemplate<String, String> kafkaTemplate, FhirContext ctx) {
+    @Value("${kafka.publish.max-queued-bytes:67108864}")
+    private long maxQueuedBytes;
+
+    @Value("${kafka.publish.offer-timeout-ms:1000}")
+    private long offerTimeoutMs;
+
+    @Value("${kafka.publish.max-drain:500}")
+    private int maxDrain;
+
+    /**
+     * A serialized record waiting for the publisher thread.
+     */
+    private record PendingRecord(String topic, String key, String value) {
+        long bytes() {
+            return (long) value.length() + (key != null ? key.length() : 0) + RECORD_OVERHEAD_BYTES;
+        }
+    }
+
+    /**
+     * A bundle entry that could not be loaded, with the reason.
+     */
+    public record ResourceFailure(Bundle.BundleEntryComponent entry, String errorMessage) {
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<PendingRecord> queue = new ArrayDeque<>();
+    private long queuedBytes;
+    private Thread publisher;
+    private volatile boolean running;
+
+    public KafkaProducerService(KafkaTemplate<String, String> kafkaTemplate, FhirContext ctx,
+                                ObjectMapper objectMapper, MeterRegistry meterRegistry, ClaimCheckStore claimCheckStore) {
         this.kafkaTemplate = kafkaTemplate;
-        this.ctx = ctx;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.claimCheckStore = claimCheckStore;
+        this.jsonParser = ThreadLocal.withInitial(ctx::newJsonParser);
+    }
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder("kafka.publish.queue.depth", this, KafkaProducerService::getQueued)
+                .description("Failure records waiting to be sent to Kafka").register(meterRegistry);
+        Gauge.builder("kafka.publish.queue.bytes", this, KafkaProducerService::getQueuedBytes)
+                .description("Estimated size of the failure records waiting to be sent").register(meterRegistry);
+        running = true;
+        publisher = new Thread(this::publishLoop, "kafka-failure-publisher");
+        publisher.setDaemon(true);
+        publisher.start();
     }
 
     /**
@@ -48,34 +130,43 @@ public class KafkaProducerService {
      * <ul>
      *   <li>Bundle identifier</li>
      *   <li>Timestamp of failure</li>
-     *   <li>Original FHIR payload</li>
+     *   <li>Original FHIR payload, or a claim-check reference to it when it is large</li>
      *   <li>List of validation error messages</li>
      * </ul>
      *
      * @param result validation result containing FHIR validation messages
      * @param bundleId identifier of the processed FHIR bundle
      * @param fhirJson original FHIR payload as JSON
-     * @throws JsonProcessingException if message serialization fails
+     * @return {@code false} if the record could not be queued and was dropped
      */
-    public void publishToDLQ(ValidationResult result, String bundleId, JsonNode fhirJson) throws JsonProcessingException {
+    public boolean publishToDLQ(ValidationResult result, String bundleId, JsonNode fhirJson) {
 
         List<String> errorList = result.getMessages().stream()
                 .filter(msg -> msg.getSeverity() == ResultSeverityEnum.ERROR)
                 .map(SingleValidationMessage::getMessage)
                 .collect(Collectors.toList());
-        ObjectMapper mapper = new ObjectMapper();
-        String jsonArray = mapper.writeValueAsString(errorList);
-
-        ObjectNode dlqJson = mapper.createObjectNode();
-        dlqJson.put("id", bundleId);
-        dlqJson.put("timestamp", Instant.now().toString());
-        dlqJson.put("fhirPayload", fhirJson);
-        dlqJson.set("errors", mapper.readTree(jsonArray));
-
-        String finalJson = mapper.writeValueAsString(dlqJson);
-        logger.info(finalJson);
-        // Publish to Kafka
-        kafkaTemplate.send(dlqTopic, bundleId, finalJson);
+        logger.info("Queueing bundle {} for the DLQ with {} validation errors", bundleId, errorList.size());
+        try {
+            ObjectNode dlqJson = objectMapper.createObjectNode();
+            dlqJson.put("id", bundleId);
+            dlqJson.put("timestamp", Instant.now().toString());
+            // large bundles go to the claim-check store; the record keeps only the reference
+            ObjectNode payloadRef = claimCheckStore.checkIn(fhirJson);
+            if (payloadRef != null) {
+                dlqJson.set("fhirPayloadRef", payloadRef);
+            } else {
+                dlqJson.set("fhirPayload", fhirJson);
+            }
+            dlqJson.set("errors", objectMapper.valueToTree(errorList));
+            if (enqueue(new PendingRecord(dlqTopic, bundleId, objectMapper.writeValueAsString(dlqJson)), waitUntil())) {
+                return true;
+            }
+            dropped(dlqTopic, 1, "bundle " + bundleId + ": " + queueFullReason());
+            return false;
+        } catch (IOException e) {
+            dropped(dlqTopic, 1, "bundle " + bundleId + ": " + e.getMessage());
+            return false;
+        }
     }
 
 
@@ -88,31 +179,153 @@ public class KafkaProducerService {
      *   <li>FHIR resource payload</li>
      *   <li>Error reason for the failure</li>
      * </ul>
-     * @param entry bundle entry containing the failed FHIR resource
-     * @param errorMessage reason for the resource processing failure
-     * @throws RuntimeException if message serialization fails
+     * <p>All failures of a request should be passed in one call: the call waits for queue room
+     * at most {@code kafka.publish.offer-timeout-ms} in total, and once that wait runs out the
+     * remaining records are dropped without being serialized.
+     * @param failures failed bundle entries with their reasons
+     * @return number of records that could not be queued and were dropped
      */
-    public void publishFhirResourceFailures(Bundle.BundleEntryComponent entry, String errorMessage) {
+    public int publishFhirResourceFailures(List<ResourceFailure> failures) {
+        IParser parser = jsonParser.get();
+        long waitUntil = waitUntil();
+        int dropped = 0;
+        int queueFull = 0;
+        for (ResourceFailure failure : failures) {
+            if (queueFull > 0) {
+                queueFull++;
+                continue;
+            }
+            Resource resource = failure.entry().getResource();
+            String resourceId = resource.getIdElement().getIdPart();
+            try {
+                ObjectNode failedResourceJson = objectMapper.createObjectNode();
+                failedResourceJson.put("resourceId", resourceId);
+                failedResourceJson.put("resourceType", resource.fhirType());
+                failedResourceJson.put("fhirResource", parser.encodeResourceToString(resource));
+                failedResourceJson.put("errorReason", failure.errorMessage());
+                if (!enqueue(new PendingRecord(failedTopic, resourceId, objectMapper.writeValueAsString(failedResourceJson)), waitUntil)) {
+                    queueFull++;
+                }
+            } catch (IOException e) {
+                dropped(failedTopic, 1, "resource " + resourceId + ": " + e.getMessage());
+                dropped++;
+            }
+        }
+        if (queueFull > 0) {
+            dropped(failedTopic, queueFull, queueFullReason());
+        }
+        return dropped + queueFull;
+    }
 
-        String finalJson;
-        String resourceId = entry.getResource().getIdElement().getIdPart();
-        String resourceType = entry.getResource().fhirType();
-        String resourceJson = ctx.newJsonParser().encodeResourceToString(entry.getResource());
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getQueuedBytes() {
+        lock.lock();
+        try {
+            return queuedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Latest time a call may wait for queue room: the offer timeout, never past the request deadline
+    private long waitUntil() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RequestDeadline.cap(offerTimeoutMs));
+    }
+
+    // Waits for room until the given time; a record larger than the whole budget still goes into an empty queue
+    private boolean enqueue(PendingRecord pendingRecord, long waitUntil) {
+        long bytes = pendingRecord.bytes();
+        lock.lock();
+        try {
+            while (!queue.isEmpty() && queuedBytes + bytes > maxQueuedBytes) {
+                long remaining = waitUntil - System.nanoTime();
+                if (remaining <= 0) return false;
+                notFull.awaitNanos(remaining);
+            }
+            queue.add(pendingRecord);
+            queuedBytes += bytes;
+            notEmpty.signal();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        ObjectMapper objectMapper = new ObjectMapper();
-        ObjectNode failedResourceJson = objectMapper.createObjectNode();
+    private static String queueFullReason() {
+        return Thread.currentThread().isInterrupted() ? "interrupted" : "publish queue full";
+    }
 
-        failedResourceJson.put("resourceId", resourceId);
-        failedResourceJson.put("resourceType", resourceType);
-        failedResourceJson.put("fhirResource", resourceJson);
-        failedResourceJson.put("errorReason", errorMessage);
+    private void dropped(String topic, int count, String reason) {
+        Counter.builder("kafka.publish.dropped").tag("topic", topic).register(meterRegistry).increment(count);
+        logger.error("Dropped {} failure record(s) for topic {}: {}", count, topic, reason);
+    }
 
+    // Takes up to maxDrain records, waiting briefly for the first
+    private List<PendingRecord> take() throws InterruptedException {
+        List<PendingRecord> batch = new ArrayList<>();
+        lock.lock();
         try {
-            finalJson = objectMapper.writeValueAsString(failedResourceJson);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException("Failed to publish to Failed Topic", e);
+            if (queue.isEmpty()) notEmpty.await(200, TimeUnit.MILLISECONDS);
+            while (!queue.isEmpty() && batch.size() < maxDrain) {
+                PendingRecord pendingRecord = queue.poll();
+                queuedBytes -= pendingRecord.bytes();
+                batch.add(pendingRecord);
+            }
+            if (!batch.isEmpty()) notFull.signalAll();
+            return batch;
+        } finally {
+            lock.unlock();
         }
-        // Publish to Kafka
-        kafkaTemplate.send(failedTopic, resourceId, finalJson);
     }
-}
\ No newline at end of file
+
+    // Drains the queue in batches; the producer batches and compresses the sends
+    private void publishLoop() {
+        while (running || getQueued() > 0) {
+            try {
+                for (PendingRecord pendingRecord : take()) {
+                    send(pendingRecord);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+        }
+        kafkaTemplate.flush();
+    }
+
+    private void send(PendingRecord pendingRecord) {
+        String topic = pendingRecord.topic();
+        try {
+            kafkaTemplate.send(topic, pendingRecord.key(), pendingRecord.value()).whenComplete((sendResult, error) -> {
+                if (error == null) {
+                    Counter.builder("kafka.publish.sent").tag("topic", topic).register(meterRegistry).increment();
+                } else {
+                    Counter.builder("kafka.publish.failed").tag("topic", topic).register(meterRegistry).increment();
+                    logger.error("Failed to publish record {} to {}: {}", pendingRecord.key(), topic, error.getMessage());
+                }
+            });
+        } catch (Exception e) {
+            Counter.builder("kafka.publish.failed").tag("topic", topic).register(meterRegistry).increment();
+            logger.error("Failed to publish record {} to {}: {}", pendingRecord.key(), topic, e.getMessage());
+        }
+    }
+
+    /**
+     * Sends what is still queued, then stops the publisher thread.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        publisher.join(TimeUnit.SECONDS.toMillis(10));
+    }
+}
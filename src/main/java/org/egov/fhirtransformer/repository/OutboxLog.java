@@ -0,0 +1,223 @@
+package org.egov.fhirtransformer.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file log with a single committed read cursor.
+ *
+ * <p>Each record is framed as {@code [int length][int crc32][payload]}. The cursor (the position
+ * of the first record not yet committed) is kept in a separate file that is replaced atomically
+ * and, with fsync, forced to disk before the commit returns. On open, a torn or corrupt tail left
+ * by a crash is truncated, and a missing or unreadable cursor restarts at the beginning of the log
+ * (records are delivered at least once). Once every record is committed and the log is larger
+ * than {@code compactBytes}, the log is truncated to empty; the cursor is durable before the
+ * truncation, so a crash in between replays nothing.
+ */
+public final class OutboxLog implements Closeable {
+
+    private static final int HEADER_BYTES = 8;
+
+    /**
+     * A record read from the log; {@code next} is the cursor after it.
+     */
+    public record Entry(byte[] payload, long position, long next) {
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Path cursorFile;
+    private final FileChannel channel;
+    private final boolean fsync;
+    private final long compactBytes;
+    private long cursor;
+    private long end;
+    private long pendingEntries;
+
+    public OutboxLog(Path dir, String name, boolean fsync, long compactBytes) throws IOException {
+        Files.createDirectories(dir);
+        this.cursorFile = dir.resolve(name + ".cursor");
+        this.fsync = fsync;
+        this.compactBytes = compactBytes;
+        this.channel = FileChannel.open(dir.resolve(name + ".log"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.cursor = readCursor();
+        recover();
+    }
+
+    private long readCursor() {
+        try {
+            if (!Files.exists(cursorFile)) return 0;
+            return Math.max(0, Long.parseLong(Files.readString(cursorFile, StandardCharsets.UTF_8).trim()));
+        } catch (IOException | NumberFormatException e) {
+            // e.g. left empty by a crash: start over, the pending records are delivered again
+            return 0;
+        }
+    }
+
+    // Counts the pending records and cuts the log after the last complete one
+    private void recover() throws IOException {
+        long size = channel.size();
+        if (cursor > size) cursor = 0;
+        long position = cursor;
+        long count = 0;
+        while (true) {
+            Entry entry = read(position, size);
+            if (entry == null) break;
+            position = entry.next();
+            count++;
+        }
+        if (position < size) channel.truncate(position);
+        end = position;
+        pendingEntries = count;
+    }
+
+    /**
+     * Appends a record; with fsync it is on disk when this returns.
+     * @param payload record bytes
+     * @throws IOException if the record cannot be written
+     */
+    public void append(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        lock.lock();
+        try {
+            long position = end;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            if (fsync) channel.force(false);
+            end = position;
+            pendingEntries++;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param timeoutMs longest time to wait for a record
+     * @return the first uncommitted record, or {@code null} if none arrived in time
+     */
+    public Entry peek(long timeoutMs) throws IOException, InterruptedException {
+        long position;
+        long limit;
+        lock.lock();
+        try {
+            if (cursor >= end) {
+                appended.await(timeoutMs, TimeUnit.MILLISECONDS);
+                if (cursor >= end) return null;
+            }
+            position = cursor;
+            limit = end;
+        } finally {
+            lock.unlock();
+        }
+        return read(position, limit);
+    }
+
+    /**
+     * Moves the cursor past the record.
+     * @param entry record returned by {@link #peek(long)}
+     * @throws IOException if the cursor cannot be written
+     */
+    public void commit(Entry entry) throws IOException {
+        lock.lock();
+        try {
+            cursor = entry.next();
+            pendingEntries--;
+            writeCursor(cursor);
+            if (cursor >= end && end > compactBytes) {
+                // a crash before the next cursor write finds the cursor past the empty log and restarts at 0
+                channel.truncate(0);
+                if (fsync) channel.force(false);
+                cursor = 0;
+                end = 0;
+                writeCursor(0);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeCursor(long value) throws IOException {
+        Path temp = cursorFile.resolveSibling(cursorFile.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Long.toString(value).getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            if (fsync) out.force(true);
+        }
+        Files.move(temp, cursorFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        if (fsync) forceDirectory();
+    }
+
+    // Makes the rename durable; not every platform can open a directory for this
+    private void forceDirectory() {
+        try (FileChannel directory = FileChannel.open(cursorFile.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // best effort
+        }
+    }
+
+    public long getPendingEntries() {
+        lock.lock();
+        try {
+            return pendingEntries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getPendingBytes() {
+        lock.lock();
+        try {
+            return end - cursor;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entry read(long position, long limit) throws IOException {
+        if (position + HEADER_BYTES > limit) return null;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(header, position);
+        int length = header.getInt(0);
+        int checksum = header.getInt(4);
+        if (length < 0 || position + HEADER_BYTES + length > limit) return null;
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload, position + HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        if ((int) crc.getValue() != checksum) return null;
+        return new Entry(payload.array(), position, position + HEADER_BYTES + length);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Unexpected end of outbox log");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,30 @@
+package org.egov.fhirtransformer.repository;
+
+import java.io.IOException;
+
+/**
+ * Backend of the claim-check store: keeps compressed payloads under their content hash.
+ */
+public interface PayloadStore {
+
+    /**
+     * @return store type written into claim-check references, e.g. "filesystem"
+     */
+    String type();
+
+    /**
+     * Stores the bytes unless the key is already present.
+     * @param key content hash of the uncompressed payload
+     * @param compressed gzip compressed payload
+     * @return {@code true} if the bytes were written, {@code false} if the key already existed
+     * @throws IOException if the store cannot be written
+     */
+    boolean putIfAbsent(String key, byte[] compressed) throws IOException;
+
+    /**
+     * @param key content hash of the uncompressed payload
+     * @return the compressed payload, or {@code null} if the key is unknown
+     * @throws IOException if the store cannot be read
+     */
+    byte[] get(String key) throws IOException;
+}
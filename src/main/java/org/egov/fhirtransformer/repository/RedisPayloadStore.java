@@ -0,0 +1,56 @@
+package org.egov.fhirtransformer.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+
+/**
+ * Keeps claim-check payloads in Redis under {@code <prefix><hash>}, expiring after
+ * {@code kafka.dlq.claim-check.redis-ttl-hours}.
+ */
+@Component
+@ConditionalOnProperty(name = "kafka.dlq.claim-check.store", havingValue = "redis")
+public class RedisPayloadStore implements PayloadStore {
+
+    private final RedisTemplate<String, byte[]> redisTemplate;
+    private final String prefix;
+    private final Duration ttl;
+
+    public RedisPayloadStore(RedisConnectionFactory connectionFactory,
+                             @Value("${kafka.dlq.claim-check.redis-prefix:fhir:claim-check:}") String prefix,
+                             @Value("${kafka.dlq.claim-check.redis-ttl-hours:168}") long ttlHours) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(RedisSerializer.string());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.afterPropertiesSet();
+        this.redisTemplate = template;
+        this.prefix = prefix;
+        this.ttl = Duration.ofHours(ttlHours);
+    }
+
+    @Override
+    public String type() {
+        return "redis";
+    }
+
+    @Override
+    public boolean putIfAbsent(String key, byte[] compressed) {
+        Boolean written = redisTemplate.opsForValue().setIfAbsent(prefix + key, compressed, ttl);
+        if (!Boolean.TRUE.equals(written)) {
+            // identical payload seen again: keep it as long as the newest reference
+            redisTemplate.expire(prefix + key, ttl);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public byte[] get(String key) {
+        return redisTemplate.opsForValue().get(prefix + key);
+    }
+}
@@ -0,0 +1,191 @@
+package org.egov.fhirtransformer.service;
+
+import digit.web.models.BoundaryRelationshipSearchCriteria;
+import digit.web.models.BoundarySearchResponse;
+import org.egov.common.contract.request.RequestInfo;
+import org.egov.common.models.core.URLParams;
+import org.egov.common.models.facility.FacilityBulkResponse;
+import org.egov.common.models.facility.FacilitySearch;
+import org.egov.common.models.facility.FacilitySearchRequest;
+import org.egov.common.models.product.ProductVariantResponse;
+import org.egov.common.models.product.ProductVariantSearch;
+import org.egov.common.models.product.ProductVariantSearchRequest;
+import org.egov.common.models.stock.*;
+import org.egov.fhirtransformer.common.Constants;
+import org.egov.fhirtransformer.mapping.fhirBuilder.DIGITHCMFacilityMapper;
+import org.egov.fhirtransformer.mapping.fhirBuilder.DIGITHCMProductVariantMapper;
+import org.egov.fhirtransformer.mapping.fhirBuilder.DIGITHCMStockMapper;
+import org.egov.fhirtransformer.web.models.AggregatedFetchRequest;
+import org.hl7.fhir.r5.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Service that builds a facility's full picture in one call by running the Facility,
+ * ProductVariant, Stock, StockReconciliation and Boundary searches concurrently and
+ * mapping each result on the fetch executor.
+ */
+@Service
+public class AggregatedFetchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AggregatedFetchService.class);
+
+    @Autowired
+    private ApiIntegrationService apiIntegrationService;
+
+    @Autowired
+    private FhirTransformerService ftService;
+
+    @Autowired
+    @Qualifier("fetchExecutor")
+    private Executor fetchExecutor;
+
+    @Value("${fetch.aggregate.timeout-ms:30000}")
+    private long timeoutMs;
+
+    /**
+     * Per-type outcome of an aggregated fetch. Types that failed carry an error instead of resources.
+     */
+    public static class AggregatedFetchResult {
+        private final Map<String, List<Resource>> resources = new LinkedHashMap<>();
+        private final Map<String, String> errors = new LinkedHashMap<>();
+
+        public Map<String, List<Resource>> getResources() {
+            return resources;
+        }
+
+        public Map<String, String> getErrors() {
+            return errors;
+        }
+    }
+
+    /**
+     * Runs all five searches concurrently and maps their results in parallel.
+     * End-to-end latency is bounded by the slowest search plus its mapping.
+     *
+     * @param urlParams pagination and tenant parameters applied to each paged search
+     * @param request one search section per entity type
+     * @return per-type resources and per-type errors
+     */
+    public AggregatedFetchResult fetchAll(URLParams urlParams, AggregatedFetchRequest request) {
+        RequestInfo requestInfo = request.getRequestInfo();
+        Map<String, CompletableFuture<List<Resource>>> futures = new LinkedHashMap<>();
+
+        futures.put("Facility", submit(() -> fetchFacilities(urlParams, request.getFacility(), requestInfo)));
+        futures.put("ProductVariant", submit(() -> fetchProductVariants(urlParams, request.getProductVariant(), requestInfo)));
+        futures.put("Stock", submit(() -> fetchStocks(urlParams, request.getStock(), requestInfo)));
+        futures.put("StockReconciliation", submit(() -> fetchStockReconciliations(urlParams, request.getStockReconciliation(), requestInfo)));
+        futures.put("Boundary", submit(() -> fetchBoundaries(urlParams, request.getBoundary(), requestInfo)));
+
+        AggregatedFetchResult result = new AggregatedFetchResult();
+        futures.forEach((entityName, future) -> {
+            try {
+                result.getResources().put(entityName, future.join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                String message;
+                if (cause instanceof TimeoutException) {
+                    message = "Timed out after " + timeoutMs + " ms";
+                } else if (cause instanceof RejectedExecutionException) {
+                    message = "Fetch executor is full, retry later";
+                } else {
+                    message = cause.getMessage();
+                }
+                logger.error("Aggregated fetch failed for entity type {}: {}", entityName, message);
+                result.getErrors().put(entityName, message);
+            }
+        });
+        return result;
+    }
+
+    // A full fetch executor fails only this entity type; the searches already submitted go on
+    private CompletableFuture<List<Resource>> submit(Supplier<List<Resource>> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, fetchExecutor)
+                    .orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private List<Resource> fetchFacilities(URLParams urlParams, FacilitySearch search, RequestInfo requestInfo) {
+        FacilitySearchRequest searchRequest = new FacilitySearchRequest();
+        searchRequest.setRequestInfo(requestInfo);
+        searchRequest.setFacility(search != null ? search : new FacilitySearch());
+        FacilityBulkResponse response = apiIntegrationService.fetchAllFacilities(copy(urlParams), searchRequest);
+        if (response == null || response.getFacilities() == null) return Collections.emptyList();
+        return new ArrayList<>(response.getFacilities().stream()
+                .map(DIGITHCMFacilityMapper::buildLocationFromFacility)
+                .toList());
+    }
+
+    private List<Resource> fetchProductVariants(URLParams urlParams, ProductVariantSearch search, RequestInfo requestInfo) {
+        ProductVariantSearchRequest searchRequest = new ProductVariantSearchRequest();
+        searchRequest.setRequestInfo(requestInfo);
+        searchRequest.setProductVariant(search != null ? search : new ProductVariantSearch());
+        ProductVariantResponse response = apiIntegrationService.fetchAllProductVariants(copy(urlParams), searchRequest);
+        if (response == null || response.getProductVariant() == null) return Collections.emptyList();
+        return new ArrayList<>(response.getProductVariant().stream()
+                .map(DIGITHCMProductVariantMapper::buildInventoryFromProductVariant)
+                .toList());
+    }
+
+    private List<Resource> fetchStocks(URLParams urlParams, StockSearch search, RequestInfo requestInfo) {
+        StockSearchRequest searchRequest = new StockSearchRequest();
+        searchRequest.setRequestInfo(requestInfo);
+        searchRequest.setStock(search != null ? search : new StockSearch());
+        StockBulkResponse response = apiIntegrationService.fetchAllStocks(copy(urlParams), searchRequest);
+        if (response == null || response.getStock() == null) return Collections.emptyList();
+        return new ArrayList<>(response.getStock().stream()
+                .map(DIGITHCMStockMapper::buildSupplyDeliveryFromStock)
+                .toList());
+    }
+
+    private List<Resource> fetchStockReconciliations(URLParams urlParams, StockReconciliationSearch search,
+                                                     RequestInfo requestInfo) {
+        StockReconciliationSearchRequest searchRequest = new StockReconciliationSearchRequest();
+        searchRequest.setRequestInfo(requestInfo);
+        searchRequest.setStockReconciliation(search != null ? search : new StockReconciliationSearch());
+        StockReconciliationBulkResponse response = apiIntegrationService.fetchAllStockReconciliation(copy(urlParams), searchRequest);
+        if (response == null || response.getStockReconciliation() == null) return Collections.emptyList();
+        return new ArrayList<>(response.getStockReconciliation().stream()
+                .map(DIGITHCMStockMapper::buildInventoryReportFromStockReconciliation)
+                .toList());
+    }
+
+    private List<Resource> fetchBoundaries(URLParams urlParams, BoundaryRelationshipSearchCriteria criteria,
+                                           RequestInfo requestInfo) {
+        BoundaryRelationshipSearchCriteria searchCriteria = criteria != null ? criteria : new BoundaryRelationshipSearchCriteria();
+        if (searchCriteria.getTenantId() == null) searchCriteria.setTenantId(urlParams.getTenantId());
+        if (searchCriteria.getHierarchyType() == null) searchCriteria.setHierarchyType(Constants.HIERARCHY_TYPE);
+        BoundarySearchResponse response = apiIntegrationService.fetchAllBoundaries(searchCriteria, requestInfo);
+        if (response == null || response.getTenantBoundary() == null) return Collections.emptyList();
+        return new ArrayList<>(ftService.buildBoundaryLocations(response.getTenantBoundary()));
+    }
+
+    // Each search gets its own URLParams so that concurrent searches cannot see each other's changes
+    private URLParams copy(URLParams urlParams) {
+        URLParams copy = new URLParams();
+        copy.setLimit(urlParams.getLimit());
+        copy.setOffset(urlParams.getOffset());
+        copy.setTenantId(urlParams.getTenantId());
+        copy.setLastChangedSince(urlParams.getLastChangedSince());
+        return copy;
+    }
+}
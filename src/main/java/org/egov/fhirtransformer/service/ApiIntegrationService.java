@@ -10,6 +10,8 @@ import org.egov.common.models.facility.FacilitySearchRequest;
 import org.egov.common.models.product.ProductVariantResponse;
 import org.egov.common.models.product.ProductVariantSearchRequest;
 import org.egov.common.models.stock.*;
+import org.egov.fhirtransformer.common.DownstreamService;
+import org.egov.fhirtransformer.config.DownstreamClients;
 import org.egov.fhirtransformer.web.controller.FhirApiController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,7 +19,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 import java.net.URI;
 import java.util.HashMap;
@@ -31,10 +32,16 @@ import java.util.Map;
 public class ApiIntegrationService {
 
     @Autowired
-    private RestTemplate restTemplate;
+    private DownstreamClients downstreamClients;
 
-    @Value("${app.tenant-id}")
-    private String tenantId;
+    @Autowired
+    private SearchCoalescer searchCoalescer;
+
+    @Autowired
+    private DownstreamRetry downstreamRetry;
+
+    @Autowired
+    private TenantRouter tenantRouter;
 
     @Value("${facility.search.url}")
     private String facilityUrl;
@@ -54,30 +61,35 @@ public class ApiIntegrationService {
     private static final Logger logger = LoggerFactory.getLogger(FhirApiController.class);
 
     /**
-     * Builds a URI with pagination and tenant query parameters.
+     * Builds a URI with pagination, tenant and (when set) {@code lastChangedSince} query parameters,
+     * on the DIGIT deployment of the tenant.
      * @param urlParams pagination and tenant parameters
      * @param url base service URL
      * @return constructed {@link URI}
      */
     public URI formUri(URLParams urlParams, String url){
 
-        URI uri = UriComponentsBuilder.fromHttpUrl(url)
+        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(tenantRouter.route(urlParams.getTenantId(), url))
                 .queryParam("limit", urlParams.getLimit())
                 .queryParam("offset", urlParams.getOffset())
-                .queryParam("tenantId", urlParams.getTenantId())
-                .build().toUri();
-        return uri;
+                .queryParam("tenantId", urlParams.getTenantId());
+        if (urlParams.getLastChangedSince() != null) {
+            builder.queryParam("lastChangedSince", urlParams.getLastChangedSince());
+        }
+        return builder.build().toUri();
     }
 
     /**
-     * Builds a URI for boundary relationship search using provided criteria.
+     * Builds a URI for boundary relationship search using provided criteria, on the DIGIT
+     * deployment of the criteria's tenant.
      * @param criteria boundary relationship search criteria
      * @param url base boundary search URL
      * @return constructed {@link URI}
      */
     public URI formBoundaryUri(BoundaryRelationshipSearchCriteria criteria, String url) {
 
-        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(url);
+        String tenant = hasText(criteria.getTenantId()) ? criteria.getTenantId().trim() : null;
+        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(tenantRouter.route(tenant, url));
 
         if (hasText(criteria.getTenantId())) {
             builder.queryParam("tenantId", criteria.getTenantId().trim());
@@ -125,12 +137,13 @@ public class ApiIntegrationService {
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<FacilitySearchRequest> entity = new HttpEntity<>(facilitySearchRequest, headers);
 
-        ResponseEntity<FacilityBulkResponse> response = restTemplate.exchange(
-                uri,
-                HttpMethod.POST,
-                entity,
-                FacilityBulkResponse.class
-        );
+        ResponseEntity<FacilityBulkResponse> response = searchCoalescer.coalesce(DownstreamService.FACILITY, uri, entity.getBody(),
+                () -> downstreamRetry.search(DownstreamService.FACILITY, () -> downstreamClients.get(DownstreamService.FACILITY).exchange(
+                        uri,
+                        HttpMethod.POST,
+                        entity,
+                        FacilityBulkResponse.class
+                )));
         if (!response.hasBody() || response.getBody() == null) {
             logger.warn("Empty response body received from Facility service for URI: {}", uri);
             return null;
@@ -152,12 +165,13 @@ public class ApiIntegrationService {
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<ProductVariantSearchRequest> entity = new HttpEntity<>(productVariantSearchRequest, headers);
 
-        ResponseEntity<ProductVariantResponse> response = restTemplate.exchange(
-                uri,
-                HttpMethod.POST,
-                entity,
-                ProductVariantResponse.class
-        );
+        ResponseEntity<ProductVariantResponse> response = searchCoalescer.coalesce(DownstreamService.PRODUCT, uri, entity.getBody(),
+                () -> downstreamRetry.search(DownstreamService.PRODUCT, () -> downstreamClients.get(DownstreamService.PRODUCT).exchange(
+                        uri,
+                        HttpMethod.POST,
+                        entity,
+                        ProductVariantResponse.class
+                )));
         if (!response.hasBody() || response.getBody() == null) {
             logger.warn("Empty response body received from ProductVariant service for URI: {}", uri);
             return null;
@@ -179,12 +193,13 @@ public class ApiIntegrationService {
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<StockSearchRequest> entity = new HttpEntity<>(stockRequest, headers);
 
-        ResponseEntity<StockBulkResponse> response = restTemplate.exchange(
-                uri,
-                HttpMethod.POST,
-                entity,
-                StockBulkResponse.class
-        );
+        ResponseEntity<StockBulkResponse> response = searchCoalescer.coalesce(DownstreamService.STOCK, uri, entity.getBody(),
+                () -> downstreamRetry.search(DownstreamService.STOCK, () -> downstreamClients.get(DownstreamService.STOCK).exchange(
+                        uri,
+                        HttpMethod.POST,
+                        entity,
+                        StockBulkResponse.class
+                )));
 
         if (!response.hasBody() || response.getBody() == null) {
             logger.warn("Empty response body received from Stock service for URI: {}", uri);
@@ -207,12 +222,13 @@ public class ApiIntegrationService {
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<StockReconciliationSearchRequest> entity = new HttpEntity<>(stockReconciliationSearchRequest, headers);
 
-        ResponseEntity<StockReconciliationBulkResponse> response = restTemplate.exchange(
-                uri,
-                HttpMethod.POST,
-                entity,
-                StockReconciliationBulkResponse.class
-        );
+        ResponseEntity<StockReconciliationBulkResponse> response = searchCoalescer.coalesce(DownstreamService.STOCK, uri, entity.getBody(),
+                () -> downstreamRetry.search(DownstreamService.STOCK, () -> downstreamClients.get(DownstreamService.STOCK).exchange(
+                        uri,
+                        HttpMethod.POST,
+                        entity,
+                        StockReconciliationBulkResponse.class
+                )));
         if (!response.hasBody() || response.getBody() == null) {
             logger.warn("Empty response body received from StockReconciliation service for URI: {}", uri);
             return null;
@@ -235,12 +251,13 @@ public class ApiIntegrationService {
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
 
-        ResponseEntity<BoundarySearchResponse> response = restTemplate.exchange(
-                uri,
-                HttpMethod.POST,
-                entity,
-                BoundarySearchResponse.class
-        );
+        ResponseEntity<BoundarySearchResponse> response = searchCoalescer.coalesce(DownstreamService.BOUNDARY, uri, entity.getBody(),
+                () -> downstreamRetry.search(DownstreamService.BOUNDARY, () -> downstreamClients.get(DownstreamService.BOUNDARY).exchange(
+                        uri,
+                        HttpMethod.POST,
+                        entity,
+                        BoundarySearchResponse.class
+                )));
 
         if (!response.hasBody() || response.getBody() == null) {
             logger.warn("Empty response body received from Boundary service for URI: {}", uri);
@@ -252,27 +269,28 @@ public class ApiIntegrationService {
     /**
      * Sends a POST request to an external service endpoint.
      *
+     * @param service DIGIT service whose connection pool is used
      * @param requestBody request payload
      * @param url target service URL
      * @param <T> request payload type
      * @return {@link ResponseEntity} containing {@link ResponseInfo}
      */
-    public <T> ResponseEntity<ResponseInfo> sendRequestToAPI(T requestBody, String url) {
+    public <T> ResponseEntity<ResponseInfo> sendRequestToAPI(DownstreamService service, T requestBody, String url) {
 
         URI uri = URI.create(url);
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<Object> entity = new HttpEntity<>(requestBody, headers);
-        return restTemplate.exchange(
+        return downstreamRetry.write(service, () -> downstreamClients.get(service).exchange(
                 uri,
                 HttpMethod.POST,
                 entity,
                 ResponseInfo.class
-        );
+        ));
     }
 
     /**
-     * Creates pagination and tenant parameters for search requests.
+     * Creates pagination and tenant parameters for search requests of the current ingestion's tenant.
      *
      * @param idList list of entity identifiers
      * @return populated {@link URLParams}
@@ -281,7 +299,7 @@ public class ApiIntegrationService {
         URLParams urlParams = new URLParams();
         urlParams.setLimit(idList.size());
         urlParams.setOffset(0);
-        urlParams.setTenantId(tenantId);
+        urlParams.setTenantId(tenantRouter.current());
         return urlParams;
     }
 
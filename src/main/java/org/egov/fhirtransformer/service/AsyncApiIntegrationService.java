@@ -0,0 +1,260 @@
+package org.egov.fhirtransformer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import digit.web.models.BoundaryRelationshipSearchCriteria;
+import digit.web.models.BoundarySearchResponse;
+import jakarta.annotation.PreDestroy;
+import org.egov.common.contract.request.RequestInfo;
+import org.egov.common.contract.response.ResponseInfo;
+import org.egov.common.models.core.URLParams;
+import org.egov.common.models.facility.FacilityBulkResponse;
+import org.egov.common.models.facility.FacilitySearchRequest;
+import org.egov.common.models.product.ProductVariantResponse;
+import org.egov.common.models.product.ProductVariantSearchRequest;
+import org.egov.common.models.stock.*;
+import org.egov.fhirtransformer.common.DeadlineExceededException;
+import org.egov.fhirtransformer.common.DownstreamService;
+import org.egov.fhirtransformer.utils.RequestDeadline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Non-blocking counterpart of {@link ApiIntegrationService}.
+ *
+ * <p>Requests are sent with the JDK {@link HttpClient} in async mode, so a call holds no thread
+ * while it waits for DIGIT. A few I/O threads can therefore keep hundreds of calls in flight.
+ * Each {@link DownstreamService} has its own client and connections, as with
+ * {@link org.egov.fhirtransformer.config.DownstreamClients}. Calls take the same path as the
+ * blocking ones: searches are coalesced by the {@link SearchCoalescer} and retried by
+ * {@link DownstreamRetry} (writes only when DIGIT cannot have processed them), and every attempt
+ * passes the {@link DownstreamGuard} of its service; calls over its concurrency limit are queued,
+ * not blocked. Non-2xx responses complete the future with a {@link RestClientResponseException},
+ * as the blocking client would throw. Timeouts are reduced to the remaining {@link RequestDeadline}
+ * of the calling request.
+ */
+@Service
+public class AsyncApiIntegrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncApiIntegrationService.class);
+
+    @Autowired
+    private ApiIntegrationService apiIntegrationService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DownstreamGuard downstreamGuard;
+
+    @Autowired
+    private DownstreamRetry downstreamRetry;
+
+    @Autowired
+    private SearchCoalescer searchCoalescer;
+
+    @Value("${facility.search.url}")
+    private String facilityUrl;
+
+    @Value("${product.variant.search.url}")
+    private String productVariantUrl;
+
+    @Value("${stock.search.url}")
+    private String stockSearchUrl;
+
+    @Value("${stock.reconciliation.search.url}")
+    private String stockReconciliationUrl;
+
+    @Value("${boundary.relationship.search.url}")
+    private String boundaryRelationshipUrl;
+
+    private final Executor ioExecutor;
+    private final Map<DownstreamService, HttpClient> httpClients = new EnumMap<>(DownstreamService.class);
+    private final Duration readTimeout;
+
+    public AsyncApiIntegrationService(@Value("${downstream.async.io-threads:4}") int ioThreads,
+                                      @Value("${downstream.http.connect-timeout-ms:5000}") long connectTimeoutMs,
+                                      @Value("${downstream.http.read-timeout-ms:30000}") long readTimeoutMs,
+                                      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("downstream-async-");
+            executor.setVirtualThreads(true);
+            this.ioExecutor = executor;
+        } else {
+            this.ioExecutor = Executors.newFixedThreadPool(ioThreads, new CustomizableThreadFactory("downstream-async-"));
+        }
+        for (DownstreamService service : DownstreamService.values()) {
+            httpClients.put(service, HttpClient.newBuilder()
+                    .executor(ioExecutor)
+                    .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                    .build());
+        }
+        this.readTimeout = Duration.ofMillis(readTimeoutMs);
+    }
+
+    /**
+     * Fetches Facility records from the Facility service without blocking.
+     * @param urlParams pagination and tenant parameters
+     * @param facilitySearchRequest facility search request payload
+     * @return future of the {@link FacilityBulkResponse}, completing with {@code null} if the body is empty
+     */
+    public CompletableFuture<FacilityBulkResponse> fetchAllFacilitiesAsync(URLParams urlParams,
+                                                                           FacilitySearchRequest facilitySearchRequest) {
+        return search(DownstreamService.FACILITY, apiIntegrationService.formUri(urlParams, facilityUrl),
+                facilitySearchRequest, FacilityBulkResponse.class);
+    }
+
+    /**
+     * Fetches ProductVariant records from the Product service without blocking.
+     * @param urlParams pagination and tenant parameters
+     * @param productVariantSearchRequest product variant search request payload
+     * @return future of the {@link ProductVariantResponse}, completing with {@code null} if the body is empty
+     */
+    public CompletableFuture<ProductVariantResponse> fetchAllProductVariantsAsync(URLParams urlParams,
+                                                                                  ProductVariantSearchRequest productVariantSearchRequest) {
+        return search(DownstreamService.PRODUCT, apiIntegrationService.formUri(urlParams, productVariantUrl),
+                productVariantSearchRequest, ProductVariantResponse.class);
+    }
+
+    /**
+     * Fetches Stock records from the Stock service without blocking.
+     * @param urlParams pagination and tenant parameters
+     * @param stockRequest stock search request payload
+     * @return future of the {@link StockBulkResponse}, completing with {@code null} if the body is empty
+     */
+    public CompletableFuture<StockBulkResponse> fetchAllStocksAsync(URLParams urlParams, StockSearchRequest stockRequest) {
+        return search(DownstreamService.STOCK, apiIntegrationService.formUri(urlParams, stockSearchUrl),
+                stockRequest, StockBulkResponse.class);
+    }
+
+    /**
+     * Fetches StockReconciliation records from the Stock Reconciliation service without blocking.
+     * @param urlParams pagination and tenant parameters
+     * @param stockReconciliationSearchRequest stock reconciliation search request payload
+     * @return future of the {@link StockReconciliationBulkResponse}, completing with {@code null} if the body is empty
+     */
+    public CompletableFuture<StockReconciliationBulkResponse> fetchAllStockReconciliationAsync(
+            URLParams urlParams, StockReconciliationSearchRequest stockReconciliationSearchRequest) {
+        return search(DownstreamService.STOCK, apiIntegrationService.formUri(urlParams, stockReconciliationUrl),
+                stockReconciliationSearchRequest, StockReconciliationBulkResponse.class);
+    }
+
+    /**
+     * Fetches Boundary relationship records from the Boundary service without blocking.
+     * @param boundaryRelationshipSearchCriteria boundary search criteria
+     * @param requestInfo request metadata
+     * @return future of the {@link BoundarySearchResponse}, completing with {@code null} if the body is empty
+     */
+    public CompletableFuture<BoundarySearchResponse> fetchAllBoundariesAsync(
+            BoundaryRelationshipSearchCriteria boundaryRelationshipSearchCriteria, RequestInfo requestInfo) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("RequestInfo", requestInfo);
+        return search(DownstreamService.BOUNDARY,
+                apiIntegrationService.formBoundaryUri(boundaryRelationshipSearchCriteria, boundaryRelationshipUrl),
+                body, BoundarySearchResponse.class);
+    }
+
+    /**
+     * Sends a POST request to an external service endpoint without blocking. The request is
+     * treated as a write: it is resent only if DIGIT cannot have processed it.
+     * @param service DIGIT service whose in-flight limit applies
+     * @param requestBody request payload
+     * @param url target service URL
+     * @param <T> request payload type
+     * @return future of the {@link ResponseInfo}
+     */
+    public <T> CompletableFuture<ResponseInfo> sendRequestToAPIAsync(DownstreamService service, T requestBody, String url) {
+        URI uri = URI.create(url);
+        return downstreamRetry.writeAsync(service, () -> post(service, uri, requestBody, ResponseInfo.class));
+    }
+
+    private <R> CompletableFuture<R> search(DownstreamService service, URI uri, Object requestBody, Class<R> responseType) {
+        return searchCoalescer.coalesceAsync(service, uri, requestBody,
+                () -> downstreamRetry.searchAsync(service, () -> post(service, uri, requestBody, responseType)));
+    }
+
+    private <R> CompletableFuture<R> post(DownstreamService service, URI uri, Object requestBody, Class<R> responseType) {
+        byte[] payload;
+        try {
+            RequestDeadline.check(service.key() + " call");
+            payload = objectMapper.writeValueAsBytes(requestBody);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(RequestDeadline.cap(readTimeout.toMillis())))
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(payload))
+                .build();
+        // a call queued by the guard is dropped if its request expires before it starts
+        RequestDeadline deadline = RequestDeadline.current();
+        return downstreamGuard.executeAsync(service, () -> deadline != null && deadline.isExpired()
+                ? CompletableFuture.failedFuture(new DeadlineExceededException(service.key() + " call cancelled: " + deadline.reason()))
+                : httpClients.get(service).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                        .handle((response, error) -> {
+                            if (error != null) throw ioFailure(service, uri, error);
+                            return decode(service, uri, response, responseType);
+                        }));
+    }
+
+    // I/O errors surface as the blocking client's ResourceAccessException, so retries treat both alike
+    private static RuntimeException ioFailure(DownstreamService service, URI uri, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof IOException ioException) {
+            return new ResourceAccessException("I/O error on " + service.key() + " call to " + uri + ": "
+                    + ioException.getMessage(), ioException);
+        }
+        return cause instanceof RuntimeException runtimeException ? runtimeException : new CompletionException(cause);
+    }
+
+    private <R> R decode(DownstreamService service, URI uri, HttpResponse<byte[]> response, Class<R> responseType) {
+        HttpStatusCode status = HttpStatusCode.valueOf(response.statusCode());
+        byte[] body = response.body();
+        if (status.isError()) {
+            throw new RestClientResponseException(status.value() + " from " + service.key() + " service for URI: " + uri,
+                    status, "", null, body, StandardCharsets.UTF_8);
+        }
+        if (body == null || body.length == 0) {
+            logger.warn("Empty response body received from {} service for URI: {}", service.key(), uri);
+            return null;
+        }
+        try {
+            return objectMapper.readValue(body, responseType);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + responseType.getSimpleName() + " from " + uri, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (ioExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+}
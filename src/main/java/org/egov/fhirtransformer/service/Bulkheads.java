@@ -0,0 +1,174 @@
+package org.egov.fhirtransformer.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.egov.fhirtransformer.common.BulkheadFullException;
+import org.egov.fhirtransformer.utils.RequestDeadline;
+import org.egov.fhirtransformer.utils.TenantContext;
+import org.egov.fhirtransformer.utils.WeightedFairQueue;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs controller work on one executor per workload, so a burst of bulk ingestion cannot take
+ * the threads that serve reads and validation. The request thread returns to Tomcat as soon as
+ * the work is handed over and the response is completed asynchronously.
+ *
+ * <p>Each lane reports the gauges {@code bulkhead.active} and {@code bulkhead.queued}, the timer
+ * {@code bulkhead.queue.wait} and the counters {@code bulkhead.rejected} and {@code bulkhead.expired}
+ * (tag bulkhead). A full lane rejects with {@link BulkheadFullException} instead of blocking. Work
+ * whose request timed out or was disconnected while it waited for a thread is not started; it
+ * completes with {@link org.egov.fhirtransformer.common.DeadlineExceededException}.
+ *
+ * <p>Ingestion is queued per tenant in a {@link WeightedFairQueue} in front of its executor, with
+ * the bundle's entry count as cost, so one tenant's bulk load cannot starve the others. The
+ * timer {@code bulkhead.tenant.wait} (tags bulkhead, tenant) reports how long each tenant waits.
+ */
+@Service
+public class Bulkheads {
+
+    public enum Lane {
+        READ("read"), VALIDATION("validation"), INGESTION("ingestion");
+
+        private final String key;
+
+        Lane(String key) {
+            this.key = key;
+        }
+
+        public String key() {
+            return key;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Lane, AsyncTaskExecutor> executors = new EnumMap<>(Lane.class);
+    private final Map<Lane, AtomicInteger> active = new EnumMap<>(Lane.class);
+    private final Map<Lane, AtomicInteger> queued = new EnumMap<>(Lane.class);
+    private final Map<Lane, WeightedFairQueue> fairQueues = new EnumMap<>(Lane.class);
+    private final TenantRouter tenantRouter;
+
+    public Bulkheads(@Qualifier("readExecutor") AsyncTaskExecutor readExecutor,
+                     @Qualifier("validationExecutor") AsyncTaskExecutor validationExecutor,
+                     @Qualifier("ingestExecutor") AsyncTaskExecutor ingestExecutor,
+                     @Value("${bulkhead.ingest.pool-size:16}") int ingestPoolSize,
+                     @Value("${bulkhead.ingest.queue-capacity:64}") int ingestQueueCapacity,
+                     TenantRouter tenantRouter,
+                     MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.tenantRouter = tenantRouter;
+        fairQueues.put(Lane.INGESTION, new WeightedFairQueue(ingestExecutor, ingestPoolSize, ingestQueueCapacity));
+        executors.put(Lane.READ, readExecutor);
+        executors.put(Lane.VALIDATION, validationExecutor);
+        executors.put(Lane.INGESTION, ingestExecutor);
+        for (Lane lane : Lane.values()) {
+            active.put(lane, new AtomicInteger());
+            queued.put(lane, new AtomicInteger());
+            Gauge.builder("bulkhead.active", active.get(lane), AtomicInteger::get)
+                    .tag("bulkhead", lane.key()).description("Requests running in the bulkhead").register(meterRegistry);
+            Gauge.builder("bulkhead.queued", queued.get(lane), AtomicInteger::get)
+                    .tag("bulkhead", lane.key()).description("Requests waiting for a bulkhead thread").register(meterRegistry);
+        }
+    }
+
+    /**
+     * Runs the task on the lane's executor.
+     * @param lane workload the request belongs to
+     * @param task controller work; checked exceptions complete the future exceptionally
+     * @return future completed with the task's result
+     * @throws BulkheadFullException if the lane cannot take the task
+     */
+    public <T> CompletableFuture<T> submit(Lane lane, Callable<T> task) {
+        AtomicInteger laneQueued = queued.get(lane);
+        long submittedAt = System.nanoTime();
+        laneQueued.incrementAndGet();
+        try {
+            return CompletableFuture.supplyAsync(() -> run(lane, submittedAt, task), executors.get(lane));
+        } catch (RejectedExecutionException e) {
+            laneQueued.decrementAndGet();
+            throw rejected(lane);
+        }
+    }
+
+    /**
+     * Runs the task on the lane's executor when it is the tenant's turn; lanes without a fair
+     * queue behave like {@link #submit(Lane, Callable)}. The task runs bound to the tenant.
+     * @param lane workload the request belongs to
+     * @param tenantId tenant the work is accounted to
+     * @param cost relative cost of the task, e.g. its number of bundle entries
+     * @param task controller work; checked exceptions complete the future exceptionally
+     * @return future completed with the task's result
+     * @throws BulkheadFullException if the lane cannot take the task
+     */
+    public <T> CompletableFuture<T> submit(Lane lane, String tenantId, long cost, Callable<T> task) {
+        WeightedFairQueue fairQueue = fairQueues.get(lane);
+        if (fairQueue == null) return submit(lane, () -> {
+            try (RequestDeadline.Scope ignored = TenantContext.bind(tenantId)) {
+                return task.call();
+            }
+        });
+        AtomicInteger laneQueued = queued.get(lane);
+        long submittedAt = System.nanoTime();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        // the queue starts the task from whichever thread frees a slot, so bind the caller's deadline here
+        Runnable work = RequestDeadline.propagate(() -> {
+            meterRegistry.timer("bulkhead.tenant.wait", "bulkhead", lane.key(), "tenant", tenantId)
+                    .record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+            try (RequestDeadline.Scope ignored = TenantContext.bind(tenantId)) {
+                future.complete(run(lane, submittedAt, task));
+            } catch (CompletionException e) {
+                future.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        laneQueued.incrementAndGet();
+        boolean taken = fairQueue.offer(tenantId, tenantRouter.weight(tenantId), cost, work, () -> {
+            laneQueued.decrementAndGet();
+            future.completeExceptionally(rejected(lane));
+        });
+        if (!taken) {
+            laneQueued.decrementAndGet();
+            throw rejected(lane);
+        }
+        return future;
+    }
+
+    private <T> T run(Lane lane, long submittedAt, Callable<T> task) {
+        AtomicInteger laneActive = active.get(lane);
+        queued.get(lane).decrementAndGet();
+        laneActive.incrementAndGet();
+        meterRegistry.timer("bulkhead.queue.wait", "bulkhead", lane.key())
+                .record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+        try {
+            RequestDeadline deadline = RequestDeadline.current();
+            if (deadline != null && deadline.isExpired()) {
+                // nobody waits for the result any more
+                meterRegistry.counter("bulkhead.expired", "bulkhead", lane.key()).increment();
+                RequestDeadline.check("Queued " + lane.key() + " work");
+            }
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            laneActive.decrementAndGet();
+        }
+    }
+
+    private BulkheadFullException rejected(Lane lane) {
+        meterRegistry.counter("bulkhead.rejected", "bulkhead", lane.key()).increment();
+        return new BulkheadFullException("The " + lane.key() + " bulkhead is full, retry later");
+    }
+}
@@ -0,0 +1,95 @@
+package org.egov.fhirtransformer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.egov.fhirtransformer.common.DownstreamService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends built DIGIT create/update requests either over HTTP (default) or, per entity type,
+ * straight to the DIGIT persister topics.
+ *
+ * <p>With {@code digit.write.<entity>.mode=kafka} the bulk request ({@code StockBulkRequest},
+ * {@code FacilityBulkRequest}, ...) is published as one record to
+ * {@code digit.write.<entity>.create-topic} or {@code update-topic}, keyed by tenant so that a
+ * tenant's records stay in one partition. Each bulk request is one batch: the write returns once
+ * Kafka acknowledged it, or fails after {@code digit.write.kafka.ack-timeout-ms}. The DIGIT
+ * service's own validation and enrichment are skipped in this mode, so it is meant for bulk
+ * migrations of records that are already complete.
+ *
+ * <p>Entity keys: stock, stock-reconciliation, facility, product-variant.
+ */
+@Service
+public class DigitWriteService {
+
+    public static final String CREATE = "create";
+    public static final String UPDATE = "update";
+
+    private final ApiIntegrationService apiIntegrationService;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final Environment env;
+    private final MeterRegistry meterRegistry;
+    private final long ackTimeoutMs;
+
+    public DigitWriteService(ApiIntegrationService apiIntegrationService, KafkaTemplate<String, String> kafkaTemplate,
+                             ObjectMapper objectMapper, Environment env, MeterRegistry meterRegistry,
+                             @Value("${digit.write.kafka.ack-timeout-ms:10000}") long ackTimeoutMs) {
+        this.apiIntegrationService = apiIntegrationService;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.env = env;
+        this.meterRegistry = meterRegistry;
+        this.ackTimeoutMs = ackTimeoutMs;
+    }
+
+    /**
+     * Writes one bulk request.
+     * @param entity entity key, e.g. "stock"
+     * @param operation {@link #CREATE} or {@link #UPDATE}
+     * @param service DIGIT service used in HTTP mode
+     * @param requestBody built DIGIT bulk request
+     * @param url DIGIT create or update URL used in HTTP mode
+     * @param tenantId tenant of the records; the Kafka partition key
+     * @throws Exception if the request was not accepted
+     */
+    public <T> void write(String entity, String operation, DownstreamService service, T requestBody,
+                          String url, String tenantId) throws Exception {
+        if (!"kafka".equalsIgnoreCase(env.getProperty("digit.write." + entity + ".mode", "http"))) {
+            apiIntegrationService.sendRequestToAPI(service, requestBody, url);
+            return;
+        }
+        String topic = env.getProperty("digit.write." + entity + "." + operation + "-topic");
+        if (topic == null || topic.isBlank()) {
+            throw new IllegalStateException("No persister topic configured for " + entity + " " + operation);
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            kafkaTemplate.send(topic, tenantId, objectMapper.writeValueAsString(requestBody))
+                    .get(ackTimeoutMs, TimeUnit.MILLISECONDS);
+            count(entity, operation, "acked");
+        } catch (ExecutionException e) {
+            count(entity, operation, "failed");
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new Exception("Publishing " + entity + " " + operation + " to " + topic + " failed: " + cause.getMessage(), cause);
+        } catch (Exception e) {
+            count(entity, operation, "failed");
+            throw new Exception("Publishing " + entity + " " + operation + " to " + topic + " failed: " + e.getMessage(), e);
+        } finally {
+            sample.stop(Timer.builder("digit.write.kafka.ack").tag("entity", entity).tag("operation", operation)
+                    .register(meterRegistry));
+        }
+    }
+
+    private void count(String entity, String operation, String outcome) {
+        Counter.builder("digit.write.kafka.batches").tag("entity", entity).tag("operation", operation)
+                .tag("outcome", outcome).register(meterRegistry).increment();
+    }
+}
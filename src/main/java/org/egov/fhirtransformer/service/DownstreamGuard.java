@@ -0,0 +1,205 @@
+package org.egov.fhirtransformer.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.egov.fhirtransformer.common.DeadlineExceededException;
+import org.egov.fhirtransformer.common.DownstreamService;
+import org.egov.fhirtransformer.common.DownstreamUnavailableException;
+import org.egov.fhirtransformer.utils.AdaptiveConcurrencyLimiter;
+import org.egov.fhirtransformer.utils.AdaptiveConcurrencyLimiter.Outcome;
+import org.egov.fhirtransformer.utils.CircuitBreaker;
+import org.egov.fhirtransformer.utils.RequestDeadline;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientResponseException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker plus adaptive concurrency limit per {@link DownstreamService}.
+ *
+ * <p>Every DIGIT call, blocking or async, passes through the guard of its service. When a
+ * service slows down its limit shrinks and excess calls queue briefly and are then rejected
+ * with {@link DownstreamUnavailableException}; when it keeps failing its breaker opens and
+ * calls fail fast. Calls to the other services are unaffected. A call that fails because the
+ * request's own {@link RequestDeadline} ran out, including a timeout shortened to the remaining
+ * budget, counts neither as a failure nor as a success.
+ *
+ * <p>Settings: {@code downstream.guard.<property>}, overridable per service with
+ * {@code downstream.guard.<service>.<property>}.
+ */
+@Service
+public class DownstreamGuard {
+
+    /**
+     * A blocking downstream call.
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+        T execute() throws IOException;
+    }
+
+    private final Map<DownstreamService, CircuitBreaker> breakers = new EnumMap<>(DownstreamService.class);
+    private final Map<DownstreamService, AdaptiveConcurrencyLimiter> limiters = new EnumMap<>(DownstreamService.class);
+    private final long queueTimeoutMs;
+
+    public DownstreamGuard(Environment env, MeterRegistry meterRegistry,
+                           @Value("${downstream.guard.queue-timeout-ms:1000}") long queueTimeoutMs) {
+        this.queueTimeoutMs = queueTimeoutMs;
+        for (DownstreamService service : DownstreamService.values()) {
+            CircuitBreaker breaker = new CircuitBreaker(
+                    setting(env, service, "window-size", Integer.class, 50),
+                    setting(env, service, "minimum-calls", Integer.class, 20),
+                    setting(env, service, "failure-rate-threshold", Double.class, 0.5),
+                    setting(env, service, "open-ms", Long.class, 10000L),
+                    setting(env, service, "half-open-calls", Integer.class, 5));
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                    setting(env, service, "initial-limit", Integer.class, 20),
+                    setting(env, service, "min-limit", Integer.class, 2),
+                    setting(env, service, "max-limit", Integer.class, 200),
+                    setting(env, service, "latency-threshold-ms", Long.class, 2000L),
+                    setting(env, service, "backoff-ratio", Double.class, 0.9),
+                    setting(env, service, "max-queue", Integer.class, 100));
+            breakers.put(service, breaker);
+            limiters.put(service, limiter);
+
+            Gauge.builder("downstream.guard.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                    .tag("service", service.key()).register(meterRegistry);
+            Gauge.builder("downstream.guard.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                    .tag("service", service.key()).register(meterRegistry);
+            Gauge.builder("downstream.guard.queued", limiter, AdaptiveConcurrencyLimiter::getQueued)
+                    .tag("service", service.key()).register(meterRegistry);
+            Gauge.builder("downstream.guard.rejected", limiter, AdaptiveConcurrencyLimiter::getRejected)
+                    .tag("service", service.key()).register(meterRegistry);
+            Gauge.builder("downstream.guard.breaker.open", breaker, b -> b.getState() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                    .tag("service", service.key()).register(meterRegistry);
+        }
+    }
+
+    /**
+     * Runs a blocking call under the service's breaker and limit.
+     * @param service DIGIT service being called
+     * @param call the call; a returned 5xx or 429 status counts as a failure
+     * @return the call's response
+     * @throws DownstreamUnavailableException if the breaker is open or no permit is available in time
+     * @throws IOException if the call fails
+     */
+    public ClientHttpResponse execute(DownstreamService service, Call<ClientHttpResponse> call) throws IOException {
+        CircuitBreaker breaker = breakers.get(service);
+        if (!breaker.tryAcquire()) {
+            throw new DownstreamUnavailableException(service, "Circuit open for " + service.key() + " service");
+        }
+        AdaptiveConcurrencyLimiter limiter = limiters.get(service);
+        try {
+            if (!limiter.acquire(queueTimeoutMs)) {
+                breaker.onIgnored();
+                throw new DownstreamUnavailableException(service, "Concurrency limit reached for " + service.key() + " service");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            breaker.onIgnored();
+            throw new InterruptedIOException("Interrupted waiting for " + service.key() + " service");
+        }
+
+        RequestDeadline deadline = RequestDeadline.current();
+        long start = System.nanoTime();
+        Outcome outcome = Outcome.DROPPED;
+        try {
+            ClientHttpResponse response = call.execute();
+            outcome = isOverload(response.getStatusCode()) ? Outcome.DROPPED : Outcome.SUCCESS;
+            return response;
+        } catch (IOException | RuntimeException e) {
+            outcome = classify(e, deadline);
+            throw e;
+        } finally {
+            limiter.release(System.nanoTime() - start, outcome);
+            record(breaker, outcome);
+        }
+    }
+
+    /**
+     * Runs an async call under the service's breaker and limit. Calls over the limit are queued
+     * without blocking a thread, for up to {@code downstream.guard.queue-timeout-ms}.
+     * @param service DIGIT service being called
+     * @param call starts the call
+     * @return the call's result; completes with {@link DownstreamUnavailableException} if rejected
+     */
+    public <R> CompletableFuture<R> executeAsync(DownstreamService service, Supplier<CompletableFuture<R>> call) {
+        CircuitBreaker breaker = breakers.get(service);
+        if (!breaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(
+                    new DownstreamUnavailableException(service, "Circuit open for " + service.key() + " service"));
+        }
+        RequestDeadline deadline = RequestDeadline.current();
+        CompletableFuture<R> future = limiters.get(service).submit(call, error -> classify(error, deadline), queueTimeoutMs,
+                () -> new DownstreamUnavailableException(service, "Concurrency limit reached for " + service.key() + " service"));
+        if (future == null) {
+            breaker.onIgnored();
+            return CompletableFuture.failedFuture(
+                    new DownstreamUnavailableException(service, "Concurrency limit reached for " + service.key() + " service"));
+        }
+        return future.whenComplete((value, error) -> record(breaker, classify(error, deadline)));
+    }
+
+    /**
+     * @return per-service breaker and limiter state, for operators
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> snapshot = new LinkedHashMap<>();
+        for (DownstreamService service : DownstreamService.values()) {
+            CircuitBreaker breaker = breakers.get(service);
+            AdaptiveConcurrencyLimiter limiter = limiters.get(service);
+            Map<String, Object> state = new LinkedHashMap<>();
+            state.put("breaker", breaker.getState().name());
+            state.put("failureRate", breaker.getFailureRate());
+            state.put("limit", limiter.getLimit());
+            state.put("inFlight", limiter.getInFlight());
+            state.put("queued", limiter.getQueued());
+            state.put("rejected", limiter.getRejected());
+            snapshot.put(service.key(), state);
+        }
+        return snapshot;
+    }
+
+    // 4xx other than 429 means our request was wrong, not that the service is struggling
+    private static boolean isOverload(HttpStatusCode status) {
+        return status.is5xxServerError() || status.value() == 429;
+    }
+
+    // Failures of our own making (rejected by the guard, or out of request budget) say nothing about the service
+    private static Outcome classify(Throwable error, RequestDeadline deadline) {
+        if (error == null) return Outcome.SUCCESS;
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof RestClientResponseException responseException) {
+            return isOverload(responseException.getStatusCode()) ? Outcome.DROPPED : Outcome.SUCCESS;
+        }
+        if (cause instanceof DownstreamUnavailableException || cause instanceof DeadlineExceededException) {
+            return Outcome.IGNORED;
+        }
+        // the timeout was capped to the remaining budget, or the request was cancelled
+        if (deadline != null && deadline.isExpired()) return Outcome.IGNORED;
+        return Outcome.DROPPED;
+    }
+
+    private static void record(CircuitBreaker breaker, Outcome outcome) {
+        switch (outcome) {
+            case SUCCESS -> breaker.onSuccess();
+            case DROPPED -> breaker.onFailure();
+            case IGNORED -> breaker.onIgnored();
+        }
+    }
+
+    private static <V> V setting(Environment env, DownstreamService service, String name, Class<V> type, V defaultValue) {
+        V shared = env.getProperty("downstream.guard." + name, type, defaultValue);
+        return env.getProperty("downstream.guard." + service.key() + "." + name, type, shared);
+    }
+}
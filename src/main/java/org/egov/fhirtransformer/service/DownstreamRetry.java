@@ -0,0 +1,354 @@
+package org.egov.fhirtransformer.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.egov.fhirtransformer.common.DownstreamService;
+import org.egov.fhirtransformer.utils.LatencyTracker;
+import org.egov.fhirtransformer.utils.RequestDeadline;
+import org.egov.fhirtransformer.utils.RetryBudget;
+import org.egov.fhirtransformer.utils.TenantContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Retry and hedging policy for the DIGIT calls of {@link ApiIntegrationService} and
+ * {@link AsyncApiIntegrationService}.
+ *
+ * <p>Searches are idempotent: they are retried on 429, 502, 503, 504 and I/O errors, and may be
+ * hedged: the first attempt runs on the hedge pool, and once it has taken longer than the p95
+ * latency of the service a second copy is sent there too. Whichever answers first wins, and the
+ * caller waits no longer than its {@link RequestDeadline}. When the pool is full the search runs on
+ * the calling thread without a hedge. Writes are retried only when DIGIT cannot have processed
+ * them: a refused connection or a 429.
+ *
+ * <p>Retries wait a random time up to {@code base-delay-ms * 2^attempt} (capped at
+ * {@code max-delay-ms}) and, together with hedges, are limited by a {@link RetryBudget} per
+ * service, so a failing service does not receive a multiple of its normal traffic. No retry is
+ * made once the wait would run past the request's {@link RequestDeadline}. Non-blocking calls
+ * follow the same policy; their retries wait on a timer instead of a thread, and they are not
+ * hedged.
+ *
+ * <p>Settings: {@code downstream.retry.<property>} and {@code downstream.hedge.<property>},
+ * overridable per service with {@code downstream.retry.<service>.<property>}.
+ */
+@Service
+public class DownstreamRetry {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownstreamRetry.class);
+
+    private final Map<DownstreamService, RetryBudget> budgets = new EnumMap<>(DownstreamService.class);
+    private final Map<DownstreamService, LatencyTracker> latencies = new EnumMap<>(DownstreamService.class);
+    private final Map<DownstreamService, Integer> maxAttempts = new EnumMap<>(DownstreamService.class);
+    private final Map<DownstreamService, Counter> retries = new EnumMap<>(DownstreamService.class);
+    private final Map<DownstreamService, Counter> exhausted = new EnumMap<>(DownstreamService.class);
+    private final Map<DownstreamService, Counter> hedges = new EnumMap<>(DownstreamService.class);
+    private final Map<DownstreamService, Counter> hedgeWins = new EnumMap<>(DownstreamService.class);
+    private final Map<DownstreamService, Counter> hedgeRejected = new EnumMap<>(DownstreamService.class);
+    private final ScheduledExecutorService hedgeTimer = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("hedge-timer-"));
+    private final Executor hedgeExecutor;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final boolean hedgeEnabled;
+    private final double hedgePercentile;
+    private final int hedgeMinSamples;
+
+    public DownstreamRetry(Environment env, MeterRegistry meterRegistry,
+                           @Qualifier("hedgeExecutor") Executor hedgeExecutor,
+                           @Value("${downstream.retry.base-delay-ms:50}") long baseDelayMs,
+                           @Value("${downstream.retry.max-delay-ms:1000}") long maxDelayMs,
+                           @Value("${downstream.hedge.enabled:false}") boolean hedgeEnabled,
+                           @Value("${downstream.hedge.percentile:0.95}") double hedgePercentile,
+                           @Value("${downstream.hedge.min-samples:100}") int hedgeMinSamples) {
+        this.hedgeExecutor = hedgeExecutor;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeMinSamples = hedgeMinSamples;
+        for (DownstreamService service : DownstreamService.values()) {
+            RetryBudget budget = new RetryBudget(
+                    setting(env, service, "budget-ratio", Double.class, 0.1),
+                    setting(env, service, "budget-max-tokens", Integer.class, 20));
+            budgets.put(service, budget);
+            latencies.put(service, new LatencyTracker(1000));
+            maxAttempts.put(service, setting(env, service, "max-attempts", Integer.class, 3));
+            retries.put(service, Counter.builder("downstream.retry.attempts")
+                    .tag("service", service.key()).register(meterRegistry));
+            exhausted.put(service, Counter.builder("downstream.retry.budget.exhausted")
+                    .tag("service", service.key()).register(meterRegistry));
+            hedges.put(service, Counter.builder("downstream.hedge.sent")
+                    .tag("service", service.key()).register(meterRegistry));
+            hedgeWins.put(service, Counter.builder("downstream.hedge.won")
+                    .tag("service", service.key()).register(meterRegistry));
+            hedgeRejected.put(service, Counter.builder("downstream.hedge.rejected")
+                    .tag("service", service.key()).register(meterRegistry));
+            Gauge.builder("downstream.retry.budget.tokens", budget, RetryBudget::getTokens)
+                    .tag("service", service.key()).register(meterRegistry);
+        }
+    }
+
+    /**
+     * Runs an idempotent search, retrying transient failures and hedging slow attempts.
+     * @param service DIGIT service called
+     * @param call the search
+     * @return the search result
+     */
+    public <R> R search(DownstreamService service, Supplier<R> call) {
+        return execute(service, true, () -> hedged(service, call));
+    }
+
+    /**
+     * Runs a write, retrying only failures that prove DIGIT did not process it.
+     * @param service DIGIT service called
+     * @param call the write
+     * @return the write result
+     */
+    public <R> R write(DownstreamService service, Supplier<R> call) {
+        return execute(service, false, call);
+    }
+
+    /**
+     * Non-blocking variant of {@link #search}. Retries are scheduled, not slept; searches are not hedged.
+     * @param call starts the search
+     * @return future of the search result
+     */
+    public <R> CompletableFuture<R> searchAsync(DownstreamService service, Supplier<CompletableFuture<R>> call) {
+        return executeAsync(service, true, call);
+    }
+
+    /**
+     * Non-blocking variant of {@link #write}.
+     * @param call starts the write
+     * @return future of the write result
+     */
+    public <R> CompletableFuture<R> writeAsync(DownstreamService service, Supplier<CompletableFuture<R>> call) {
+        return executeAsync(service, false, call);
+    }
+
+    private <R> R execute(DownstreamService service, boolean idempotent, Supplier<R> call) {
+        budgets.get(service).deposit();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                long delay = retryDelay(service, idempotent, attempt, e, RequestDeadline.current());
+                if (delay < 0) throw e;
+                sleep(delay, e);
+            }
+        }
+    }
+
+    private <R> CompletableFuture<R> executeAsync(DownstreamService service, boolean idempotent, Supplier<CompletableFuture<R>> call) {
+        budgets.get(service).deposit();
+        CompletableFuture<R> result = new CompletableFuture<>();
+        attemptAsync(service, idempotent, call, 1, RequestDeadline.current(), TenantContext.current(), result);
+        return result;
+    }
+
+    // Starts one attempt; a retry runs on the delay timer under the caller's deadline and tenant
+    private <R> void attemptAsync(DownstreamService service, boolean idempotent, Supplier<CompletableFuture<R>> call,
+                                  int attempt, RequestDeadline deadline, String tenantId, CompletableFuture<R> result) {
+        CompletableFuture<R> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            long delay = cause instanceof RuntimeException e ? retryDelay(service, idempotent, attempt, e, deadline) : -1;
+            if (delay < 0) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+                try (RequestDeadline.Scope d = deadline != null ? deadline.bind() : () -> { };
+                     RequestDeadline.Scope t = TenantContext.bind(tenantId)) {
+                    attemptAsync(service, idempotent, call, attempt + 1, deadline, tenantId, result);
+                }
+            });
+        });
+    }
+
+    // Delay before the next attempt, or -1 if the failure is not retried
+    private long retryDelay(DownstreamService service, boolean idempotent, int attempt, RuntimeException e,
+                            RequestDeadline deadline) {
+        if (attempt >= maxAttempts.get(service) || !isRetryable(e, idempotent)) return -1;
+        if (!budgets.get(service).tryWithdraw()) {
+            exhausted.get(service).increment();
+            return -1;
+        }
+        long delay = ThreadLocalRandom.current().nextLong(backoffCap(attempt) + 1);
+        // a retry that cannot finish within the request's deadline is not worth sending
+        if (deadline != null && deadline.remainingMillis() <= delay) return -1;
+        retries.get(service).increment();
+        logger.warn("Retrying {} call in {} ms after attempt {} failed: {}", service.key(), delay, attempt, e.getMessage());
+        return delay;
+    }
+
+    // Runs the first attempt on the hedge pool and sends a second copy once it is slower than the
+    // service's hedge percentile; the first successful answer is returned. The caller waits no
+    // longer than its deadline, and a full pool runs the search on the calling thread, unhedged.
+    private <R> R hedged(DownstreamService service, Supplier<R> call) {
+        LatencyTracker tracker = latencies.get(service);
+        long hedgeAfter = hedgeEnabled ? tracker.percentile(hedgePercentile, hedgeMinSamples) : -1;
+        if (hedgeAfter < 0) {
+            return timed(tracker, call);
+        }
+        CompletableFuture<R> primary = new CompletableFuture<>();
+        try {
+            hedgeExecutor.execute(() -> complete(primary, tracker, call));
+        } catch (RejectedExecutionException e) {
+            hedgeRejected.get(service).increment();
+            return timed(tracker, call);
+        }
+        CompletableFuture<R> hedge = new CompletableFuture<>();
+        // the timer thread has no request context; carry it so the hedge pool passes it on
+        ScheduledFuture<?> trigger = hedgeTimer.schedule(
+                RequestDeadline.propagate(TenantContext.propagate(() -> sendHedge(service, tracker, call, primary, hedge))),
+                hedgeAfter, TimeUnit.NANOSECONDS);
+        // a first attempt that answers before the hedge is due needs no copy
+        primary.whenComplete((value, error) -> {
+            if (trigger.cancel(false)) hedge.cancel(false);
+        });
+        try {
+            return RequestDeadline.await(firstSuccess(service, primary, hedge), service.key() + " search");
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        } finally {
+            trigger.cancel(false);
+        }
+    }
+
+    // Completes with the first successful result, or with the primary's failure once both failed
+    private <R> CompletableFuture<R> firstSuccess(DownstreamService service, CompletableFuture<R> primary, CompletableFuture<R> hedge) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        primary.whenComplete((value, error) -> {
+            if (error == null) result.complete(value);
+            else hedge.whenComplete((v, e) -> { if (e != null) result.completeExceptionally(error); });
+        });
+        hedge.whenComplete((value, error) -> {
+            if (error == null && result.complete(value)) hedgeWins.get(service).increment();
+            else if (error != null) primary.whenComplete((v, e) -> { if (e != null) result.completeExceptionally(e); });
+        });
+        return result;
+    }
+
+    // Sends the second copy unless the first attempt has answered; the future fails if it is not sent
+    private <R> void sendHedge(DownstreamService service, LatencyTracker tracker, Supplier<R> call,
+                               CompletableFuture<R> primary, CompletableFuture<R> hedge) {
+        if (primary.isDone()) {
+            // a failed first attempt is left to the retry policy, which checks the budget and backoff
+            hedge.cancel(false);
+            return;
+        }
+        try {
+            hedgeExecutor.execute(() -> {
+                if (!budgets.get(service).tryWithdraw()) {
+                    exhausted.get(service).increment();
+                    hedge.cancel(false);
+                    return;
+                }
+                hedges.get(service).increment();
+                complete(hedge, tracker, call);
+            });
+        } catch (RejectedExecutionException e) {
+            hedgeRejected.get(service).increment();
+            hedge.completeExceptionally(e);
+        }
+    }
+
+    private static <R> void complete(CompletableFuture<R> future, LatencyTracker tracker, Supplier<R> call) {
+        try {
+            future.complete(timed(tracker, call));
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        }
+    }
+
+    // Failed calls are recorded too: a service that times out must raise its percentile, not
+    // leave it at the latency of the calls that happened to succeed
+    private static <R> R timed(LatencyTracker tracker, Supplier<R> call) {
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            tracker.record(System.nanoTime() - start);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        hedgeTimer.shutdownNow();
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        return cause instanceof RuntimeException runtime ? runtime : new IllegalStateException(cause);
+    }
+
+    private long backoffCap(int attempt) {
+        return Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20));
+    }
+
+    private static void sleep(long delayMs, RuntimeException cause) {
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    // Searches: gateway errors, throttling and I/O errors. Writes: only a refused connection or 429.
+    private static boolean isRetryable(Throwable error, boolean idempotent) {
+        if (error instanceof RestClientResponseException responseException) {
+            int status = responseException.getStatusCode().value();
+            if (status == 429) return true;
+            return idempotent && (status == 502 || status == 503 || status == 504);
+        }
+        if (error instanceof ResourceAccessException) {
+            return idempotent || neverSent(error);
+        }
+        return false;
+    }
+
+    private static boolean neverSent(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException) return true;
+        }
+        return false;
+    }
+
+    private static <V> V setting(Environment env, DownstreamService service, String name, Class<V> type, V defaultValue) {
+        V shared = env.getProperty("downstream.retry." + name, type, defaultValue);
+        return env.getProperty("downstream.retry." + service.key() + "." + name, type, shared);
+    }
+}
@@ -0,0 +1,133 @@
+package org.egov.fhirtransformer.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.egov.common.contract.request.RequestInfo;
+import org.egov.fhirtransformer.mapping.requestBuilder.GenericCreateOrUpdateService.ThrowingFunction;
+import org.egov.fhirtransformer.utils.HashUtils;
+import org.egov.fhirtransformer.utils.MicroBatcher;
+import org.egov.fhirtransformer.utils.RequestDeadline;
+import org.egov.fhirtransformer.utils.TenantContext;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Batches existence checks of concurrent ingestions (DataLoader pattern).
+ *
+ * <p>Ids looked up for the same entity type, tenant and credentials within
+ * {@code existence.batch.window-ms}, or until {@code existence.batch.max-ids} are pending, are
+ * combined into one DIGIT search. Each caller gets back only the existing records of its own
+ * request, and waits for them no longer than its {@link RequestDeadline}.
+ */
+@Service
+public class ExistenceBatchLoader {
+
+    /**
+     * Search context of the first caller of a batch.
+     */
+    private record Lookup(RequestInfo requestInfo, ThrowingFunction<List<String>, Map<String, Object>> searchFn, String tenantId) {
+    }
+
+    private record Group(String entityType, String credentials, String tenantId) {
+    }
+
+    private final Map<String, MicroBatcher<Group, Lookup, String, Map<String, Object>>> batchers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> lookups = new ConcurrentHashMap<>();
+    private final Map<String, Counter> searches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("existence-batch-"));
+    private final MeterRegistry meterRegistry;
+    private final TenantRouter tenantRouter;
+    private final Executor batchExecutor;
+    private final boolean enabled;
+    private final long windowMs;
+    private final int maxIds;
+
+    public ExistenceBatchLoader(MeterRegistry meterRegistry,
+                                TenantRouter tenantRouter,
+                                @Qualifier("batchExecutor") Executor batchExecutor,
+                                @Value("${existence.batch.enabled:true}") boolean enabled,
+                                @Value("${existence.batch.window-ms:5}") long windowMs,
+                                @Value("${existence.batch.max-ids:500}") int maxIds) {
+        this.meterRegistry = meterRegistry;
+        this.tenantRouter = tenantRouter;
+        this.batchExecutor = batchExecutor;
+        this.enabled = enabled;
+        this.windowMs = windowMs;
+        this.maxIds = Math.max(1, maxIds);
+    }
+
+    /**
+     * Returns the records of the given ids that already exist, sharing the DIGIT search with concurrent callers.
+     * @param entityType entity type name, e.g. {@code Stock}; only lookups of the same type are combined
+     * @param ids ids to check
+     * @param requestInfo request metadata of the caller
+     * @param searchFn searches DIGIT for a list of ids and returns the existing records by id
+     * @return the records DIGIT holds for the caller's ids, by id
+     * @throws Exception if the combined search fails
+     */
+    public Map<String, Object> fetchExisting(String entityType, List<String> ids, RequestInfo requestInfo,
+                                             ThrowingFunction<List<String>, Map<String, Object>> searchFn) throws Exception {
+        counter(lookups, "existence.batch.lookups", entityType).increment();
+        if (!enabled) {
+            counter(searches, "existence.batch.searches", entityType).increment();
+            return searchFn.apply(ids);
+        }
+        String authToken = requestInfo != null && requestInfo.getAuthToken() != null ? requestInfo.getAuthToken() : "";
+        String tenantId = tenantRouter.current();
+        Group group = new Group(entityType, HashUtils.sha256Hex(authToken), tenantId);
+        Map<String, Object> existing;
+        try {
+            existing = RequestDeadline.await(batchers.computeIfAbsent(entityType, this::newBatcher)
+                    .submit(group, new Lookup(requestInfo, searchFn, tenantId), ids), "Existence check");
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+        Map<String, Object> mine = new HashMap<>();
+        for (String id : ids) {
+            if (existing.containsKey(id)) mine.put(id, existing.get(id));
+        }
+        return mine;
+    }
+
+    private MicroBatcher<Group, Lookup, String, Map<String, Object>> newBatcher(String entityType) {
+        return new MicroBatcher<>(windowMs, maxIds, timer, batchExecutor, (lookup, ids) -> {
+            List<String> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+            Map<String, Object> existing = new HashMap<>();
+            // the search builds its tenant parameters from the bound tenant
+            try (RequestDeadline.Scope ignored = TenantContext.bind(lookup.tenantId())) {
+                // a single caller may bring more than max-ids; DIGIT never gets more per search
+                for (int from = 0; from < distinct.size(); from += maxIds) {
+                    counter(searches, "existence.batch.searches", entityType).increment();
+                    existing.putAll(lookup.searchFn().apply(distinct.subList(from, Math.min(distinct.size(), from + maxIds))));
+                }
+            }
+            return existing;
+        });
+    }
+
+    private Counter counter(Map<String, Counter> counters, String name, String entityType) {
+        return counters.computeIfAbsent(entityType, type -> Counter.builder(name)
+                .tag("entity", type)
+                .register(meterRegistry));
+    }
+
+    @PreDestroy
+    public void close() {
+        timer.shutdown();
+    }
+}
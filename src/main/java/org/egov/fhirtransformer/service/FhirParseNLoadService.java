@@ -8,21 +8,28 @@ import org.egov.common.models.facility.Facility;
 import org.egov.common.models.product.ProductVariant;
 import org.egov.common.models.stock.*;
 import org.egov.fhirtransformer.common.Constants;
+import org.egov.fhirtransformer.common.IdOutcome;
+import org.egov.fhirtransformer.common.TenantNotAllowedException;
 import org.egov.fhirtransformer.mapping.fhirBuilder.DIGITHCMBoundaryMapper;
 import org.egov.fhirtransformer.mapping.fhirBuilder.DIGITHCMFacilityMapper;
 import org.egov.fhirtransformer.mapping.fhirBuilder.DIGITHCMProductVariantMapper;
 import org.egov.fhirtransformer.mapping.fhirBuilder.DIGITHCMStockMapper;
 import org.egov.fhirtransformer.mapping.requestBuilder.*;
 import org.egov.fhirtransformer.repository.KafkaProducerService;
+import org.egov.fhirtransformer.utils.RequestDeadline;
+import org.egov.fhirtransformer.utils.TenantContext;
+import jakarta.annotation.PostConstruct;
 import org.hl7.fhir.r5.model.Bundle;
 import org.hl7.fhir.r5.model.InventoryItem;
 import org.hl7.fhir.r5.model.InventoryReport;
 import org.hl7.fhir.r5.model.SupplyDelivery;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +43,9 @@ public class FhirParseNLoadService {
 
     private static final Logger logger = LoggerFactory.getLogger(FhirParseNLoadService.class);
 
+    // entityErrors key reporting failed-resource records that could not be queued for Kafka
+    private static final String PUBLISH_ERROR_KEY = "FailedResourcePublish";
+
     @Autowired
     private FhirContext ctx;
 
@@ -60,8 +70,11 @@ public class FhirParseNLoadService {
     @Autowired
     private KafkaProducerService kafkaService;
 
-    @Value("${app.tenant-id}")
-    private String tenantID;
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private TenantRouter tenantRouter;
 
     // Helper holder for entity maps extracted from a bundle
     private static class EntityMaps {
@@ -70,20 +83,30 @@ public class FhirParseNLoadService {
         public final HashMap<String, BoundaryRelation> boundaryRelationMap = new HashMap<>();
         public final HashMap<String, StockReconciliation> stockReconciliationMap = new HashMap<>();
         public final HashMap<String, ProductVariant> productVariantMap = new HashMap<>();
+        // source entry per entity type and id, used to report failed writes
+        public final HashMap<String, HashMap<String, Bundle.BundleEntryComponent>> entries = new HashMap<>();
+        // entries that could not be mapped, reported with the failed writes
+        public final List<KafkaProducerService.ResourceFailure> failures = new ArrayList<>();
+
+        void addEntry(String entityName, String id, Bundle.BundleEntryComponent entry) {
+            entries.computeIfAbsent(entityName, k -> new HashMap<>()).put(id, entry);
+        }
     }
 
     @FunctionalInterface
-    private interface ThrowingSupplier<T> {
-        T get() throws Exception;
+    private interface OutcomeRecordingTask {
+        HashMap<String, Integer> run(Map<String, IdOutcome> outcomes) throws Exception;
     }
 
     /**
-     * Processing summary with per-entity metrics and per-entity errors.
+     * Processing summary with per-entity metrics, per-entity errors and the write outcome of each id.
      * status values: SUCCESS, PARTIAL_SUCCESS, FAILED.
      */
     public static class EntityProcessingResponse {
         private final HashMap<String, HashMap<String, Integer>> entityResults = new HashMap<>();
         private final HashMap<String, String> entityErrors = new HashMap<>();
+        private final HashMap<String, Map<String, IdOutcome>> entityOutcomes = new HashMap<>();
+        private final HashMap<String, List<String>> failedIds = new HashMap<>();
         private String status = "SUCCESS";
 
         public HashMap<String, HashMap<String, Integer>> getEntityResults() {
@@ -94,6 +117,17 @@ public class FhirParseNLoadService {
             return entityErrors;
         }
 
+        public HashMap<String, Map<String, IdOutcome>> getEntityOutcomes() {
+            return entityOutcomes;
+        }
+
+        /**
+         * @return ids per entity type that were not written; send them to the retry operation
+         */
+        public HashMap<String, List<String>> getFailedIds() {
+            return failedIds;
+        }
+
         public String getStatus() {
             return status;
         }
@@ -103,12 +137,42 @@ public class FhirParseNLoadService {
         }
     }
 
+    // Drained outbox batches go through the same transforms as direct ingestion
+    @PostConstruct
+    public void registerOutboxLanes() throws Exception {
+        outboxService.register("Stock", Stock.class,
+                (map, requestInfo) -> sdToStockService.transformSupplyDeliveryToStock(map, requestInfo, null));
+        outboxService.register("Facility", Facility.class,
+                (map, requestInfo) -> locToFacilityService.transformLocationToFacility(map, requestInfo, null));
+        outboxService.register("Boundary", BoundaryRelation.class,
+                (map, requestInfo) -> locToBoundaryService.transformLocationToBoundary(map, requestInfo, null));
+        outboxService.register("StockReconciliation", StockReconciliation.class,
+                (map, requestInfo) -> irToStkRecService.transformInventoryReportToStockReconciliation(map, requestInfo, null));
+        outboxService.register("ProductVariant", ProductVariant.class,
+                (map, requestInfo) -> invToProductService.transformInventoryItemToProductVariant(map, requestInfo, null));
+    }
+
     /**
      * Parses a FHIR Bundle JSON and loads supported resources into DIGIT services
      * @param fhirJson FHIR Bundle payload as JSON
      * @return processing summary containing per-entity metrics and per-entity errors
      */
     public EntityProcessingResponse parseAndLoadFHIRResource(String fhirJson, RequestInfo requestInfo) {
+        return parseAndLoadFHIRResource(fhirJson, requestInfo, null);
+    }
+
+    /**
+     * Parses a FHIR Bundle JSON and loads only the given ids of each entity type, e.g. the
+     * failed ids of an earlier attempt; other resources of the bundle are ignored.
+     * @param fhirJson FHIR Bundle payload as JSON
+     * @param onlyIds ids to load per entity type ("Stock", "Facility", ...); {@code null} loads everything
+     * The bundle is loaded into the tenant resolved by {@link TenantRouter}.
+     * @return processing summary containing per-entity metrics and per-entity errors; with the
+     *         outbox enabled the status is {@code QUEUED} once every batch is durably queued
+     * @throws org.egov.fhirtransformer.common.OutboxFullException if the outbox is at its limits
+     */
+    public EntityProcessingResponse parseAndLoadFHIRResource(String fhirJson, RequestInfo requestInfo,
+                                                             Map<String, List<String>> onlyIds) {
         EntityProcessingResponse response = new EntityProcessingResponse();
 
         Bundle bundle = parseBundle(fhirJson);
@@ -117,9 +181,33 @@ public class FhirParseNLoadService {
             response.setStatus("FAILED");
             return response;
         }
-        EntityMaps emaps = extractEntitiesFromBundle(bundle);
-        processEntities(emaps, requestInfo, response);
-        finalizeStatus(response);
+        String tenantID;
+        try {
+            tenantID = tenantRouter.resolve(requestInfo, bundle);
+        } catch (TenantNotAllowedException e) {
+            response.getEntityErrors().put("Bundle", e.getMessage());
+            response.setStatus("FAILED");
+            return response;
+        }
+        try (RequestDeadline.Scope ignored = TenantContext.bind(tenantID)) {
+            EntityMaps emaps = extractEntitiesFromBundle(bundle, tenantID, response);
+            if (onlyIds != null) {
+                retainOnly(emaps, onlyIds);
+            }
+            if (outboxService.isEnabled()) {
+                outboxService.checkCapacity();
+                queueEntities(emaps, requestInfo, response);
+                publishFailures(emaps, response);
+                finalizeStatus(response);
+                if ("SUCCESS".equals(response.getStatus())) {
+                    response.setStatus("QUEUED");
+                }
+                return response;
+            }
+            processEntities(emaps, requestInfo, response);
+            publishFailures(emaps, response);
+            finalizeStatus(response);
+        }
 
         return response;
     }
@@ -135,22 +223,20 @@ public class FhirParseNLoadService {
         }
     }
 
-    // Extract resources from bundle into typed maps; per-entry failures are reported to Kafka and skipped
-    private EntityMaps extractEntitiesFromBundle(Bundle bundle) {
+    // Extract resources from bundle into typed maps; per-entry failures are kept for the failed topic and skipped
+    private EntityMaps extractEntitiesFromBundle(Bundle bundle, String tenantID, EntityProcessingResponse response) {
         EntityMaps emaps = new EntityMaps();
 
         if (bundle.getEntry() == null) return emaps;
 
         for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
             try {
-                processBundleEntry(entry, emaps);
+                processBundleEntry(entry, emaps, tenantID);
             } catch (Exception e) {
                 logger.error("Error processing entry: {}", e.getMessage(), e);
-                try {
+                if (entry.getResource() != null) {
                     logger.info("Skipping entry with resource ID: {}", entry.getResource().getIdElement().getIdPart());
-                    kafkaService.publishFhirResourceFailures(entry, e.getMessage());
-                } catch (Exception ex) {
-                    logger.error("Failed to publish resource failure to Kafka: {}", ex.getMessage(), ex);
+                    emaps.failures.add(new KafkaProducerService.ResourceFailure(entry, e.getMessage()));
                 }
             }
         }
@@ -158,7 +244,7 @@ public class FhirParseNLoadService {
     }
 
     // Process a single bundle entry and populate the passed EntityMaps
-    private void processBundleEntry(Bundle.BundleEntryComponent entry, EntityMaps emaps) throws Exception {
+    private void processBundleEntry(Bundle.BundleEntryComponent entry, EntityMaps emaps, String tenantID) throws Exception {
 
         DIGITHCMStockMapper stockMapper = new DIGITHCMStockMapper();
         DIGITHCMFacilityMapper facilityMapper = new DIGITHCMFacilityMapper();
@@ -169,6 +255,7 @@ public class FhirParseNLoadService {
             String logicalId = supplyDelivery.getIdElement().getIdPart();
             Stock stock = stockMapper.buildStockFromSupplyDelivery(supplyDelivery, tenantID);
             emaps.supplyDeliveryMap.put(logicalId, stock);
+            emaps.addEntry("Stock", logicalId, entry);
             return;
         }
 
@@ -181,11 +268,13 @@ public class FhirParseNLoadService {
             if (profiles.contains(Constants.PROFILE_DIGIT_HCM_FACILITY)){
                 Facility facility = facilityMapper.convertFhirLocationToFacility(location, tenantID);
                 emaps.facilityMap.put(logicalId, facility);
+                emaps.addEntry("Facility", logicalId, entry);
             }
             else if (profiles.contains(Constants.PROFILE_DIGIT_HCM_BOUNDARY)) {
                 logicalId = location.getName();
                 BoundaryRelation boundaryRelation = boundaryMapper.convertFhirLocationToBoundaryRelation(location, tenantID);
                 emaps.boundaryRelationMap.put(logicalId, boundaryRelation);
+                emaps.addEntry("Boundary", logicalId, entry);
             }
             return;
         }
@@ -194,6 +283,7 @@ public class FhirParseNLoadService {
             String logicalId = inventoryReport.getIdElement().getIdPart();
             StockReconciliation stockRecon= stockMapper.buildStockReconFromInventoryReport(inventoryReport, tenantID);
             emaps.stockReconciliationMap.put(logicalId, stockRecon);
+            emaps.addEntry("StockReconciliation", logicalId, entry);
             return;
         }
 
@@ -201,42 +291,109 @@ public class FhirParseNLoadService {
             String logicalId = inventoryItem.getIdElement().getIdPart();
             ProductVariant productVariant = productVariantMapper.buildProductVariantFromInventoryItem(inventoryItem, tenantID);
             emaps.productVariantMap.put(logicalId, productVariant);
+            emaps.addEntry("ProductVariant", logicalId, entry);
         }
     }
 
     // Call downstream services independently so one entity failure does not block others
     private void processEntities(EntityMaps emaps, RequestInfo requestInfo, EntityProcessingResponse response) {
-        logger.info("supply delivery map: {}", emaps.supplyDeliveryMap);
+        logger.info("supply delivery map: {} records", emaps.supplyDeliveryMap.size());
         processEntity("Stock", response,
-                () -> sdToStockService.transformSupplyDeliveryToStock(emaps.supplyDeliveryMap, requestInfo));
+                outcomes -> sdToStockService.transformSupplyDeliveryToStock(emaps.supplyDeliveryMap, requestInfo, outcomes));
 
-        logger.info("facility map: {}", emaps.facilityMap);
+        logger.info("facility map: {} records", emaps.facilityMap.size());
         processEntity("Facility", response,
-                () -> locToFacilityService.transformLocationToFacility(emaps.facilityMap, requestInfo));
+                outcomes -> locToFacilityService.transformLocationToFacility(emaps.facilityMap, requestInfo, outcomes));
 
-        logger.info("boundary relation map: {}", emaps.boundaryRelationMap);
+        logger.info("boundary relation map: {} records", emaps.boundaryRelationMap.size());
         processEntity("Boundary", response,
-                () -> locToBoundaryService.transformLocationToBoundary(emaps.boundaryRelationMap, requestInfo));
+                outcomes -> locToBoundaryService.transformLocationToBoundary(emaps.boundaryRelationMap, requestInfo, outcomes));
 
-        logger.info("Stock Reconciliation map: {}", emaps.stockReconciliationMap);
+        logger.info("Stock Reconciliation map: {} records", emaps.stockReconciliationMap.size());
         processEntity("StockReconciliation", response,
-                () -> irToStkRecService.transformInventoryReportToStockReconciliation(emaps.stockReconciliationMap, requestInfo));
+                outcomes -> irToStkRecService.transformInventoryReportToStockReconciliation(emaps.stockReconciliationMap, requestInfo, outcomes));
 
-        logger.info("Product Variant map: {}", emaps.productVariantMap);
+        logger.info("Product Variant map: {} records", emaps.productVariantMap.size());
         processEntity("ProductVariant", response,
-                () -> invToProductService.transformInventoryItemToProductVariant(emaps.productVariantMap, requestInfo));
+                outcomes -> invToProductService.transformInventoryItemToProductVariant(emaps.productVariantMap, requestInfo, outcomes));
+    }
+
+    // Appends each entity type's batch to its outbox lane; the drainer writes it later
+    private void queueEntities(EntityMaps emaps, RequestInfo requestInfo, EntityProcessingResponse response) {
+        queueEntity("Stock", emaps.supplyDeliveryMap, requestInfo, response);
+        queueEntity("Facility", emaps.facilityMap, requestInfo, response);
+        queueEntity("Boundary", emaps.boundaryRelationMap, requestInfo, response);
+        queueEntity("StockReconciliation", emaps.stockReconciliationMap, requestInfo, response);
+        queueEntity("ProductVariant", emaps.productVariantMap, requestInfo, response);
+    }
+
+    private void queueEntity(String entityName, Map<String, ?> entities, RequestInfo requestInfo,
+                             EntityProcessingResponse response) {
+        try {
+            HashMap<String, Integer> result = new HashMap<>();
+            result.put(Constants.QUEUED, outboxService.enqueue(entityName, entities, requestInfo));
+            response.getEntityResults().put(entityName, result);
+        } catch (Exception e) {
+            logger.error("Failed queueing entity type {}: {}", entityName, e.getMessage(), e);
+            response.getEntityErrors().put(entityName, e.getMessage());
+        }
     }
 
     private void processEntity(String entityName,
                                EntityProcessingResponse response,
-                               ThrowingSupplier<HashMap<String, Integer>> processingFn) {
+                               OutcomeRecordingTask processingFn) {
+        Map<String, IdOutcome> outcomes = new LinkedHashMap<>();
         try {
-            HashMap<String, Integer> result = processingFn.get();
+            HashMap<String, Integer> result = processingFn.run(outcomes);
             response.getEntityResults().put(entityName, result != null ? result : new HashMap<>());
         } catch (Exception e) {
             logger.error("Failed processing entity type {}: {}", entityName, e.getMessage(), e);
             response.getEntityErrors().put(entityName, e.getMessage());
         }
+        if (!outcomes.isEmpty()) {
+            response.getEntityOutcomes().put(entityName, outcomes);
+            List<String> failed = outcomes.entrySet().stream()
+                    .filter(e -> IdOutcome.FAILED.equals(e.getValue().getStatus()))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            if (!failed.isEmpty()) {
+                response.getFailedIds().put(entityName, failed);
+            }
+        }
+    }
+
+    // Drops every extracted entity whose id is not listed for its type
+    private void retainOnly(EntityMaps emaps, Map<String, List<String>> onlyIds) {
+        emaps.supplyDeliveryMap.keySet().retainAll(onlyIds.getOrDefault("Stock", List.of()));
+        emaps.facilityMap.keySet().retainAll(onlyIds.getOrDefault("Facility", List.of()));
+        emaps.boundaryRelationMap.keySet().retainAll(onlyIds.getOrDefault("Boundary", List.of()));
+        emaps.stockReconciliationMap.keySet().retainAll(onlyIds.getOrDefault("StockReconciliation", List.of()));
+        emaps.productVariantMap.keySet().retainAll(onlyIds.getOrDefault("ProductVariant", List.of()));
+    }
+
+    // Reports unmappable entries and each failed id with its source resource to the failed topic,
+    // in one call so a full publish queue delays the request at most once
+    private void publishFailures(EntityMaps emaps, EntityProcessingResponse response) {
+        List<KafkaProducerService.ResourceFailure> failures = new ArrayList<>(emaps.failures);
+        response.getFailedIds().forEach((entityName, ids) -> {
+            HashMap<String, Bundle.BundleEntryComponent> entries = emaps.entries.getOrDefault(entityName, new HashMap<>());
+            for (String id : ids) {
+                Bundle.BundleEntryComponent entry = entries.get(id);
+                if (entry == null) continue;
+                failures.add(new KafkaProducerService.ResourceFailure(entry,
+                        response.getEntityOutcomes().get(entityName).get(id).getReason()));
+            }
+        });
+        if (failures.isEmpty()) return;
+        try {
+            int dropped = kafkaService.publishFhirResourceFailures(failures);
+            if (dropped > 0) {
+                response.getEntityErrors().put(PUBLISH_ERROR_KEY,
+                        dropped + " failed-resource record(s) could not be queued for Kafka and were dropped");
+            }
+        } catch (Exception e) {
+            logger.error("Failed to publish resource failures to Kafka: {}", e.getMessage(), e);
+        }
     }
 
     private void finalizeStatus(EntityProcessingResponse response) {
@@ -0,0 +1,271 @@
+package org.egov.fhirtransformer.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.egov.common.models.core.URLParams;
+import org.egov.common.models.facility.FacilitySearch;
+import org.egov.common.models.facility.FacilitySearchRequest;
+import org.egov.common.models.product.ProductVariantSearch;
+import org.egov.common.models.product.ProductVariantSearchRequest;
+import org.egov.common.models.stock.StockReconciliationSearch;
+import org.egov.common.models.stock.StockReconciliationSearchRequest;
+import org.egov.common.models.stock.StockSearch;
+import org.egov.common.models.stock.StockSearchRequest;
+import org.egov.fhirtransformer.common.Constants;
+import org.egov.fhirtransformer.common.InvalidSearchParameterException;
+import org.egov.fhirtransformer.utils.SearchParamUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MultiValueMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Translates FHIR search parameters into the most selective DIGIT search criteria.
+ *
+ * <p>Supported parameters:
+ * <ul>
+ *   <li>All types: {@code _id}, {@code _lastUpdated} (gt/ge), {@code _count}</li>
+ *   <li>Location (facility): {@code identifier}</li>
+ *   <li>InventoryItem: {@code identifier} (variant id, SKU or product id system)</li>
+ *   <li>SupplyDelivery: {@code identifier} (waybill), {@code destination}, {@code item}</li>
+ *   <li>InventoryReport: {@code location}, {@code item}</li>
+ * </ul>
+ * Comma separated values are OR-ed; repeated parameters and criteria already present in the
+ * DIGIT request body are intersected. Parameters that are not listed here are ignored.
+ */
+@Service
+public class FhirSearchTranslator {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true)
+            .configure(DeserializationFeature.UNWRAP_SINGLE_VALUE_ARRAYS, true)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private static final String ID_FIELD = "id";
+    private static final int MAX_COUNT = 1000;
+
+    /**
+     * Applies FHIR search parameters to a Facility search.
+     * @param params FHIR query parameters
+     * @param urlParams pagination and tenant parameters, updated in place
+     * @param request facility search request, updated in place
+     * @return {@code false} if the criteria cannot match any record, so DIGIT need not be called
+     */
+    public boolean applyToFacilitySearch(MultiValueMap<String, String> params, URLParams urlParams,
+                                         FacilitySearchRequest request) {
+        Map<String, Set<String>> criteria = new LinkedHashMap<>();
+        addValues(criteria, ID_FIELD, params.get(Constants.SP_ID));
+        addIdentifierValues(criteria, params.get(Constants.SP_IDENTIFIER),
+                Map.of(Constants.IDENTIFIER_SYSTEM_FACILITY, ID_FIELD));
+        applyCommon(params, urlParams);
+        if (hasEmptyCriterion(criteria)) return false;
+        FacilitySearch search = patch(request.getFacility(), FacilitySearch.class, criteria);
+        if (search == null) return false;
+        request.setFacility(search);
+        return true;
+    }
+
+    /**
+     * Applies FHIR search parameters to a ProductVariant search.
+     * @param params FHIR query parameters
+     * @param urlParams pagination and tenant parameters, updated in place
+     * @param request product variant search request, updated in place
+     * @return {@code false} if the criteria cannot match any record, so DIGIT need not be called
+     */
+    public boolean applyToProductVariantSearch(MultiValueMap<String, String> params, URLParams urlParams,
+                                               ProductVariantSearchRequest request) {
+        Map<String, Set<String>> criteria = new LinkedHashMap<>();
+        addValues(criteria, ID_FIELD, params.get(Constants.SP_ID));
+        addIdentifierValues(criteria, params.get(Constants.SP_IDENTIFIER), Map.of(
+                Constants.IDENTIFIER_SYSTEM_PV, ID_FIELD,
+                Constants.IDENTIFIER_SYSTEM_SKUPV, "sku",
+                Constants.IDENTIFIER_SYSTEM_PRDCT, "productId"));
+        applyCommon(params, urlParams);
+        if (hasEmptyCriterion(criteria)) return false;
+        ProductVariantSearch search = patch(request.getProductVariant(), ProductVariantSearch.class, criteria);
+        if (search == null) return false;
+        request.setProductVariant(search);
+        return true;
+    }
+
+    /**
+     * Applies FHIR search parameters to a Stock search.
+     * @param params FHIR query parameters
+     * @param urlParams pagination and tenant parameters, updated in place
+     * @param request stock search request, updated in place
+     * @return {@code false} if the criteria cannot match any record, so DIGIT need not be called
+     */
+    public boolean applyToStockSearch(MultiValueMap<String, String> params, URLParams urlParams,
+                                      StockSearchRequest request) {
+        Map<String, Set<String>> criteria = new LinkedHashMap<>();
+        addValues(criteria, ID_FIELD, params.get(Constants.SP_ID));
+        addIdentifierValues(criteria, params.get(Constants.SP_IDENTIFIER),
+                Map.of(Constants.IDENTIFIER_SYSTEM_WAYBILL, "wayBillNumber"));
+        addValues(criteria, "receiverId", params.get(Constants.SP_DESTINATION));
+        addValues(criteria, "productVariantId", params.get(Constants.SP_ITEM));
+        applyCommon(params, urlParams);
+        if (hasEmptyCriterion(criteria)) return false;
+        StockSearch search = patch(request.getStock(), StockSearch.class, criteria);
+        if (search == null) return false;
+        request.setStock(search);
+        return true;
+    }
+
+    /**
+     * Applies FHIR search parameters to a StockReconciliation search.
+     * @param params FHIR query parameters
+     * @param urlParams pagination and tenant parameters, updated in place
+     * @param request stock reconciliation search request, updated in place
+     * @return {@code false} if the criteria cannot match any record, so DIGIT need not be called
+     */
+    public boolean applyToStockReconciliationSearch(MultiValueMap<String, String> params, URLParams urlParams,
+                                                    StockReconciliationSearchRequest request) {
+        Map<String, Set<String>> criteria = new LinkedHashMap<>();
+        addValues(criteria, ID_FIELD, params.get(Constants.SP_ID));
+        addValues(criteria, "facilityId", params.get(Constants.SP_LOCATION));
+        addValues(criteria, "productVariantId", params.get(Constants.SP_ITEM));
+        applyCommon(params, urlParams);
+        if (hasEmptyCriterion(criteria)) return false;
+        StockReconciliationSearch search = patch(request.getStockReconciliation(),
+                StockReconciliationSearch.class, criteria);
+        if (search == null) return false;
+        request.setStockReconciliation(search);
+        return true;
+    }
+
+    // _lastUpdated and _count map onto the DIGIT URL parameters
+    private void applyCommon(MultiValueMap<String, String> params, URLParams urlParams) {
+        Long lastChangedSince = SearchParamUtils.parseLastUpdated(params.getFirst(Constants.SP_LAST_UPDATED));
+        if (lastChangedSince != null) {
+            urlParams.setLastChangedSince(lastChangedSince);
+        }
+        String count = params.getFirst(Constants.SP_COUNT);
+        if (count != null && !count.isBlank()) {
+            int limit;
+            try {
+                limit = Integer.parseInt(count.trim());
+            } catch (NumberFormatException e) {
+                throw new InvalidSearchParameterException("Invalid _count value '" + count + "'");
+            }
+            if (limit < 1 || limit > MAX_COUNT) {
+                throw new InvalidSearchParameterException("_count must be between 1 and " + MAX_COUNT);
+            }
+            urlParams.setLimit(limit);
+        }
+    }
+
+    // Each occurrence is an OR list; repeated occurrences are AND-ed by intersection
+    private void addValues(Map<String, Set<String>> criteria, String field, List<String> occurrences) {
+        if (occurrences == null) return;
+        for (String occurrence : occurrences) {
+            Set<String> values = Arrays.stream(occurrence.split(","))
+                    .map(String::trim)
+                    .filter(v -> !v.isEmpty())
+                    .map(FhirSearchTranslator::stripResourceType)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            if (values.isEmpty()) continue;
+            criteria.merge(field, values, (existing, added) -> {
+                existing.retainAll(added);
+                return existing;
+            });
+        }
+    }
+
+    // identifier tokens are system|value; a bare value is accepted only when the type has a single identifier system
+    private void addIdentifierValues(Map<String, Set<String>> criteria, List<String> occurrences,
+                                     Map<String, String> systemToField) {
+        if (occurrences == null) return;
+        for (String occurrence : occurrences) {
+            Map<String, Set<String>> byField = new LinkedHashMap<>();
+            for (String token : occurrence.split(",")) {
+                String trimmed = token.trim();
+                if (trimmed.isEmpty()) continue;
+                int bar = trimmed.indexOf('|');
+                String field;
+                if (bar < 0) {
+                    if (systemToField.size() != 1) {
+                        throw new InvalidSearchParameterException("identifier '" + trimmed + "' must be given as system|value");
+                    }
+                    field = systemToField.values().iterator().next();
+                } else {
+                    field = systemToField.get(trimmed.substring(0, bar));
+                    if (field == null) {
+                        throw new InvalidSearchParameterException("Unsupported identifier system '" + trimmed.substring(0, bar) + "'");
+                    }
+                }
+                String value = bar < 0 ? trimmed : trimmed.substring(bar + 1);
+                byField.computeIfAbsent(field, k -> new LinkedHashSet<>()).add(value);
+            }
+            if (byField.size() > 1) {
+                throw new InvalidSearchParameterException("identifier values with different systems cannot be combined in one parameter");
+            }
+            byField.forEach((field, values) -> criteria.merge(field, values, (existing, added) -> {
+                existing.retainAll(added);
+                return existing;
+            }));
+        }
+    }
+
+    private static boolean hasEmptyCriterion(Map<String, Set<String>> criteria) {
+        return criteria.values().stream().anyMatch(Set::isEmpty);
+    }
+
+    private static String stripResourceType(String value) {
+        int slash = value.lastIndexOf('/');
+        return slash >= 0 ? value.substring(slash + 1) : value;
+    }
+
+    /**
+     * Merges criteria into a DIGIT search object through its JSON form, intersecting with any
+     * values already present in the request body. DIGIT fields hold either a single value or a
+     * list, so values are written as a scalar when there is one and as an array otherwise.
+     * @return patched search object, or {@code null} if the intersection with the body is empty
+     */
+    private <S> S patch(S search, Class<S> type, Map<String, Set<String>> criteria) {
+        if (criteria.isEmpty()) return search;
+        ObjectNode node = search != null ? MAPPER.valueToTree(search) : MAPPER.createObjectNode();
+        for (Map.Entry<String, Set<String>> criterion : criteria.entrySet()) {
+            Set<String> values = new LinkedHashSet<>(criterion.getValue());
+            JsonNode existing = node.get(criterion.getKey());
+            if (existing != null && !existing.isNull()) {
+                Set<String> bodyValues = new LinkedHashSet<>();
+                if (existing.isArray()) {
+                    existing.forEach(v -> bodyValues.add(v.asText()));
+                } else {
+                    bodyValues.add(existing.asText());
+                }
+                if (!bodyValues.isEmpty()) values.retainAll(bodyValues);
+            }
+            if (values.isEmpty()) return null;
+            if (values.size() == 1) {
+                node.put(criterion.getKey(), values.iterator().next());
+            } else {
+                ArrayNode array = node.putArray(criterion.getKey());
+                values.forEach(array::add);
+            }
+        }
+        S patched;
+        try {
+            patched = MAPPER.treeToValue(node, type);
+        } catch (JsonProcessingException e) {
+            throw new InvalidSearchParameterException("Search criteria not supported by the DIGIT "
+                    + type.getSimpleName() + ": " + e.getOriginalMessage());
+        }
+        JsonNode applied = MAPPER.valueToTree(patched);
+        for (String field : criteria.keySet()) {
+            if (!applied.hasNonNull(field)) {
+                throw new InvalidSearchParameterException("DIGIT " + type.getSimpleName() + " does not support the '" + field + "' criterion");
+            }
+        }
+        return patched;
+    }
+}
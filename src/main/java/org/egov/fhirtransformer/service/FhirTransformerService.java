@@ -1,6 +1,7 @@
 package org.egov.fhirtransformer.service;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.validation.ValidationResult;
 import digit.web.models.EnrichedBoundary;
 import digit.web.models.HierarchyRelation;
@@ -13,12 +14,23 @@ import org.egov.fhirtransformer.mapping.fhirBuilder.DIGITHCMFacilityMapper;
 import org.egov.fhirtransformer.mapping.fhirBuilder.DIGITHCMProductVariantMapper;
 import org.egov.fhirtransformer.mapping.fhirBuilder.DIGITHCMStockMapper;
 import org.egov.fhirtransformer.utils.BundleBuilder;
+import org.egov.fhirtransformer.utils.ElementProjection;
 import org.egov.fhirtransformer.validator.CustomFHIRValidator;
 import org.hl7.fhir.r5.model.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MultiValueMap;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 import static org.egov.fhirtransformer.mapping.fhirBuilder.DIGITHCMBoundaryMapper.buildLocationFromHierarchyRelation;
@@ -61,8 +73,22 @@ public class FhirTransformerService {
      * @return FHIR Bundle serialized as JSON
      */
     public String convertFacilitiesToFHIR(List<Facility> facilities, URLParams urlParams, Integer totalCount) {
+        return convertFacilitiesToFHIR(facilities, urlParams, totalCount, ElementProjection.ALL);
+    }
+
+    /**
+     * Converts Facility domain objects into a FHIR Location Bundle, building only projected elements.
+     *
+     * @param facilities list of Facility domain objects
+     * @param urlParams pagination and tenant parameters
+     * @param totalCount total number of records available
+     * @param projection elements to build on each Location
+     * @return FHIR Bundle serialized as JSON
+     */
+    public String convertFacilitiesToFHIR(List<Facility> facilities, URLParams urlParams, Integer totalCount,
+                                          ElementProjection projection) {
         List<Location> locations = facilities.stream()
-                .map(DIGITHCMFacilityMapper::buildLocationFromFacility)
+                .map(facility -> DIGITHCMFacilityMapper.buildLocationFromFacility(facility, projection))
                 .collect(Collectors.toList());
 
         Bundle bundle = BundleBuilder.buildBundle(locations, urlParams, totalCount, Constants.FACILITIES_API_PATH);
@@ -78,8 +104,22 @@ public class FhirTransformerService {
      * @return FHIR Bundle serialized as JSON
      */
     public String convertProductVariantsToFHIR(List<ProductVariant> productVariants, URLParams urlParams, Integer totalCount) {
+        return convertProductVariantsToFHIR(productVariants, urlParams, totalCount, ElementProjection.ALL);
+    }
+
+    /**
+     * Converts ProductVariant domain objects into a FHIR InventoryItem Bundle, building only projected elements.
+     *
+     * @param productVariants list of ProductVariant domain objects
+     * @param urlParams pagination and tenant parameters
+     * @param totalCount total number of records available
+     * @param projection elements to build on each InventoryItem
+     * @return FHIR Bundle serialized as JSON
+     */
+    public String convertProductVariantsToFHIR(List<ProductVariant> productVariants, URLParams urlParams, Integer totalCount,
+                                               ElementProjection projection) {
         List<InventoryItem> inventoryItems = productVariants.stream()
-                .map(DIGITHCMProductVariantMapper::buildInventoryFromProductVariant)
+                .map(productVariant -> DIGITHCMProductVariantMapper.buildInventoryFromProductVariant(productVariant, projection))
                 .collect(Collectors.toList());
 
         Bundle bundle = BundleBuilder.buildBundle(inventoryItems, urlParams, totalCount, Constants.PRODUCT_VARIANT_API_PATH);
@@ -95,11 +135,41 @@ public class FhirTransformerService {
      * @return FHIR Bundle serialized as JSON
      */
     public String convertStocksToFHIR(List<Stock> stock, URLParams urlParams, Integer totalCount) {
+        return convertStocksToFHIR(stock, urlParams, totalCount, ElementProjection.ALL);
+    }
+
+    /**
+     * Converts Stock domain objects into a FHIR SupplyDelivery Bundle, building only projected elements.
+     *
+     * @param stock list of Stock domain objects
+     * @param urlParams pagination and tenant parameters
+     * @param totalCount total number of records available
+     * @param projection elements to build on each SupplyDelivery
+     * @return FHIR Bundle serialized as JSON
+     */
+    public String convertStocksToFHIR(List<Stock> stock, URLParams urlParams, Integer totalCount,
+                                      ElementProjection projection) {
+        return convertStocksToFHIR(stock, urlParams, totalCount, projection, List.of());
+    }
+
+    /**
+     * Converts Stock domain objects into a FHIR SupplyDelivery Bundle with {@code _include} entries.
+     *
+     * @param stock list of Stock domain objects
+     * @param urlParams pagination and tenant parameters
+     * @param totalCount total number of records available
+     * @param projection elements to build on each SupplyDelivery
+     * @param included resources referenced from the page, added with search mode {@code include}
+     * @return FHIR Bundle serialized as JSON
+     */
+    public String convertStocksToFHIR(List<Stock> stock, URLParams urlParams, Integer totalCount,
+                                      ElementProjection projection, List<Resource> included) {
         List<SupplyDelivery> supplyDeliveries = stock.stream()
-                .map(DIGITHCMStockMapper::buildSupplyDeliveryFromStock)
+                .map(st -> DIGITHCMStockMapper.buildSupplyDeliveryFromStock(st, projection))
                 .toList();
 
         Bundle bundle = BundleBuilder.buildBundle(supplyDeliveries, urlParams, totalCount, Constants.STOCKS_API_PATH);
+        BundleBuilder.addIncludeEntries(bundle, included);
         return ctx.newJsonParser().encodeResourceToString(bundle);
     }
 
@@ -113,20 +183,84 @@ public class FhirTransformerService {
      */
     public String convertStocksReconciliationToFHIR(List<StockReconciliation> stockReconciliation,
                                                     URLParams urlParams, Integer totalCount) {
+        return convertStocksReconciliationToFHIR(stockReconciliation, urlParams, totalCount, ElementProjection.ALL);
+    }
+
+    /**
+     * Converts StockReconciliation domain objects into a FHIR InventoryReport Bundle, building only projected elements.
+     *
+     * @param stockReconciliation list of StockReconciliation domain objects
+     * @param urlParams pagination and tenant parameters
+     * @param totalCount total number of records available
+     * @param projection elements to build on each InventoryReport
+     * @return FHIR Bundle serialized as JSON
+     */
+    public String convertStocksReconciliationToFHIR(List<StockReconciliation> stockReconciliation,
+                                                    URLParams urlParams, Integer totalCount,
+                                                    ElementProjection projection) {
+        return convertStocksReconciliationToFHIR(stockReconciliation, urlParams, totalCount, projection, List.of());
+    }
+
+    /**
+     * Converts StockReconciliation domain objects into a FHIR InventoryReport Bundle with {@code _include} entries.
+     *
+     * @param stockReconciliation list of StockReconciliation domain objects
+     * @param urlParams pagination and tenant parameters
+     * @param totalCount total number of records available
+     * @param projection elements to build on each InventoryReport
+     * @param included resources referenced from the page, added with search mode {@code include}
+     * @return FHIR Bundle serialized as JSON
+     */
+    public String convertStocksReconciliationToFHIR(List<StockReconciliation> stockReconciliation,
+                                                    URLParams urlParams, Integer totalCount,
+                                                    ElementProjection projection, List<Resource> included) {
         List<InventoryReport> inventoryReport = stockReconciliation.stream()
-                .map(DIGITHCMStockMapper::buildInventoryReportFromStockReconciliation)
+                .map(sr -> DIGITHCMStockMapper.buildInventoryReportFromStockReconciliation(sr, projection))
                 .toList();
 
         Bundle bundle = BundleBuilder.buildBundle(inventoryReport, urlParams, totalCount, Constants.STOCK_RECONCILIATION_API_PATH);
+        BundleBuilder.addIncludeEntries(bundle, included);
         return ctx.newJsonParser().encodeResourceToString(bundle);
     }
 
+    /**
+     * Builds a FHIR SEARCHSET Bundle carrying only the total, for {@code _summary=count}.
+     * @param totalCount total number of records available
+     * @return FHIR Bundle serialized as JSON
+     */
+    public String convertCountToFHIR(Integer totalCount) {
+        Bundle bundle = BundleBuilder.createSearchSetBundle(totalCount);
+        return ctx.newJsonParser().encodeResourceToString(bundle);
+    }
+
+    /**
+     * Resolves the element projection requested through {@code _elements} or {@code _summary}.
+     * @param resourceType FHIR resource type name
+     * @param params FHIR query parameters
+     * @return resolved projection
+     */
+    public ElementProjection resolveProjection(String resourceType, MultiValueMap<String, String> params) {
+        return ElementProjection.resolve(ctx, resourceType, params);
+    }
+
     /**
      * Converts hierarchical boundary relationships into FHIR Location resources.
      * @param hierarchyRelations list of boundary hierarchy relations
      * @return FHIR Bundle serialized as JSON
      */
     public String convertBoundaryRelationshipToFHIR(List<HierarchyRelation> hierarchyRelations){
+        List<Location> locations = buildBoundaryLocations(hierarchyRelations);
+
+        Bundle bundle = BundleBuilder.buildBoundaryLocationBundle(locations);
+        return ctx.newJsonParser().encodeResourceToString(bundle);
+    }
+
+    /**
+     * Flattens hierarchical boundary relationships into FHIR Location resources.
+     * @param hierarchyRelations list of boundary hierarchy relations
+     * @return Location resources, parents before children
+     */
+    public List<Location> buildBoundaryLocations(List<HierarchyRelation> hierarchyRelations) {
         List<Location> locations = new ArrayList<>();
 
         for (HierarchyRelation relation : hierarchyRelations) {
@@ -134,11 +268,66 @@ public class FhirTransformerService {
                 traverseBoundary(boundary, null, locations);
             }
         }
+        return locations;
+    }
 
-        Bundle bundle = BundleBuilder.buildBoundaryLocationBundle(locations);
+    /**
+     * Builds a FHIR SEARCHSET Bundle from an aggregated fetch. Entity types that failed are
+     * reported as OperationOutcome entries with search mode {@code outcome}.
+     * @param result per-type resources and errors
+     * @return FHIR Bundle serialized as JSON
+     */
+    public String convertAggregatedToFHIR(AggregatedFetchService.AggregatedFetchResult result) {
+        Bundle bundle = new Bundle();
+        bundle.setType(Bundle.BundleType.SEARCHSET);
+        bundle.setTimestamp(new Date());
+        bundle.setId(UUID.randomUUID().toString());
+
+        result.getResources().values().forEach(resources -> resources.forEach(resource ->
+                bundle.addEntry()
+                        .setResource(resource)
+                        .setFullUrl("urn:uuid:" + UUID.randomUUID())
+                        .getSearch().setMode(Bundle.SearchEntryMode.MATCH)));
+        result.getErrors().forEach((entityName, error) ->
+                bundle.addEntry()
+                        .setResource(buildFailureOutcome(entityName, error))
+                        .setFullUrl("urn:uuid:" + UUID.randomUUID())
+                        .getSearch().setMode(Bundle.SearchEntryMode.OUTCOME));
         return ctx.newJsonParser().encodeResourceToString(bundle);
     }
 
+    /**
+     * Writes an aggregated fetch as NDJSON: one resource per line, followed by one
+     * OperationOutcome line per failed entity type.
+     * @param result per-type resources and errors
+     * @param out target stream
+     * @throws IOException if writing fails
+     */
+    public void writeAggregatedNdjson(AggregatedFetchService.AggregatedFetchResult result, OutputStream out) throws IOException {
+        IParser parser = ctx.newJsonParser().setPrettyPrint(false);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        for (List<Resource> resources : result.getResources().values()) {
+            for (Resource resource : resources) {
+                writer.write(parser.encodeResourceToString(resource));
+                writer.write('\n');
+            }
+        }
+        for (Map.Entry<String, String> error : result.getErrors().entrySet()) {
+            writer.write(parser.encodeResourceToString(buildFailureOutcome(error.getKey(), error.getValue())));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    private OperationOutcome buildFailureOutcome(String entityName, String error) {
+        OperationOutcome outcome = new OperationOutcome();
+        outcome.addIssue()
+                .setSeverity(OperationOutcome.IssueSeverity.ERROR)
+                .setCode(OperationOutcome.IssueType.EXCEPTION)
+                .setDiagnostics(entityName + ": " + error);
+        return outcome;
+    }
+
     /**
      * Recursively traverses boundary hierarchy and builds FHIR Location resources.
      *
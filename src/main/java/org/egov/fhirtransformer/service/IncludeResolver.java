@@ -0,0 +1,228 @@
+package org.egov.fhirtransformer.service;
+
+import org.egov.common.contract.request.RequestInfo;
+import org.egov.common.models.core.URLParams;
+import org.egov.common.models.facility.Facility;
+import org.egov.common.models.facility.FacilityBulkResponse;
+import org.egov.common.models.facility.FacilitySearch;
+import org.egov.common.models.facility.FacilitySearchRequest;
+import org.egov.common.models.product.ProductVariant;
+import org.egov.common.models.product.ProductVariantResponse;
+import org.egov.common.models.product.ProductVariantSearch;
+import org.egov.common.models.product.ProductVariantSearchRequest;
+import org.egov.common.models.stock.Stock;
+import org.egov.common.models.stock.StockReconciliation;
+import org.egov.fhirtransformer.common.Constants;
+import org.egov.fhirtransformer.common.InvalidSearchParameterException;
+import org.egov.fhirtransformer.mapping.fhirBuilder.DIGITHCMFacilityMapper;
+import org.egov.fhirtransformer.mapping.fhirBuilder.DIGITHCMProductVariantMapper;
+import org.egov.fhirtransformer.utils.ETagUtils;
+import org.hl7.fhir.r5.model.Resource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Resolves {@code _include} parameters on stock fetches by collecting the referenced
+ * ProductVariant and Facility ids from a page and fetching them in concurrent batch chunks.
+ */
+@Service
+public class IncludeResolver {
+
+    @Autowired
+    private ApiIntegrationService apiIntegrationService;
+
+    @Autowired
+    private AsyncApiIntegrationService asyncApiIntegrationService;
+
+    @Value("${fhir.include.batch-size:100}")
+    private int batchSize;
+
+    /**
+     * DIGIT records referenced from a page, kept as domain objects so they can take part
+     * in the ETag before anything is mapped.
+     */
+    public static class IncludedRecords {
+        private final List<Facility> facilities = new ArrayList<>();
+        private final List<ProductVariant> productVariants = new ArrayList<>();
+
+        public List<Facility> getFacilities() {
+            return facilities;
+        }
+
+        public List<ProductVariant> getProductVariants() {
+            return productVariants;
+        }
+
+        /**
+         * @return ETag of the included records, so a change to a referenced record changes the page tag
+         */
+        public String eTagKey() {
+            return ETagUtils.weakETag(facilities, Facility::getId,
+                    f -> f.getAuditDetails() != null ? f.getAuditDetails().getLastModifiedTime() : null)
+                    + ETagUtils.weakETag(productVariants, ProductVariant::getId,
+                    pv -> pv.getAuditDetails() != null ? pv.getAuditDetails().getLastModifiedTime() : null);
+        }
+
+        /**
+         * @return included records mapped to FHIR Location and InventoryItem resources
+         */
+        public List<Resource> toResources() {
+            List<Resource> resources = new ArrayList<>();
+            facilities.forEach(f -> resources.add(DIGITHCMFacilityMapper.buildLocationFromFacility(f)));
+            productVariants.forEach(pv -> resources.add(DIGITHCMProductVariantMapper.buildInventoryFromProductVariant(pv)));
+            return resources;
+        }
+    }
+
+    /**
+     * Checks the {@code _include} values of a stock fetch before anything is searched.
+     * @param includes raw {@code _include} values; may be {@code null}
+     * @return the requested includes, empty if none
+     * @throws InvalidSearchParameterException if an include is not supported for SupplyDelivery
+     */
+    public Set<String> stockIncludes(List<String> includes) {
+        return validate(includes, Set.of(Constants.INCLUDE_SD_ITEM,
+                Constants.INCLUDE_SD_DESTINATION, Constants.INCLUDE_SD_SENDER), Constants.SUPPLY_DELIVERY);
+    }
+
+    /**
+     * Checks the {@code _include} values of a stock reconciliation fetch before anything is searched.
+     * @param includes raw {@code _include} values; may be {@code null}
+     * @return the requested includes, empty if none
+     * @throws InvalidSearchParameterException if an include is not supported for InventoryReport
+     */
+    public Set<String> stockReconciliationIncludes(List<String> includes) {
+        return validate(includes, Set.of(Constants.INCLUDE_IR_ITEM,
+                Constants.INCLUDE_IR_LOCATION), Constants.INVENTORY_REPORT);
+    }
+
+    /**
+     * Resolves {@code SupplyDelivery:item}, {@code SupplyDelivery:destination} and
+     * {@code SupplyDelivery:sender} for a page of stock records.
+     * @param stocks page of stock records
+     * @param requested includes returned by {@link #stockIncludes(List)}
+     * @param tenantId tenant used for the lookups
+     * @param requestInfo request metadata forwarded to DIGIT
+     * @return included records, or {@code null} if no include was requested
+     */
+    public IncludedRecords resolveForStocks(List<Stock> stocks, Set<String> requested,
+                                            String tenantId, RequestInfo requestInfo) {
+        if (requested.isEmpty()) return null;
+
+        Set<String> productVariantIds = new LinkedHashSet<>();
+        Set<String> facilityIds = new LinkedHashSet<>();
+        for (Stock stock : stocks) {
+            if (requested.contains(Constants.INCLUDE_SD_ITEM)) productVariantIds.add(stock.getProductVariantId());
+            if (requested.contains(Constants.INCLUDE_SD_DESTINATION)) facilityIds.add(stock.getReceiverId());
+            if (requested.contains(Constants.INCLUDE_SD_SENDER)) facilityIds.add(stock.getSenderId());
+        }
+        return fetch(productVariantIds, facilityIds, tenantId, requestInfo);
+    }
+
+    /**
+     * Resolves {@code InventoryReport:item} and {@code InventoryReport:location} for a page
+     * of stock reconciliation records.
+     * @param stockReconciliations page of stock reconciliation records
+     * @param requested includes returned by {@link #stockReconciliationIncludes(List)}
+     * @param tenantId tenant used for the lookups
+     * @param requestInfo request metadata forwarded to DIGIT
+     * @return included records, or {@code null} if no include was requested
+     */
+    public IncludedRecords resolveForStockReconciliations(List<StockReconciliation> stockReconciliations,
+                                                          Set<String> requested, String tenantId,
+                                                          RequestInfo requestInfo) {
+        if (requested.isEmpty()) return null;
+
+        Set<String> productVariantIds = new LinkedHashSet<>();
+        Set<String> facilityIds = new LinkedHashSet<>();
+        for (StockReconciliation stockReconciliation : stockReconciliations) {
+            if (requested.contains(Constants.INCLUDE_IR_ITEM)) productVariantIds.add(stockReconciliation.getProductVariantId());
+            if (requested.contains(Constants.INCLUDE_IR_LOCATION)) facilityIds.add(stockReconciliation.getFacilityId());
+        }
+        return fetch(productVariantIds, facilityIds, tenantId, requestInfo);
+    }
+
+    // _include=* or ResourceType:* selects every supported include
+    private Set<String> validate(List<String> includes, Set<String> supported, String resourceType) {
+        Set<String> requested = new LinkedHashSet<>();
+        if (includes == null) return requested;
+        for (String include : includes) {
+            for (String value : include.split(",")) {
+                String trimmed = value.trim();
+                if (trimmed.isEmpty()) continue;
+                if ("*".equals(trimmed) || (resourceType + ":*").equals(trimmed)) {
+                    requested.addAll(supported);
+                } else if (supported.contains(trimmed)) {
+                    requested.add(trimmed);
+                } else {
+                    throw new InvalidSearchParameterException("Unsupported _include '" + trimmed + "' for " + resourceType);
+                }
+            }
+        }
+        return requested;
+    }
+
+    // All chunks of both types are requested concurrently
+    private IncludedRecords fetch(Set<String> productVariantIds, Set<String> facilityIds,
+                                  String tenantId, RequestInfo requestInfo) {
+        List<CompletableFuture<ProductVariantResponse>> productVariantFutures = new ArrayList<>();
+        for (List<String> chunk : chunks(productVariantIds)) {
+            ProductVariantSearch search = new ProductVariantSearch();
+            search.setId(chunk);
+            ProductVariantSearchRequest request = new ProductVariantSearchRequest();
+            request.setRequestInfo(requestInfo);
+            request.setProductVariant(search);
+            productVariantFutures.add(asyncApiIntegrationService.fetchAllProductVariantsAsync(urlParams(chunk, tenantId), request));
+        }
+        List<CompletableFuture<FacilityBulkResponse>> facilityFutures = new ArrayList<>();
+        for (List<String> chunk : chunks(facilityIds)) {
+            FacilitySearch search = new FacilitySearch();
+            search.setId(chunk);
+            FacilitySearchRequest request = new FacilitySearchRequest();
+            request.setRequestInfo(requestInfo);
+            request.setFacility(search);
+            facilityFutures.add(asyncApiIntegrationService.fetchAllFacilitiesAsync(urlParams(chunk, tenantId), request));
+        }
+
+        IncludedRecords records = new IncludedRecords();
+        for (CompletableFuture<ProductVariantResponse> future : productVariantFutures) {
+            ProductVariantResponse response = future.join();
+            if (response != null && response.getProductVariant() != null) {
+                records.getProductVariants().addAll(response.getProductVariant());
+            }
+        }
+        for (CompletableFuture<FacilityBulkResponse> future : facilityFutures) {
+            FacilityBulkResponse response = future.join();
+            if (response != null && response.getFacilities() != null) {
+                records.getFacilities().addAll(response.getFacilities());
+            }
+        }
+        return records;
+    }
+
+    private URLParams urlParams(List<String> chunk, String tenantId) {
+        URLParams urlParams = apiIntegrationService.formURLParams(chunk);
+        if (tenantId != null) {
+            urlParams.setTenantId(tenantId);
+        }
+        return urlParams;
+    }
+
+    private List<List<String>> chunks(Collection<String> ids) {
+        List<String> distinct = ids.stream().filter(Objects::nonNull).distinct().toList();
+        List<List<String>> chunks = new ArrayList<>();
+        int size = Math.max(1, batchSize);
+        for (int from = 0; from < distinct.size(); from += size) {
+            chunks.add(new ArrayList<>(distinct.subList(from, Math.min(distinct.size(), from + size))));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,211 @@
+package org.egov.fhirtransformer.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.egov.fhirtransformer.common.AdmissionRejectedException;
+import org.egov.fhirtransformer.utils.PriorityBudget;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for ingestion requests.
+ *
+ * <p>A request is admitted in two steps against two budgets. Before its body is read, its
+ * estimated memory ({@code Content-Length} times {@code admission.memory-factor}) is taken from
+ * the byte budget ({@code admission.max-inflight-bytes}, a quarter of the heap when 0). Once the
+ * bundle is parsed, its entry count is taken from the entry budget
+ * ({@code admission.max-inflight-entries}). Bodies up to {@code admission.small-bundle-bytes} use
+ * the small lane, which has {@code admission.small-reserved-fraction} of each budget to itself
+ * and is served first. A request that does not fit waits up to
+ * {@code admission.queue-timeout-ms} in a queue of at most {@code admission.max-queued} per lane,
+ * then is rejected with {@link AdmissionRejectedException}.
+ *
+ * <p>Metrics: gauges {@code admission.inflight.bytes}, {@code admission.inflight.entries} and
+ * {@code admission.queued} (tags budget, lane); counters {@code admission.admitted} (tag lane)
+ * and {@code admission.rejected} (tags budget, lane, reason); timer {@code admission.wait}.
+ */
+@Service
+public class IngestionAdmission {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${admission.max-inflight-entries:50000}")
+    private long maxInflightEntries;
+
+    @Value("${admission.max-inflight-bytes:0}")
+    private long maxInflightBytes;
+
+    @Value("${admission.memory-factor:8}")
+    private long memoryFactor;
+
+    @Value("${admission.unknown-length-bytes:1048576}")
+    private long unknownLengthBytes;
+
+    @Value("${admission.small-bundle-bytes:262144}")
+    private long smallBundleBytes;
+
+    @Value("${admission.small-reserved-fraction:0.2}")
+    private double smallReservedFraction;
+
+    @Value("${admission.max-queued:64}")
+    private int maxQueued;
+
+    @Value("${admission.queue-timeout-ms:2000}")
+    private long queueTimeoutMs;
+
+    @Value("${admission.retry-after-seconds:2}")
+    private int retryAfterSeconds;
+
+    private PriorityBudget bytesBudget;
+    private PriorityBudget entriesBudget;
+
+    public IngestionAdmission(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        long bytes = maxInflightBytes > 0 ? maxInflightBytes : Runtime.getRuntime().maxMemory() / 4;
+        bytesBudget = new PriorityBudget(bytes, (long) (bytes * smallReservedFraction), maxQueued);
+        entriesBudget = new PriorityBudget(maxInflightEntries, (long) (maxInflightEntries * smallReservedFraction), maxQueued);
+        Gauge.builder("admission.inflight.bytes", bytesBudget, PriorityBudget::getUsed)
+                .description("Estimated memory of admitted ingestion requests").register(meterRegistry);
+        Gauge.builder("admission.inflight.entries", entriesBudget, PriorityBudget::getUsed)
+                .description("Bundle entries of admitted ingestion requests").register(meterRegistry);
+        registerQueueGauges("bytes", bytesBudget);
+        registerQueueGauges("entries", entriesBudget);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Admits a request's estimated memory before its body is read.
+     * @param contentLength {@code Content-Length}, or a negative value when unknown
+     * @return permit to pass to {@link #admitEntries(Permit, int)} and close when the request ends
+     * @throws AdmissionRejectedException if the memory budget stays full
+     * @throws InterruptedException if interrupted while queued
+     */
+    public Permit admitBytes(long contentLength) throws InterruptedException {
+        long length = contentLength >= 0 ? contentLength : unknownLengthBytes;
+        boolean small = length <= smallBundleBytes;
+        Permit permit = new Permit(small);
+        permit.bytes = acquire(bytesBudget, "bytes", length * memoryFactor, small);
+        return permit;
+    }
+
+    /**
+     * Admits the entries of a parsed bundle.
+     * @param permit permit from {@link #admitBytes(long)}
+     * @param entries number of bundle entries
+     * @throws AdmissionRejectedException if the entry budget stays full, or the permit was closed
+     *         because the request already completed or timed out
+     * @throws InterruptedException if interrupted while queued
+     */
+    public void admitEntries(Permit permit, int entries) throws InterruptedException {
+        if (permit.isClosed()) throw closed(permit);
+        long acquired = acquire(entriesBudget, "entries", entries, permit.small);
+        if (!permit.holdEntries(acquired)) {
+            // closed while queued for the entries: give them back instead of holding them forever
+            entriesBudget.release(acquired);
+            throw closed(permit);
+        }
+        meterRegistry.counter("admission.admitted", "lane", lane(permit.small)).increment();
+    }
+
+    private AdmissionRejectedException closed(Permit permit) {
+        meterRegistry.counter("admission.rejected", "budget", "entries", "lane", lane(permit.small),
+                "reason", "closed").increment();
+        return new AdmissionRejectedException("The request already completed or timed out", retryAfterSeconds);
+    }
+
+    private long acquire(PriorityBudget budget, String budgetName, long weight, boolean small) throws InterruptedException {
+        long clamped = budget.clamp(weight, small);
+        long start = System.nanoTime();
+        PriorityBudget.Result result = budget.acquire(clamped, small, queueTimeoutMs);
+        meterRegistry.timer("admission.wait", "budget", budgetName, "lane", lane(small))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (result != PriorityBudget.Result.ADMITTED) {
+            meterRegistry.counter("admission.rejected", "budget", budgetName, "lane", lane(small),
+                    "reason", result.name().toLowerCase()).increment();
+            throw new AdmissionRejectedException("Too many " + budgetName + " in flight, retry later", retryAfterSeconds);
+        }
+        return clamped;
+    }
+
+    private void registerQueueGauges(String budgetName, PriorityBudget budget) {
+        for (boolean small : new boolean[]{true, false}) {
+            Gauge.builder("admission.queued", budget, b -> b.getQueued(small))
+                    .tags("budget", budgetName, "lane", lane(small))
+                    .description("Ingestion requests waiting for admission").register(meterRegistry);
+        }
+    }
+
+    private static String lane(boolean small) {
+        return small ? "small" : "large";
+    }
+
+    /**
+     * Weight held by one request; closing it returns both budgets' share. It may be closed from
+     * the request thread, a bulkhead thread and an async timeout at once; only the first close
+     * releases, and entries cannot be admitted after it.
+     */
+    public final class Permit implements AutoCloseable {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final boolean small;
+        private long bytes;
+        private long entries;
+        private boolean closed;
+
+        private Permit(boolean small) {
+            this.small = small;
+        }
+
+        public boolean isClosed() {
+            lock.lock();
+            try {
+                return closed;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Records the admitted entries; false if the permit was closed meanwhile
+        private boolean holdEntries(long acquired) {
+            lock.lock();
+            try {
+                if (closed) return false;
+                entries += acquired;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            long releasedBytes;
+            long releasedEntries;
+            lock.lock();
+            try {
+                if (closed) return;
+                closed = true;
+                releasedBytes = bytes;
+                releasedEntries = entries;
+                bytes = 0;
+                entries = 0;
+            } finally {
+                lock.unlock();
+            }
+            bytesBudget.release(releasedBytes);
+            entriesBudget.release(releasedEntries);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package org.egov.fhirtransformer.service;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.egov.common.contract.request.RequestInfo;
+import org.egov.fhirtransformer.common.OutboxFullException;
+import org.egov.fhirtransformer.common.WriteRejectedException;
+import org.egov.fhirtransformer.repository.OutboxLog;
+import org.egov.fhirtransformer.utils.RequestDeadline;
+import org.egov.fhirtransformer.utils.TenantContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientResponseException;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Durable outbox for mapped write batches.
+ *
+ * <p>When {@code outbox.enabled} is set, ingestion appends each entity type's mapped batch with
+ * its RequestInfo to an append-only log under {@code outbox.dir} and acknowledges the request once
+ * the append is on disk. Each tenant and entity type has its own lane: a log
+ * ({@code <entity>@<tenant>.log}) and one drainer thread that reads it in append order and hands
+ * each batch to the registered handler, which runs the normal existence check and write. A failed
+ * batch blocks only its lane and is retried with exponential backoff, so batches of one tenant
+ * and entity type are never reordered, DIGIT is not flooded while it is down, and one tenant's
+ * failing deployment does not hold back the others. A batch that can never succeed (DIGIT
+ * refused it as invalid, or it cannot be read) is moved to the lane's log under {@code dead/}
+ * at once; any other batch, including one refused with 401 or 403, after
+ * {@code outbox.max-attempts}. Delivery is at least once, which
+ * the existence check against DIGIT makes safe to repeat.
+ *
+ * <p>Appends are refused with {@link OutboxFullException} once the pending batches or bytes across
+ * all lanes reach their limits. The gauges {@code outbox.depth} and {@code outbox.bytes} (tags
+ * entity, tenant) report what is waiting, and the counters {@code outbox.appended},
+ * {@code outbox.drained}, {@code outbox.retried} and {@code outbox.dead} track the flow.
+ */
+@Service
+public class OutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxService.class);
+
+    /**
+     * Writes one drained batch to DIGIT; throwing leaves the batch at the head of its lane.
+     */
+    @FunctionalInterface
+    public interface OutboxHandler<T> {
+        void handle(HashMap<String, T> entities, RequestInfo requestInfo) throws Exception;
+    }
+
+    private record Kind<T>(Class<T> type, OutboxHandler<T> handler) {
+    }
+
+    private record LaneKey(String tenantId, String entityName) {
+    }
+
+    private final ObjectMapper objectMapper;
+
+    private final MeterRegistry meterRegistry;
+
+    private final TenantRouter tenantRouter;
+
+    @Value("${outbox.enabled:false}")
+    private boolean enabled;
+
+    @Value("${outbox.dir:/tmp/fhirtransformer/outbox}")
+    private String dir;
+
+    @Value("${outbox.fsync:true}")
+    private boolean fsync;
+
+    @Value("${outbox.compact-bytes:67108864}")
+    private long compactBytes;
+
+    @Value("${outbox.max-pending-entries:10000}")
+    private long maxPendingEntries;
+
+    @Value("${outbox.max-pending-bytes:1073741824}")
+    private long maxPendingBytes;
+
+    @Value("${outbox.poll-ms:1000}")
+    private long pollMs;
+
+    @Value("${outbox.retry.initial-backoff-ms:500}")
+    private long initialBackoffMs;
+
+    @Value("${outbox.retry.max-backoff-ms:60000}")
+    private long maxBackoffMs;
+
+    @Value("${outbox.max-attempts:20}")
+    private int maxAttempts;
+
+    private final Map<String, Kind<?>> kinds = new ConcurrentHashMap<>();
+
+    private final Map<LaneKey, Lane<?>> lanes = new ConcurrentHashMap<>();
+
+    private final ReentrantLock laneLock = new ReentrantLock();
+
+    private volatile boolean running = true;
+
+    public OutboxService(ObjectMapper objectMapper, MeterRegistry meterRegistry, TenantRouter tenantRouter) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.tenantRouter = tenantRouter;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Registers an entity type and starts draining every tenant's lane it still holds on disk.
+     * Does nothing when the outbox is disabled.
+     * @param entityName entity type ("Stock", "Facility", ...)
+     * @param type entity class the batch is read back as
+     * @param handler writes a drained batch to DIGIT
+     * @throws Exception if a lane's log cannot be opened
+     */
+    public <T> void register(String entityName, Class<T> type, OutboxHandler<T> handler) throws Exception {
+        if (!enabled) return;
+        kinds.put(entityName, new Kind<>(type, handler));
+        Path laneDir = Path.of(dir);
+        try {
+            Files.createDirectories(laneDir);
+            try (DirectoryStream<Path> logs = Files.newDirectoryStream(laneDir, entityName + "@*.log")) {
+                for (Path log : logs) {
+                    String name = log.getFileName().toString();
+                    String tenantId = URLDecoder.decode(
+                            name.substring(entityName.length() + 1, name.length() - ".log".length()), StandardCharsets.UTF_8);
+                    lane(tenantId, entityName);
+                }
+            }
+        } catch (IOException e) {
+            throw new Exception("Error in register: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Refuses new work while the outbox is at its limits, so a request is rejected before any of
+     * its batches are queued.
+     * @throws OutboxFullException if pending batches or bytes are at their limit
+     */
+    public void checkCapacity() {
+        long entries = 0;
+        long bytes = 0;
+        for (Lane<?> lane : lanes.values()) {
+            entries += lane.log.getPendingEntries();
+            bytes += lane.log.getPendingBytes();
+        }
+        if (entries >= maxPendingEntries || bytes >= maxPendingBytes) {
+            throw new OutboxFullException("Outbox is full: " + entries + " batches, " + bytes + " bytes pending");
+        }
+    }
+
+    /**
+     * Durably queues a mapped batch in the lane of the tenant bound to the calling thread.
+     * @param entityName entity type, registered with {@link #register}
+     * @param entities mapped entities by id; an empty map is not queued
+     * @param requestInfo request metadata the drainer writes with
+     * @return number of entities queued
+     * @throws Exception if the lane is unknown or the append fails
+     */
+    public int enqueue(String entityName, Map<String, ?> entities, RequestInfo requestInfo) throws Exception {
+        if (entities == null || entities.isEmpty()) return 0;
+        if (!kinds.containsKey(entityName)) {
+            throw new Exception("Error in enqueue: no outbox lane for " + entityName);
+        }
+        String tenantId = tenantRouter.current();
+        try {
+            Lane<?> lane = lane(tenantId, entityName);
+            ObjectNode record = objectMapper.createObjectNode();
+            record.set("requestInfo", objectMapper.valueToTree(requestInfo));
+            record.put("tenantId", tenantId);
+            record.set("entities", objectMapper.valueToTree(entities));
+            lane.log.append(objectMapper.writeValueAsBytes(record));
+            lane.counter("outbox.appended").increment();
+            return entities.size();
+        } catch (IOException e) {
+            throw new Exception("Error in enqueue: " + e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Lane<?> lane : lanes.values()) {
+            lane.stop();
+        }
+    }
+
+    // Returns the lane of the tenant and entity type, opening its logs and drainer on first use
+    private Lane<?> lane(String tenantId, String entityName) throws IOException {
+        LaneKey key = new LaneKey(tenantId, entityName);
+        Lane<?> lane = lanes.get(key);
+        if (lane != null) return lane;
+        laneLock.lock();
+        try {
+            lane = lanes.get(key);
+            if (lane != null) return lane;
+            lane = newLane(tenantId, entityName, kinds.get(entityName));
+            lanes.put(key, lane);
+        } finally {
+            laneLock.unlock();
+        }
+        Lane<?> opened = lane;
+        Gauge.builder("outbox.depth", opened.log, OutboxLog::getPendingEntries)
+                .tags("entity", entityName, "tenant", tenantId)
+                .description("Write batches waiting in the outbox").register(meterRegistry);
+        Gauge.builder("outbox.bytes", opened.log, OutboxLog::getPendingBytes)
+                .tags("entity", entityName, "tenant", tenantId)
+                .description("Bytes waiting in the outbox").register(meterRegistry);
+        opened.start();
+        logger.info("Outbox lane {} of tenant {} opened with {} pending batches", entityName, tenantId, opened.log.getPendingEntries());
+        return opened;
+    }
+
+    private <T> Lane<T> newLane(String tenantId, String entityName, Kind<T> kind) throws IOException {
+        Path laneDir = Path.of(dir);
+        String name = entityName + "@" + URLEncoder.encode(tenantId, StandardCharsets.UTF_8);
+        return new Lane<>(tenantId, entityName, kind.type(), kind.handler(),
+                new OutboxLog(laneDir, name, fsync, compactBytes),
+                new OutboxLog(laneDir.resolve("dead"), name, fsync, Long.MAX_VALUE));
+    }
+
+    // DIGIT refused the batch as invalid: retrying cannot help. Auth failures (401, 403) are retried,
+    // since they come from the stored token or DIGIT's user service rather than from the batch
+    private static boolean isPermanent(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof WriteRejectedException) return true;
+            if (cause instanceof RestClientResponseException responseException) {
+                int status = responseException.getStatusCode().value();
+                return status >= 400 && status < 500 && status != 401 && status != 403
+                        && status != 408 && status != 429;
+            }
+        }
+        return false;
+    }
+
+    private final class Lane<T> {
+        private final String tenantId;
+        private final String entityName;
+        private final JavaType batchType;
+        private final OutboxHandler<T> handler;
+        private final OutboxLog log;
+        private final OutboxLog deadLog;
+        private Thread drainer;
+
+        private Lane(String tenantId, String entityName, Class<T> type, OutboxHandler<T> handler,
+                     OutboxLog log, OutboxLog deadLog) {
+            this.tenantId = tenantId;
+            this.entityName = entityName;
+            this.batchType = objectMapper.getTypeFactory().constructMapType(HashMap.class, String.class, type);
+            this.handler = handler;
+            this.log = log;
+            this.deadLog = deadLog;
+        }
+
+        private Counter counter(String name) {
+            return meterRegistry.counter(name, "entity", entityName, "tenant", tenantId);
+        }
+
+        private void start() {
+            drainer = new Thread(this::drainLoop, "outbox-" + entityName + "@" + tenantId);
+            drainer.setDaemon(true);
+            drainer.start();
+        }
+
+        private void stop() {
+            drainer.interrupt();
+            try {
+                drainer.join(pollMs);
+                log.close();
+                deadLog.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                logger.warn("Failed to close outbox lane {}: {}", entityName, e.getMessage());
+            }
+        }
+
+        private void drainLoop() {
+            while (running) {
+                try {
+                    OutboxLog.Entry entry = log.peek(pollMs);
+                    if (entry != null) {
+                        deliver(entry);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    logger.error("Outbox lane {} of tenant {} failed to read: {}", entityName, tenantId, e.getMessage(), e);
+                    if (!sleep(maxBackoffMs)) return;
+                }
+            }
+        }
+
+        // Retries the head batch until it is written or dead-lettered; later batches wait behind it
+        private void deliver(OutboxLog.Entry entry) throws IOException, InterruptedException {
+            RequestInfo requestInfo;
+            HashMap<String, T> entities;
+            try {
+                JsonNode record = objectMapper.readTree(entry.payload());
+                requestInfo = objectMapper.treeToValue(record.get("requestInfo"), RequestInfo.class);
+                entities = objectMapper.convertValue(record.get("entities"), batchType);
+            } catch (IOException | IllegalArgumentException e) {
+                // reading the same bytes again cannot succeed
+                logger.error("Outbox lane {} of tenant {} cannot read a batch: {}", entityName, tenantId, e.getMessage());
+                deadLetter(entry);
+                return;
+            }
+            long backoffMs = initialBackoffMs;
+            for (int attempt = 1; running; attempt++) {
+                try {
+                    try (RequestDeadline.Scope ignored = TenantContext.bind(tenantId)) {
+                        handler.handle(entities, requestInfo);
+                    }
+                    log.commit(entry);
+                    counter("outbox.drained").increment();
+                    return;
+                } catch (Exception e) {
+                    boolean permanent = isPermanent(e);
+                    if (permanent || attempt >= maxAttempts) {
+                        logger.error("Outbox lane {} of tenant {} gave up on a batch after {} attempts{}: {}", entityName, tenantId,
+                                attempt, permanent ? " (refused)" : "", e.getMessage());
+                        deadLetter(entry);
+                        return;
+                    }
+                    logger.warn("Outbox lane {} of tenant {} attempt {} failed, retrying in {} ms: {}", entityName, tenantId,
+                            attempt, backoffMs, e.getMessage());
+                    counter("outbox.retried").increment();
+                    if (!sleep(backoffMs)) throw new InterruptedException();
+                    backoffMs = Math.min(maxBackoffMs, backoffMs * 2);
+                }
+            }
+        }
+
+        private void deadLetter(OutboxLog.Entry entry) throws IOException {
+            deadLog.append(entry.payload());
+            log.commit(entry);
+            counter("outbox.dead").increment();
+        }
+
+        private boolean sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+                return true;
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+    }
+}
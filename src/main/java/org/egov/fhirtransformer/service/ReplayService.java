@@ -0,0 +1,481 @@
+package org.egov.fhirtransformer.service;
+
+import ca.uhn.fhir.validation.ValidationResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.egov.common.contract.request.RequestInfo;
+import org.egov.fhirtransformer.repository.ClaimCheckStore;
+import org.egov.fhirtransformer.utils.RateLimiter;
+import org.egov.fhirtransformer.web.models.ReplayRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Replays records of the DLQ ({@code kafka.dlq.topic}) or the failed-resource topic
+ * ({@code kafka.failed.topic}) through {@link FhirParseNLoadService}.
+ *
+ * <p>A replay job reads a time or offset range of every partition, optionally re-validates each
+ * bundle, and loads it at no more than {@code ratePerSecond} records per second with at most
+ * {@code concurrency} records in flight, so a recovered DIGIT is not flooded. Progress is written
+ * as per-partition checkpoints (the offset below which every record is done) to
+ * {@code replay.checkpoint.dir}; a job started again with {@code resume} continues from there.
+ */
+@Service
+public class ReplayService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayService.class);
+
+    @Autowired
+    private ConsumerFactory<?, ?> consumerFactory;
+
+    @Autowired
+    private FhirParseNLoadService fpService;
+
+    @Autowired
+    private FhirTransformerService ftService;
+
+    @Autowired
+    private ClaimCheckStore claimCheckStore;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${kafka.dlq.topic}")
+    private String dlqTopic;
+
+    @Value("${kafka.failed.topic}")
+    private String failedTopic;
+
+    @Value("${replay.rate-per-second:20}")
+    private double defaultRatePerSecond;
+
+    @Value("${replay.max-rate-per-second:200}")
+    private double maxRatePerSecond;
+
+    @Value("${replay.concurrency:4}")
+    private int defaultConcurrency;
+
+    @Value("${replay.checkpoint.dir:/tmp/fhir-replay}")
+    private String checkpointDir;
+
+    @Value("${replay.checkpoint.every:100}")
+    private int checkpointEvery;
+
+    private final Map<String, ReplayJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Progress of one replay job.
+     * status values: RUNNING, COMPLETED, CANCELLED, FAILED.
+     */
+    public static class ReplayJob {
+        private final String name;
+        private final String topic;
+        private volatile String status = "RUNNING";
+        private volatile String error;
+        private volatile boolean cancelled;
+        private final AtomicLong read = new AtomicLong();
+        private final AtomicLong replayed = new AtomicLong();
+        private final AtomicLong invalid = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final Map<Integer, Long> checkpoints = new ConcurrentHashMap<>();
+        private final Map<Integer, Long> endOffsets = new ConcurrentHashMap<>();
+
+        ReplayJob(String name, String topic) {
+            this.name = name;
+            this.topic = topic;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public long getRead() {
+            return read.get();
+        }
+
+        public long getReplayed() {
+            return replayed.get();
+        }
+
+        public long getInvalid() {
+            return invalid.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        public Map<Integer, Long> getCheckpoints() {
+            return new TreeMap<>(checkpoints);
+        }
+
+        public Map<Integer, Long> getEndOffsets() {
+            return new TreeMap<>(endOffsets);
+        }
+    }
+
+    // Offsets dispatched but not finished, per partition; the checkpoint is the lowest of them
+    private static class PartitionProgress {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final TreeSet<Long> inFlight = new TreeSet<>();
+        private long next;
+
+        PartitionProgress(long start) {
+            this.next = start;
+        }
+
+        void dispatched(long offset) {
+            lock.lock();
+            try {
+                inFlight.add(offset);
+                next = offset + 1;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void done(long offset) {
+            lock.lock();
+            try {
+                inFlight.remove(offset);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void skippedTo(long position) {
+            lock.lock();
+            try {
+                next = Math.max(next, position);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long checkpoint() {
+            lock.lock();
+            try {
+                return inFlight.isEmpty() ? next : inFlight.first();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Starts a replay job in the background.
+     * @param request range, source topic and limits
+     * @return the started job
+     * @throws IllegalArgumentException if the request is invalid
+     * @throws IllegalStateException if a job with the same name is still running
+     */
+    public ReplayJob start(ReplayRequest request) {
+        String topic = "dlq".equalsIgnoreCase(request.getSource()) ? dlqTopic
+                : "failed".equalsIgnoreCase(request.getSource()) ? failedTopic : null;
+        if (topic == null) {
+            throw new IllegalArgumentException("source must be dlq or failed");
+        }
+        if (request.getName() == null || !request.getName().matches("[A-Za-z0-9._-]{1,64}")) {
+            throw new IllegalArgumentException("name must be 1-64 letters, digits, '.', '_' or '-'");
+        }
+        double rate = Math.min(maxRatePerSecond, request.getRatePerSecond() != null ? request.getRatePerSecond() : defaultRatePerSecond);
+        int concurrency = Math.max(1, request.getConcurrency() != null ? request.getConcurrency() : defaultConcurrency);
+
+        ReplayJob job = new ReplayJob(request.getName(), topic);
+        ReplayJob previous = jobs.putIfAbsent(job.getName(), job);
+        if (previous != null) {
+            if ("RUNNING".equals(previous.getStatus())) {
+                throw new IllegalStateException("Replay " + job.getName() + " is already running");
+            }
+            jobs.put(job.getName(), job);
+        }
+        Thread driver = new Thread(() -> run(job, request, new RateLimiter(rate), concurrency), "replay-" + job.getName());
+        driver.setDaemon(true);
+        driver.start();
+        logger.info("Started replay {} of {} at {} records/s with concurrency {}", job.getName(), topic, rate, concurrency);
+        return job;
+    }
+
+    /**
+     * @return the job with this name, or {@code null}
+     */
+    public ReplayJob get(String name) {
+        return jobs.get(name);
+    }
+
+    /**
+     * Asks a running job to stop after the records in flight; its checkpoints are kept.
+     * @return the job, or {@code null} if unknown
+     */
+    public ReplayJob cancel(String name) {
+        ReplayJob job = jobs.get(name);
+        if (job != null) job.cancelled = true;
+        return job;
+    }
+
+    private void run(ReplayJob job, ReplayRequest request, RateLimiter rateLimiter, int concurrency) {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, new CustomizableThreadFactory("replay-" + job.getName() + "-"));
+        Map<TopicPartition, PartitionProgress> progress = new HashMap<>();
+        try (Consumer<String, String> consumer = createConsumer(job.getName())) {
+            List<TopicPartition> partitions = new ArrayList<>();
+            for (PartitionInfo info : consumer.partitionsFor(job.getTopic())) {
+                partitions.add(new TopicPartition(info.topic(), info.partition()));
+            }
+            consumer.assign(partitions);
+            Map<TopicPartition, Long> start = startOffsets(consumer, partitions, request, job);
+            Map<TopicPartition, Long> end = endOffsets(consumer, partitions, request);
+
+            Set<TopicPartition> remaining = new HashSet<>();
+            for (TopicPartition tp : partitions) {
+                progress.put(tp, new PartitionProgress(start.get(tp)));
+                job.endOffsets.put(tp.partition(), end.get(tp));
+                if (start.get(tp) < end.get(tp)) {
+                    consumer.seek(tp, start.get(tp));
+                    remaining.add(tp);
+                }
+            }
+            consumer.pause(partitions.stream().filter(tp -> !remaining.contains(tp)).toList());
+
+            Semaphore slots = new Semaphore(concurrency);
+            long sinceCheckpoint = 0;
+            while (!remaining.isEmpty() && !job.cancelled) {
+                ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(500));
+                for (ConsumerRecord<String, String> consumerRecord : records) {
+                    TopicPartition tp = new TopicPartition(consumerRecord.topic(), consumerRecord.partition());
+                    if (!remaining.contains(tp) || job.cancelled) continue;
+                    if (consumerRecord.offset() >= end.get(tp)) {
+                        finish(consumer, remaining, tp);
+                        continue;
+                    }
+                    rateLimiter.acquire();
+                    slots.acquire();
+                    PartitionProgress partitionProgress = progress.get(tp);
+                    partitionProgress.dispatched(consumerRecord.offset());
+                    job.read.incrementAndGet();
+                    workers.execute(() -> {
+                        try {
+                            replayOne(job, consumerRecord, request);
+                        } finally {
+                            partitionProgress.done(consumerRecord.offset());
+                            slots.release();
+                        }
+                    });
+                    if (consumerRecord.offset() + 1 >= end.get(tp)) {
+                        finish(consumer, remaining, tp);
+                    }
+                    if (++sinceCheckpoint >= checkpointEvery) {
+                        saveCheckpoints(job, progress);
+                        sinceCheckpoint = 0;
+                    }
+                }
+                // gaps (compaction, transaction markers) can end a range without a record at end - 1
+                for (TopicPartition tp : new ArrayList<>(remaining)) {
+                    long position = consumer.position(tp);
+                    if (records.records(tp).isEmpty()) progress.get(tp).skippedTo(position);
+                    if (position >= end.get(tp)) finish(consumer, remaining, tp);
+                }
+            }
+            workers.shutdown();
+            workers.awaitTermination(10, TimeUnit.MINUTES);
+            saveCheckpoints(job, progress);
+            job.status = job.cancelled ? "CANCELLED" : "COMPLETED";
+            logger.info("Replay {} {}: read {}, replayed {}, invalid {}, failed {}", job.getName(), job.getStatus(),
+                    job.getRead(), job.getReplayed(), job.getInvalid(), job.getFailed());
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            workers.shutdownNow();
+            saveCheckpoints(job, progress);
+            job.error = e.getMessage();
+            job.status = "FAILED";
+            logger.error("Replay {} failed: {}", job.getName(), e.getMessage(), e);
+        }
+    }
+
+    private static void finish(Consumer<String, String> consumer, Set<TopicPartition> remaining, TopicPartition tp) {
+        remaining.remove(tp);
+        consumer.pause(Collections.singletonList(tp));
+    }
+
+    // Loads one DLQ bundle or failed resource; never throws so the job continues
+    private void replayOne(ReplayJob job, ConsumerRecord<String, String> consumerRecord, ReplayRequest request) {
+        try {
+            String fhirJson = toBundleJson(job.getTopic(), objectMapper.readTree(consumerRecord.value()));
+            if (fhirJson == null) {
+                job.failed.incrementAndGet();
+                logger.warn("Replay {}: record {}-{} has no payload", job.getName(), consumerRecord.partition(), consumerRecord.offset());
+                return;
+            }
+            if (request.isRevalidate()) {
+                ValidationResult result = ftService.validateFHIRResource(fhirJson);
+                if (!result.isSuccessful()) {
+                    job.invalid.incrementAndGet();
+                    return;
+                }
+            }
+            RequestInfo requestInfo = request.getRequestInfo();
+            FhirParseNLoadService.EntityProcessingResponse response = fpService.parseAndLoadFHIRResource(fhirJson, requestInfo);
+            if ("SUCCESS".equals(response.getStatus()) || "QUEUED".equals(response.getStatus())) {
+                job.replayed.incrementAndGet();
+            } else {
+                job.failed.incrementAndGet();
+            }
+        } catch (Exception e) {
+            job.failed.incrementAndGet();
+            logger.warn("Replay {}: record {}-{} failed: {}", job.getName(), consumerRecord.partition(), consumerRecord.offset(), e.getMessage());
+        }
+    }
+
+    // DLQ records carry a bundle (inline or claim-checked); failed records carry one resource
+    private String toBundleJson(String topic, JsonNode value) throws IOException {
+        if (topic.equals(dlqTopic)) {
+            JsonNode payload = value.has("fhirPayloadRef")
+                    ? claimCheckStore.checkOut(value.get("fhirPayloadRef"))
+                    : value.get("fhirPayload");
+            return payload == null || payload.isNull() ? null : objectMapper.writeValueAsString(payload);
+        }
+        String resource = value.path("fhirResource").asText(null);
+        if (resource == null) return null;
+        ObjectNode bundle = objectMapper.createObjectNode();
+        bundle.put("resourceType", "Bundle");
+        bundle.put("type", "collection");
+        bundle.putArray("entry").addObject().set("resource", objectMapper.readTree(resource));
+        return objectMapper.writeValueAsString(bundle);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Consumer<String, String> createConsumer(String name) {
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        overrides.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "100");
+        // partitions are assigned manually, so no group is joined
+        return (Consumer<String, String>) consumerFactory.createConsumer(null, "replay-" + name, null, overrides);
+    }
+
+    private Map<TopicPartition, Long> startOffsets(Consumer<String, String> consumer, List<TopicPartition> partitions,
+                                                   ReplayRequest request, ReplayJob job) throws IOException {
+        Map<TopicPartition, Long> beginning = consumer.beginningOffsets(partitions);
+        Map<TopicPartition, Long> start = new HashMap<>(beginning);
+        if (request.isResume()) {
+            Map<Integer, Long> saved = loadCheckpoints(job);
+            if (!saved.isEmpty()) {
+                partitions.forEach(tp -> start.put(tp, Math.max(beginning.get(tp), saved.getOrDefault(tp.partition(), beginning.get(tp)))));
+                return start;
+            }
+        }
+        if (request.getFromOffset() != null) {
+            partitions.forEach(tp -> start.put(tp, Math.max(beginning.get(tp), request.getFromOffset())));
+        } else if (request.getFromTime() != null) {
+            Map<TopicPartition, Long> byTime = offsetsForTime(consumer, partitions, request.getFromTime());
+            start.putAll(byTime);
+        }
+        return start;
+    }
+
+    private Map<TopicPartition, Long> endOffsets(Consumer<String, String> consumer, List<TopicPartition> partitions,
+                                                 ReplayRequest request) {
+        Map<TopicPartition, Long> current = consumer.endOffsets(partitions);
+        Map<TopicPartition, Long> end = new HashMap<>(current);
+        if (request.getToOffset() != null) {
+            partitions.forEach(tp -> end.put(tp, Math.min(current.get(tp), request.getToOffset())));
+        } else if (request.getToTime() != null) {
+            end.putAll(offsetsForTime(consumer, partitions, request.getToTime()));
+        }
+        return end;
+    }
+
+    // First offset at or after the instant; the end offset if there is none
+    private static Map<TopicPartition, Long> offsetsForTime(Consumer<String, String> consumer, List<TopicPartition> partitions, String time) {
+        long millis = Instant.parse(time).toEpochMilli();
+        Map<TopicPartition, Long> query = new HashMap<>();
+        partitions.forEach(tp -> query.put(tp, millis));
+        Map<TopicPartition, OffsetAndTimestamp> found = consumer.offsetsForTimes(query);
+        Map<TopicPartition, Long> current = consumer.endOffsets(partitions);
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        for (TopicPartition tp : partitions) {
+            OffsetAndTimestamp offset = found.get(tp);
+            offsets.put(tp, offset != null ? offset.offset() : current.get(tp));
+        }
+        return offsets;
+    }
+
+    private void saveCheckpoints(ReplayJob job, Map<TopicPartition, PartitionProgress> progress) {
+        if (progress.isEmpty()) return;
+        progress.forEach((tp, partitionProgress) -> job.checkpoints.put(tp.partition(), partitionProgress.checkpoint()));
+        try {
+            Path dir = Paths.get(checkpointDir);
+            Files.createDirectories(dir);
+            ObjectNode checkpoint = objectMapper.createObjectNode();
+            checkpoint.put("topic", job.getTopic());
+            checkpoint.set("offsets", objectMapper.valueToTree(job.getCheckpoints()));
+            Path temp = Files.createTempFile(dir, job.getName(), ".tmp");
+            Files.write(temp, objectMapper.writeValueAsBytes(checkpoint));
+            Files.move(temp, dir.resolve(job.getName() + ".json"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warn("Failed to write checkpoint of replay {}: {}", job.getName(), e.getMessage());
+        }
+    }
+
+    private Map<Integer, Long> loadCheckpoints(ReplayJob job) throws IOException {
+        Path file = Paths.get(checkpointDir).resolve(job.getName() + ".json");
+        Map<Integer, Long> offsets = new HashMap<>();
+        if (!Files.exists(file)) return offsets;
+        JsonNode checkpoint = objectMapper.readTree(file.toFile());
+        if (!job.getTopic().equals(checkpoint.path("topic").asText())) {
+            throw new IllegalArgumentException("Checkpoint " + job.getName() + " belongs to topic " + checkpoint.path("topic").asText());
+        }
+        checkpoint.path("offsets").fields().forEachRemaining(e -> offsets.put(Integer.parseInt(e.getKey()), e.getValue().asLong()));
+        return offsets;
+    }
+}
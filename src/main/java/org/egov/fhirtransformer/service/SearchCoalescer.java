@@ -0,0 +1,124 @@
+package org.egov.fhirtransformer.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.egov.fhirtransformer.common.DownstreamService;
+import org.egov.fhirtransformer.utils.HashUtils;
+import org.egov.fhirtransformer.utils.SingleFlight;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.net.URI;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight coalescing of identical concurrent DIGIT searches.
+ *
+ * <p>Searches are keyed by URI plus the request body with its RequestInfo removed and keys
+ * sorted, so per-request metadata such as msgId does not prevent sharing. Unless
+ * {@code downstream.coalesce.share-across-users} is set, a hash of the auth token is part of
+ * the key, so callers only share results fetched with the same credentials. Callers that share
+ * a call receive the same response object and must treat it as read-only. A search cut short by
+ * the deadline of the caller that started it is sent again for the callers that still have time.
+ */
+@Service
+public class SearchCoalescer {
+
+    private static final ObjectMapper CANONICAL = JsonMapper.builder()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+
+    private static final String REQUEST_INFO = "RequestInfo";
+
+    private final SingleFlight<String> singleFlight = new SingleFlight<>();
+    private final Map<DownstreamService, Counter> calls = new EnumMap<>(DownstreamService.class);
+    private final Map<DownstreamService, Counter> saved = new EnumMap<>(DownstreamService.class);
+    private final boolean enabled;
+    private final boolean shareAcrossUsers;
+
+    public SearchCoalescer(MeterRegistry meterRegistry,
+                           @Value("${downstream.coalesce.enabled:true}") boolean enabled,
+                           @Value("${downstream.coalesce.share-across-users:false}") boolean shareAcrossUsers) {
+        this.enabled = enabled;
+        this.shareAcrossUsers = shareAcrossUsers;
+        for (DownstreamService service : DownstreamService.values()) {
+            calls.put(service, Counter.builder("downstream.coalesce.calls")
+                    .description("Searches issued to DIGIT")
+                    .tag("service", service.key()).register(meterRegistry));
+            saved.put(service, Counter.builder("downstream.coalesce.saved")
+                    .description("Searches answered by an identical in-flight search")
+                    .tag("service", service.key()).register(meterRegistry));
+        }
+    }
+
+    /**
+     * Runs the search, or joins an identical one that is already in flight.
+     * @param service DIGIT service being searched
+     * @param uri full search URI including query parameters
+     * @param body search request body
+     * @param search performs the downstream call
+     * @return the search result, possibly shared with other callers
+     */
+    public <T> T coalesce(DownstreamService service, URI uri, Object body, Supplier<T> search) {
+        if (!enabled) {
+            calls.get(service).increment();
+            return search.get();
+        }
+        SingleFlight.Result<T> result = singleFlight.execute(key(service, uri, body), () -> {
+            calls.get(service).increment();
+            return search.get();
+        });
+        if (result.shared()) {
+            saved.get(service).increment();
+        }
+        return result.value();
+    }
+
+    /**
+     * Non-blocking variant of {@link #coalesce}.
+     * @param search starts the downstream call
+     * @return future of the search result, possibly shared with other callers
+     */
+    public <T> CompletableFuture<T> coalesceAsync(DownstreamService service, URI uri, Object body,
+                                                  Supplier<CompletableFuture<T>> search) {
+        if (!enabled) {
+            calls.get(service).increment();
+            return search.get();
+        }
+        SingleFlight.Result<CompletableFuture<T>> result = singleFlight.executeAsync(key(service, uri, body), () -> {
+            calls.get(service).increment();
+            return search.get();
+        });
+        if (result.shared()) {
+            saved.get(service).increment();
+        }
+        return result.value();
+    }
+
+    private String key(DownstreamService service, URI uri, Object body) {
+        JsonNode tree = CANONICAL.valueToTree(body);
+        String authToken = tree.path(REQUEST_INFO).path("authToken").asText("");
+        if (tree instanceof ObjectNode objectNode) {
+            objectNode.remove(REQUEST_INFO);
+        }
+        String canonicalBody;
+        try {
+            // re-read through the canonical mapper so nested map keys are sorted too
+            canonicalBody = CANONICAL.writeValueAsString(CANONICAL.treeToValue(tree, Object.class));
+        } catch (Exception e) {
+            canonicalBody = tree.toString();
+        }
+        String user = shareAcrossUsers ? "" : HashUtils.sha256Hex(authToken);
+        return service.key() + '|' + uri + '|' + user + '|' + canonicalBody;
+    }
+
+}
@@ -0,0 +1,133 @@
+package org.egov.fhirtransformer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.egov.fhirtransformer.utils.RequestDeadline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Sends an ingestion to the replica that owns its tenant (see {@link ShardOwnership}) and relays
+ * the owner's response.
+ *
+ * <p>A forwarded request carries {@link #FORWARDED_HEADER} and is always processed by the
+ * receiver, so replicas whose rings briefly disagree during a rebalance never bounce a request
+ * back and forth. If the owner cannot be reached the request is processed locally. The counter
+ * {@code shard.forwarded} (tag outcome: ok, local, failed) tracks forwarding.
+ */
+@Service
+public class ShardForwarder {
+
+    public static final String FORWARDED_HEADER = "X-Shard-Forwarded";
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardForwarder.class);
+
+    private final ShardOwnership shardOwnership;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final HttpClient httpClient;
+    private final long timeoutMs;
+    private final String deadlineHeader;
+
+    public ShardForwarder(ShardOwnership shardOwnership,
+                          ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry,
+                          @Value("${shard.forward.connect-timeout-ms:1000}") long connectTimeoutMs,
+                          @Value("${shard.forward.timeout-ms:300000}") long timeoutMs,
+                          @Value("${request.deadline.header:X-Request-Timeout-Ms}") String deadlineHeader) {
+        this.shardOwnership = shardOwnership;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.timeoutMs = timeoutMs;
+        this.deadlineHeader = deadlineHeader;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+    }
+
+    /**
+     * Forwards the request to the owner of the tenant, or runs it here if this replica owns the
+     * tenant, sharding is off or the request was already forwarded.
+     * @param tenantId tenant of the ingestion
+     * @param authToken Authorization header of the request; may be {@code null}
+     * @param body request body, sent again as JSON
+     * @param request incoming request; its path is used on the owner
+     * @param local processes the request on this replica
+     * @return future of the response to return to the client
+     */
+    public CompletableFuture<ResponseEntity<String>> route(String tenantId, String authToken, Object body,
+                                                           HttpServletRequest request,
+                                                           Supplier<CompletableFuture<ResponseEntity<String>>> local) {
+        String ownerUrl = request.getHeader(FORWARDED_HEADER) == null ? shardOwnership.ownerUrl(tenantId) : null;
+        if (ownerUrl == null) return local.get();
+
+        HttpRequest forward;
+        long timeout = RequestDeadline.cap(timeoutMs);
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(ownerUrl + request.getRequestURI()))
+                    .timeout(Duration.ofMillis(timeout))
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .header(FORWARDED_HEADER, shardOwnership.getInstanceId())
+                    .header(deadlineHeader, String.valueOf(timeout))
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+            if (authToken != null && !authToken.isEmpty()) {
+                builder.header(HttpHeaders.AUTHORIZATION, authToken);
+            }
+            forward = builder.build();
+        } catch (Exception e) {
+            logger.warn("Cannot forward tenant {} to {}, processing locally: {}", tenantId, ownerUrl, e.getMessage());
+            meterRegistry.counter("shard.forwarded", "outcome", "local").increment();
+            return local.get();
+        }
+
+        // the fallback runs on an HTTP client thread; give it the request's deadline
+        RequestDeadline deadline = RequestDeadline.current();
+        return httpClient.sendAsync(forward, HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    if (error == null) {
+                        meterRegistry.counter("shard.forwarded", "outcome", "ok").increment();
+                        return CompletableFuture.completedFuture(relay(response));
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException) {
+                        // the owner went away; the ring drops it within shard.member-ttl-ms
+                        logger.warn("Shard owner {} of tenant {} unreachable, processing locally", ownerUrl, tenantId);
+                        meterRegistry.counter("shard.forwarded", "outcome", "local").increment();
+                        try (RequestDeadline.Scope ignored = deadline != null ? deadline.bind() : () -> { }) {
+                            return local.get();
+                        }
+                    }
+                    logger.error("Forwarding tenant {} to {} failed: {}", tenantId, ownerUrl, cause.getMessage());
+                    meterRegistry.counter("shard.forwarded", "outcome", "failed").increment();
+                    HttpStatus status = cause instanceof HttpTimeoutException ? HttpStatus.GATEWAY_TIMEOUT : HttpStatus.BAD_GATEWAY;
+                    return CompletableFuture.completedFuture(ResponseEntity.status(status)
+                            .body("Forwarding to the shard owner failed: " + cause.getMessage()));
+                })
+                .thenCompose(future -> future);
+    }
+
+    private ResponseEntity<String> relay(HttpResponse<String> response) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.statusCode());
+        response.headers().firstValue(HttpHeaders.RETRY_AFTER).ifPresent(value -> builder.header(HttpHeaders.RETRY_AFTER, value));
+        response.headers().firstValue(HttpHeaders.CONTENT_TYPE).ifPresent(value -> builder.header(HttpHeaders.CONTENT_TYPE, value));
+        return builder.body(response.body());
+    }
+}
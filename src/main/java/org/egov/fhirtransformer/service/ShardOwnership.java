@@ -0,0 +1,187 @@
+package org.egov.fhirtransformer.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.egov.fhirtransformer.utils.ConsistentHashRing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assigns each tenant to one replica, so that a tenant's ingestion, merged batches and fair-queue
+ * share stay on the same instance as the service scales out.
+ *
+ * <p>With {@code shard.enabled}, every replica writes a heartbeat to a Redis sorted set
+ * ({@code <shard.redis-prefix>members}) and its URL to a hash ({@code <shard.redis-prefix>urls})
+ * every {@code shard.heartbeat-ms}. Replicas seen within {@code shard.member-ttl-ms} form a
+ * {@link ConsistentHashRing} with {@code shard.virtual-nodes} points each, and the ring decides
+ * the owner of a tenant. When a replica joins or leaves, only the tenants next to its points move;
+ * the others keep their owner. A replica that shuts down removes itself, so the others take over
+ * on their next heartbeat.
+ *
+ * <p>Without a fresh view of the members, e.g. while Redis is unreachable, every replica serves
+ * every tenant. The gauge {@code shard.members} and counter {@code shard.rebalances} show the ring.
+ *
+ * <p>No local cache follows the ownership: existence checks read DIGIT on every ingestion, because
+ * the record DIGIT returns decides whether an update is skipped, and a cached copy would miss
+ * changes made outside this service.
+ */
+@Service
+public class ShardOwnership {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardOwnership.class);
+
+    private final ObjectProvider<RedisConnectionFactory> connectionFactory;
+    private final Counter rebalances;
+    private final boolean enabled;
+    private final String instanceId;
+    private final String advertiseUrl;
+    private final String membersKey;
+    private final String urlsKey;
+    private final long heartbeatMs;
+    private final long memberTtlMs;
+    private final int virtualNodes;
+
+    private StringRedisTemplate redisTemplate;
+    private ScheduledExecutorService heartbeat;
+    private volatile ConsistentHashRing ring;
+    private volatile Map<String, String> urls = Map.of();
+    private volatile long refreshedAt;
+
+    public ShardOwnership(ObjectProvider<RedisConnectionFactory> connectionFactory,
+                          MeterRegistry meterRegistry,
+                          @Value("${shard.enabled:false}") boolean enabled,
+                          @Value("${shard.instance-id:${HOSTNAME:}}") String instanceId,
+                          @Value("${shard.advertise-url:}") String advertiseUrl,
+                          @Value("${server.port:8080}") int serverPort,
+                          @Value("${shard.redis-prefix:fhir:shard:}") String redisPrefix,
+                          @Value("${shard.heartbeat-ms:2000}") long heartbeatMs,
+                          @Value("${shard.member-ttl-ms:10000}") long memberTtlMs,
+                          @Value("${shard.virtual-nodes:128}") int virtualNodes) {
+        this.connectionFactory = connectionFactory;
+        this.enabled = enabled;
+        this.instanceId = instanceId != null && !instanceId.isBlank() ? instanceId : UUID.randomUUID().toString();
+        this.advertiseUrl = advertiseUrl != null && !advertiseUrl.isBlank() ? advertiseUrl : localUrl(serverPort);
+        this.membersKey = redisPrefix + "members";
+        this.urlsKey = redisPrefix + "urls";
+        this.heartbeatMs = heartbeatMs;
+        this.memberTtlMs = memberTtlMs;
+        this.virtualNodes = virtualNodes;
+        this.rebalances = Counter.builder("shard.rebalances")
+                .description("Changes of the replica set that owns the tenants").register(meterRegistry);
+        Gauge.builder("shard.members", this, s -> {
+            ConsistentHashRing current = s.currentRing();
+            return current == null ? 0 : current.getMembers().size();
+        }).description("Replicas on the shard ring").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        redisTemplate = new StringRedisTemplate(connectionFactory.getObject());
+        heartbeat = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("shard-heartbeat-"));
+        heartbeat.scheduleWithFixedDelay(this::refresh, 0, heartbeatMs, TimeUnit.MILLISECONDS);
+        logger.info("Shard ownership enabled as {} ({})", instanceId, advertiseUrl);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * @return {@code true} if this replica serves the tenant, always when sharding is off or the
+     *         member view is stale
+     */
+    public boolean owns(String tenantId) {
+        ConsistentHashRing current = currentRing();
+        return current == null || current.isEmpty() || instanceId.equals(current.owner(tenantId));
+    }
+
+    /**
+     * @return base URL of the replica that serves the tenant, or {@code null} if it is this one or unknown
+     */
+    public String ownerUrl(String tenantId) {
+        ConsistentHashRing current = currentRing();
+        if (current == null) return null;
+        String owner = current.owner(tenantId);
+        if (owner == null || owner.equals(instanceId)) return null;
+        return urls.get(owner);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!enabled) return;
+        heartbeat.shutdownNow();
+        try {
+            // leave the ring now instead of after the member TTL
+            redisTemplate.opsForZSet().remove(membersKey, instanceId);
+            redisTemplate.opsForHash().delete(urlsKey, instanceId);
+        } catch (Exception e) {
+            logger.warn("Failed to leave the shard ring: {}", e.getMessage());
+        }
+    }
+
+    private ConsistentHashRing currentRing() {
+        if (!enabled || System.currentTimeMillis() - refreshedAt > memberTtlMs) return null;
+        return ring;
+    }
+
+    private void refresh() {
+        try {
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForHash().put(urlsKey, instanceId, advertiseUrl);
+            redisTemplate.opsForZSet().add(membersKey, instanceId, now);
+            redisTemplate.opsForZSet().removeRangeByScore(membersKey, 0, now - memberTtlMs);
+            Set<String> members = redisTemplate.opsForZSet().rangeByScore(membersKey, now - memberTtlMs, Double.MAX_VALUE);
+            if (members == null || members.isEmpty()) return;
+
+            Map<String, String> memberUrls = new HashMap<>();
+            for (Map.Entry<Object, Object> entry : redisTemplate.opsForHash().entries(urlsKey).entrySet()) {
+                String member = String.valueOf(entry.getKey());
+                if (members.contains(member)) {
+                    memberUrls.put(member, String.valueOf(entry.getValue()));
+                } else {
+                    redisTemplate.opsForHash().delete(urlsKey, member);
+                }
+            }
+            urls = memberUrls;
+            ConsistentHashRing previous = ring;
+            if (previous == null || !previous.getMembers().equals(members)) {
+                ring = new ConsistentHashRing(members, virtualNodes);
+                rebalances.increment();
+                logger.info("Shard ring changed: {} replicas {}", members.size(), members);
+            }
+            refreshedAt = now;
+        } catch (Exception e) {
+            logger.warn("Shard membership refresh failed: {}", e.getMessage());
+        }
+    }
+
+    private static String localUrl(int serverPort) {
+        try {
+            return "http://" + InetAddress.getLocalHost().getHostAddress() + ":" + serverPort;
+        } catch (Exception e) {
+            return "http://localhost:" + serverPort;
+        }
+    }
+}
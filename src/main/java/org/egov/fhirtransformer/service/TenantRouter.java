@@ -0,0 +1,136 @@
+package org.egov.fhirtransformer.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.egov.common.contract.request.RequestInfo;
+import org.egov.fhirtransformer.common.TenantNotAllowedException;
+import org.egov.fhirtransformer.utils.TenantContext;
+import org.hl7.fhir.r5.model.Bundle;
+import org.hl7.fhir.r5.model.Coding;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriComponentsBuilder;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Resolves the tenant of an ingestion and the DIGIT endpoints that serve it.
+ *
+ * <p>The tenant is taken from the bundle's {@code meta.tag} with system
+ * {@code tenant.bundle-tag-system}, else from {@code RequestInfo.userInfo.tenantId}, else
+ * {@code app.tenant-id}. A tag is only honoured if it names the user's tenant, {@code app.tenant-id}
+ * or one of {@code tenant.allowed-ids}; any other tag is refused, so clients cannot load into a
+ * tenant that is not theirs or create an unbounded number of tenants in metrics and outbox lanes.
+ * A tenant hosted on its own DIGIT deployment sets
+ * {@code tenant.<id>.host}; its searches and writes then go to that scheme, host and port with the
+ * configured paths. {@code tenant.<id>.weight} sets its share of the ingestion threads. No data
+ * is cached per tenant; existence checks always read the tenant's DIGIT deployment.
+ */
+@Service
+public class TenantRouter {
+
+    private final Environment environment;
+    private final String defaultTenant;
+    private final String bundleTagSystem;
+    private final Set<String> allowedTenants = new HashSet<>();
+
+    public TenantRouter(Environment environment,
+                        @Value("${app.tenant-id}") String defaultTenant,
+                        @Value("${tenant.bundle-tag-system:https://digit.org/fhir/tenant}") String bundleTagSystem,
+                        @Value("${tenant.allowed-ids:}") String allowedTenants) {
+        this.environment = environment;
+        this.defaultTenant = defaultTenant;
+        this.bundleTagSystem = bundleTagSystem;
+        this.allowedTenants.add(defaultTenant);
+        for (String tenantId : allowedTenants.split(",")) {
+            if (hasText(tenantId)) this.allowedTenants.add(tenantId.trim());
+        }
+    }
+
+    /**
+     * @param requestInfo request metadata; may be {@code null}
+     * @param bundle parsed bundle; may be {@code null}
+     * @return tenant the bundle is loaded into
+     * @throws TenantNotAllowedException if the bundle's tenant tag is not allowed for the caller
+     */
+    public String resolve(RequestInfo requestInfo, Bundle bundle) {
+        if (bundle != null && bundle.hasMeta()) {
+            for (Coding tag : bundle.getMeta().getTag()) {
+                if (bundleTagSystem.equals(tag.getSystem()) && hasText(tag.getCode())) {
+                    return checkTag(tag.getCode().trim(), requestInfo);
+                }
+            }
+        }
+        return fromRequestInfo(requestInfo);
+    }
+
+    /**
+     * Same as {@link #resolve(RequestInfo, Bundle)} for a bundle that has not been parsed yet.
+     */
+    public String resolve(RequestInfo requestInfo, JsonNode bundle) {
+        if (bundle != null) {
+            for (JsonNode tag : bundle.path("meta").path("tag")) {
+                if (bundleTagSystem.equals(tag.path("system").asText()) && hasText(tag.path("code").asText())) {
+                    return checkTag(tag.path("code").asText().trim(), requestInfo);
+                }
+            }
+        }
+        return fromRequestInfo(requestInfo);
+    }
+
+    /**
+     * @return the tenant bound to this thread, or {@code app.tenant-id}
+     */
+    public String current() {
+        String tenantId = TenantContext.current();
+        return tenantId != null ? tenantId : defaultTenant;
+    }
+
+    /**
+     * Points a configured DIGIT URL at the deployment of the current tenant.
+     */
+    public String route(String url) {
+        return route(current(), url);
+    }
+
+    /**
+     * @param tenantId tenant the call is made for; {@code null} uses the current tenant
+     * @param url configured DIGIT URL
+     * @return the URL on {@code tenant.<id>.host}, or {@code url} if the tenant has no host of its own
+     */
+    public String route(String tenantId, String url) {
+        String host = environment.getProperty("tenant." + (tenantId != null ? tenantId : current()) + ".host");
+        if (!hasText(host) || url == null) return url;
+        URI target = URI.create(host.trim());
+        return UriComponentsBuilder.fromUriString(url)
+                .scheme(target.getScheme())
+                .host(target.getHost())
+                .port(target.getPort())
+                .build(true)
+                .toUriString();
+    }
+
+    /**
+     * @return share of the ingestion threads the tenant gets while others wait; default 1
+     */
+    public double weight(String tenantId) {
+        return environment.getProperty("tenant." + tenantId + ".weight", Double.class, 1.0);
+    }
+
+    private String checkTag(String tenantId, RequestInfo requestInfo) {
+        if (allowedTenants.contains(tenantId) || tenantId.equals(fromRequestInfo(requestInfo))) return tenantId;
+        throw new TenantNotAllowedException("Tenant '" + tenantId + "' of the bundle is not allowed for this user");
+    }
+
+    private String fromRequestInfo(RequestInfo requestInfo) {
+        if (requestInfo != null && requestInfo.getUserInfo() != null && hasText(requestInfo.getUserInfo().getTenantId())) {
+            return requestInfo.getUserInfo().getTenantId().trim();
+        }
+        return defaultTenant;
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+}
@@ -0,0 +1,71 @@
+package org.egov.fhirtransformer.utils;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Chooses the number of records per bulk request from the outcome of previous requests.
+ *
+ * <p>A chunk answered within {@code targetLatencyMillis} grows the size by a tenth; a slower chunk
+ * scales it down in proportion to how far it overshot; a rejected chunk (413, 5xx, timeout)
+ * halves it. The size always stays within {@code [minSize, maxSize]}.
+ */
+public final class AdaptiveChunkSizer {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int minSize;
+    private final int maxSize;
+    private final long targetLatencyNanos;
+    private double size;
+
+    public AdaptiveChunkSizer(int initialSize, int minSize, int maxSize, long targetLatencyMillis) {
+        this.minSize = Math.max(1, minSize);
+        this.maxSize = Math.max(this.minSize, maxSize);
+        this.targetLatencyNanos = Math.max(1, targetLatencyMillis) * 1_000_000L;
+        this.size = clamp(initialSize);
+    }
+
+    /**
+     * @return records to put in the next chunk
+     */
+    public int current() {
+        lock.lock();
+        try {
+            return (int) size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a chunk that was accepted.
+     * @param latencyNanos time the bulk request took
+     */
+    public void onSuccess(long latencyNanos) {
+        lock.lock();
+        try {
+            if (latencyNanos <= targetLatencyNanos) {
+                size = clamp(size + Math.max(1, size / 10));
+            } else {
+                size = clamp(size * targetLatencyNanos / latencyNanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a chunk rejected for its size or load: payload too large, server error or timeout.
+     */
+    public void onOverload() {
+        lock.lock();
+        try {
+            size = clamp(size / 2);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double clamp(double value) {
+        return Math.max(minSize, Math.min(maxSize, value));
+    }
+}
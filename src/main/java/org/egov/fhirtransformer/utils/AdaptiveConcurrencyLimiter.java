@@ -0,0 +1,220 @@
+package org.egov.fhirtransformer.utils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * AIMD concurrency limit for one downstream service.
+ *
+ * <p>Each call that completes within {@code latencyThresholdMillis} without being dropped grows
+ * the limit by {@code 1/limit} (about +1 per round trip at full load). A dropped call (5xx, 429,
+ * timeout, I/O error) or a call slower than the threshold multiplies it by {@code backoffRatio}.
+ * An ignored call, e.g. one cut short by the caller's own deadline, only returns its permit.
+ * Callers over the limit wait in a bounded queue for up to the queue timeout: blocking callers
+ * park, async callers are started when a permit frees up and failed if none does in time.
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    /**
+     * What a finished call says about the service.
+     */
+    public enum Outcome { SUCCESS, DROPPED, IGNORED }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private final Deque<Runnable> asyncWaiters = new ArrayDeque<>();
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final int maxQueue;
+
+    private double limit;
+    private int inFlight;
+    private int blockedWaiters;
+    private long rejected;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+                                      long latencyThresholdMillis, double backoffRatio, int maxQueue) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.backoffRatio = backoffRatio;
+        this.maxQueue = Math.max(0, maxQueue);
+    }
+
+    /**
+     * Takes a permit, waiting up to {@code timeoutMillis} if the limit is reached.
+     * @return {@code false} if the queue is full or no permit freed up in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean acquire(long timeoutMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return true;
+            }
+            if (queued() >= maxQueue) {
+                rejected++;
+                return false;
+            }
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            blockedWaiters++;
+            try {
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        rejected++;
+                        return false;
+                    }
+                    remaining = permitReleased.awaitNanos(remaining);
+                }
+                inFlight++;
+                return true;
+            } finally {
+                blockedWaiters--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts an async call when a permit is available. The permit is released and the limit
+     * adjusted when the returned future completes; {@code classify} maps the failure, or
+     * {@code null} on success, to its outcome. A call still queued after {@code timeoutMillis}
+     * is not started and its future fails with the exception from {@code timedOut}.
+     * @return the call's result, or {@code null} if the queue is full
+     */
+    public <R> CompletableFuture<R> submit(Supplier<CompletableFuture<R>> call,
+                                           Function<Throwable, Outcome> classify,
+                                           long timeoutMillis,
+                                           Supplier<? extends RuntimeException> timedOut) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            long startedAt = System.nanoTime();
+            CompletableFuture<R> future;
+            try {
+                future = call.get();
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((value, error) -> {
+                release(System.nanoTime() - startedAt, classify.apply(error));
+                if (error != null) result.completeExceptionally(error);
+                else result.complete(value);
+            });
+        };
+        boolean startNow;
+        lock.lock();
+        try {
+            startNow = inFlight < (int) limit;
+            if (startNow) {
+                inFlight++;
+            } else if (queued() >= maxQueue) {
+                rejected++;
+                return null;
+            } else {
+                asyncWaiters.add(start);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (startNow) {
+            start.run();
+        } else {
+            CompletableFuture.delayedExecutor(Math.max(0, timeoutMillis), TimeUnit.MILLISECONDS)
+                    .execute(() -> expire(start, result, timedOut));
+        }
+        return result;
+    }
+
+    // Fails a call that is still queued; one that has started in the meantime is left alone
+    private <R> void expire(Runnable start, CompletableFuture<R> result, Supplier<? extends RuntimeException> timedOut) {
+        lock.lock();
+        try {
+            if (!asyncWaiters.remove(start)) return;
+            rejected++;
+        } finally {
+            lock.unlock();
+        }
+        result.completeExceptionally(timedOut.get());
+    }
+
+    /**
+     * Returns a permit and feeds the call's outcome into the limit.
+     * @param rttNanos observed round trip time
+     * @param outcome {@link Outcome#DROPPED} if the call failed in a way that signals overload,
+     *                {@link Outcome#IGNORED} if it says nothing about the service
+     */
+    public void release(long rttNanos, Outcome outcome) {
+        Runnable next = null;
+        lock.lock();
+        try {
+            inFlight--;
+            if (outcome == Outcome.DROPPED || (outcome == Outcome.SUCCESS && rttNanos > latencyThresholdNanos)) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (outcome == Outcome.SUCCESS) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            if (inFlight < (int) limit) {
+                if (blockedWaiters > 0) {
+                    permitReleased.signal();
+                } else if (!asyncWaiters.isEmpty()) {
+                    next = asyncWaiters.poll();
+                    inFlight++;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (next != null) next.run();
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejected() {
+        lock.lock();
+        try {
+            return rejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int queued() {
+        return blockedWaiters + asyncWaiters.size();
+    }
+}
@@ -32,6 +32,31 @@ public class BundleBuilder {
         return bundle;
     }
 
+    /**
+     * Adds resources resolved through {@code _include} to a SEARCHSET Bundle.
+     * Existing entries are marked as matches and the added entries as includes.
+     * @param bundle target FHIR Bundle
+     * @param included included resources; may be empty
+     * @return updated {@link Bundle}
+     */
+    public static Bundle addIncludeEntries(Bundle bundle, List<? extends Resource> included) {
+        if (included == null || included.isEmpty()) {
+            return bundle;
+        }
+        for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
+            if (!entry.hasSearch()) {
+                entry.getSearch().setMode(Bundle.SearchEntryMode.MATCH);
+            }
+        }
+        for (Resource resource : included) {
+            bundle.addEntry()
+                    .setResource(resource)
+                    .setFullUrl("urn:uuid:" + UUID.randomUUID())
+                    .getSearch().setMode(Bundle.SearchEntryMode.INCLUDE);
+        }
+        return bundle;
+    }
+
     /**
      * Creates an empty FHIR SEARCHSET Bundle with metadata populated.
      * @param totalCount total number of records available
@@ -0,0 +1,153 @@
+package org.egov.fhirtransformer.utils;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Count based circuit breaker over the last {@code windowSize} calls.
+ *
+ * <p>CLOSED: calls pass; once at least {@code minimumCalls} outcomes are recorded and the failure
+ * rate reaches {@code failureRateThreshold}, the breaker opens. OPEN: calls are rejected until
+ * {@code openMillis} have passed. HALF_OPEN: up to {@code halfOpenCalls} trial calls pass; if they
+ * all succeed the breaker closes, a single failure opens it again.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openMillis;
+    private final int halfOpenCalls;
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failures;
+    private long openedAt;
+    private int halfOpenPermitted;
+    private int halfOpenSucceeded;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                          long openMillis, int halfOpenCalls) {
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, window.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = openMillis;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+    }
+
+    /**
+     * @return {@code true} if a call may be made now; every permitted call must be followed by
+     *         {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (System.currentTimeMillis() - openedAt < openMillis) return false;
+                state = State.HALF_OPEN;
+                halfOpenPermitted = 0;
+                halfOpenSucceeded = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermitted >= halfOpenCalls) return false;
+                halfOpenPermitted++;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                if (++halfOpenSucceeded >= halfOpenCalls) close();
+                return;
+            }
+            record(false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onFailure() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                open();
+                return;
+            }
+            record(true);
+            if (recorded >= minimumCalls && failureRate() >= failureRateThreshold) open();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a permit taken by {@link #tryAcquire()} for a call that was never made, or whose
+     * result says nothing about the service.
+     */
+    public void onIgnored() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN && halfOpenPermitted > 0) halfOpenPermitted--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public State getState() {
+        lock.lock();
+        try {
+            // report the transition that the next call would make
+            if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) return State.HALF_OPEN;
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return failure rate over the current window, 0 when nothing has been recorded
+     */
+    public double getFailureRate() {
+        lock.lock();
+        try {
+            return failureRate();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double failureRate() {
+        return recorded == 0 ? 0 : (double) failures / recorded;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == window.length) {
+            if (window[next]) failures--;
+        } else {
+            recorded++;
+        }
+        window[next] = failure;
+        if (failure) failures++;
+        next = (next + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+    }
+}
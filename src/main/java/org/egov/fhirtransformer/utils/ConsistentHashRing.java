@@ -0,0 +1,49 @@
+package org.egov.fhirtransformer.utils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent-hash ring of replica ids.
+ *
+ * <p>Each member is placed on the ring at {@code virtualNodes} points; a key belongs to the first
+ * member point at or after the key's hash. When a member joins or leaves, only the keys between
+ * its points and their neighbours change owner, about {@code 1/members} of all keys, so every
+ * other replica keeps the keys (and any state it holds for them) it already had.
+ */
+public final class ConsistentHashRing {
+
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+    private final Set<String> members;
+
+    public ConsistentHashRing(Collection<String> members, int virtualNodes) {
+        this.members = Collections.unmodifiableSet(new TreeSet<>(members));
+        for (String member : this.members) {
+            for (int i = 0; i < Math.max(1, virtualNodes); i++) {
+                points.put(HashUtils.sha256Long(member + '#' + i), member);
+            }
+        }
+    }
+
+    /**
+     * @return owning member of the key, or {@code null} if the ring is empty
+     */
+    public String owner(String key) {
+        if (points.isEmpty()) return null;
+        Map.Entry<Long, String> point = points.ceilingEntry(HashUtils.sha256Long(key));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    public Set<String> getMembers() {
+        return members;
+    }
+
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+}
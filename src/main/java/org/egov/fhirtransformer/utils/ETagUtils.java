@@ -0,0 +1,82 @@
+package org.egov.fhirtransformer.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Utility methods for computing and matching weak entity tags on fetch responses.
+ */
+public final class ETagUtils {
+
+    private static final String WEAK_PREFIX = "W/";
+
+    private ETagUtils() {
+    }
+
+    /**
+     * Computes a weak ETag from the identity and last modification time of each record.
+     * The tag is derived from the DIGIT records before they are mapped, so an unchanged
+     * page can be answered without building any FHIR resources.
+     * @param records DIGIT records returned by the search
+     * @param idFn extracts the record id
+     * @param lastModifiedFn extracts the record last modified time; may return {@code null}
+     * @param discriminators additional values identifying the page (paging, tenant, total)
+     * @param <T> record type
+     * @return weak ETag, e.g. {@code W/"3f2a..."}
+     */
+    public static <T> String weakETag(List<T> records, Function<T, String> idFn,
+                                      Function<T, Long> lastModifiedFn, Object... discriminators) {
+        MessageDigest digest = sha256();
+        for (Object discriminator : discriminators) {
+            update(digest, String.valueOf(discriminator));
+        }
+        for (T record : records) {
+            update(digest, idFn.apply(record));
+            update(digest, String.valueOf(lastModifiedFn.apply(record)));
+        }
+        String hash = HexFormat.of().formatHex(digest.digest(), 0, 16);
+        return WEAK_PREFIX + "\"" + hash + "\"";
+    }
+
+    /**
+     * Checks whether an {@code If-None-Match} header matches the given ETag
+     * using the weak comparison function.
+     * @param ifNoneMatch raw header value; may be {@code null}
+     * @param eTag current ETag of the response
+     * @return {@code true} if the client copy is still current
+     */
+    public static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank() || eTag == null) {
+            return false;
+        }
+        String current = opaqueTag(eTag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if ("*".equals(tag) || opaqueTag(tag).equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String tag) {
+        return tag.startsWith(WEAK_PREFIX) ? tag.substring(WEAK_PREFIX.length()) : tag;
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.egov.fhirtransformer.utils;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import org.egov.fhirtransformer.common.Constants;
+import org.egov.fhirtransformer.common.InvalidSearchParameterException;
+import org.hl7.fhir.r5.model.Meta;
+import org.springframework.util.MultiValueMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Element projection requested through {@code _elements} or {@code _summary=true}.
+ *
+ * <p>Mappers consult {@link #includes(String)} while building a resource so that elements
+ * outside the projection are never built or encoded. {@code id}, {@code meta} and elements
+ * that are mandatory in the resource definition are always included.
+ */
+public final class ElementProjection {
+
+    public static final ElementProjection ALL = new ElementProjection(null);
+
+    private static final String SUBSETTED_SYSTEM = "http://terminology.hl7.org/CodeSystem/v3-ObservationValue";
+    private static final String SUBSETTED_CODE = "SUBSETTED";
+
+    // null means every element is included
+    private final Set<String> elements;
+
+    private ElementProjection(Set<String> elements) {
+        this.elements = elements;
+    }
+
+    /**
+     * Checks whether {@code _summary=count} was requested, in which case only the total is returned.
+     * @param params FHIR query parameters
+     * @return {@code true} if no resources should be mapped
+     */
+    public static boolean isCountOnly(MultiValueMap<String, String> params) {
+        return Constants.SUMMARY_COUNT.equals(params.getFirst(Constants.SP_SUMMARY));
+    }
+
+    /**
+     * Resolves the projection for a resource type from {@code _elements} and {@code _summary}.
+     * @param ctx FHIR context used to look up summary and mandatory elements
+     * @param resourceType FHIR resource type name, e.g. {@code Location}
+     * @param params FHIR query parameters
+     * @return resolved projection, {@link #ALL} if none was requested
+     * @throws InvalidSearchParameterException if both parameters are given or a value is not supported
+     */
+    public static ElementProjection resolve(FhirContext ctx, String resourceType, MultiValueMap<String, String> params) {
+        String summary = params.getFirst(Constants.SP_SUMMARY);
+        String elementsParam = params.getFirst(Constants.SP_ELEMENTS);
+        boolean hasSummary = summary != null && !summary.isBlank();
+        boolean hasElements = elementsParam != null && !elementsParam.isBlank();
+
+        if (hasSummary && hasElements) {
+            throw new InvalidSearchParameterException("_summary and _elements cannot be combined");
+        }
+        RuntimeResourceDefinition definition = ctx.getResourceDefinition(resourceType);
+        if (hasElements) {
+            Set<String> requested = Arrays.stream(elementsParam.split(","))
+                    .map(String::trim)
+                    .filter(e -> !e.isEmpty())
+                    .map(e -> e.startsWith(resourceType + ".") ? e.substring(resourceType.length() + 1) : e)
+                    .collect(Collectors.toCollection(TreeSet::new));
+            for (String element : requested) {
+                if (definition.getChildByName(element) == null && definition.getChildByName(element + "[x]") == null) {
+                    throw new InvalidSearchParameterException("Unknown element '" + element + "' for " + resourceType);
+                }
+            }
+            requested.addAll(mandatoryElements(definition));
+            return new ElementProjection(requested);
+        }
+        if (!hasSummary || "false".equals(summary) || "data".equals(summary)) {
+            return ALL;
+        }
+        if ("true".equals(summary)) {
+            Set<String> summaryElements = definition.getChildren().stream()
+                    .filter(BaseRuntimeChildDefinition::isSummary)
+                    .map(child -> elementName(child))
+                    .collect(Collectors.toCollection(TreeSet::new));
+            summaryElements.addAll(mandatoryElements(definition));
+            return new ElementProjection(summaryElements);
+        }
+        throw new InvalidSearchParameterException("Unsupported _summary value '" + summary + "'");
+    }
+
+    /**
+     * @param element top level element name, e.g. {@code address}
+     * @return {@code true} if the element should be built
+     */
+    public boolean includes(String element) {
+        return elements == null || elements.contains(element);
+    }
+
+    /**
+     * @return {@code true} if some elements are left out of the resource
+     */
+    public boolean isSubsetted() {
+        return elements != null;
+    }
+
+    /**
+     * Adds the {@code SUBSETTED} tag required on resources that were projected.
+     * @param meta resource meta to tag
+     * @return the same meta instance
+     */
+    public Meta tag(Meta meta) {
+        if (isSubsetted()) {
+            meta.addTag(SUBSETTED_SYSTEM, SUBSETTED_CODE, "subsetted");
+        }
+        return meta;
+    }
+
+    /**
+     * @return stable key describing the projection, used to tell representations apart in ETags
+     */
+    public String key() {
+        return elements == null ? "*" : String.join(",", elements);
+    }
+
+    private static Set<String> mandatoryElements(RuntimeResourceDefinition definition) {
+        Set<String> mandatory = definition.getChildren().stream()
+                .filter(child -> child.getMin() > 0)
+                .map(ElementProjection::elementName)
+                .collect(Collectors.toCollection(TreeSet::new));
+        mandatory.add("id");
+        mandatory.add("meta");
+        return Collections.unmodifiableSet(mandatory);
+    }
+
+    private static String elementName(BaseRuntimeChildDefinition child) {
+        String name = child.getElementName();
+        return name.endsWith("[x]") ? name.substring(0, name.length() - 3) : name;
+    }
+}
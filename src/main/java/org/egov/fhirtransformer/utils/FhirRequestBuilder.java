@@ -8,6 +8,8 @@ import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import org.egov.common.contract.request.RequestInfo;
 import org.springframework.validation.annotation.Validated;
+import java.util.List;
+import java.util.Map;
 
 @Validated
 @JsonIgnoreProperties(
@@ -18,6 +20,9 @@ public class FhirRequestBuilder {
     private @NotNull @Valid RequestInfo requestInfo;
     @JsonProperty("fhir")
     private @NotNull JsonNode fhir;
+    // ids per entity type to resend, taken from failedIds of an earlier consumeFHIR response
+    @JsonProperty("retryIds")
+    private Map<String, List<String>> retryIds;
 
     public FhirRequestBuilder(@NotNull @Valid RequestInfo requestInfo, @NotNull JsonNode fhir) {
         this.requestInfo = requestInfo;
@@ -35,4 +40,12 @@ public class FhirRequestBuilder {
     public void setFhir(JsonNode fhir) {
         this.fhir = fhir;
     }
+
+    public Map<String, List<String>> getRetryIds() {
+        return retryIds;
+    }
+
+    public void setRetryIds(Map<String, List<String>> retryIds) {
+        this.retryIds = retryIds;
+    }
 }
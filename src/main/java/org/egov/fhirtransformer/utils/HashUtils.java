@@ -0,0 +1,47 @@
+package org.egov.fhirtransformer.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+public final class HashUtils {
+
+    private HashUtils() {
+    }
+
+    /**
+     * @param value text to hash; {@code null} is hashed as the empty string
+     * @return lower case hex SHA-256 of the UTF-8 bytes
+     */
+    public static String sha256Hex(String value) {
+        return sha256Hex((value != null ? value : "").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param bytes content to hash
+     * @return lower case hex SHA-256 of the bytes
+     */
+    public static String sha256Hex(byte[] bytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * @param value text to hash; {@code null} is hashed as the empty string
+     * @return the first 8 bytes of the SHA-256 of the UTF-8 bytes, as a long
+     */
+    public static long sha256Long(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(digest.digest((value != null ? value : "").getBytes(StandardCharsets.UTF_8))).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.egov.fhirtransformer.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the latencies of the last {@code capacity} calls and answers percentile queries over them.
+ * The sorted view is rebuilt at most once per {@code capacity / 10} new samples.
+ */
+public final class LatencyTracker {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long[] samples;
+    private final int refreshEvery;
+    private int count;
+    private int next;
+    private int sinceRefresh;
+    private long[] sorted = new long[0];
+
+    public LatencyTracker(int capacity) {
+        this.samples = new long[Math.max(10, capacity)];
+        this.refreshEvery = Math.max(1, samples.length / 10);
+    }
+
+    public void record(long latencyNanos) {
+        lock.lock();
+        try {
+            samples[next] = latencyNanos;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) count++;
+            sinceRefresh++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param percentile between 0 and 1, e.g. 0.95
+     * @param minSamples samples needed before an answer is given
+     * @return latency in nanoseconds, or -1 if fewer than {@code minSamples} were recorded
+     */
+    public long percentile(double percentile, int minSamples) {
+        lock.lock();
+        try {
+            if (count < minSamples) return -1;
+            if (sorted.length != count || sinceRefresh >= refreshEvery) {
+                sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                sinceRefresh = 0;
+            }
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        } finally {
+            lock.unlock();
+        }
+    }
+}
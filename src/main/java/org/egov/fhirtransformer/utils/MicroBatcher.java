@@ -0,0 +1,139 @@
+package org.egov.fhirtransformer.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects items submitted by concurrent callers into one batch per group and runs the batch
+ * once {@code maxItems} items are pending or {@code windowMillis} after the first item arrived,
+ * whichever comes first. Items that would push the open batch past {@code maxItems} start a new
+ * one, so a merged batch never holds more than {@code maxItems} items; only a single caller that
+ * submits more than that gets a larger batch of its own. Every caller of a batch receives the same
+ * batch result and picks out its own part.
+ *
+ * @param <G> group key; only items of the same group are combined
+ * @param <C> context of the first caller, used to run the batch (e.g. its RequestInfo)
+ * @param <T> item type
+ * @param <B> batch result type
+ */
+public final class MicroBatcher<G, C, T, B> {
+
+    /**
+     * Runs one combined batch.
+     */
+    @FunctionalInterface
+    public interface BatchFunction<C, T, B> {
+        B apply(C context, List<T> items) throws Exception;
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<G, Batch> open = new HashMap<>();
+    private final long windowMillis;
+    private final int maxItems;
+    private final ScheduledExecutorService timer;
+    private final Executor executor;
+    private final BatchFunction<C, T, B> batchFunction;
+
+    private final class Batch {
+        private final C context;
+        private final List<T> items = new ArrayList<>();
+        private final CompletableFuture<B> result = new CompletableFuture<>();
+        private ScheduledFuture<?> deadline;
+
+        private Batch(C context) {
+            this.context = context;
+        }
+    }
+
+    /**
+     * @param windowMillis longest time the first item of a batch waits for company
+     * @param maxItems batch size that triggers an immediate flush, and the most items callers are merged up to
+     * @param timer schedules window expiry; its tasks only hand batches over to {@code executor}
+     * @param executor runs the batch function
+     * @param batchFunction executes a combined batch
+     */
+    public MicroBatcher(long windowMillis, int maxItems, ScheduledExecutorService timer, Executor executor,
+                        BatchFunction<C, T, B> batchFunction) {
+        this.windowMillis = windowMillis;
+        this.maxItems = Math.max(1, maxItems);
+        this.timer = timer;
+        this.executor = executor;
+        this.batchFunction = batchFunction;
+    }
+
+    /**
+     * Adds items to the open batch of the group, starting one if needed.
+     * @param group group key
+     * @param context caller context; only the first caller's context of a batch is used
+     * @param items items to add
+     * @return future of the batch result the items end up in
+     */
+    public CompletableFuture<B> submit(G group, C context, List<T> items) {
+        Batch previous = null;
+        Batch full = null;
+        CompletableFuture<B> result;
+        lock.lock();
+        try {
+            Batch batch = open.get(group);
+            if (batch != null && batch.items.size() + items.size() > maxItems) {
+                // the items would push the open batch past maxItems: send it as it is
+                open.remove(group);
+                batch.deadline.cancel(false);
+                previous = batch;
+                batch = null;
+            }
+            if (batch == null) {
+                Batch created = new Batch(context);
+                created.deadline = timer.schedule(() -> flushIfOpen(group, created), windowMillis, TimeUnit.MILLISECONDS);
+                open.put(group, created);
+                batch = created;
+            }
+            batch.items.addAll(items);
+            result = batch.result;
+            if (batch.items.size() >= maxItems) {
+                open.remove(group);
+                batch.deadline.cancel(false);
+                full = batch;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (previous != null) dispatch(previous);
+        if (full != null) dispatch(full);
+        return result;
+    }
+
+    private void flushIfOpen(G group, Batch batch) {
+        lock.lock();
+        try {
+            if (!open.remove(group, batch)) return;
+        } finally {
+            lock.unlock();
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(Batch batch) {
+        try {
+            executor.execute(() -> run(batch));
+        } catch (RuntimeException e) {
+            batch.result.completeExceptionally(e);
+        }
+    }
+
+    private void run(Batch batch) {
+        try {
+            batch.result.complete(batchFunction.apply(batch.context, batch.items));
+        } catch (Exception e) {
+            batch.result.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.egov.fhirtransformer.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Weighted in-flight budget with a priority lane for small requests.
+ *
+ * <p>Small requests may use the whole {@code capacity}; large requests only
+ * {@code capacity - reserved}, so a burst of large requests always leaves room for small ones.
+ * Requests that do not fit wait in a bounded queue per lane, and a waiting small request is
+ * admitted before any waiting large one.
+ */
+public final class PriorityBudget {
+
+    public enum Result { ADMITTED, QUEUE_FULL, TIMED_OUT }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition smallReleased = lock.newCondition();
+    private final Condition largeReleased = lock.newCondition();
+    private final long capacity;
+    private final long reserved;
+    private final int maxQueued;
+
+    private long used;
+    private int queuedSmall;
+    private int queuedLarge;
+
+    public PriorityBudget(long capacity, long reserved, int maxQueued) {
+        this.capacity = Math.max(1, capacity);
+        this.reserved = Math.min(Math.max(0, reserved), this.capacity - 1);
+        this.maxQueued = Math.max(0, maxQueued);
+    }
+
+    /**
+     * Caps a weight at what its lane can ever hold, so an oversized request can still run alone.
+     * Callers acquire and release the capped weight.
+     */
+    public long clamp(long weight, boolean small) {
+        return Math.max(0, Math.min(weight, small ? capacity : capacity - reserved));
+    }
+
+    /**
+     * Takes {@code weight}, waiting up to {@code timeoutMillis} if the lane is full.
+     * @param weight weight from {@link #clamp(long, boolean)}
+     * @param small {@code true} for the priority lane
+     * @return whether the weight was taken, or why not
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Result acquire(long weight, boolean small, long timeoutMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            if (fits(weight, small)) {
+                used += weight;
+                return Result.ADMITTED;
+            }
+            if ((small ? queuedSmall : queuedLarge) >= maxQueued) {
+                return Result.QUEUE_FULL;
+            }
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            if (small) queuedSmall++;
+            else queuedLarge++;
+            try {
+                while (!fits(weight, small)) {
+                    if (remaining <= 0) return Result.TIMED_OUT;
+                    remaining = (small ? smallReleased : largeReleased).awaitNanos(remaining);
+                }
+                used += weight;
+                return Result.ADMITTED;
+            } finally {
+                if (small && --queuedSmall == 0) largeReleased.signalAll();
+                if (!small) queuedLarge--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns weight taken by {@link #acquire(long, boolean, long)}.
+     */
+    public void release(long weight) {
+        lock.lock();
+        try {
+            used = Math.max(0, used - weight);
+            smallReleased.signalAll();
+            if (queuedSmall == 0) largeReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getUsed() {
+        lock.lock();
+        try {
+            return used;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued(boolean small) {
+        lock.lock();
+        try {
+            return small ? queuedSmall : queuedLarge;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // large requests also yield to any queued small request
+    private boolean fits(long weight, boolean small) {
+        if (small) return used + weight <= capacity;
+        return queuedSmall == 0 && used + weight <= capacity - reserved;
+    }
+}
@@ -0,0 +1,39 @@
+package org.egov.fhirtransformer.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Spaces permits evenly at {@code permitsPerSecond}; callers block until their permit is due.
+ */
+public final class RateLimiter {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long intervalNanos;
+    private long nextFreeNanos = System.nanoTime();
+
+    public RateLimiter(double permitsPerSecond) {
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(0.001, permitsPerSecond));
+    }
+
+    /**
+     * Waits for the next permit.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            // an idle limiter does not bank permits for a later burst
+            long due = Math.max(nextFreeNanos, now);
+            nextFreeNanos = due + intervalNanos;
+            waitNanos = due - now;
+        } finally {
+            lock.unlock();
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.egov.fhirtransformer.utils;
+
+import org.egov.fhirtransformer.common.DeadlineExceededException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Time budget of one request, visible to every thread that works on it.
+ *
+ * <p>The request filter binds the deadline to the request thread, and the executors that run a
+ * request's work carry it to their threads through {@link #propagate(Runnable)}. Code without a
+ * bound deadline (outbox drainer, replay, merged cross-request batches) is never cut short.
+ * A deadline also ends early when it is cancelled, e.g. because the client disconnected.
+ */
+public final class RequestDeadline {
+
+    private static final ThreadLocal<RequestDeadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+    private volatile String cancelReason;
+
+    private RequestDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Restores the previously bound deadline when closed.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * @param millis budget from now
+     * @return a deadline that is not yet bound to any thread
+     */
+    public static RequestDeadline in(long millis) {
+        return new RequestDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * @return the deadline of the request served by this thread, or {@code null}
+     */
+    public static RequestDeadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds this deadline to the calling thread until the scope is closed.
+     */
+    public Scope bind() {
+        RequestDeadline previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) CURRENT.remove();
+            else CURRENT.set(previous);
+        };
+    }
+
+    /**
+     * Wraps a task so it runs under the deadline of the submitting thread; used as task decorator.
+     */
+    public static Runnable propagate(Runnable task) {
+        RequestDeadline deadline = CURRENT.get();
+        if (deadline == null) return task;
+        return () -> {
+            try (Scope ignored = deadline.bind()) {
+                task.run();
+            }
+        };
+    }
+
+    /**
+     * Ends the deadline now; work checking it stops with the given reason.
+     */
+    public void cancel(String reason) {
+        if (cancelReason == null) cancelReason = reason;
+    }
+
+    public long remainingMillis() {
+        if (cancelReason != null) return 0;
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return cancelReason != null || System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    public String reason() {
+        String reason = cancelReason;
+        return reason != null ? reason : "request deadline exceeded";
+    }
+
+    /**
+     * @param stage work about to start, used in the message
+     * @throws DeadlineExceededException if the current deadline has passed
+     */
+    public static void check(String stage) {
+        RequestDeadline deadline = CURRENT.get();
+        if (deadline != null && deadline.isExpired()) {
+            throw new DeadlineExceededException(stage + " cancelled: " + deadline.reason());
+        }
+    }
+
+    /**
+     * @return {@code timeoutMillis}, reduced to the remaining budget of the current deadline (at least 1)
+     */
+    public static long cap(long timeoutMillis) {
+        RequestDeadline deadline = CURRENT.get();
+        if (deadline == null) return timeoutMillis;
+        return Math.max(1, Math.min(timeoutMillis, deadline.remainingMillis()));
+    }
+
+    /**
+     * Waits for a future no longer than the current deadline. Failures are rethrown as
+     * {@link CompletionException}, like {@link CompletableFuture#join()}.
+     * @param stage work waited for, used in the message
+     * @throws DeadlineExceededException if the deadline passes first
+     */
+    public static <T> T await(CompletableFuture<T> future, String stage) {
+        RequestDeadline deadline = CURRENT.get();
+        if (deadline == null) return future.join();
+        try {
+            return future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException(stage + " cancelled: " + deadline.reason());
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.egov.fhirtransformer.utils;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token bucket that caps retries to a share of the original calls.
+ *
+ * <p>Every original call deposits {@code ratio} tokens and every retry or hedge withdraws one, so
+ * at steady state at most {@code ratio} of the traffic is extra. The bucket starts with, and holds
+ * at most, {@code maxTokens} tokens so that a quiet service can still retry a few calls.
+ */
+public final class RetryBudget {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final double ratio;
+    private final double maxTokens;
+    private double tokens;
+
+    public RetryBudget(double ratio, int maxTokens) {
+        this.ratio = Math.max(0, ratio);
+        this.maxTokens = Math.max(1, maxTokens);
+        this.tokens = this.maxTokens;
+    }
+
+    /**
+     * Records an original call.
+     */
+    public void deposit() {
+        lock.lock();
+        try {
+            tokens = Math.min(maxTokens, tokens + ratio);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return {@code true} if one extra call may be made; the token is then spent
+     */
+    public boolean tryWithdraw() {
+        lock.lock();
+        try {
+            if (tokens < 1) return false;
+            tokens -= 1;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getTokens() {
+        lock.lock();
+        try {
+            return tokens;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
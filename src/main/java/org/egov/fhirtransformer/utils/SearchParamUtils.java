@@ -0,0 +1,53 @@
+package org.egov.fhirtransformer.utils;
+
+import ca.uhn.fhir.model.api.TemporalPrecisionEnum;
+import ca.uhn.fhir.parser.DataFormatException;
+import org.egov.fhirtransformer.common.InvalidSearchParameterException;
+import org.hl7.fhir.r5.model.DateTimeType;
+
+/**
+ * Utility methods for parsing FHIR search parameter values.
+ */
+public final class SearchParamUtils {
+
+    private static final String PREFIX_GT = "gt";
+    private static final String PREFIX_GE = "ge";
+
+    private SearchParamUtils() {
+    }
+
+    /**
+     * Parses a {@code _lastUpdated} search value into the epoch millis accepted by
+     * the DIGIT {@code lastChangedSince} search parameter.
+     *
+     * <p>Only lower bounds can be pushed down to DIGIT, so {@code gt} and {@code ge}
+     * are supported. A {@code gt} value excludes the whole precision of the given
+     * date, e.g. {@code gt2024-01-01} starts at {@code 2024-01-02T00:00:00}.
+     *
+     * @param lastUpdated raw parameter value, e.g. {@code gt2024-01-01T10:00:00Z}; may be {@code null}
+     * @return epoch millis, or {@code null} if no value was supplied
+     * @throws InvalidSearchParameterException if the value or prefix is not supported
+     */
+    public static Long parseLastUpdated(String lastUpdated) {
+        if (lastUpdated == null || lastUpdated.isBlank()) {
+            return null;
+        }
+        String value = lastUpdated.trim();
+        String prefix = value.length() > 2 ? value.substring(0, 2) : "";
+        if (!PREFIX_GT.equals(prefix) && !PREFIX_GE.equals(prefix)) {
+            throw new InvalidSearchParameterException("Unsupported _lastUpdated value '" + lastUpdated
+                    + "', only the gt and ge prefixes are supported");
+        }
+        DateTimeType dateTime;
+        try {
+            dateTime = new DateTimeType(value.substring(2));
+        } catch (DataFormatException e) {
+            throw new InvalidSearchParameterException("Invalid _lastUpdated date '" + lastUpdated + "'", e);
+        }
+        if (PREFIX_GE.equals(prefix)) {
+            return dateTime.getValue().getTime();
+        }
+        TemporalPrecisionEnum precision = dateTime.getPrecision();
+        return precision.add(dateTime.getValue(), 1).getTime();
+    }
+}
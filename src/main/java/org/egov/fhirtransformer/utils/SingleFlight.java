@@ -0,0 +1,140 @@
+package org.egov.fhirtransformer.utils;
+
+import org.egov.fhirtransformer.common.DeadlineExceededException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent callers with the same key share one execution. The first caller runs the
+ * supplier; callers arriving while it is in flight wait for and receive the same result or
+ * exception, but no longer than their own {@link RequestDeadline}. Nothing is cached once the
+ * call completes.
+ *
+ * <p>The shared call runs under the first caller's deadline, which may be much shorter than a
+ * follower's. When the call fails after that deadline has passed, followers do not take the
+ * failure: each one that still has time runs or joins the call again under its own deadline.
+ *
+ * @param <K> key type
+ */
+public final class SingleFlight<K> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Outcome of {@link #execute}: the value and whether it came from another caller's call.
+     */
+    public record Result<V>(V value, boolean shared) {
+    }
+
+    // Failure of a shared call whose first caller had run out of time; followers try again
+    private static final class LeaderExpired extends RuntimeException {
+        LeaderExpired(Throwable cause) {
+            super(cause.getMessage(), cause, false, false);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <V> Result<V> execute(K key, Supplier<V> supplier) {
+        while (true) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+            if (existing != null) {
+                try {
+                    // a follower times out on its own; the shared future stays untouched for the others
+                    return new Result<>((V) RequestDeadline.await(existing, "Shared call"), true);
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof LeaderExpired) {
+                        RequestDeadline.check("Shared call");
+                        continue;
+                    }
+                    if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+                    if (e.getCause() instanceof Error error) throw error;
+                    throw e;
+                }
+            }
+            RequestDeadline deadline = RequestDeadline.current();
+            V value;
+            try {
+                value = supplier.get();
+            } catch (Throwable t) {
+                // followers must never wait on a future that is not completed
+                inFlight.remove(key, future);
+                future.completeExceptionally(failure(t, deadline));
+                throw t;
+            }
+            inFlight.remove(key, future);
+            future.complete(value);
+            return new Result<>(value, false);
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #execute}: the first caller starts the call, callers arriving
+     * while it is in flight get a future of the same result. A follower's future fails with
+     * {@link DeadlineExceededException} once its own deadline passes; the shared call goes on.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> Result<CompletableFuture<V>> executeAsync(K key, Supplier<CompletableFuture<V>> supplier) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        RequestDeadline deadline = RequestDeadline.current();
+        if (existing != null) {
+            CompletableFuture<V> copy = new CompletableFuture<>();
+            String tenantId = TenantContext.current();
+            existing.whenComplete((value, error) -> {
+                if (error == null) {
+                    copy.complete((V) value);
+                    return;
+                }
+                Throwable cause = unwrap(error);
+                if (!(cause instanceof LeaderExpired)) {
+                    copy.completeExceptionally(cause);
+                } else if (deadline != null && deadline.isExpired()) {
+                    copy.completeExceptionally(new DeadlineExceededException("Shared call cancelled: " + deadline.reason()));
+                } else {
+                    // the first caller's deadline ended the call; run it again under this caller's
+                    try (RequestDeadline.Scope d = deadline != null ? deadline.bind() : () -> { };
+                         RequestDeadline.Scope t = TenantContext.bind(tenantId)) {
+                        executeAsync(key, supplier).value().whenComplete((v, e) -> {
+                            if (e == null) copy.complete(v);
+                            else copy.completeExceptionally(unwrap(e));
+                        });
+                    } catch (Throwable t) {
+                        copy.completeExceptionally(t);
+                    }
+                }
+            });
+            if (deadline != null && !copy.isDone()) {
+                CompletableFuture.delayedExecutor(deadline.remainingMillis(), TimeUnit.MILLISECONDS).execute(() ->
+                        copy.completeExceptionally(new DeadlineExceededException("Shared call cancelled: " + deadline.reason())));
+            }
+            return new Result<>(copy, true);
+        }
+        CompletableFuture<V> call;
+        try {
+            call = supplier.get();
+        } catch (Throwable t) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(failure(t, deadline));
+            throw t;
+        }
+        call.whenComplete((value, error) -> {
+            inFlight.remove(key, future);
+            if (error == null) future.complete(value);
+            else future.completeExceptionally(failure(unwrap(error), deadline));
+        });
+        return new Result<>(call, false);
+    }
+
+    // What followers receive: a failure after the first caller's deadline passed is marked for a retry
+    private static Throwable failure(Throwable error, RequestDeadline deadline) {
+        return deadline != null && deadline.isExpired() ? new LeaderExpired(error) : error;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
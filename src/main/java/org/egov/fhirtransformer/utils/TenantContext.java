@@ -0,0 +1,51 @@
+package org.egov.fhirtransformer.utils;
+
+/**
+ * Tenant of the ingestion served by the current thread.
+ *
+ * <p>Ingestion binds the tenant it resolved from the bundle or RequestInfo, and the executors that
+ * run a request's work carry it to their threads through {@link #propagate(Runnable)}, like
+ * {@link RequestDeadline}. Merged batches bind the tenant of their group, and the outbox drainer the
+ * tenant stored with the batch. Code without a bound tenant uses {@code app.tenant-id}.
+ */
+public final class TenantContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private TenantContext() {
+    }
+
+    /**
+     * @return the tenant bound to this thread, or {@code null}
+     */
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds the tenant to the calling thread until the scope is closed; a {@code null} tenant
+     * leaves the current binding in place.
+     */
+    public static RequestDeadline.Scope bind(String tenantId) {
+        if (tenantId == null) return () -> { };
+        String previous = CURRENT.get();
+        CURRENT.set(tenantId);
+        return () -> {
+            if (previous == null) CURRENT.remove();
+            else CURRENT.set(previous);
+        };
+    }
+
+    /**
+     * Wraps a task so it runs under the tenant of the submitting thread; used as task decorator.
+     */
+    public static Runnable propagate(Runnable task) {
+        String tenantId = CURRENT.get();
+        if (tenantId == null) return task;
+        return () -> {
+            try (RequestDeadline.Scope ignored = bind(tenantId)) {
+                task.run();
+            }
+        };
+    }
+}
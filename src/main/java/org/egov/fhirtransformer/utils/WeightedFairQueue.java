@@ -0,0 +1,156 @@
+package org.egov.fhirtransformer.utils;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue in front of an executor that shares its threads between flows by weight
+ * (start-time fair queuing).
+ *
+ * <p>Each task carries a cost, e.g. its number of bundle entries. A task is stamped with a virtual
+ * start time, the later of the queue's virtual time and the finish time of its flow's previous
+ * task, and finishes {@code cost / weight} later. Whenever a thread is free the queued task with
+ * the earliest start runs, so a flow that submits a lot of work only delays its own later tasks,
+ * and a flow with twice the weight gets about twice the share while others are waiting. At most
+ * {@code maxConcurrent} tasks run at once.
+ */
+public final class WeightedFairQueue {
+
+    private record Item(Runnable task, Runnable onRejected, double start) {
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, ArrayDeque<Item>> queues = new HashMap<>();
+    private final Map<String, Double> lastFinish = new HashMap<>();
+    private final Executor executor;
+    private final int maxConcurrent;
+    private final int capacity;
+
+    private double virtualTime;
+    private int running;
+    private int queued;
+
+    public WeightedFairQueue(Executor executor, int maxConcurrent, int capacity) {
+        this.executor = executor;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.capacity = Math.max(0, capacity);
+    }
+
+    /**
+     * Queues a task and starts it once it is its turn.
+     * @param flow flow the task is accounted to, e.g. a tenant
+     * @param weight share of the flow; values below a small minimum are raised to it
+     * @param cost relative cost of the task, at least 1
+     * @param task work to run
+     * @param onRejected run instead of the task if the executor refuses it
+     * @return {@code false} if the queue is full and the task was not taken
+     */
+    public boolean offer(String flow, double weight, long cost, Runnable task, Runnable onRejected) {
+        lock.lock();
+        try {
+            if (queued >= capacity && running >= maxConcurrent) return false;
+            double start = Math.max(virtualTime, lastFinish.getOrDefault(flow, 0.0));
+            lastFinish.put(flow, start + Math.max(1, cost) / Math.max(0.01, weight));
+            queues.computeIfAbsent(flow, f -> new ArrayDeque<>()).add(new Item(task, onRejected, start));
+            queued++;
+        } finally {
+            lock.unlock();
+        }
+        dispatch();
+        return true;
+    }
+
+    /**
+     * @return tasks waiting for a thread
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return tasks waiting for a thread in the given flow
+     */
+    public int getQueued(String flow) {
+        lock.lock();
+        try {
+            ArrayDeque<Item> queue = queues.get(flow);
+            return queue == null ? 0 : queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Starts queued tasks while threads are free; the executor is called outside the lock
+    private void dispatch() {
+        while (true) {
+            Item next;
+            lock.lock();
+            try {
+                if (running >= maxConcurrent || queued == 0) return;
+                next = pollEarliest();
+                queued--;
+                running++;
+            } finally {
+                lock.unlock();
+            }
+            Item item = next;
+            try {
+                executor.execute(() -> {
+                    try {
+                        item.task().run();
+                    } finally {
+                        finished();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                finished();
+                item.onRejected().run();
+                return;
+            }
+        }
+    }
+
+    private Item pollEarliest() {
+        String earliest = null;
+        double earliestStart = Double.MAX_VALUE;
+        for (Map.Entry<String, ArrayDeque<Item>> entry : queues.entrySet()) {
+            Item head = entry.getValue().peek();
+            if (head != null && head.start() < earliestStart) {
+                earliest = entry.getKey();
+                earliestStart = head.start();
+            }
+        }
+        Item item = queues.get(earliest).poll();
+        virtualTime = Math.max(virtualTime, item.start());
+        // forget idle flows that are not ahead of the virtual time, so the maps stay small
+        Iterator<Map.Entry<String, ArrayDeque<Item>>> it = queues.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, ArrayDeque<Item>> entry = it.next();
+            if (entry.getValue().isEmpty() && lastFinish.getOrDefault(entry.getKey(), 0.0) <= virtualTime) {
+                lastFinish.remove(entry.getKey());
+                it.remove();
+            }
+        }
+        return item;
+    }
+
+    private void finished() {
+        lock.lock();
+        try {
+            running--;
+        } finally {
+            lock.unlock();
+        }
+        dispatch();
+    }
+}
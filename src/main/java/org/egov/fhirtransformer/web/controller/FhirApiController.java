@@ -8,23 +8,57 @@ import digit.web.models.BoundarySearchResponse;
 import org.egov.common.contract.models.RequestInfoWrapper;
 import org.egov.common.contract.request.RequestInfo;
 import org.egov.common.models.core.URLParams;
+import org.egov.common.models.facility.Facility;
 import org.egov.common.models.facility.FacilityBulkResponse;
 import org.egov.common.models.facility.FacilitySearchRequest;
+import org.egov.common.models.product.ProductVariant;
 import org.egov.common.models.product.ProductVariantResponse;
 import org.egov.common.models.product.ProductVariantSearchRequest;
 import org.egov.common.models.stock.*;
+import org.egov.fhirtransformer.common.AdmissionRejectedException;
+import org.egov.fhirtransformer.common.BulkheadFullException;
+import org.egov.fhirtransformer.common.Constants;
+import org.egov.fhirtransformer.common.DeadlineExceededException;
+import org.egov.fhirtransformer.common.DownstreamUnavailableException;
+import org.egov.fhirtransformer.common.InvalidSearchParameterException;
+import org.egov.fhirtransformer.common.OutboxFullException;
+import org.egov.fhirtransformer.common.TenantNotAllowedException;
+import org.egov.fhirtransformer.service.AggregatedFetchService;
+import org.egov.fhirtransformer.service.Bulkheads;
 import org.egov.fhirtransformer.service.ApiIntegrationService;
 import org.egov.fhirtransformer.service.FhirParseNLoadService;
+import org.egov.fhirtransformer.service.FhirSearchTranslator;
+import org.egov.fhirtransformer.service.IncludeResolver;
+import org.egov.fhirtransformer.service.ReplayService;
 import org.egov.fhirtransformer.service.FhirTransformerService;
+import org.egov.fhirtransformer.service.IngestionAdmission;
+import org.egov.fhirtransformer.service.ShardForwarder;
+import org.egov.fhirtransformer.service.TenantRouter;
 import org.egov.fhirtransformer.repository.KafkaProducerService;
+import org.egov.fhirtransformer.utils.ETagUtils;
+import org.egov.fhirtransformer.utils.ElementProjection;
 import org.egov.fhirtransformer.utils.FhirRequestBuilder;
+import org.egov.fhirtransformer.utils.RequestDeadline;
+import org.egov.fhirtransformer.web.filter.IngestionAdmissionFilter;
+import org.egov.fhirtransformer.web.models.AggregatedFetchRequest;
+import org.egov.fhirtransformer.web.models.ReplayRequest;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import digit.web.models.BoundaryRelationshipSearchCriteria;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -56,6 +90,36 @@ public class FhirApiController {
     @Autowired
     private FhirParseNLoadService fpService;
 
+    @Autowired
+    private FhirSearchTranslator searchTranslator;
+
+    @Autowired
+    private IncludeResolver includeResolver;
+
+    @Autowired
+    private AggregatedFetchService aggregatedFetchService;
+
+    @Autowired
+    private ReplayService replayService;
+
+    @Autowired
+    private IngestionAdmission ingestionAdmission;
+
+    @Autowired
+    private Bulkheads bulkheads;
+
+    @Autowired
+    private TenantRouter tenantRouter;
+
+    @Autowired
+    private ShardForwarder shardForwarder;
+
+    @Value("${bulkhead.retry-after-seconds:1}")
+    private int bulkheadRetryAfterSeconds;
+
+    @Value("${outbox.retry-after-seconds:5}")
+    private int outboxRetryAfterSeconds;
+
     private static final Logger logger = LoggerFactory.getLogger(FhirApiController.class);
 
     /**
@@ -72,107 +136,207 @@ public class FhirApiController {
      *
      * @param fhirJson FHIR resource payload as JSON
      * @return validation status message
-     * @throws JsonProcessingException if payload parsing fails
      */
     @PostMapping("/validate")
-    public ResponseEntity<String> validateFHIR(@RequestBody String fhirJson) throws JsonProcessingException {
-        ValidationResult result = ftService.validateFHIRResource(fhirJson);
-        boolean isValid = result.isSuccessful();
-        return ResponseEntity.ok(
-                isValid
-                        ? "Valid FHIR resource"
-                        : "Invalid FHIR resource. Errors: [" +
-                        result.getMessages().stream()
-                                .filter(msg -> msg.getSeverity() != null && msg.getSeverity().name().equalsIgnoreCase("error"))
-                                .map(msg -> msg.getMessage())
-                                .collect(Collectors.joining(", "))
-                        + "]"
-        );
+    public CompletableFuture<ResponseEntity<String>> validateFHIR(@RequestBody String fhirJson) {
+        return bulkheads.submit(Bulkheads.Lane.VALIDATION, () -> {
+            RequestDeadline.check("Validation");
+            ValidationResult result = ftService.validateFHIRResource(fhirJson);
+            boolean isValid = result.isSuccessful();
+            return ResponseEntity.ok(
+                    isValid
+                            ? "Valid FHIR resource"
+                            : "Invalid FHIR resource. Errors: [" +
+                            result.getMessages().stream()
+                                    .filter(msg -> msg.getSeverity() != null && msg.getSeverity().name().equalsIgnoreCase("error"))
+                                    .map(msg -> msg.getMessage())
+                                    .collect(Collectors.joining(", "))
+                            + "]"
+            );
+        });
     }
 
     /**
      * Fetches Facility data and returns it as a FHIR Location Bundle.
      *
      * @param urlParams pagination and tenant parameters
+     * @param searchParams FHIR search parameters translated into the DIGIT search (see {@link FhirSearchTranslator}),
+     *                     plus {@code _elements} / {@code _summary} projection
+     * @param ifNoneMatch optional ETag of the client copy
      * @param request facility search request
-     * @return FHIR Bundle serialized as JSON, or message if no data found
+     * @return FHIR Bundle serialized as JSON, 304 if the client copy is current, or no content if no data found
      */
     @PostMapping("/fetchAllFacilities")
-    public ResponseEntity<String> fetchAllFacilities(@Valid @ModelAttribute URLParams urlParams
+    public CompletableFuture<ResponseEntity<String>> fetchAllFacilities(@Valid @ModelAttribute URLParams urlParams
+            , @RequestParam MultiValueMap<String, String> searchParams
+            , @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
             , @Valid @RequestBody FacilitySearchRequest request
     ) {
-        FacilityBulkResponse response = diService.fetchAllFacilities(urlParams, request);
-        if (response == null || response.getFacilities() == null)
-            return ResponseEntity.noContent().build();
-        Integer totalCount = response.getTotalCount() != null
-                ? response.getTotalCount().intValue() : 0;
-        String facilities = ftService.convertFacilitiesToFHIR(response.getFacilities(), urlParams, totalCount);
-        return ResponseEntity.ok(facilities);
+        return bulkheads.submit(Bulkheads.Lane.READ, () -> {
+            if (!searchTranslator.applyToFacilitySearch(searchParams, urlParams, request))
+                return ResponseEntity.noContent().build();
+            boolean countOnly = ElementProjection.isCountOnly(searchParams);
+            ElementProjection projection = countOnly ? ElementProjection.ALL
+                    : ftService.resolveProjection(Constants.LOCATION, searchParams);
+            if (countOnly)
+                urlParams.setLimit(1);
+            FacilityBulkResponse response = diService.fetchAllFacilities(urlParams, request);
+            if (response == null || response.getFacilities() == null)
+                return ResponseEntity.noContent().build();
+            Integer totalCount = response.getTotalCount() != null
+                    ? response.getTotalCount().intValue() : 0;
+            if (countOnly)
+                return ResponseEntity.ok(ftService.convertCountToFHIR(totalCount));
+
+            String eTag = ETagUtils.weakETag(response.getFacilities(), Facility::getId,
+                    f -> f.getAuditDetails() != null ? f.getAuditDetails().getLastModifiedTime() : null,
+                    Constants.FACILITIES_API_PATH, urlParams.getTenantId(), urlParams.getOffset(), urlParams.getLimit(), totalCount, projection.key());
+            if (ETagUtils.matches(ifNoneMatch, eTag))
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+
+            String facilities = ftService.convertFacilitiesToFHIR(response.getFacilities(), urlParams, totalCount, projection);
+            return ResponseEntity.ok().eTag(eTag).body(facilities);
+        });
     }
 
     /**
      * Fetches ProductVariant data and returns it as a FHIR InventoryItem Bundle.
      *
      * @param urlParams pagination and tenant parameters
+     * @param searchParams FHIR search parameters translated into the DIGIT search (see {@link FhirSearchTranslator}),
+     *                     plus {@code _elements} / {@code _summary} projection
+     * @param ifNoneMatch optional ETag of the client copy
      * @param request product variant search request
-     * @return FHIR Bundle serialized as JSON, or message if no data found
+     * @return FHIR Bundle serialized as JSON, 304 if the client copy is current, or no content if no data found
      */
     @PostMapping("/fetchAllProductVariants")
-    public ResponseEntity<String> fetchAllProductVariants(@Valid @ModelAttribute URLParams urlParams
+    public CompletableFuture<ResponseEntity<String>> fetchAllProductVariants(@Valid @ModelAttribute URLParams urlParams
+            , @RequestParam MultiValueMap<String, String> searchParams
+            , @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
             , @Valid @RequestBody ProductVariantSearchRequest request
     ) {
-        ProductVariantResponse response = diService.fetchAllProductVariants(urlParams, request);
-        if (response == null || response.getProductVariant() == null)
-            return ResponseEntity.noContent().build();
-        Integer totalCount = response.getTotalCount() != null
-                ? response.getTotalCount().intValue() : 0;
+        return bulkheads.submit(Bulkheads.Lane.READ, () -> {
+            if (!searchTranslator.applyToProductVariantSearch(searchParams, urlParams, request))
+                return ResponseEntity.noContent().build();
+            boolean countOnly = ElementProjection.isCountOnly(searchParams);
+            ElementProjection projection = countOnly ? ElementProjection.ALL
+                    : ftService.resolveProjection(Constants.INVENTORY_ITEM, searchParams);
+            if (countOnly)
+                urlParams.setLimit(1);
+            ProductVariantResponse response = diService.fetchAllProductVariants(urlParams, request);
+            if (response == null || response.getProductVariant() == null)
+                return ResponseEntity.noContent().build();
+            Integer totalCount = response.getTotalCount() != null
+                    ? response.getTotalCount().intValue() : 0;
+            if (countOnly)
+                return ResponseEntity.ok(ftService.convertCountToFHIR(totalCount));
 
-        String productVariants = ftService.convertProductVariantsToFHIR(response.getProductVariant(), urlParams, totalCount);
-        return ResponseEntity.ok(productVariants);
+            String eTag = ETagUtils.weakETag(response.getProductVariant(), ProductVariant::getId,
+                    pv -> pv.getAuditDetails() != null ? pv.getAuditDetails().getLastModifiedTime() : null,
+                    Constants.PRODUCT_VARIANT_API_PATH, urlParams.getTenantId(), urlParams.getOffset(), urlParams.getLimit(), totalCount, projection.key());
+            if (ETagUtils.matches(ifNoneMatch, eTag))
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+
+            String productVariants = ftService.convertProductVariantsToFHIR(response.getProductVariant(), urlParams, totalCount, projection);
+            return ResponseEntity.ok().eTag(eTag).body(productVariants);
+        });
     }
 
     /**
      * Fetches Stock data and returns it as a FHIR SupplyDelivery Bundle.
      *
      * @param urlParams pagination and tenant parameters
+     * @param searchParams FHIR search parameters translated into the DIGIT search (see {@link FhirSearchTranslator}),
+     *                     plus {@code _elements} / {@code _summary} projection and {@code _include}
+     * @param ifNoneMatch optional ETag of the client copy
      * @param stockRequest stock search request
-     * @return FHIR Bundle serialized as JSON, or message if no data found
+     * @return FHIR Bundle serialized as JSON, 304 if the client copy is current, or no content if no data found
      */
     @PostMapping("/fetchAllStocks")
-    public ResponseEntity<String> fetchAllStocks(@Valid @ModelAttribute URLParams urlParams
+    public CompletableFuture<ResponseEntity<String>> fetchAllStocks(@Valid @ModelAttribute URLParams urlParams
+            , @RequestParam MultiValueMap<String, String> searchParams
+            , @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
             , @Valid @RequestBody StockSearchRequest stockRequest) {
+        return bulkheads.submit(Bulkheads.Lane.READ, () -> {
+            Set<String> includes = includeResolver.stockIncludes(searchParams.get(Constants.SP_INCLUDE));
+            if (!searchTranslator.applyToStockSearch(searchParams, urlParams, stockRequest))
+                return ResponseEntity.noContent().build();
+            boolean countOnly = ElementProjection.isCountOnly(searchParams);
+            ElementProjection projection = countOnly ? ElementProjection.ALL
+                    : ftService.resolveProjection(Constants.SUPPLY_DELIVERY, searchParams);
+            if (countOnly)
+                urlParams.setLimit(1);
+            StockBulkResponse response = diService.fetchAllStocks(urlParams, stockRequest);
+            if (response == null || response.getStock() == null)
+                return ResponseEntity.noContent().build();
+
+            Integer totalCount = response.getTotalCount() != null
+                    ? response.getTotalCount().intValue() : 0;
+            if (countOnly)
+                return ResponseEntity.ok(ftService.convertCountToFHIR(totalCount));
 
-        StockBulkResponse response = diService.fetchAllStocks(urlParams, stockRequest);
-        if (response == null || response.getStock() == null)
-            return ResponseEntity.noContent().build();
+            IncludeResolver.IncludedRecords included = includeResolver.resolveForStocks(response.getStock(),
+                    includes, urlParams.getTenantId(), stockRequest.getRequestInfo());
+            String eTag = ETagUtils.weakETag(response.getStock(), Stock::getId,
+                    st -> st.getAuditDetails() != null ? st.getAuditDetails().getLastModifiedTime() : null,
+                    Constants.STOCKS_API_PATH, urlParams.getTenantId(), urlParams.getOffset(), urlParams.getLimit(), totalCount, projection.key(),
+                    included != null ? included.eTagKey() : "");
+            if (ETagUtils.matches(ifNoneMatch, eTag))
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
 
-        Integer totalCount = response.getTotalCount() != null
-                ? response.getTotalCount().intValue() : 0;
-        String stock = ftService.convertStocksToFHIR(response.getStock(),
-                urlParams, totalCount);
-        return ResponseEntity.ok(stock);
+            String stock = ftService.convertStocksToFHIR(response.getStock(),
+                    urlParams, totalCount, projection, included != null ? included.toResources() : List.of());
+            return ResponseEntity.ok().eTag(eTag).body(stock);
+        });
     }
 
     /**
      * Fetches StockReconciliation data and returns it as a FHIR InventoryReport Bundle.
      *
      * @param urlParams pagination and tenant parameters
+     * @param searchParams FHIR search parameters translated into the DIGIT search (see {@link FhirSearchTranslator}),
+     *                     plus {@code _elements} / {@code _summary} projection and {@code _include}
+     * @param ifNoneMatch optional ETag of the client copy
      * @param stockReconciliationSearchRequest stock reconciliation search request
-     * @return FHIR Bundle serialized as JSON, or message if no data found
+     * @return FHIR Bundle serialized as JSON, 304 if the client copy is current, or no content if no data found
      */
     @PostMapping("/fetchAllStockReconciliation")
-    public ResponseEntity<String> fetchAllStockReconciliation(@Valid @ModelAttribute URLParams urlParams,
-                                                              @Valid @RequestBody StockReconciliationSearchRequest stockReconciliationSearchRequest) {
+    public CompletableFuture<ResponseEntity<String>> fetchAllStockReconciliation(@Valid @ModelAttribute URLParams urlParams,
+                                                                                 @RequestParam MultiValueMap<String, String> searchParams,
+                                                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                                                 @Valid @RequestBody StockReconciliationSearchRequest stockReconciliationSearchRequest) {
+        return bulkheads.submit(Bulkheads.Lane.READ, () -> {
+            Set<String> includes = includeResolver.stockReconciliationIncludes(searchParams.get(Constants.SP_INCLUDE));
+            if (!searchTranslator.applyToStockReconciliationSearch(searchParams, urlParams, stockReconciliationSearchRequest))
+                return ResponseEntity.noContent().build();
+            boolean countOnly = ElementProjection.isCountOnly(searchParams);
+            ElementProjection projection = countOnly ? ElementProjection.ALL
+                    : ftService.resolveProjection(Constants.INVENTORY_REPORT, searchParams);
+            if (countOnly)
+                urlParams.setLimit(1);
+            StockReconciliationBulkResponse response = diService.fetchAllStockReconciliation(urlParams, stockReconciliationSearchRequest);
+            if (response == null || response.getStockReconciliation() == null)
+                return ResponseEntity.noContent().build();
+
+            Integer totalCount = response.getTotalCount() != null
+                    ? response.getTotalCount().intValue() : 0;
+            if (countOnly)
+                return ResponseEntity.ok(ftService.convertCountToFHIR(totalCount));
 
-        StockReconciliationBulkResponse response = diService.fetchAllStockReconciliation(urlParams, stockReconciliationSearchRequest);
-        if (response == null || response.getStockReconciliation() == null)
-            return ResponseEntity.noContent().build();
+            IncludeResolver.IncludedRecords included = includeResolver.resolveForStockReconciliations(
+                    response.getStockReconciliation(), includes,
+                    urlParams.getTenantId(), stockReconciliationSearchRequest.getRequestInfo());
+            String eTag = ETagUtils.weakETag(response.getStockReconciliation(), StockReconciliation::getId,
+                    sr -> sr.getAuditDetails() != null ? sr.getAuditDetails().getLastModifiedTime() : null,
+                    Constants.STOCK_RECONCILIATION_API_PATH, urlParams.getTenantId(), urlParams.getOffset(), urlParams.getLimit(), totalCount, projection.key(),
+                    included != null ? included.eTagKey() : "");
+            if (ETagUtils.matches(ifNoneMatch, eTag))
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
 
-        Integer totalCount = response.getTotalCount() != null
-                ? response.getTotalCount().intValue() : 0;
-        String stockReconciliation = ftService.convertStocksReconciliationToFHIR(response.getStockReconciliation(),
-                urlParams, totalCount);
-        return ResponseEntity.ok(stockReconciliation);
+            String stockReconciliation = ftService.convertStocksReconciliationToFHIR(response.getStockReconciliation(),
+                    urlParams, totalCount, projection, included != null ? included.toResources() : List.of());
+            return ResponseEntity.ok().eTag(eTag).body(stockReconciliation);
+        });
     }
 
     /**
@@ -183,29 +347,103 @@ public class FhirApiController {
      * @return FHIR Bundle serialized as JSON
      */
     @PostMapping("/fetchAllBoundaries")
-    public ResponseEntity<String> fetchAllBoundaries(@Valid @ModelAttribute BoundaryRelationshipSearchCriteria boundaryRelationshipSearchCriteria
+    public CompletableFuture<ResponseEntity<String>> fetchAllBoundaries(@Valid @ModelAttribute BoundaryRelationshipSearchCriteria boundaryRelationshipSearchCriteria
               ,@RequestBody RequestInfoWrapper wrapper
     ) {
-        RequestInfo requestInfo = wrapper.getRequestInfo();
-        BoundarySearchResponse response = diService.fetchAllBoundaries(boundaryRelationshipSearchCriteria, requestInfo);
-        if (response == null || response.getTenantBoundary() == null) {
-            return ResponseEntity.noContent().build();
-        }
-        String boundaries = ftService.convertBoundaryRelationshipToFHIR(response.getTenantBoundary());
-        return ResponseEntity.ok(boundaries);
+        return bulkheads.submit(Bulkheads.Lane.READ, () -> {
+            RequestInfo requestInfo = wrapper.getRequestInfo();
+            BoundarySearchResponse response = diService.fetchAllBoundaries(boundaryRelationshipSearchCriteria, requestInfo);
+            if (response == null || response.getTenantBoundary() == null) {
+                return ResponseEntity.noContent().build();
+            }
+            String boundaries = ftService.convertBoundaryRelationshipToFHIR(response.getTenantBoundary());
+            return ResponseEntity.ok(boundaries);
+        });
+    }
+
+    /**
+     * Fetches Facilities, ProductVariants, Stocks, StockReconciliations and Boundaries in one call.
+     * The five DIGIT searches run concurrently and are mapped in parallel.
+     *
+     * @param urlParams pagination and tenant parameters applied to each paged search
+     * @param accept {@code application/x-ndjson} streams one resource per line, otherwise a Bundle is returned
+     * @param aggregatedFetchRequest one search section per entity type; missing sections search without criteria
+     * @return FHIR Bundle or NDJSON stream; 207 if some entity types failed, 502 if all failed
+     */
+    @PostMapping("/fetchAggregated")
+    public CompletableFuture<ResponseEntity<?>> fetchAggregated(@Valid @ModelAttribute URLParams urlParams,
+                                                                @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                                @RequestBody AggregatedFetchRequest aggregatedFetchRequest) {
+        return bulkheads.submit(Bulkheads.Lane.READ, () -> {
+            AggregatedFetchService.AggregatedFetchResult result = aggregatedFetchService.fetchAll(urlParams, aggregatedFetchRequest);
+            HttpStatus status = HttpStatus.OK;
+            if (!result.getErrors().isEmpty()) {
+                status = result.getResources().isEmpty() ? HttpStatus.BAD_GATEWAY : HttpStatus.MULTI_STATUS;
+            }
+
+            if (accept != null && accept.contains(Constants.NDJSON_MEDIA_TYPE)) {
+                StreamingResponseBody body = out -> ftService.writeAggregatedNdjson(result, out);
+                return ResponseEntity.status(status)
+                        .contentType(MediaType.parseMediaType(Constants.NDJSON_MEDIA_TYPE))
+                        .body(body);
+            }
+            return ResponseEntity.status(status).body(ftService.convertAggregatedToFHIR(result));
+        });
     }
 
     /**
      * Consumes a FHIR Bundle payload and loads supported resources into DIGIT services.
      *
      * @param fhirJson FHIR Bundle payload as JSON
-     * @return processing result or error message
-     * @throws Exception if downstream processing fails
+     * @return processing result or error message; 202 once the batches are queued when the outbox
+     *         is enabled, 503 with Retry-After when the outbox is full, 429 with Retry-After when
+     *         too many entries are in flight, 503 when the ingestion bulkhead is full; with
+     *         sharding, the response of the replica that owns the bundle's tenant
      */
     @PostMapping("/consumeFHIR")
-    public ResponseEntity<String> consumeFHIR(@RequestHeader(value = "Authorization", required = false) String authToken,
-                                              @RequestBody FhirRequestBuilder fhirRequestBuilder) throws Exception {
+    public CompletableFuture<ResponseEntity<String>> consumeFHIR(@RequestHeader(value = "Authorization", required = false) String authToken,
+                                                                 @RequestBody FhirRequestBuilder fhirRequestBuilder,
+                                                                 HttpServletRequest httpRequest) {
+        String tenantId = tenantOf(fhirRequestBuilder);
+        return shardForwarder.route(tenantId, authToken, fhirRequestBuilder, httpRequest,
+                () -> bulkheads.submit(Bulkheads.Lane.INGESTION, tenantId, costOf(fhirRequestBuilder),
+                        () -> ingest(authToken, fhirRequestBuilder, null, httpRequest)));
+    }
+
+    /**
+     * Resends only the failed ids of an earlier {@code /consumeFHIR} call. The body carries the
+     * same bundle plus {@code retryIds}, the {@code failedIds} of the earlier response; writes that
+     * already succeeded are not repeated.
+     *
+     * @param fhirRequestBuilder bundle, RequestInfo and ids to retry per entity type
+     * @return processing result for the retried ids, or 400 if no ids are given
+     */
+    @PostMapping("/retryFailedFHIR")
+    public CompletableFuture<ResponseEntity<String>> retryFailedFHIR(@RequestHeader(value = "Authorization", required = false) String authToken,
+                                                                     @RequestBody FhirRequestBuilder fhirRequestBuilder,
+                                                                     HttpServletRequest httpRequest) {
+        if (fhirRequestBuilder.getRetryIds() == null || fhirRequestBuilder.getRetryIds().isEmpty()) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("retryIds is required"));
+        }
+        String tenantId = tenantOf(fhirRequestBuilder);
+        return shardForwarder.route(tenantId, authToken, fhirRequestBuilder, httpRequest,
+                () -> bulkheads.submit(Bulkheads.Lane.INGESTION, tenantId, costOf(fhirRequestBuilder),
+                        () -> ingest(authToken, fhirRequestBuilder, fhirRequestBuilder.getRetryIds(), httpRequest)));
+    }
+
+    // Ingestion is routed to the replica that owns its tenant and queued fairly per tenant,
+    // with the bundle's entry count as cost
+    private String tenantOf(FhirRequestBuilder fhirRequestBuilder) {
+        return tenantRouter.resolve(fhirRequestBuilder.getRequestInfo(), fhirRequestBuilder.getFhir());
+    }
+
+    private long costOf(FhirRequestBuilder fhirRequestBuilder) {
+        JsonNode fhir = fhirRequestBuilder.getFhir();
+        return fhir == null ? 1 : Math.max(1, fhir.path("entry").size());
+    }
 
+    private ResponseEntity<String> ingest(String authToken, FhirRequestBuilder fhirRequestBuilder,
+                                          Map<String, List<String>> onlyIds, HttpServletRequest httpRequest) {
         FhirParseNLoadService.EntityProcessingResponse response;
         try {
             RequestInfo requestInfo = fhirRequestBuilder.getRequestInfo();
@@ -219,19 +457,31 @@ public class FhirApiController {
             JsonNode root = new ObjectMapper().readTree(fhirJson);
             String bundleId = root.path("id").asText();
 
+            // The filter admitted the body size; admit the entries before validating and mapping
+            Object permit = httpRequest.getAttribute(IngestionAdmissionFilter.PERMIT_ATTRIBUTE);
+            if (permit != null) {
+                ingestionAdmission.admitEntries((IngestionAdmission.Permit) permit, root.path("entry").size());
+            }
+
             // Validate the FHIR resource
+            RequestDeadline.check("Validation");
             ValidationResult result = ftService.validateFHIRResource(fhirJson);
+            RequestDeadline.check("Loading");
 
             // If validation fails → publish to DLQ
             if (!result.isSuccessful()) {
-                kafkaService.publishToDLQ(result, bundleId, root);
+                if (!kafkaService.publishToDLQ(result, bundleId, root)) {
+                    // the dead letter was not kept; ask the client to send the bundle again
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .body("Invalid FHIR resource; the DLQ is full, retry later");
+                }
                 return ResponseEntity
                         .badRequest()
                         .body("Invalid FHIR resource");
             }
 
             // If valid → parse and load FHIR resource
-            response = fpService.parseAndLoadFHIRResource(fhirJson, requestInfo);
+            response = fpService.parseAndLoadFHIRResource(fhirJson, requestInfo, onlyIds);
 
             String responseBody = new ObjectMapper().writeValueAsString(response);
             if ("PARTIAL_SUCCESS".equalsIgnoreCase(response.getStatus())) {
@@ -240,8 +490,24 @@ public class FhirApiController {
             if ("FAILED".equalsIgnoreCase(response.getStatus())) {
                 return ResponseEntity.badRequest().body(responseBody);
             }
+            if ("QUEUED".equalsIgnoreCase(response.getStatus())) {
+                return ResponseEntity.accepted().body(responseBody);
+            }
 
             return ResponseEntity.ok(responseBody);
+        } catch (DeadlineExceededException e) {
+            logger.warn("Ingestion stopped: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(e.getMessage());
+        } catch (AdmissionRejectedException e) {
+            logger.warn("Ingestion rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(e.getMessage());
+        } catch (OutboxFullException e) {
+            logger.warn("Ingestion rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(outboxRetryAfterSeconds))
+                    .body(e.getMessage());
         } catch (JsonProcessingException e) {
             logger.error("Failed to parse FHIR JSON :", e);
             return ResponseEntity.badRequest().body("Invalid FHIR resource");
@@ -252,4 +518,91 @@ public class FhirApiController {
                    .body("Processing Failed");
         }
    }
+
+    /**
+     * Starts replaying a range of the DLQ or failed-resource topic through ingestion.
+     *
+     * @return 202 with the job status, 400 if the request is invalid, or 409 if a job with the same name is running
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<?> startReplay(@RequestHeader(value = "Authorization", required = false) String authToken,
+                                         @Valid @RequestBody ReplayRequest replayRequest) {
+        if (replayRequest.getRequestInfo() != null && authToken != null && !authToken.isEmpty()) {
+            replayRequest.getRequestInfo().setAuthToken(authToken);
+        }
+        try {
+            return ResponseEntity.accepted().body(replayService.start(replayRequest));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the progress and checkpoints of a replay job.
+     */
+    @GetMapping("/replay/{name}")
+    public ResponseEntity<ReplayService.ReplayJob> getReplay(@PathVariable String name) {
+        ReplayService.ReplayJob job = replayService.get(name);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Stops a replay job after its records in flight; it can be resumed from its checkpoints.
+     */
+    @DeleteMapping("/replay/{name}")
+    public ResponseEntity<ReplayService.ReplayJob> cancelReplay(@PathVariable String name) {
+        ReplayService.ReplayJob job = replayService.cancel(name);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Maps unsupported or malformed search parameters to a 400 response.
+     */
+    @ExceptionHandler(InvalidSearchParameterException.class)
+    public ResponseEntity<String> handleInvalidSearchParameter(InvalidSearchParameterException e) {
+        logger.warn("Invalid search parameter: {}", e.getMessage());
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    /**
+     * Maps a rejected downstream call (open circuit or exhausted concurrency limit) to a 503 response.
+     */
+    @ExceptionHandler(DownstreamUnavailableException.class)
+    public ResponseEntity<String> handleDownstreamUnavailable(DownstreamUnavailableException e) {
+        logger.warn("Downstream call rejected: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
+    }
+
+    /**
+     * Maps a request its bulkhead could not queue to a 503 response.
+     */
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<String> handleBulkheadFull(BulkheadFullException e) {
+        logger.warn("Request rejected: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(bulkheadRetryAfterSeconds))
+                .body(e.getMessage());
+    }
+
+    /**
+     * Maps a bundle tagged with a tenant the caller may not load into to a 403 response.
+     */
+    @ExceptionHandler(TenantNotAllowedException.class)
+    public ResponseEntity<String> handleTenantNotAllowed(TenantNotAllowedException e) {
+        logger.warn("Ingestion refused: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+    }
+
+    /**
+     * Maps work stopped by the request deadline or a client disconnect to a 504 response.
+     */
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<String> handleDeadlineExceeded(DeadlineExceededException e) {
+        logger.warn("Request stopped: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(e.getMessage());
+    }
 }
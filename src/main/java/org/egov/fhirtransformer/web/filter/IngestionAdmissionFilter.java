@@ -0,0 +1,94 @@
+package org.egov.fhirtransformer.web.filter;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.egov.fhirtransformer.common.AdmissionRejectedException;
+import org.egov.fhirtransformer.service.IngestionAdmission;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import java.io.IOException;
+
+/**
+ * Admits ingestion requests against the memory budget before their body is read and returns
+ * the budgets when the response completes, including asynchronous completion on a bulkhead
+ * thread. The admitted permit is left in the request attribute {@link #PERMIT_ATTRIBUTE} for the
+ * entry count check.
+ */
+@Component
+public class IngestionAdmissionFilter extends OncePerRequestFilter {
+
+    public static final String PERMIT_ATTRIBUTE = IngestionAdmissionFilter.class.getName() + ".permit";
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionAdmissionFilter.class);
+
+    private final IngestionAdmission admission;
+
+    public IngestionAdmissionFilter(IngestionAdmission admission) {
+        this.admission = admission;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        return !admission.isEnabled() || !"POST".equals(request.getMethod())
+                || !(uri.endsWith("/consumeFHIR") || uri.endsWith("/retryFailedFHIR"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        IngestionAdmission.Permit permit;
+        try {
+            permit = admission.admitBytes(request.getContentLengthLong());
+        } catch (AdmissionRejectedException e) {
+            logger.warn("Ingestion request rejected: {}", e.getMessage());
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            response.getWriter().write(e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        boolean async = false;
+        try {
+            request.setAttribute(PERMIT_ATTRIBUTE, permit);
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                // the controller finishes on a bulkhead thread; release when the response completes
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        permit.close();
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        permit.close();
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        permit.close();
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+                async = true;
+            }
+        } finally {
+            if (!async) permit.close();
+        }
+    }
+}
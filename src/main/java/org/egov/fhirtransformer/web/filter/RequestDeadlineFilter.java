@@ -0,0 +1,72 @@
+package org.egov.fhirtransformer.web.filter;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.egov.fhirtransformer.utils.RequestDeadline;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import java.io.IOException;
+
+/**
+ * Gives every request a {@link RequestDeadline}: the budget in milliseconds from the
+ * {@code request.deadline.header} header, else {@code request.deadline.default-ms}, capped at
+ * {@code request.deadline.max-ms}. For asynchronous requests the deadline is cancelled when the
+ * client disconnects or the async request times out, so queued work stops early.
+ */
+@Component
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    @Value("${request.deadline.header:X-Request-Timeout-Ms}")
+    private String header;
+
+    @Value("${request.deadline.default-ms:60000}")
+    private long defaultMs;
+
+    @Value("${request.deadline.max-ms:300000}")
+    private long maxMs;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestDeadline deadline = RequestDeadline.in(Math.min(maxMs, budget(request.getHeader(header))));
+        try (RequestDeadline.Scope ignored = deadline.bind()) {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        deadline.cancel("request timed out");
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        deadline.cancel("client disconnected");
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            }
+        }
+    }
+
+    private long budget(String value) {
+        if (value == null || value.isBlank()) return defaultMs;
+        try {
+            long millis = Long.parseLong(value.trim());
+            return millis > 0 ? millis : defaultMs;
+        } catch (NumberFormatException e) {
+            return defaultMs;
+        }
+    }
+}
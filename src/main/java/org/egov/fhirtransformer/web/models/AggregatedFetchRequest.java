@@ -0,0 +1,84 @@
+package org.egov.fhirtransformer.web.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import digit.web.models.BoundaryRelationshipSearchCriteria;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import org.egov.common.contract.request.RequestInfo;
+import org.egov.common.models.facility.FacilitySearch;
+import org.egov.common.models.product.ProductVariantSearch;
+import org.egov.common.models.stock.StockReconciliationSearch;
+import org.egov.common.models.stock.StockSearch;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Single criteria object for the aggregated fetch: one search section per DIGIT entity type.
+ * A missing section runs the corresponding search without extra criteria.
+ */
+@Validated
+@JsonIgnoreProperties(
+        ignoreUnknown = true
+)
+public class AggregatedFetchRequest {
+    @JsonProperty("RequestInfo")
+    private @NotNull @Valid RequestInfo requestInfo;
+    @JsonProperty("Facility")
+    private FacilitySearch facility;
+    @JsonProperty("ProductVariant")
+    private ProductVariantSearch productVariant;
+    @JsonProperty("Stock")
+    private StockSearch stock;
+    @JsonProperty("StockReconciliation")
+    private StockReconciliationSearch stockReconciliation;
+    @JsonProperty("Boundary")
+    private BoundaryRelationshipSearchCriteria boundary;
+
+    public RequestInfo getRequestInfo() {
+        return requestInfo;
+    }
+
+    public void setRequestInfo(RequestInfo requestInfo) {
+        this.requestInfo = requestInfo;
+    }
+
+    public FacilitySearch getFacility() {
+        return facility;
+    }
+
+    public void setFacility(FacilitySearch facility) {
+        this.facility = facility;
+    }
+
+    public ProductVariantSearch getProductVariant() {
+        return productVariant;
+    }
+
+    public void setProductVariant(ProductVariantSearch productVariant) {
+        this.productVariant = productVariant;
+    }
+
+    public StockSearch getStock() {
+        return stock;
+    }
+
+    public void setStock(StockSearch stock) {
+        this.stock = stock;
+    }
+
+    public StockReconciliationSearch getStockReconciliation() {
+        return stockReconciliation;
+    }
+
+    public void setStockReconciliation(StockReconciliationSearch stockReconciliation) {
+        this.stockReconciliation = stockReconciliation;
+    }
+
+    public BoundaryRelationshipSearchCriteria getBoundary() {
+        return boundary;
+    }
+
+    public void setBoundary(BoundaryRelationshipSearchCriteria boundary) {
+        this.boundary = boundary;
+    }
+}
@@ -0,0 +1,132 @@
+package org.egov.fhirtransformer.web.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import org.egov.common.contract.request.RequestInfo;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Replay of a range of the DLQ or failed-resource topic back through ingestion.
+ * The range is either a time range (ISO-8601 instants) or an offset range applied to every
+ * partition; missing bounds mean the start and the current end of the topic. With
+ * {@code resume} the replay continues from the checkpoints of the previous run with the same name.
+ */
+@Validated
+@JsonIgnoreProperties(
+        ignoreUnknown = true
+)
+public class ReplayRequest {
+    @JsonProperty("RequestInfo")
+    private @NotNull @Valid RequestInfo requestInfo;
+    // "dlq" or "failed"
+    @JsonProperty("source")
+    private @NotNull String source;
+    @JsonProperty("name")
+    private @NotNull String name;
+    @JsonProperty("fromTime")
+    private String fromTime;
+    @JsonProperty("toTime")
+    private String toTime;
+    @JsonProperty("fromOffset")
+    private Long fromOffset;
+    @JsonProperty("toOffset")
+    private Long toOffset;
+    @JsonProperty("revalidate")
+    private boolean revalidate = true;
+    @JsonProperty("ratePerSecond")
+    private Double ratePerSecond;
+    @JsonProperty("concurrency")
+    private Integer concurrency;
+    @JsonProperty("resume")
+    private boolean resume;
+
+    public RequestInfo getRequestInfo() {
+        return requestInfo;
+    }
+
+    public void setRequestInfo(RequestInfo requestInfo) {
+        this.requestInfo = requestInfo;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getFromTime() {
+        return fromTime;
+    }
+
+    public void setFromTime(String fromTime) {
+        this.fromTime = fromTime;
+    }
+
+    public String getToTime() {
+        return toTime;
+    }
+
+    public void setToTime(String toTime) {
+        this.toTime = toTime;
+    }
+
+    public Long getFromOffset() {
+        return fromOffset;
+    }
+
+    public void setFromOffset(Long fromOffset) {
+        this.fromOffset = fromOffset;
+    }
+
+    public Long getToOffset() {
+        return toOffset;
+    }
+
+    public void setToOffset(Long toOffset) {
+        this.toOffset = toOffset;
+    }
+
+    public boolean isRevalidate() {
+        return revalidate;
+    }
+
+    public void setRevalidate(boolean revalidate) {
+        this.revalidate = revalidate;
+    }
+
+    public Double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public void setRatePerSecond(Double ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    public Integer getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(Integer concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+}
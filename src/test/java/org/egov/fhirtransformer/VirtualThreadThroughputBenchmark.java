@@ -0,0 +1,151 @@
+package org.egov.fhirtransformer;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.egov.fhirtransformer.common.DownstreamService;
+import org.egov.fhirtransformer.config.DownstreamClients;
+import org.egov.fhirtransformer.service.DownstreamGuard;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.condition.JRE;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.PropertiesPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.web.client.RestTemplate;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares concurrent-bundle throughput on platform threads (capped like Tomcat's default
+ * 200 worker threads) against virtual threads. Each simulated bundle makes the blocking
+ * downstream calls of a typical ingestion (existence check, create) against a local stub
+ * with DIGIT-like latency, through the stock client of {@link DownstreamClients} built with the
+ * pool settings of application-dev.properties. The guard's queue is widened so that no bundle is
+ * shed: the runs measure the thread model against the real connection pool, which caps both.
+ *
+ * <p>Opt-in: {@code mvn -Pjava21 test -Dtest=VirtualThreadThroughputBenchmark -Dbenchmark=true}
+ */
+@EnabledForJreRange(min = JRE.JAVA_21)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class VirtualThreadThroughputBenchmark {
+
+    private static final int BUNDLES = 2000;
+    private static final int CALLS_PER_BUNDLE = 4;
+    private static final int DOWNSTREAM_LATENCY_MS = 50;
+    private static final int PLATFORM_THREADS = 200;
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadThroughputBenchmark.class);
+
+    private static HttpServer server;
+    private static ExecutorService serverExecutor;
+    private static URI stubUri;
+    private static DownstreamClients clients;
+
+    @BeforeAll
+    static void startStub() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.createContext("/stub", exchange -> {
+            try {
+                Thread.sleep(DOWNSTREAM_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"ResponseInfo\":{\"status\":\"successful\"}}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        stubUri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/stub");
+
+        StandardEnvironment env = new StandardEnvironment();
+        env.getPropertySources().addFirst(new PropertiesPropertySource("dev",
+                PropertiesLoaderUtils.loadProperties(new ClassPathResource("application-dev.properties"))));
+        env.getPropertySources().addFirst(new MapPropertySource("benchmark", Map.<String, Object>of(
+                "downstream.guard.max-queue", BUNDLES,
+                "downstream.guard.queue-timeout-ms", 60000)));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DownstreamGuard guard = new DownstreamGuard(env, meterRegistry,
+                env.getRequiredProperty("downstream.guard.queue-timeout-ms", Long.class));
+        clients = new DownstreamClients(env, meterRegistry, guard,
+                env.getRequiredProperty("downstream.http.connect-timeout-ms", Long.class),
+                env.getRequiredProperty("downstream.http.read-timeout-ms", Long.class),
+                env.getRequiredProperty("downstream.http.connection-request-timeout-ms", Long.class),
+                env.getRequiredProperty("downstream.http.idle-evict-ms", Long.class),
+                env.getRequiredProperty("downstream.http.max-connections", Integer.class),
+                env.getRequiredProperty("downstream.http.http2.enabled", Boolean.class));
+    }
+
+    @AfterAll
+    static void stopStub() {
+        clients.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void compareBundleThroughput() throws Exception {
+        ExecutorService platform = Executors.newFixedThreadPool(PLATFORM_THREADS);
+        double platformRate;
+        try {
+            platformRate = run("platform", platform);
+        } finally {
+            platform.shutdownNow();
+        }
+
+        SimpleAsyncTaskExecutor virtual = new SimpleAsyncTaskExecutor("bench-");
+        virtual.setVirtualThreads(true);
+        double virtualRate = run("virtual", virtual);
+
+        logger.info("Bundles/s platform({})={} virtual={} speedup={}x", PLATFORM_THREADS,
+                String.format("%.1f", platformRate), String.format("%.1f", virtualRate),
+                String.format("%.2f", virtualRate / platformRate));
+        assertTrue(virtualRate >= platformRate * 0.9,
+                "virtual threads were slower than " + PLATFORM_THREADS + " platform threads");
+    }
+
+    private double run(String mode, Executor executor) throws InterruptedException {
+        RestTemplate restTemplate = clients.get(DownstreamService.STOCK);
+        CountDownLatch done = new CountDownLatch(BUNDLES);
+        AtomicInteger completed = new AtomicInteger();
+        long start = System.nanoTime();
+        for (int i = 0; i < BUNDLES; i++) {
+            executor.execute(() -> {
+                try {
+                    for (int call = 0; call < CALLS_PER_BUNDLE; call++) {
+                        restTemplate.postForObject(stubUri, "{}", String.class);
+                    }
+                    completed.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await(5, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        assertEquals(BUNDLES, completed.get(), mode + " run did not complete every bundle");
+        return BUNDLES / seconds;
+    }
+}
@@ -0,0 +1,138 @@
+package org.egov.fhirtransformer.mapping.requestBuilder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.egov.fhirtransformer.mapping.requestBuilder.GenericCreateOrUpdateService.OrderedBulkWrite;
+import org.egov.fhirtransformer.mapping.requestBuilder.GenericCreateOrUpdateService.ThrowingBiConsumer;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestClientResponseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkedBulkWriterTest {
+
+    private static final String URL = "http://digit/stock/v1/bulk/_create";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<List<String>> sent = new ArrayList<>();
+
+    @Test
+    void onlyTheRefusedChunkIsResent() {
+        ChunkedBulkWriter writer = newWriter();
+
+        Map<Integer, ChunkedBulkWriter.Failure> failures = writer.write(URL, items(8), failWhen(413, 4, "i4"));
+
+        assertTrue(failures.isEmpty());
+        assertEquals(List.of(items(0, 4), items(4, 8), items(4, 6), items(6, 8)), sent);
+        assertEquals(2.0, meterRegistry.get("write.chunk.retries").counter().count());
+    }
+
+    @Test
+    void serverErrorIsNotResent() {
+        ChunkedBulkWriter writer = newWriter();
+
+        Map<Integer, ChunkedBulkWriter.Failure> failures = writer.write(URL, items(8), failWhen(503, 1, "i4"));
+
+        assertEquals(List.of(items(0, 4), items(4, 8)), sent);
+        assertEquals(List.of(4, 5, 6, 7), failures.keySet().stream().sorted().toList());
+        ChunkedBulkWriter.Failure failure = failures.get(4);
+        assertEquals(503, failure.status());
+        assertFalse(failure.notWritten());
+        assertFalse(failure.rejected());
+    }
+
+    @Test
+    void invalidChunkIsReportedNotResent() {
+        ChunkedBulkWriter writer = newWriter();
+
+        Map<Integer, ChunkedBulkWriter.Failure> failures = writer.write(URL, items(8), failWhen(400, 1, "i0"));
+
+        assertEquals(List.of(items(0, 4), items(4, 8)), sent);
+        assertEquals(List.of(0, 1, 2, 3), failures.keySet().stream().sorted().toList());
+        assertTrue(failures.get(0).notWritten());
+        assertTrue(failures.get(0).rejected());
+    }
+
+    @Test
+    void resendsStopAfterMaxRetries() {
+        ChunkedBulkWriter writer = newWriter();
+
+        Map<Integer, ChunkedBulkWriter.Failure> failures = writer.write(URL, items(8), failWhen(429, 1, "i4"));
+
+        // first send plus write.chunk.max-retries resends
+        assertEquals(3, sent.stream().filter(chunk -> chunk.contains("i4")).count());
+        assertEquals(1, sent.stream().filter(chunk -> chunk.contains("i0")).count());
+        assertEquals(429, failures.get(4).status());
+        assertTrue(failures.get(4).notWritten());
+        assertFalse(failures.containsKey(0));
+    }
+
+    @Test
+    void resendsStopWhenTheBudgetIsSpent() {
+        // one token and no deposits: only one of the two refused chunks is resent
+        ChunkedBulkWriter writer = new ChunkedBulkWriter(meterRegistry, Runnable::run, true, 4, 1, 8, 60000, 2, 0, 1);
+
+        Map<Integer, ChunkedBulkWriter.Failure> failures = writer.write(URL, items(8), failWhen(413, 4, "i0", "i4"));
+
+        assertEquals(4, failures.size());
+        assertEquals(1.0, meterRegistry.get("write.chunk.budget.exhausted").counter().count());
+    }
+
+    @Test
+    void orderedWritesAreSentWhole() {
+        ChunkedBulkWriter writer = newWriter();
+        OrderedBulkWrite<String> ordered = (chunk, url) -> sent.add(chunk);
+
+        assertTrue(writer.write(URL, items(8), ordered).isEmpty());
+        assertEquals(List.of(items(0, 8)), sent);
+    }
+
+    @Test
+    void disabledWriterSendsOneRequest() {
+        ChunkedBulkWriter writer = new ChunkedBulkWriter(meterRegistry, Runnable::run, false, 4, 1, 8, 60000, 2, 0.1, 20);
+
+        Map<Integer, ChunkedBulkWriter.Failure> failures = writer.write(URL, items(8), failWhen(503, 1, "i4"));
+
+        assertEquals(List.of(items(0, 8)), sent);
+        assertEquals(8, failures.size());
+    }
+
+    // chunks run on the calling thread, starting at four records
+    private ChunkedBulkWriter newWriter() {
+        return new ChunkedBulkWriter(meterRegistry, Runnable::run, true, 4, 1, 8, 60000, 2, 0.1, 20);
+    }
+
+    // records every chunk and answers with the status when it holds at least minSize records and one of the items
+    private ThrowingBiConsumer<List<String>, String> failWhen(int status, int minSize, String... items) {
+        return (chunk, url) -> {
+            sent.add(chunk);
+            if (chunk.size() >= minSize && List.of(items).stream().anyMatch(chunk::contains)) {
+                throw error(status);
+            }
+        };
+    }
+
+    private static RestClientResponseException error(int status) {
+        HttpStatusCode code = HttpStatusCode.valueOf(status);
+        return status >= 500
+                ? HttpServerErrorException.create(code, "status " + status, HttpHeaders.EMPTY, null, null)
+                : HttpClientErrorException.create(code, "status " + status, HttpHeaders.EMPTY, null, null);
+    }
+
+    private static List<String> items(int count) {
+        return items(0, count);
+    }
+
+    private static List<String> items(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> "i" + i).toList();
+    }
+}
@@ -0,0 +1,129 @@
+package org.egov.fhirtransformer.mapping.requestBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.egov.common.models.facility.Address;
+import org.egov.common.models.facility.Facility;
+import org.egov.common.models.stock.Stock;
+import org.junit.jupiter.api.Test;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExistingRecordComparatorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExistingRecordComparator comparator = new ExistingRecordComparator(objectMapper, true);
+
+    @Test
+    void sameMappedFieldsAreUnchanged() {
+        assertTrue(comparator.isUnchanged(stock(), asRecord(stock())));
+    }
+
+    @Test
+    void fieldsDigitMaintainsAreIgnored() {
+        Map<String, Object> existing = asRecord(stock());
+        existing.put("rowVersion", 7);
+        existing.put("auditDetails", Map.of("createdBy", "someone", "lastModifiedTime", 1700000000000L));
+        existing.put("hasErrors", false);
+
+        assertTrue(comparator.isUnchanged(stock(), existing));
+    }
+
+    @Test
+    void changedValueIsAChange() {
+        Map<String, Object> existing = asRecord(stock());
+        existing.put("quantity", 11);
+
+        assertFalse(comparator.isUnchanged(stock(), existing));
+    }
+
+    @Test
+    void valueRemovedFromTheResourceIsAChange() {
+        Stock mapped = stock();
+        mapped.setWayBillNumber(null);
+
+        assertFalse(comparator.isUnchanged(mapped, asRecord(stock())));
+    }
+
+    @Test
+    void valueDigitDoesNotHoldIsAChange() {
+        Map<String, Object> existing = asRecord(stock());
+        existing.remove("wayBillNumber");
+
+        assertFalse(comparator.isUnchanged(stock(), existing));
+    }
+
+    @Test
+    void missingNullAndEmptyTextAreTheSame() {
+        Stock mapped = stock();
+        mapped.setWayBillNumber(null);
+        Map<String, Object> existing = asRecord(stock());
+        existing.put("wayBillNumber", "");
+
+        assertTrue(comparator.isUnchanged(mapped, existing));
+    }
+
+    @Test
+    void numbersCompareByValue() {
+        Map<String, Object> existing = asRecord(stock());
+        existing.put("quantity", 10.0);
+
+        assertTrue(comparator.isUnchanged(stock(), existing));
+    }
+
+    @Test
+    void nestedFieldsAreCompared() {
+        Facility mapped = facility("Pune");
+        assertTrue(comparator.isUnchanged(mapped, asRecord(facility("Pune"))));
+        assertFalse(comparator.isUnchanged(mapped, asRecord(facility("Nashik"))));
+
+        Facility cleared = facility("Pune");
+        cleared.getAddress().setCity(null);
+        assertFalse(comparator.isUnchanged(cleared, asRecord(facility("Pune"))));
+    }
+
+    @Test
+    void typesWithoutAFieldListAreAlwaysUpdated() {
+        Map<String, Object> entity = Map.of("id", "B1", "code", "B1");
+        assertFalse(comparator.isUnchanged(entity, entity));
+    }
+
+    @Test
+    void missingRecordOrDisabledCheckIsAlwaysUpdated() {
+        assertFalse(comparator.isUnchanged(stock(), null));
+        ExistingRecordComparator disabled = new ExistingRecordComparator(objectMapper, false);
+        assertFalse(disabled.isUnchanged(stock(), asRecord(stock())));
+    }
+
+    private static Stock stock() {
+        Stock stock = new Stock();
+        stock.setTenantId("pg");
+        stock.setId("S1");
+        stock.setWayBillNumber("WB-1");
+        stock.setProductVariantId("PV-1");
+        stock.setQuantity(10);
+        stock.setDateOfEntry(1700000000000L);
+        stock.setSenderId("F1");
+        stock.setReceiverId("F2");
+        return stock;
+    }
+
+    private static Facility facility(String city) {
+        Address address = new Address();
+        address.setCity(city);
+        address.setPincode("411001");
+        Facility facility = new Facility();
+        facility.setTenantId("pg");
+        facility.setId("F1");
+        facility.setName("Store");
+        facility.setAddress(address);
+        return facility;
+    }
+
+    // the record as DIGIT returns it in a search response
+    private Map<String, Object> asRecord(Object entity) {
+        return objectMapper.convertValue(entity, new TypeReference<Map<String, Object>>() { });
+    }
+}
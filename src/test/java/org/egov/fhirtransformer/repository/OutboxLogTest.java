@@ -0,0 +1,151 @@
+package org.egov.fhirtransformer.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class OutboxLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordsAreReadInAppendOrderUntilCommitted() throws Exception {
+        try (OutboxLog log = open(Long.MAX_VALUE)) {
+            log.append(bytes("first"));
+            log.append(bytes("second"));
+            assertEquals(2, log.getPendingEntries());
+
+            OutboxLog.Entry first = log.peek(0);
+            assertEquals("first", text(first));
+            assertEquals("first", text(log.peek(0)));
+            log.commit(first);
+            assertEquals("second", text(log.peek(0)));
+            assertEquals(1, log.getPendingEntries());
+        }
+    }
+
+    @Test
+    void peekReturnsNullWhenNothingArrives() throws Exception {
+        try (OutboxLog log = open(Long.MAX_VALUE)) {
+            assertNull(log.peek(10));
+        }
+    }
+
+    @Test
+    void reopenedLogResumesAfterTheCommittedRecords() throws Exception {
+        try (OutboxLog log = open(Long.MAX_VALUE)) {
+            log.append(bytes("first"));
+            log.append(bytes("second"));
+            log.commit(log.peek(0));
+        }
+        try (OutboxLog log = open(Long.MAX_VALUE)) {
+            assertEquals(1, log.getPendingEntries());
+            assertEquals("second", text(log.peek(0)));
+        }
+    }
+
+    @Test
+    void tornTailIsCutOffOnOpen() throws Exception {
+        try (OutboxLog log = open(Long.MAX_VALUE)) {
+            log.append(bytes("first"));
+            log.append(bytes("second"));
+        }
+        Path file = dir.resolve("stock.log");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        try (OutboxLog log = open(Long.MAX_VALUE)) {
+            assertEquals(1, log.getPendingEntries());
+            log.append(bytes("third"));
+            log.commit(log.peek(0));
+            assertEquals("third", text(log.peek(0)));
+        }
+    }
+
+    @Test
+    void corruptRecordEndsTheLog() throws Exception {
+        try (OutboxLog log = open(Long.MAX_VALUE)) {
+            log.append(bytes("first"));
+            log.append(bytes("second"));
+        }
+        Path file = dir.resolve("stock.log");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // flip the last payload byte of the second record
+            channel.write(ByteBuffer.wrap(new byte[] {'X'}), channel.size() - 1);
+        }
+        try (OutboxLog log = open(Long.MAX_VALUE)) {
+            assertEquals(1, log.getPendingEntries());
+            assertEquals("first", text(log.peek(0)));
+        }
+    }
+
+    @Test
+    void unreadableCursorRestartsAtTheBeginning() throws Exception {
+        try (OutboxLog log = open(Long.MAX_VALUE)) {
+            log.append(bytes("first"));
+            log.append(bytes("second"));
+            log.commit(log.peek(0));
+        }
+        Files.writeString(dir.resolve("stock.cursor"), "", StandardCharsets.UTF_8);
+        try (OutboxLog log = open(Long.MAX_VALUE)) {
+            assertEquals(2, log.getPendingEntries());
+            assertEquals("first", text(log.peek(0)));
+        }
+    }
+
+    @Test
+    void fullyCommittedLogIsCompacted() throws Exception {
+        try (OutboxLog log = open(0)) {
+            log.append(bytes("first"));
+            log.commit(log.peek(0));
+            assertEquals(0, log.getPendingBytes());
+        }
+        assertEquals(0, Files.size(dir.resolve("stock.log")));
+        assertEquals("0", Files.readString(dir.resolve("stock.cursor"), StandardCharsets.UTF_8));
+        try (OutboxLog log = open(0)) {
+            assertEquals(0, log.getPendingEntries());
+            log.append(bytes("second"));
+            assertEquals("second", text(log.peek(0)));
+        }
+    }
+
+    @Test
+    void crashBetweenCompactionAndCursorResetReplaysNothing() throws Exception {
+        try (OutboxLog log = open(Long.MAX_VALUE)) {
+            log.append(bytes("first"));
+            log.commit(log.peek(0));
+        }
+        // the cursor points past the end of the log, as after a crash right after the truncation
+        try (FileChannel channel = FileChannel.open(dir.resolve("stock.log"), StandardOpenOption.WRITE)) {
+            channel.truncate(0);
+        }
+        try (OutboxLog log = open(Long.MAX_VALUE)) {
+            assertEquals(0, log.getPendingEntries());
+            assertNull(log.peek(0));
+            log.append(bytes("second"));
+            assertEquals("second", text(log.peek(0)));
+        }
+    }
+
+    private OutboxLog open(long compactBytes) throws IOException {
+        return new OutboxLog(dir, "stock", true, compactBytes);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(OutboxLog.Entry entry) {
+        return new String(entry.payload(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,183 @@
+package org.egov.fhirtransformer.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.egov.fhirtransformer.common.DeadlineExceededException;
+import org.egov.fhirtransformer.common.DownstreamService;
+import org.egov.fhirtransformer.utils.RequestDeadline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.client.HttpServerErrorException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownstreamRetryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService hedgeExecutor = Executors.newCachedThreadPool();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private DownstreamRetry retry;
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        if (retry != null) retry.close();
+        hedgeExecutor.shutdownNow();
+    }
+
+    @Test
+    void hedgeAnswersWhileTheFirstAttemptIsStillSlow() {
+        retry = newRetry(true);
+        warmUp(20);
+        AtomicInteger calls = new AtomicInteger();
+
+        long start = System.nanoTime();
+        String value = retry.search(DownstreamService.STOCK, () -> {
+            if (calls.incrementAndGet() == 1) {
+                await(release);
+                return "primary";
+            }
+            return "hedge";
+        });
+
+        assertEquals("hedge", value);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        assertEquals(1.0, count("downstream.hedge.sent"));
+        assertEquals(1.0, count("downstream.hedge.won"));
+    }
+
+    @Test
+    void fastFirstAttemptIsNotHedged() {
+        retry = newRetry(true);
+        warmUp(20);
+
+        assertEquals("primary", retry.search(DownstreamService.STOCK, () -> "primary"));
+        assertEquals(0.0, count("downstream.hedge.sent"));
+    }
+
+    @Test
+    void firstAttemptWinsWhenTheHedgeFails() {
+        retry = newRetry(true);
+        warmUp(20);
+        AtomicInteger calls = new AtomicInteger();
+
+        String value = retry.search(DownstreamService.STOCK, () -> {
+            if (calls.incrementAndGet() == 1) {
+                sleep(200);
+                return "primary";
+            }
+            throw new IllegalStateException("hedge failed");
+        });
+
+        assertEquals("primary", value);
+        assertEquals(1.0, count("downstream.hedge.sent"));
+        assertEquals(0.0, count("downstream.hedge.won"));
+    }
+
+    @Test
+    void hedgedSearchStopsWaitingAtTheDeadline() {
+        retry = newRetry(true);
+        warmUp(20);
+
+        long start = System.nanoTime();
+        try (RequestDeadline.Scope ignored = RequestDeadline.in(100).bind()) {
+            assertThrows(DeadlineExceededException.class, () -> retry.search(DownstreamService.STOCK, () -> {
+                await(release);
+                return "late";
+            }));
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+    }
+
+    @Test
+    void searchIsRetriedOnServiceUnavailable() {
+        retry = newRetry(false);
+        AtomicInteger calls = new AtomicInteger();
+
+        String value = retry.search(DownstreamService.STOCK, () -> {
+            if (calls.incrementAndGet() == 1) throw unavailable();
+            return "value";
+        });
+
+        assertEquals("value", value);
+        assertEquals(2, calls.get());
+        assertEquals(1.0, count("downstream.retry.attempts"));
+    }
+
+    @Test
+    void writeIsNotRetriedOnServiceUnavailable() {
+        retry = newRetry(false);
+        AtomicInteger calls = new AtomicInteger();
+        HttpServerErrorException failure = unavailable();
+
+        assertSame(failure, assertThrows(HttpServerErrorException.class, () -> retry.write(DownstreamService.STOCK, () -> {
+            calls.incrementAndGet();
+            throw failure;
+        })));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void retriesStopWhenTheBudgetIsSpent() {
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("downstream.retry.budget-ratio", "0")
+                .withProperty("downstream.retry.budget-max-tokens", "1");
+        retry = new DownstreamRetry(env, meterRegistry, hedgeExecutor, 1, 1, false, 0.95, 10);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(HttpServerErrorException.class, () -> retry.search(DownstreamService.STOCK, () -> {
+            calls.incrementAndGet();
+            throw unavailable();
+        }));
+        assertEquals(2, calls.get());
+        assertEquals(1.0, count("downstream.retry.budget.exhausted"));
+    }
+
+    private DownstreamRetry newRetry(boolean hedge) {
+        return new DownstreamRetry(new MockEnvironment(), meterRegistry, hedgeExecutor, 1, 1, hedge, 0.95, 10);
+    }
+
+    // records enough samples of the given latency for the hedge percentile to be known
+    private void warmUp(long latencyMs) {
+        for (int i = 0; i < 10; i++) {
+            retry.search(DownstreamService.STOCK, () -> {
+                sleep(latencyMs);
+                return "warm";
+            });
+        }
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).tag("service", DownstreamService.STOCK.key()).counter().count();
+    }
+
+    private static HttpServerErrorException unavailable() {
+        return HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "busy", HttpHeaders.EMPTY, null, null);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
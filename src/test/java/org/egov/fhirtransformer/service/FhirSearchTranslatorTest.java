@@ -0,0 +1,167 @@
+package org.egov.fhirtransformer.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.egov.common.models.core.URLParams;
+import org.egov.common.models.facility.FacilitySearch;
+import org.egov.common.models.facility.FacilitySearchRequest;
+import org.egov.common.models.product.ProductVariantSearchRequest;
+import org.egov.common.models.stock.StockReconciliationSearchRequest;
+import org.egov.common.models.stock.StockSearchRequest;
+import org.egov.fhirtransformer.common.Constants;
+import org.egov.fhirtransformer.common.InvalidSearchParameterException;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FhirSearchTranslatorTest {
+
+    private final FhirSearchTranslator translator = new FhirSearchTranslator();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void referencesBecomeStockCriteria() {
+        StockSearchRequest request = new StockSearchRequest();
+        MultiValueMap<String, String> params = params(Constants.SP_ID, "SupplyDelivery/S1,S2");
+        params.add(Constants.SP_ITEM, "InventoryItem/PV-1");
+        params.add(Constants.SP_DESTINATION, "Location/F2");
+
+        assertTrue(translator.applyToStockSearch(params, new URLParams(), request));
+        assertEquals(Set.of("S1", "S2"), values(request.getStock(), "id"));
+        assertEquals(Set.of("PV-1"), values(request.getStock(), "productVariantId"));
+        assertEquals(Set.of("F2"), values(request.getStock(), "receiverId"));
+    }
+
+    @Test
+    void repeatedParametersAreIntersected() {
+        MultiValueMap<String, String> params = params(Constants.SP_ID, "A,B");
+        params.add(Constants.SP_ID, "B,C");
+        StockSearchRequest request = new StockSearchRequest();
+
+        assertTrue(translator.applyToStockSearch(params, new URLParams(), request));
+        assertEquals(Set.of("B"), values(request.getStock(), "id"));
+
+        params.add(Constants.SP_ID, "C");
+        assertFalse(translator.applyToStockSearch(params, new URLParams(), new StockSearchRequest()));
+    }
+
+    @Test
+    void criteriaInTheBodyAreIntersected() {
+        FacilitySearchRequest request = facilityRequest("F1", "F2");
+        assertTrue(translator.applyToFacilitySearch(params(Constants.SP_ID, "F2,F3"), new URLParams(), request));
+        assertEquals(Set.of("F2"), values(request.getFacility(), "id"));
+
+        assertFalse(translator.applyToFacilitySearch(params(Constants.SP_ID, "F3"), new URLParams(),
+                facilityRequest("F1", "F2")));
+    }
+
+    @Test
+    void identifierSystemSelectsTheProductVariantField() {
+        ProductVariantSearchRequest bySku = new ProductVariantSearchRequest();
+        translator.applyToProductVariantSearch(params(Constants.SP_IDENTIFIER,
+                Constants.IDENTIFIER_SYSTEM_SKUPV + "|SKU-1"), new URLParams(), bySku);
+        assertEquals(Set.of("SKU-1"), values(bySku.getProductVariant(), "sku"));
+
+        ProductVariantSearchRequest byProduct = new ProductVariantSearchRequest();
+        translator.applyToProductVariantSearch(params(Constants.SP_IDENTIFIER,
+                Constants.IDENTIFIER_SYSTEM_PRDCT + "|P-1"), new URLParams(), byProduct);
+        assertEquals(Set.of("P-1"), values(byProduct.getProductVariant(), "productId"));
+
+        ProductVariantSearchRequest byId = new ProductVariantSearchRequest();
+        translator.applyToProductVariantSearch(params(Constants.SP_IDENTIFIER,
+                Constants.IDENTIFIER_SYSTEM_PV + "|PV-1"), new URLParams(), byId);
+        assertEquals(Set.of("PV-1"), values(byId.getProductVariant(), "id"));
+    }
+
+    @Test
+    void bareIdentifierNeedsASingleSystem() {
+        StockSearchRequest stock = new StockSearchRequest();
+        assertTrue(translator.applyToStockSearch(params(Constants.SP_IDENTIFIER, "WB-1"), new URLParams(), stock));
+        assertEquals(Set.of("WB-1"), values(stock.getStock(), "wayBillNumber"));
+
+        assertThrows(InvalidSearchParameterException.class, () -> translator.applyToProductVariantSearch(
+                params(Constants.SP_IDENTIFIER, "SKU-1"), new URLParams(), new ProductVariantSearchRequest()));
+    }
+
+    @Test
+    void unknownOrMixedIdentifierSystemsAreRejected() {
+        assertThrows(InvalidSearchParameterException.class, () -> translator.applyToFacilitySearch(
+                params(Constants.SP_IDENTIFIER, "http://example.org/other|F1"), new URLParams(), new FacilitySearchRequest()));
+        assertThrows(InvalidSearchParameterException.class, () -> translator.applyToProductVariantSearch(
+                params(Constants.SP_IDENTIFIER, Constants.IDENTIFIER_SYSTEM_SKUPV + "|SKU-1,"
+                        + Constants.IDENTIFIER_SYSTEM_PRDCT + "|P-1"), new URLParams(), new ProductVariantSearchRequest()));
+    }
+
+    @Test
+    void locationAndItemBecomeReconciliationCriteria() {
+        StockReconciliationSearchRequest request = new StockReconciliationSearchRequest();
+        MultiValueMap<String, String> params = params(Constants.SP_LOCATION, "Location/F1");
+        params.add(Constants.SP_ITEM, "PV-1");
+
+        assertTrue(translator.applyToStockReconciliationSearch(params, new URLParams(), request));
+        assertEquals(Set.of("F1"), values(request.getStockReconciliation(), "facilityId"));
+        assertEquals(Set.of("PV-1"), values(request.getStockReconciliation(), "productVariantId"));
+    }
+
+    @Test
+    void countWithinBoundsSetsTheLimit() {
+        URLParams urlParams = new URLParams();
+        translator.applyToFacilitySearch(params(Constants.SP_COUNT, "1"), urlParams, new FacilitySearchRequest());
+        assertEquals(Integer.valueOf(1), urlParams.getLimit());
+
+        translator.applyToFacilitySearch(params(Constants.SP_COUNT, "1000"), urlParams, new FacilitySearchRequest());
+        assertEquals(Integer.valueOf(1000), urlParams.getLimit());
+    }
+
+    @Test
+    void countOutOfBoundsIsRejected() {
+        for (String count : List.of("0", "1001", "-5", "ten")) {
+            assertThrows(InvalidSearchParameterException.class, () -> translator.applyToFacilitySearch(
+                    params(Constants.SP_COUNT, count), new URLParams(), new FacilitySearchRequest()), count);
+        }
+    }
+
+    @Test
+    void lastUpdatedBecomesLastChangedSince() {
+        URLParams urlParams = new URLParams();
+        translator.applyToStockSearch(params(Constants.SP_LAST_UPDATED, "ge2024-01-01T10:00:00Z"), urlParams,
+                new StockSearchRequest());
+
+        assertEquals(Long.valueOf(Instant.parse("2024-01-01T10:00:00Z").toEpochMilli()), urlParams.getLastChangedSince());
+    }
+
+    private static MultiValueMap<String, String> params(String name, String value) {
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add(name, value);
+        return params;
+    }
+
+    private static FacilitySearchRequest facilityRequest(String... ids) {
+        FacilitySearch search = new FacilitySearch();
+        search.setId(List.of(ids));
+        FacilitySearchRequest request = new FacilitySearchRequest();
+        request.setFacility(search);
+        return request;
+    }
+
+    // DIGIT search fields hold a single value or a list
+    private Set<String> values(Object search, String field) {
+        JsonNode node = objectMapper.valueToTree(search).path(field);
+        Set<String> values = new LinkedHashSet<>();
+        if (node.isArray()) {
+            node.forEach(value -> values.add(value.asText()));
+        } else if (!node.isMissingNode() && !node.isNull()) {
+            values.add(node.asText());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,109 @@
+package org.egov.fhirtransformer.utils;
+
+import org.egov.fhirtransformer.utils.AdaptiveConcurrencyLimiter.Outcome;
+import org.junit.jupiter.api.Test;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void rejectsOverTheLimitWithoutQueue() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 1000, 0.5, 0);
+        assertTrue(limiter.acquire(0));
+        assertTrue(limiter.acquire(0));
+        assertFalse(limiter.acquire(0));
+        assertEquals(1, limiter.getRejected());
+    }
+
+    @Test
+    void droppedCallsShrinkAndFastSuccessesGrowTheLimit() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 10, 1000, 0.5, 0);
+        limiter.acquire(0);
+        limiter.release(FAST, Outcome.DROPPED);
+        assertEquals(2, limiter.getLimit());
+
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire(0);
+            limiter.release(FAST, Outcome.SUCCESS);
+        }
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    void slowSuccessShrinksTheLimit() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 10, 1, 0.5, 0);
+        limiter.acquire(0);
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(5), Outcome.SUCCESS);
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void ignoredCallsOnlyReturnTheirPermit() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 10, 1000, 0.5, 0);
+        limiter.acquire(0);
+        limiter.release(FAST, Outcome.IGNORED);
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void queuedAsyncCallStartsWhenAPermitFrees() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 1000, 0.5, 1);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        AtomicBoolean secondStarted = new AtomicBoolean();
+
+        CompletableFuture<String> firstResult = limiter.submit(() -> first, error -> Outcome.SUCCESS, 10000, IllegalStateException::new);
+        CompletableFuture<String> secondResult = limiter.submit(() -> {
+            secondStarted.set(true);
+            return CompletableFuture.completedFuture("second");
+        }, error -> Outcome.SUCCESS, 10000, IllegalStateException::new);
+        assertFalse(secondStarted.get());
+        assertEquals(1, limiter.getQueued());
+
+        first.complete("first");
+        assertEquals("first", firstResult.get(1, TimeUnit.SECONDS));
+        assertEquals("second", secondResult.get(1, TimeUnit.SECONDS));
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void queuedAsyncCallFailsAfterTheQueueTimeout() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 1000, 0.5, 1);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        AtomicBoolean secondStarted = new AtomicBoolean();
+        limiter.submit(() -> first, error -> Outcome.SUCCESS, 50, IllegalStateException::new);
+
+        CompletableFuture<String> second = limiter.submit(() -> {
+            secondStarted.set(true);
+            return CompletableFuture.completedFuture("second");
+        }, error -> Outcome.SUCCESS, 50, () -> new IllegalStateException("limit reached"));
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertEquals(0, limiter.getQueued());
+        assertEquals(1, limiter.getRejected());
+
+        // the timed-out call is gone: a freed permit does not start it
+        first.complete("first");
+        assertFalse(secondStarted.get());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void asyncCallIsRejectedWhenTheQueueIsFull() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 1000, 0.5, 0);
+        limiter.submit(CompletableFuture::new, error -> Outcome.SUCCESS, 1000, IllegalStateException::new);
+        assertNull(limiter.submit(CompletableFuture::new, error -> Outcome.SUCCESS, 1000, IllegalStateException::new));
+    }
+}
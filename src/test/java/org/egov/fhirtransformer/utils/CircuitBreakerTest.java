@@ -0,0 +1,80 @@
+package org.egov.fhirtransformer.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    @Test
+    void opensOnceMinimumCallsReachTheFailureRate() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 60000, 2);
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void oldOutcomesLeaveTheWindow() {
+        CircuitBreaker breaker = new CircuitBreaker(4, 4, 0.5, 60000, 2);
+        breaker.onFailure();
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess();
+        }
+        assertEquals(0.0, breaker.getFailureRate());
+    }
+
+    @Test
+    void halfOpenClosesAfterTrialCallsSucceed() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 1, 0.5, 0, 2);
+        breaker.onFailure();
+
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess();
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0.0, breaker.getFailureRate());
+    }
+
+    @Test
+    void halfOpenFailureOpensAgain() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(10, 1, 0.5, 50, 2);
+        breaker.onFailure();
+        Thread.sleep(60);
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void ignoredCallsReturnTheirTrialPermit() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 1, 0.5, 0, 1);
+        breaker.onFailure();
+
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.onIgnored();
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void ignoredCallsDoNotCountAsOutcomes() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 2, 0.5, 60000, 1);
+        breaker.onFailure();
+        breaker.onIgnored();
+        breaker.onIgnored();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1.0, breaker.getFailureRate());
+    }
+}
@@ -0,0 +1,76 @@
+package org.egov.fhirtransformer.utils;
+
+import org.junit.jupiter.api.Test;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 2000;
+
+    @Test
+    void emptyRingHasNoOwner() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(), 128);
+        assertTrue(ring.isEmpty());
+        assertNull(ring.owner("tenant"));
+    }
+
+    @Test
+    void ownerDoesNotDependOnMemberOrder() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("a", "b", "c"), 128);
+        ConsistentHashRing reordered = new ConsistentHashRing(List.of("c", "a", "b"), 128);
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals(ring.owner("tenant-" + i), reordered.owner("tenant-" + i));
+        }
+    }
+
+    @Test
+    void everyMemberOwnsAShareOfTheKeys() {
+        Map<String, Integer> owned = owners(new ConsistentHashRing(List.of("a", "b", "c", "d"), 128)).values().stream()
+                .collect(HashMap::new, (counts, owner) -> counts.merge(owner, 1, Integer::sum), HashMap::putAll);
+        assertEquals(4, owned.size());
+        for (int count : owned.values()) {
+            assertTrue(count > KEYS / 8, "share too small: " + owned);
+        }
+    }
+
+    @Test
+    void joiningMemberOnlyTakesKeysFromOthers() {
+        Map<String, String> before = owners(new ConsistentHashRing(List.of("a", "b", "c", "d"), 128));
+        Map<String, String> after = owners(new ConsistentHashRing(List.of("a", "b", "c", "d", "e"), 128));
+        int moved = 0;
+        for (Map.Entry<String, String> entry : before.entrySet()) {
+            String owner = after.get(entry.getKey());
+            if (!owner.equals(entry.getValue())) {
+                assertEquals("e", owner);
+                moved++;
+            }
+        }
+        // about 1/5 of the keys move to the new member
+        assertTrue(moved > 0 && moved < KEYS * 0.35, "moved " + moved);
+    }
+
+    @Test
+    void leavingMemberOnlyHandsOverItsOwnKeys() {
+        Map<String, String> before = owners(new ConsistentHashRing(List.of("a", "b", "c", "d"), 128));
+        Map<String, String> after = owners(new ConsistentHashRing(List.of("a", "b", "d"), 128));
+        for (Map.Entry<String, String> entry : before.entrySet()) {
+            if (!entry.getValue().equals("c")) {
+                assertEquals(entry.getValue(), after.get(entry.getKey()));
+            }
+        }
+    }
+
+    private static Map<String, String> owners(ConsistentHashRing ring) {
+        Map<String, String> owners = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            owners.put("tenant-" + i, ring.owner("tenant-" + i));
+        }
+        return owners;
+    }
+}
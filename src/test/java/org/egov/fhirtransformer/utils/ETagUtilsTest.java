@@ -0,0 +1,72 @@
+package org.egov.fhirtransformer.utils;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ETagUtilsTest {
+
+    private record Row(String id, Long lastModified) {
+    }
+
+    @Test
+    void samePageHasTheSameWeakTag() {
+        String tag = tag(List.of(new Row("A", 1L), new Row("B", 2L)), "pg", 0, 10);
+
+        assertTrue(tag.matches("W/\"[0-9a-f]{32}\""));
+        assertEquals(tag, tag(List.of(new Row("A", 1L), new Row("B", 2L)), "pg", 0, 10));
+    }
+
+    @Test
+    void modifiedRecordChangesTheTag() {
+        String before = tag(List.of(new Row("A", 1L), new Row("B", 2L)), "pg");
+        String after = tag(List.of(new Row("A", 1L), new Row("B", 3L)), "pg");
+
+        assertNotEquals(before, after);
+    }
+
+    @Test
+    void pageAndTenantChangeTheTag() {
+        List<Row> rows = List.of(new Row("A", 1L));
+
+        assertNotEquals(tag(rows, "pg", 0, 10), tag(rows, "pg", 10, 10));
+        assertNotEquals(tag(rows, "pg", 0, 10), tag(rows, "mz", 0, 10));
+    }
+
+    @Test
+    void recordsWithoutModificationTimeAreTagged() {
+        List<Row> rows = List.of(new Row("A", null));
+
+        assertEquals(tag(rows, "pg"), tag(rows, "pg"));
+        assertNotEquals(tag(rows, "pg"), tag(List.of(new Row("A", 0L)), "pg"));
+    }
+
+    @Test
+    void ifNoneMatchUsesWeakComparison() {
+        String tag = tag(List.of(new Row("A", 1L)), "pg");
+        String strong = tag.substring(2);
+
+        assertTrue(ETagUtils.matches(tag, tag));
+        assertTrue(ETagUtils.matches(strong, tag));
+        assertTrue(ETagUtils.matches("W/\"other\", " + tag, tag));
+        assertTrue(ETagUtils.matches("*", tag));
+    }
+
+    @Test
+    void missingOrDifferentTagDoesNotMatch() {
+        String tag = tag(List.of(new Row("A", 1L)), "pg");
+
+        assertFalse(ETagUtils.matches(null, tag));
+        assertFalse(ETagUtils.matches(" ", tag));
+        assertFalse(ETagUtils.matches("W/\"other\"", tag));
+        assertFalse(ETagUtils.matches(tag, null));
+    }
+
+    private static String tag(List<Row> rows, Object... discriminators) {
+        return ETagUtils.weakETag(rows, Row::id, Row::lastModified, discriminators);
+    }
+}
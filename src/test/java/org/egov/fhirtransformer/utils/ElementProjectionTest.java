@@ -0,0 +1,124 @@
+package org.egov.fhirtransformer.utils;
+
+import ca.uhn.fhir.context.FhirContext;
+import org.egov.fhirtransformer.common.Constants;
+import org.egov.fhirtransformer.common.InvalidSearchParameterException;
+import org.hl7.fhir.r5.model.Meta;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ElementProjectionTest {
+
+    private static final FhirContext CTX = FhirContext.forR5();
+
+    @Test
+    void noProjectionIncludesEverything() {
+        ElementProjection projection = resolve(Constants.INVENTORY_REPORT, new LinkedMultiValueMap<>());
+
+        assertSame(ElementProjection.ALL, projection);
+        assertTrue(projection.includes("note"));
+        assertFalse(projection.isSubsetted());
+        assertEquals("*", projection.key());
+    }
+
+    @Test
+    void summaryFalseAndDataIncludeEverything() {
+        assertSame(ElementProjection.ALL, resolve(Constants.INVENTORY_REPORT, params(Constants.SP_SUMMARY, "false")));
+        assertSame(ElementProjection.ALL, resolve(Constants.INVENTORY_REPORT, params(Constants.SP_SUMMARY, "data")));
+    }
+
+    @Test
+    void elementsKeepTheRequestedAndMandatoryElements() {
+        ElementProjection projection = resolve(Constants.INVENTORY_REPORT, params(Constants.SP_ELEMENTS, "identifier"));
+
+        assertTrue(projection.isSubsetted());
+        assertTrue(projection.includes("identifier"));
+        assertTrue(projection.includes("id"));
+        assertTrue(projection.includes("meta"));
+        assertTrue(projection.includes("status"));
+        assertTrue(projection.includes("countType"));
+        assertFalse(projection.includes("note"));
+    }
+
+    @Test
+    void elementsMayBePrefixedWithTheResourceType() {
+        ElementProjection projection = resolve(Constants.INVENTORY_REPORT,
+                params(Constants.SP_ELEMENTS, "InventoryReport.note, reporter"));
+
+        assertTrue(projection.includes("note"));
+        assertTrue(projection.includes("reporter"));
+        assertFalse(projection.includes("identifier"));
+    }
+
+    @Test
+    void unknownElementIsRejected() {
+        assertThrows(InvalidSearchParameterException.class,
+                () -> resolve(Constants.INVENTORY_REPORT, params(Constants.SP_ELEMENTS, "identifier,nope")));
+    }
+
+    @Test
+    void summaryKeepsOnlySummaryElements() {
+        ElementProjection projection = resolve(Constants.LOCATION, params(Constants.SP_SUMMARY, "true"));
+
+        assertTrue(projection.isSubsetted());
+        assertTrue(projection.includes("identifier"));
+        assertTrue(projection.includes("name"));
+        assertTrue(projection.includes("id"));
+        assertFalse(projection.includes("contained"));
+    }
+
+    @Test
+    void summaryAndElementsCannotBeCombined() {
+        MultiValueMap<String, String> params = params(Constants.SP_SUMMARY, "true");
+        params.add(Constants.SP_ELEMENTS, "identifier");
+
+        assertThrows(InvalidSearchParameterException.class, () -> resolve(Constants.LOCATION, params));
+        assertThrows(InvalidSearchParameterException.class,
+                () -> resolve(Constants.LOCATION, params(Constants.SP_SUMMARY, "text")));
+    }
+
+    @Test
+    void summaryCountMapsNoResources() {
+        assertTrue(ElementProjection.isCountOnly(params(Constants.SP_SUMMARY, "count")));
+        assertFalse(ElementProjection.isCountOnly(params(Constants.SP_SUMMARY, "true")));
+        assertFalse(ElementProjection.isCountOnly(new LinkedMultiValueMap<>()));
+    }
+
+    @Test
+    void onlyProjectedResourcesAreTaggedSubsetted() {
+        Meta projected = resolve(Constants.INVENTORY_REPORT, params(Constants.SP_ELEMENTS, "identifier")).tag(new Meta());
+        Meta full = ElementProjection.ALL.tag(new Meta());
+
+        assertEquals(1, projected.getTag().size());
+        assertEquals("SUBSETTED", projected.getTag().get(0).getCode());
+        assertTrue(full.getTag().isEmpty());
+    }
+
+    @Test
+    void keyTellsProjectionsApart() {
+        String identifier = resolve(Constants.INVENTORY_REPORT, params(Constants.SP_ELEMENTS, "identifier")).key();
+
+        assertEquals(identifier, resolve(Constants.INVENTORY_REPORT,
+                params(Constants.SP_ELEMENTS, "InventoryReport.identifier")).key());
+        assertNotEquals(identifier, resolve(Constants.INVENTORY_REPORT, params(Constants.SP_ELEMENTS, "note")).key());
+        assertNotEquals(identifier, ElementProjection.ALL.key());
+    }
+
+    private static ElementProjection resolve(String resourceType, MultiValueMap<String, String> params) {
+        return ElementProjection.resolve(CTX, resourceType, params);
+    }
+
+    private static MultiValueMap<String, String> params(String name, String value) {
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add(name, value);
+        return params;
+    }
+}
@@ -0,0 +1,102 @@
+package org.egov.fhirtransformer.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MicroBatcherTest {
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterEach
+    void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private MicroBatcher<String, String, String, List<String>> batcher(long windowMillis, int maxItems) {
+        return new MicroBatcher<>(windowMillis, maxItems, timer, Runnable::run, (context, items) -> {
+            batches.add(List.copyOf(items));
+            return List.copyOf(items);
+        });
+    }
+
+    @Test
+    void callersWithinTheWindowShareOneBatch() throws Exception {
+        MicroBatcher<String, String, String, List<String>> batcher = batcher(50, 100);
+        CompletableFuture<List<String>> first = batcher.submit("group", "ctx", List.of("a"));
+        CompletableFuture<List<String>> second = batcher.submit("group", "ctx", List.of("b"));
+
+        assertSame(first, second);
+        assertEquals(List.of("a", "b"), first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    void groupsAreNeverMerged() throws Exception {
+        MicroBatcher<String, String, String, List<String>> batcher = batcher(50, 100);
+        CompletableFuture<List<String>> first = batcher.submit("one", "ctx", List.of("a"));
+        CompletableFuture<List<String>> second = batcher.submit("two", "ctx", List.of("b"));
+
+        assertEquals(List.of("a"), first.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("b"), second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void fullBatchRunsWithoutWaitingForTheWindow() throws Exception {
+        MicroBatcher<String, String, String, List<String>> batcher = batcher(60000, 3);
+        batcher.submit("group", "ctx", List.of("a", "b"));
+        CompletableFuture<List<String>> result = batcher.submit("group", "ctx", List.of("c"));
+
+        assertEquals(List.of("a", "b", "c"), result.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void itemsThatWouldOverflowTheBatchStartANewOne() throws Exception {
+        MicroBatcher<String, String, String, List<String>> batcher = batcher(50, 3);
+        CompletableFuture<List<String>> first = batcher.submit("group", "ctx", List.of("a", "b"));
+        CompletableFuture<List<String>> second = batcher.submit("group", "ctx", List.of("c", "d"));
+
+        assertNotSame(first, second);
+        assertEquals(List.of("a", "b"), first.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("c", "d"), second.get(5, TimeUnit.SECONDS));
+        for (List<String> batch : batches) {
+            assertFalse(batch.size() > 3);
+        }
+    }
+
+    @Test
+    void singleCallerOverTheLimitGetsABatchOfItsOwn() throws Exception {
+        MicroBatcher<String, String, String, List<String>> batcher = batcher(60000, 2);
+        CompletableFuture<List<String>> result = batcher.submit("group", "ctx", List.of("a", "b", "c"));
+
+        assertEquals(List.of("a", "b", "c"), result.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void batchFailureReachesEveryCaller() {
+        IllegalStateException failure = new IllegalStateException("search failed");
+        MicroBatcher<String, String, String, List<String>> batcher = new MicroBatcher<>(50, 100, timer, Runnable::run,
+                (context, items) -> {
+                    throw failure;
+                });
+        CompletableFuture<List<String>> first = batcher.submit("group", "ctx", List.of("a"));
+        CompletableFuture<List<String>> second = batcher.submit("group", "ctx", List.of("b"));
+
+        assertSame(failure, assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS)).getCause());
+        assertSame(failure, assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS)).getCause());
+    }
+}
@@ -0,0 +1,92 @@
+package org.egov.fhirtransformer.utils;
+
+import org.egov.fhirtransformer.utils.PriorityBudget.Result;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PriorityBudgetTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void largeRequestsLeaveTheReserveToSmallOnes() throws InterruptedException {
+        PriorityBudget budget = new PriorityBudget(10, 3, 0);
+        assertEquals(Result.ADMITTED, budget.acquire(7, false, 0));
+        assertEquals(Result.QUEUE_FULL, budget.acquire(1, false, 0));
+        assertEquals(Result.ADMITTED, budget.acquire(3, true, 0));
+        assertEquals(10, budget.getUsed());
+    }
+
+    @Test
+    void clampLetsAnOversizedRequestRunAlone() throws InterruptedException {
+        PriorityBudget budget = new PriorityBudget(10, 3, 0);
+        assertEquals(7, budget.clamp(50, false));
+        assertEquals(10, budget.clamp(50, true));
+        assertEquals(Result.ADMITTED, budget.acquire(budget.clamp(50, false), false, 0));
+    }
+
+    @Test
+    void waitingRequestTimesOut() throws InterruptedException {
+        PriorityBudget budget = new PriorityBudget(10, 0, 1);
+        budget.acquire(10, true, 0);
+        assertEquals(Result.TIMED_OUT, budget.acquire(1, true, 20));
+        assertEquals(0, budget.getQueued(true));
+    }
+
+    @Test
+    void waitingRequestIsAdmittedOnRelease() throws Exception {
+        PriorityBudget budget = new PriorityBudget(10, 0, 1);
+        budget.acquire(10, true, 0);
+        Future<Result> waiting = executor.submit(() -> budget.acquire(5, true, 5000));
+        awaitQueued(budget, true, 1);
+
+        budget.release(10);
+        assertEquals(Result.ADMITTED, waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(5, budget.getUsed());
+    }
+
+    @Test
+    void waitingSmallRequestGoesBeforeWaitingLargeOne() throws Exception {
+        PriorityBudget budget = new PriorityBudget(10, 2, 1);
+        budget.acquire(10, true, 0);
+        List<String> admitted = new CopyOnWriteArrayList<>();
+        Future<?> large = executor.submit(() -> {
+            if (budget.acquire(8, false, 5000) == Result.ADMITTED) admitted.add("large");
+            return null;
+        });
+        awaitQueued(budget, false, 1);
+        Future<?> small = executor.submit(() -> {
+            if (budget.acquire(8, true, 5000) == Result.ADMITTED) admitted.add("small");
+            return null;
+        });
+        awaitQueued(budget, true, 1);
+
+        budget.release(10);
+        small.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("small"), admitted);
+        budget.release(8);
+        large.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("small", "large"), admitted);
+    }
+
+    private static void awaitQueued(PriorityBudget budget, boolean small, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (budget.getQueued(small) < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, budget.getQueued(small));
+    }
+}
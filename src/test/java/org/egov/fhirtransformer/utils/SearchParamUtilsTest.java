@@ -0,0 +1,56 @@
+package org.egov.fhirtransformer.utils;
+
+import org.egov.fhirtransformer.common.InvalidSearchParameterException;
+import org.junit.jupiter.api.Test;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SearchParamUtilsTest {
+
+    @Test
+    void noValueIsNoBound() {
+        assertNull(SearchParamUtils.parseLastUpdated(null));
+        assertNull(SearchParamUtils.parseLastUpdated(" "));
+    }
+
+    @Test
+    void geStartsAtTheGivenInstant() {
+        assertEquals(millis("2024-01-01T10:00:00Z"), SearchParamUtils.parseLastUpdated("ge2024-01-01T10:00:00Z"));
+    }
+
+    @Test
+    void gtSkipsTheWholeGivenSecond() {
+        assertEquals(millis("2024-01-01T10:00:01Z"), SearchParamUtils.parseLastUpdated("gt2024-01-01T10:00:00Z"));
+    }
+
+    @Test
+    void gtSkipsOnlyTheGivenMillisecond() {
+        assertEquals(millis("2024-01-01T10:00:00.501Z"), SearchParamUtils.parseLastUpdated("gt2024-01-01T10:00:00.500Z"));
+    }
+
+    @Test
+    void gtSkipsTheWholeGivenDayOrYear() {
+        assertEquals(SearchParamUtils.parseLastUpdated("ge2024-01-02"), SearchParamUtils.parseLastUpdated("gt2024-01-01"));
+        assertEquals(SearchParamUtils.parseLastUpdated("ge2025"), SearchParamUtils.parseLastUpdated("gt2024"));
+    }
+
+    @Test
+    void upperBoundsAndBareDatesAreRejected() {
+        assertThrows(InvalidSearchParameterException.class, () -> SearchParamUtils.parseLastUpdated("lt2024-01-01"));
+        assertThrows(InvalidSearchParameterException.class, () -> SearchParamUtils.parseLastUpdated("eq2024-01-01"));
+        assertThrows(InvalidSearchParameterException.class, () -> SearchParamUtils.parseLastUpdated("2024-01-01"));
+    }
+
+    @Test
+    void invalidDateIsRejected() {
+        assertThrows(InvalidSearchParameterException.class, () -> SearchParamUtils.parseLastUpdated("gt2024-13-45"));
+        assertThrows(InvalidSearchParameterException.class, () -> SearchParamUtils.parseLastUpdated("ge"));
+    }
+
+    private static long millis(String instant) {
+        return Instant.parse(instant).toEpochMilli();
+    }
+}
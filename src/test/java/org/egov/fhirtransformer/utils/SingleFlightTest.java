@@ -0,0 +1,189 @@
+package org.egov.fhirtransformer.utils;
+
+import org.egov.fhirtransformer.common.DeadlineExceededException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String> singleFlight = new SingleFlight<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallersShareOneCall() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Future<SingleFlight.Result<String>> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "value";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<SingleFlight.Result<String>> follower = executor.submit(() -> singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            return "other";
+        }));
+        Thread.sleep(50);
+        release.countDown();
+
+        assertEquals(new SingleFlight.Result<>("value", false), leader.get(5, TimeUnit.SECONDS));
+        assertEquals(new SingleFlight.Result<>("value", true), follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void followersReceiveTheLeadersFailure() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("search failed");
+        Future<?> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            started.countDown();
+            await(release);
+            throw failure;
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<?> follower = executor.submit(() -> singleFlight.execute("key", () -> "other"));
+        Thread.sleep(50);
+        release.countDown();
+
+        assertSame(failure, assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS)).getCause());
+        assertSame(failure, assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS)).getCause());
+    }
+
+    @Test
+    void followerStopsWaitingAtItsOwnDeadline() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<SingleFlight.Result<String>> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            started.countDown();
+            await(release);
+            return "value";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        try (RequestDeadline.Scope ignored = RequestDeadline.in(50).bind()) {
+            assertThrows(DeadlineExceededException.class, () -> singleFlight.execute("key", () -> "other"));
+        }
+        release.countDown();
+        assertEquals("value", leader.get(5, TimeUnit.SECONDS).value());
+    }
+
+    @Test
+    void followerRunsTheCallAgainWhenTheLeadersDeadlineEndedIt() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException timedOut = new IllegalStateException("read timed out");
+        AtomicInteger calls = new AtomicInteger();
+        Future<?> leader = executor.submit(() -> {
+            try (RequestDeadline.Scope ignored = RequestDeadline.in(50).bind()) {
+                return singleFlight.execute("key", () -> {
+                    calls.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    throw timedOut;
+                });
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<SingleFlight.Result<String>> follower = executor.submit(() -> singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            return "value";
+        }));
+        Thread.sleep(100);
+        release.countDown();
+
+        assertSame(timedOut, assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS)).getCause());
+        assertEquals(new SingleFlight.Result<>("value", false), follower.get(5, TimeUnit.SECONDS));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void asyncFollowerRunsTheCallAgainWhenTheLeadersDeadlineEndedIt() throws Exception {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        SingleFlight.Result<CompletableFuture<String>> leader;
+        try (RequestDeadline.Scope ignored = RequestDeadline.in(20).bind()) {
+            leader = singleFlight.executeAsync("key", () -> call);
+        }
+        CompletableFuture<String> follower = singleFlight.executeAsync("key",
+                () -> CompletableFuture.completedFuture("value")).value();
+        Thread.sleep(50);
+        IllegalStateException timedOut = new IllegalStateException("read timed out");
+        call.completeExceptionally(timedOut);
+
+        assertSame(timedOut, assertThrows(ExecutionException.class, () -> leader.value().get(5, TimeUnit.SECONDS)).getCause());
+        assertEquals("value", follower.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void nothingIsKeptOnceTheCallCompletes() {
+        assertEquals("first", singleFlight.execute("key", () -> "first").value());
+        SingleFlight.Result<String> second = singleFlight.execute("key", () -> "second");
+        assertEquals("second", second.value());
+        assertFalse(second.shared());
+    }
+
+    @Test
+    void asyncCallersShareOneCall() throws Exception {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+        SingleFlight.Result<CompletableFuture<String>> leader = singleFlight.executeAsync("key", () -> {
+            calls.incrementAndGet();
+            return call;
+        });
+        SingleFlight.Result<CompletableFuture<String>> follower = singleFlight.executeAsync("key", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+        assertTrue(follower.shared());
+
+        call.complete("value");
+        assertEquals("value", leader.value().get(5, TimeUnit.SECONDS));
+        assertEquals("value", follower.value().get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void asyncFollowerFailsAtItsDeadlineWithoutCancellingTheCall() throws Exception {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        SingleFlight.Result<CompletableFuture<String>> leader = singleFlight.executeAsync("key", () -> call);
+        CompletableFuture<String> follower;
+        try (RequestDeadline.Scope ignored = RequestDeadline.in(50).bind()) {
+            follower = singleFlight.executeAsync("key", () -> CompletableFuture.completedFuture("other")).value();
+        }
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(DeadlineExceededException.class, failure.getCause());
+        call.complete("value");
+        assertEquals("value", leader.value().get(5, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
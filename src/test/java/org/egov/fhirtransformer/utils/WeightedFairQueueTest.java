@@ -0,0 +1,105 @@
+package org.egov.fhirtransformer.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeightedFairQueueTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final List<String> order = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void busyFlowDoesNotDelayAnotherFlowsFirstTasks() throws InterruptedException {
+        WeightedFairQueue queue = new WeightedFairQueue(executor, 1, 100);
+        CountDownLatch release = block(queue);
+        for (int i = 1; i <= 4; i++) {
+            queue.offer("bulk", 1, 2, record("bulk" + i), () -> { });
+        }
+        queue.offer("small", 1, 1, record("small1"), () -> { });
+        queue.offer("small", 1, 1, record("small2"), () -> { });
+        CountDownLatch done = new CountDownLatch(1);
+        queue.offer("bulk", 1, 1, done::countDown, () -> { });
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(order.indexOf("small1") < order.indexOf("bulk2"));
+        assertTrue(order.indexOf("small2") < order.indexOf("bulk2"));
+    }
+
+    @Test
+    void heavierFlowGetsALargerShare() throws InterruptedException {
+        WeightedFairQueue queue = new WeightedFairQueue(executor, 1, 100);
+        CountDownLatch release = block(queue);
+        for (int i = 1; i <= 4; i++) {
+            queue.offer("heavy", 2, 1, record("heavy" + i), () -> { });
+            queue.offer("light", 1, 1, record("light" + i), () -> { });
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        queue.offer("light", 1, 1, done::countDown, () -> { });
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(order.indexOf("heavy4") < order.indexOf("light3"));
+    }
+
+    @Test
+    void refusesTasksOnceTheQueueIsFull() throws InterruptedException {
+        WeightedFairQueue queue = new WeightedFairQueue(executor, 1, 1);
+        CountDownLatch release = block(queue);
+        assertTrue(queue.offer("tenant", 1, 1, () -> { }, () -> { }));
+        assertFalse(queue.offer("tenant", 1, 1, () -> { }, () -> { }));
+        assertEquals(1, queue.getQueued("tenant"));
+        release.countDown();
+    }
+
+    @Test
+    void rejectedTaskRunsItsFallback() {
+        WeightedFairQueue queue = new WeightedFairQueue(task -> {
+            throw new RejectedExecutionException("full");
+        }, 1, 10);
+        AtomicBoolean ran = new AtomicBoolean();
+        AtomicBoolean rejected = new AtomicBoolean();
+
+        assertTrue(queue.offer("tenant", 1, 1, () -> ran.set(true), () -> rejected.set(true)));
+        assertFalse(ran.get());
+        assertTrue(rejected.get());
+        assertEquals(0, queue.getQueued());
+    }
+
+    // Occupies the only thread until the returned latch is released
+    private CountDownLatch block(WeightedFairQueue queue) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        queue.offer("blocker", 1, 1, () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, () -> { });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private Runnable record(String name) {
+        return () -> order.add(name);
+    }
+}